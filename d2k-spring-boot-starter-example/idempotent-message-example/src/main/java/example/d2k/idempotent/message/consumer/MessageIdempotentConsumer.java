@@ -5,6 +5,7 @@ import example.d2k.idempotent.message.entity.MessageRecord;
 import example.d2k.idempotent.message.entity.MessageType;
 import example.d2k.idempotent.message.service.MessageIdempotentService;
 import com.d2k.spring.boot.autoconfigure.annotation.D2kListener;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -340,7 +341,13 @@ public class MessageIdempotentConsumer {
      * 提取消息ID
      */
     private String extractMessageId(ConsumerRecord<String, String> record) {
-        // 优先从消息头获取
+        // 优先使用发送端写入的 D2K 消息 ID，重投递时保持不变
+        D2kMessageHeaders d2kHeaders = D2kMessageHeaders.from(record);
+        if (d2kHeaders != null && StringUtils.hasText(d2kHeaders.getMessageId())) {
+            return d2kHeaders.getMessageId();
+        }
+        
+        // 其次从 Kafka 消息头获取
         if (record.headers() != null) {
             org.apache.kafka.common.header.Header messageIdHeader = record.headers().lastHeader("messageId");
             if (messageIdHeader != null && messageIdHeader.value() != null) {
@@ -348,7 +355,7 @@ public class MessageIdempotentConsumer {
             }
         }
         
-        // 如果没有消息头，生成一个基于分区、偏移量的唯一ID
+        // 旧版本发送的消息没有元数据，退化为基于分区、偏移量的ID
         return String.format("%s-%d-%d", record.topic(), record.partition(), record.offset());
     }
     
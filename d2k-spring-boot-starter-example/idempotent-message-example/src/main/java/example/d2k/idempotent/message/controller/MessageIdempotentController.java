@@ -408,8 +408,8 @@ public class MessageIdempotentController {
             headers.put("shouldFail", String.valueOf(shouldFail));
             headers.put("timestamp", String.valueOf(System.currentTimeMillis()));
             
-            // 发送消息到D2K
-            d2kTemplate.send("test-topic", businessKey, content);
+            // 发送消息到D2K，重复请求在去重窗口内只发送一次
+            d2kTemplate.sendIdempotent("test-topic", businessKey, content, businessKey);
             
             Map<String, Object> result = new HashMap<>();
             result.put("businessKey", businessKey);
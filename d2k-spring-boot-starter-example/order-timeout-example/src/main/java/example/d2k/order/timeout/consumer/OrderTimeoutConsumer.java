@@ -31,7 +31,9 @@ public class OrderTimeoutConsumer {
         autoStartup = true,
         asyncProcessing = true,
         asyncCorePoolSize = 2,
-        asyncMaxPoolSize = 5
+        asyncMaxPoolSize = 5,
+        releaseRate = 2000,       // 集中到期时每秒最多处理 2000 条
+        releaseJitterMs = 1000    // 到期后在 1 秒内随机分散
     )
     public void handleOrderTimeout(ConsumerRecord<String, String> record) {
         String orderNo = record.value();
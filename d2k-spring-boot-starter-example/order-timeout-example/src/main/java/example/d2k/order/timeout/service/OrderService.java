@@ -79,6 +79,7 @@ public class OrderService {
         // 更新订单状态为已支付
         order.setStatus(OrderStatus.PAID);
         orderRepository.save(order);
+        cancelOrderTimeoutMessage(orderNo);
         
         logger.info("订单支付成功: {}", orderNo);
         return true;
@@ -103,6 +104,7 @@ public class OrderService {
         // 更新订单状态为已取消
         order.setStatus(OrderStatus.CANCELLED);
         orderRepository.save(order);
+        cancelOrderTimeoutMessage(orderNo);
         
         logger.info("订单取消成功: {}", orderNo);
         return true;
@@ -177,7 +179,8 @@ public class OrderService {
             d2kTemplate.send(
                 "order-timeout",           // topic
                 order.getOrderNo(),        // key
-                order.getOrderNo()         // message
+                order.getOrderNo(),        // message
+                order.getOrderNo()         // messageId，用于支付或取消后撤销超时消息
             );
             
             logger.info("订单超时延迟消息发送成功: {}, 延迟时间: {}分钟", 
@@ -188,6 +191,18 @@ public class OrderService {
         }
     }
     
+    /**
+     * 撤销订单超时延迟消息
+     * 撤销失败时超时消息仍会到达，由超时处理逻辑根据订单状态忽略
+     */
+    private void cancelOrderTimeoutMessage(String orderNo) {
+        try {
+            d2kTemplate.cancel("order-timeout", orderNo, orderNo);
+        } catch (Exception e) {
+            logger.warn("订单超时延迟消息撤销失败: {}", orderNo, e);
+        }
+    }
+    
     /**
      * 生成订单号
      */
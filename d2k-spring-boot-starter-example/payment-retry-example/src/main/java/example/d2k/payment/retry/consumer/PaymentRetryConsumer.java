@@ -28,7 +28,8 @@ public class PaymentRetryConsumer {
         groupId = "payment-retry-group",
         clientId = "payment-retry-consumer-1",
         concurrency = 3,
-        asyncProcessing = true
+        asyncProcessing = true,
+        coalesce = true
     )
     public void handlePaymentRetryWithRecord(ConsumerRecord<String, String> record) {
         String paymentId = record.value();
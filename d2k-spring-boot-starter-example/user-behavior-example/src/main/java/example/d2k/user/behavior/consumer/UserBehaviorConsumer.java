@@ -141,8 +141,8 @@ public class UserBehaviorConsumer {
         topic = "user-behavior-retry",
         groupId = "user-behavior-retry-group",
         clientId = "user-behavior-retry-client",
-        concurrency = 2
-      
+        concurrency = 2,
+        coalesce = true
     )
     public void handleUserBehaviorEventRetry(ConsumerRecord<String, Object> record) {
         try {
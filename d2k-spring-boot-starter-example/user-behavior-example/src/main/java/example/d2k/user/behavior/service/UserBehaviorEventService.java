@@ -704,7 +704,7 @@ public class UserBehaviorEventService {
             message.put("action", "process");
             message.put("timestamp", LocalDateTime.now().toString());
             
-            d2kTemplate.send("user-behavior-processing", event.getId(), message);
+            d2kTemplate.send("user-behavior-processing", event.getId().toString(), message);
             logger.debug("发送处理消息: eventId={}", event.getId());
             
         } catch (Exception e) {
@@ -730,7 +730,7 @@ public class UserBehaviorEventService {
             // 计算延迟时间（毫秒）
             long delayMs = java.time.Duration.between(LocalDateTime.now(), delayUntil).toMillis();
             
-            d2kTemplate.send("user-behavior-delayed-processing", event.getId().toString(), objectMapper.writeValueAsString(message));
+            d2kTemplate.send("user-behavior-delayed-processing", event.getId().toString(), message);
             logger.debug("发送延迟处理消息: eventId={}, delayMs={}", event.getId(), delayMs);
             
         } catch (Exception e) {
@@ -757,7 +757,7 @@ public class UserBehaviorEventService {
             // 计算延迟时间（毫秒）
             long delayMs = java.time.Duration.between(LocalDateTime.now(), nextRetryTime).toMillis();
             
-            d2kTemplate.send("user-behavior-retry", event.getId().toString(), objectMapper.writeValueAsString(message));
+            d2kTemplate.send("user-behavior-retry", event.getId().toString(), message);
             logger.debug("发送重试消息: eventId={}, retryCount={}, delayMs={}", 
                         event.getId(), event.getRetryCount(), delayMs);
             
@@ -4,7 +4,9 @@ import com.d2k.spring.boot.autoconfigure.D2kProperties;
 import com.d2k.spring.boot.autoconfigure.config.D2kAutoConfiguration;
 import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
 import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
 import com.d2k.spring.boot.autoconfigure.template.D2kTemplate;
+import com.d2k.spring.boot.autoconfigure.template.StringD2kTemplate;
 import com.d2k.spring.boot.autoconfigure.annotation.D2kListenerAnnotationBeanPostProcessor;
 import com.d2k.producer.DelayProducer;
 import org.junit.Test;
@@ -57,6 +59,22 @@ public class D2kAutoConfigurationTest {
         assertNotNull("StringD2kTemplate should not be null", stringD2kTemplate);
     }
 
+    @Test
+    public void testTemplatesShareDelayProducerPool() {
+        assertTrue("Shared DelayProducerPool bean should exist",
+                applicationContext.containsBean("d2kDelayProducerPool"));
+
+        DelayProducerPool producerPool = applicationContext.getBean(DelayProducerPool.class);
+        D2kTemplate<?, ?> d2kTemplate = applicationContext.getBean("d2kTemplate", D2kTemplate.class);
+        StringD2kTemplate stringD2kTemplate = applicationContext.getBean(StringD2kTemplate.class);
+
+        assertEquals("Default pool size should be 1", 1, producerPool.getSize());
+        assertSame("D2kTemplate should use the shared DelayProducerPool",
+                producerPool, d2kTemplate.getProducerPool());
+        assertSame("StringD2kTemplate should use the shared DelayProducerPool",
+                producerPool, stringD2kTemplate.getProducerPool());
+    }
+
     @Test
     public void testD2kConsumerManagerBeanExists() {
         assertTrue("D2kConsumerManager bean should exist", 
@@ -0,0 +1,185 @@
+package com.d2k.spring.boot.autoconfigure.actuate;
+
+import com.d2k.consumer.DelayConsumerContainer;
+import com.d2k.consumer.DelayItem;
+import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.consumer.ContainerStateHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kReceiveInterceptor;
+import com.d2k.spring.boot.autoconfigure.consumer.DelayContainerState;
+import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
+import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * D2kEndpoint 与 DelayContainerState 测试
+ * 验证按分区跟踪等待中的消息、下一次到期时间和提交，暂停时到期消息在处理器前等待，同步处理的容器拒绝暂停，以及端点的读写操作
+ *
+ * @author xiajuan96
+ */
+public class D2kEndpointTest {
+
+    private static final String TOPIC = "order.timeout";
+    private static final long DELAY_MS = 60000L;
+
+    @Test
+    public void testPartitionStateTracksPollDeliveryAndCommit() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        D2kReceiveInterceptor interceptor = interceptor(state);
+        List<DelayItem<String, String>> delivered = new ArrayList<>();
+        ContainerStateHandler<String, String> handler = new ContainerStateHandler<>(delivered::add, state);
+
+        TopicPartition partition = new TopicPartition(TOPIC, 3);
+        List<ConsumerRecord<Object, Object>> polled = new ArrayList<>();
+        for (long offset = 10; offset < 13; offset++) {
+            polled.add(record(partition.partition(), offset, 1000L * offset));
+        }
+        interceptor.onConsume(new ConsumerRecords<>(Collections.singletonMap(partition, polled)));
+        handler.process(item(partition.partition(), 10L));
+        interceptor.onCommit(Collections.singletonMap(partition, new OffsetAndMetadata(11L)));
+
+        // 消费者指标的 topic 标签中 . 被替换为 _
+        state.addPartitionLag("order_timeout", 3, metric("client-1", 42.0));
+
+        assertEquals(1, delivered.size());
+        assertEquals(2L, state.getPendingCount());
+        DelayContainerState.PartitionSnapshot snapshot = state.getPartitions().get(0);
+        assertEquals(TOPIC, snapshot.getTopic());
+        assertEquals(3, snapshot.getPartition());
+        assertTrue(snapshot.isAssigned());
+        assertEquals(42.0, snapshot.getLag(), 0.0);
+        assertEquals(2, snapshot.getPendingCount());
+        assertEquals(Long.valueOf(11000L + DELAY_MS), snapshot.getNextDueTime());
+        assertEquals(Long.valueOf(12L), snapshot.getLastPolledOffset());
+        assertEquals(Long.valueOf(10L), snapshot.getLastDeliveredOffset());
+        assertEquals(Long.valueOf(11L), snapshot.getCommittedOffset());
+        assertNotNull(snapshot.getLastCommitTime());
+
+        // 分区转移到同一容器的另一个消费者后，旧消费者移除指标不影响分配状态
+        state.addPartitionLag("order_timeout", 3, metric("client-2", 7.0));
+        state.removePartitionLag("order_timeout", 3, metric("client-1", 0.0));
+        assertTrue(state.getPartitions().get(0).isAssigned());
+        state.removePartitionLag("order_timeout", 3, metric("client-2", 0.0));
+        assertFalse(state.getPartitions().get(0).isAssigned());
+    }
+
+    @Test
+    public void testPausedDeliveryWaitsUntilResumed() throws Exception {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        CountDownLatch delivered = new CountDownLatch(1);
+        ContainerStateHandler<String, String> handler = new ContainerStateHandler<>(
+                item -> delivered.countDown(), state);
+
+        state.pause();
+        Thread worker = new Thread(() -> handler.process(item(0, 1L)));
+        worker.start();
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (state.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(1, state.getInFlightCount());
+        assertFalse(delivered.await(100L, TimeUnit.MILLISECONDS));
+
+        state.resume();
+        assertTrue(delivered.await(5L, TimeUnit.SECONDS));
+        worker.join(5000L);
+        assertEquals(0, state.getInFlightCount());
+    }
+
+    @Test
+    public void testSyncContainerCannotBePaused() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        state.setPauseSupported(false);
+        try {
+            state.pause();
+            fail("Pausing a container that processes on the poll thread should be rejected");
+        } catch (IllegalStateException expected) {
+            assertFalse(state.isPaused());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEndpointReportsAndOperatesContainers() {
+        DelayConsumerContainerFactory factory = new DelayConsumerContainerFactory(new D2kProperties());
+        D2kConsumerManager manager = new D2kConsumerManager();
+        manager.setContainerFactory(factory);
+        manager.registerContainer("unmanaged", mock(DelayConsumerContainer.class));
+        D2kEndpoint endpoint = new D2kEndpoint(manager);
+
+        Map<String, D2kEndpoint.ContainerDescriptor> containers = endpoint.containers();
+        assertEquals(Collections.singleton("unmanaged"), containers.keySet());
+        assertNull(containers.get("unmanaged").getPaused());
+        assertTrue(containers.get("unmanaged").getPartitions().isEmpty());
+        assertNull(endpoint.container("missing"));
+        assertNull(endpoint.operate("missing", "pause"));
+        try {
+            endpoint.operate("unmanaged", "restart");
+            fail("Unsupported action should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // 只支持 pause / resume / start / stop
+        }
+
+        D2kEndpoint.ContainerDescriptor stopped = endpoint.operate("unmanaged", "stop");
+        assertEquals("unmanaged", stopped.getName());
+    }
+
+    private static D2kReceiveInterceptor interceptor(DelayContainerState state) {
+        D2kReceiveInterceptor interceptor = new D2kReceiveInterceptor();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(D2kReceiveInterceptor.CONTAINER_STATE_CONFIG, state);
+        interceptor.configure(configs);
+        return interceptor;
+    }
+
+    private static ConsumerRecord<Object, Object> record(int partition, long offset, long timestamp) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, timestamp, TimestampType.CREATE_TIME, -1, -1,
+                "key-" + offset, "value-" + offset, new RecordHeaders(), Optional.empty());
+    }
+
+    private static DelayItem<String, String> item(int partition, long offset) {
+        return new DelayItem<>(0L, System.currentTimeMillis(),
+                new ConsumerRecord<>(TOPIC, partition, offset, "key-" + offset, "value-" + offset));
+    }
+
+    private static Metric metric(String clientId, double value) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("client-id", clientId);
+        tags.put("topic", "order_timeout");
+        tags.put("partition", "3");
+        MetricName name = new MetricName("records-lag", "consumer-fetch-manager-metrics", "", tags);
+        return new Metric() {
+            @Override
+            public MetricName metricName() {
+                return name;
+            }
+
+            @Override
+            public Object metricValue() {
+                return value;
+            }
+        };
+    }
+}
@@ -2,21 +2,30 @@ package com.d2k.spring.boot.autoconfigure.annotation;
 
 import com.d2k.consumer.DelayItem;
 import com.d2k.consumer.DelayItemHandler;
+import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerInterceptor;
+import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
+import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.Ordered;
 
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.fail;
 
 /**
  * D2kListener注解处理器测试
- * 验证多参数类型支持功能
+ * 验证多参数类型支持功能，以及监听器拦截器在创建容器时才解析
  * 
  * @author xiajuan96
  */
@@ -173,6 +182,53 @@ public class D2kListenerAnnotationBeanPostProcessorTest {
         }
     }
 
+    @Test
+    public void testInterceptorsResolvedWhenContainerCreated() {
+        D2kProperties properties = new D2kProperties();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("d2kProperties", properties);
+        beanFactory.registerSingleton("d2kConsumerManager", new D2kConsumerManager());
+        beanFactory.registerSingleton("delayConsumerContainerFactory", new DelayConsumerContainerFactory(properties));
+        beanFactory.registerBeanDefinition("countingInterceptor", new RootBeanDefinition(CountingInterceptor.class));
+        CountingInterceptor.created.set(0);
+
+        processor.setBeanFactory(beanFactory);
+        assertEquals("Interceptor beans are not created with the post processor", 0, CountingInterceptor.created.get());
+
+        // 之后注册的拦截器在下一次创建容器时同样生效，按顺序排列
+        D2kListenerInterceptor first = new OrderedInterceptor(Ordered.HIGHEST_PRECEDENCE);
+        beanFactory.registerSingleton("firstInterceptor", first);
+        List<D2kListenerInterceptor> interceptors = processor.getInterceptors();
+
+        assertEquals(1, CountingInterceptor.created.get());
+        assertEquals(2, interceptors.size());
+        assertSame(first, interceptors.get(0));
+        assertTrue(interceptors.get(1) instanceof CountingInterceptor);
+    }
+
+    public static class CountingInterceptor implements D2kListenerInterceptor {
+
+        static final AtomicInteger created = new AtomicInteger();
+
+        public CountingInterceptor() {
+            created.incrementAndGet();
+        }
+    }
+
+    private static class OrderedInterceptor implements D2kListenerInterceptor, Ordered {
+
+        private final int order;
+
+        OrderedInterceptor(int order) {
+            this.order = order;
+        }
+
+        @Override
+        public int getOrder() {
+            return order;
+        }
+    }
+
     // 辅助方法：使用反射调用私有方法
     private DelayItemHandler<Object, Object> createMessageHandler(Object bean, Method method) throws Exception {
         Method createHandlerMethod = D2kListenerAnnotationBeanPostProcessor.class
@@ -0,0 +1,108 @@
+package com.d2k.spring.boot.autoconfigure.claimcheck;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.spring.boot.autoconfigure.consumer.CancellationIndex;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kMessageHandler;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageCodec;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageDeserializer;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * FileSystemClaimCheckStore 测试
+ * 验证存取、清理、非法引用拒绝以及消费端到期时还原消息值
+ *
+ * @author xiajuan96
+ */
+public class FileSystemClaimCheckStoreTest {
+
+    private static final String TOPIC = "payment-retry";
+
+    private File directory;
+    private FileSystemClaimCheckStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("d2k-claim-check-test").toFile();
+        store = new FileSystemClaimCheckStore(directory, 60000L);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testStoreLoadDelete() throws IOException {
+        String reference = store.store(TOPIC, bytes("large-payload"));
+
+        assertTrue(reference.startsWith(TOPIC + "/"));
+        assertEquals("large-payload", new String(store.load(reference), StandardCharsets.UTF_8));
+
+        store.delete(reference);
+        try {
+            store.load(reference);
+            fail("Deleted payload should not be loadable");
+        } catch (IOException expected) {
+            // 已删除
+        }
+    }
+
+    @Test
+    public void testPurgeExpired() throws IOException {
+        String reference = store.store(TOPIC, bytes("old"));
+        File file = new File(directory, reference);
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 120000L));
+        store.store(TOPIC, bytes("new"));
+
+        assertEquals(1, store.purgeExpired());
+        assertFalse(file.exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReferenceOutsideDirectoryRejected() throws IOException {
+        store.load("../../etc/passwd");
+    }
+
+    @Test
+    public void testClaimCheckRehydratedBeforeListener() throws IOException {
+        String reference = store.store(TOPIC, bytes("ORD-1"));
+        byte[] envelope = D2kMessageCodec.encodeClaimCheck(D2kMessageHeaders.of("order-1"), reference);
+        Object polled = new D2kMessageDeserializer<>(new StringDeserializer()).deserialize(TOPIC, envelope);
+        List<Object> received = new ArrayList<>();
+        D2kMessageHandler<Object, Object> handler = new D2kMessageHandler<>(
+                item -> received.add(item.getRecord().value()), new CancellationIndex(16), null,
+                new ClaimCheckRehydrator<Object>(store, new StringDeserializer()));
+
+        assertTrue(((D2kMessage<?>) polled).isClaimCheck());
+        assertNull(((D2kMessage<?>) polled).getValue());
+
+        handler.process(new DelayItem<>(0L, 0L, new ConsumerRecord<>(TOPIC, 0, 0L, (Object) "key", polled)));
+
+        assertEquals(1, received.size());
+        assertEquals("ORD-1", received.get(0));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,103 @@
+package com.d2k.spring.boot.autoconfigure.config;
+
+import com.d2k.consumer.AsyncProcessingConfig;
+import com.d2k.consumer.DelayConsumerContainer;
+import com.d2k.spring.boot.autoconfigure.actuate.D2kEndpoint;
+import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
+import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerOptions;
+import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kLatenessMeterBinder;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kListenerMeterBinder;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayContainerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * D2kConsumerAutoConfiguration 测试
+ * 验证指标 Bean 只在类路径中存在 Micrometer 时注册，管理端点只在存在 Actuator 时注册，以及端点对容器的读取、暂停和恢复
+ *
+ * @author xiajuan96
+ */
+public class D2kConsumerAutoConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(D2kConsumerAutoConfiguration.class));
+
+    @Test
+    public void testMeterBindersRegisteredWithMicrometer() {
+        contextRunner.run(context -> {
+            assertThat(context).hasSingleBean(D2kListenerMeterBinder.class);
+            assertThat(context).hasSingleBean(D2kLatenessMeterBinder.class);
+            assertThat(context).hasSingleBean(DelayContainerMetrics.class);
+        });
+    }
+
+    @Test
+    public void testMeterBindersAbsentWithoutMicrometer() {
+        contextRunner.withClassLoader(new FilteredClassLoader(MeterRegistry.class))
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).doesNotHaveBean("d2kListenerMeterBinder");
+                    assertThat(context).doesNotHaveBean("d2kLatenessMeterBinder");
+                    // 计数不依赖 Micrometer，仍然创建
+                    assertThat(context).hasSingleBean(DelayContainerMetrics.class);
+                });
+    }
+
+    @Test
+    public void testEndpointPausesResumesAndReadsContainers() {
+        contextRunner.run(context -> {
+            assertThat(context).hasSingleBean(D2kEndpoint.class);
+            D2kEndpoint endpoint = context.getBean(D2kEndpoint.class);
+            DelayConsumerContainerFactory factory = context.getBean(DelayConsumerContainerFactory.class);
+            D2kConsumerManager manager = context.getBean(D2kConsumerManager.class);
+            AsyncProcessingConfig async = new AsyncProcessingConfig();
+            async.setEnabled(true);
+            manager.registerContainer("orders", createContainer(factory, "orders", async));
+            manager.registerContainer("retries", createContainer(factory, "retries", null));
+
+            D2kEndpoint.ContainerDescriptor orders = endpoint.container("orders");
+            assertThat(orders.getPaused()).isFalse();
+            assertThat(orders.getPendingCount()).isEqualTo(0L);
+            assertThat(endpoint.containers()).containsOnlyKeys("orders", "retries");
+
+            assertThat(endpoint.operate("orders", "pause").getPaused()).isTrue();
+            assertThat(endpoint.container("orders").getPaused()).isTrue();
+            assertThat(endpoint.operate("orders", "resume").getPaused()).isFalse();
+            assertThat(endpoint.container("orders").getPaused()).isFalse();
+
+            // 同步处理的容器在拉取线程上投递，不支持暂停
+            assertThatThrownBy(() -> endpoint.operate("retries", "pause"))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(endpoint.container("retries").getPaused()).isFalse();
+            assertThat(endpoint.container("missing")).isNull();
+        });
+    }
+
+    @Test
+    public void testEndpointAbsentWithoutActuator() {
+        contextRunner.withClassLoader(new FilteredClassLoader(Endpoint.class))
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).doesNotHaveBean("d2kEndpoint");
+                    assertThat(context).hasSingleBean(D2kConsumerManager.class);
+                });
+    }
+
+    private static DelayConsumerContainer<String, String> createContainer(DelayConsumerContainerFactory factory,
+                                                                          String listenerId,
+                                                                          AsyncProcessingConfig async) {
+        DelayConsumerContainerOptions options = new DelayConsumerContainerOptions();
+        options.setListenerId(listenerId);
+        return factory.createContainer(Collections.singletonList("order-timeout"), item -> { }, 1, async, options);
+    }
+}
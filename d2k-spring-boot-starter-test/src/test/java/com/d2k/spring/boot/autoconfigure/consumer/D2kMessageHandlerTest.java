@@ -0,0 +1,189 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageCodec;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageDeserializer;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * D2kMessageHandler 测试
+ * 验证信封还原、标准元数据透传、取消标记登记和已取消消息的丢弃
+ *
+ * @author xiajuan96
+ */
+public class D2kMessageHandlerTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    private final D2kMessageDeserializer<String> deserializer = new D2kMessageDeserializer<>(new StringDeserializer());
+    private final List<Object> received = new ArrayList<>();
+    private CancellationIndex index;
+    private D2kReceiveInterceptor interceptor;
+    private D2kMessageHandler<Object, Object> handler;
+
+    @Before
+    public void setUp() {
+        index = new CancellationIndex(2);
+        interceptor = new D2kReceiveInterceptor();
+        interceptor.configure(Collections.singletonMap(D2kReceiveInterceptor.CANCELLATION_INDEX_CONFIG, index));
+        handler = new D2kMessageHandler<>(item -> received.add(item.getRecord().value()), index);
+    }
+
+    @Test
+    public void testPlainMessagePassesThrough() {
+        ConsumerRecord<Object, Object> record = record(0, 0L, "hello".getBytes(StandardCharsets.UTF_8));
+
+        handler.process(new DelayItem<>(0L, 0L, record));
+
+        assertEquals(Collections.singletonList("hello"), received);
+    }
+
+    @Test
+    public void testEnvelopeUnwrappedForListener() {
+        ConsumerRecord<Object, Object> record = record(0, 0L, envelope(D2kMessageHeaders.of("order-1"), "ORD-1"));
+
+        handler.process(new DelayItem<>(0L, 0L, record));
+
+        assertEquals(Collections.singletonList("ORD-1"), received);
+    }
+
+    @Test
+    public void testUnwrappedItemKeepsDelayAndResumeTime() {
+        List<DelayItem<Object, Object>> items = new ArrayList<>();
+        D2kMessageHandler<Object, Object> itemHandler = new D2kMessageHandler<>(items::add, index);
+
+        itemHandler.process(new DelayItem<>(5000L, 6000L,
+                record(0, 0L, envelope(D2kMessageHeaders.of("order-1"), "ORD-1"))));
+
+        assertEquals(5000L, items.get(0).getDelayMilliseconds());
+        assertEquals(6000L, items.get(0).getResumeAtTimestamp());
+        assertEquals("ORD-1", items.get(0).getRecord().value());
+    }
+
+    @Test
+    public void testCancelledMessageDropped() {
+        ConsumerRecord<Object, Object> original = record(0, 0L, envelope(D2kMessageHeaders.of("order-1"), "ORD-1"));
+        ConsumerRecord<Object, Object> marker = record(0, 1L, envelope(D2kMessageHeaders.cancelOf("order-1"), null));
+        interceptor.onConsume(records(0, original, marker));
+
+        handler.process(new DelayItem<>(0L, 0L, original));
+        handler.process(new DelayItem<>(0L, 0L, marker));
+
+        assertTrue(received.isEmpty());
+        assertEquals(1, index.getDroppedCount());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testCancellationScopedToPartition() {
+        ConsumerRecord<Object, Object> marker = record(1, 0L, envelope(D2kMessageHeaders.cancelOf("order-1"), null));
+        interceptor.onConsume(records(1, marker));
+
+        handler.process(new DelayItem<>(0L, 0L, record(0, 0L, envelope(D2kMessageHeaders.of("order-1"), "ORD-1"))));
+
+        assertEquals(Collections.singletonList("ORD-1"), received);
+    }
+
+    @Test
+    public void testOldestCancellationEvictedWhenFull() {
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        index.markCancelled(partition, "a");
+        index.markCancelled(partition, "b");
+        index.markCancelled(partition, "c");
+
+        assertEquals(1, index.getEvictedCount());
+        assertFalse(index.consume(partition, "a"));
+        assertTrue(index.consume(partition, "c"));
+    }
+
+    @Test
+    public void testCoalesceDeliversOnlyLatestPerKey() {
+        CoalescingIndex coalescing = new CoalescingIndex(16);
+        D2kReceiveInterceptor coalescingInterceptor = new D2kReceiveInterceptor();
+        coalescingInterceptor.configure(Collections.singletonMap(D2kReceiveInterceptor.COALESCING_INDEX_CONFIG, coalescing));
+        D2kMessageHandler<Object, Object> coalescingHandler = new D2kMessageHandler<>(
+                item -> received.add(item.getRecord().value()), index, coalescing);
+        ConsumerRecord<Object, Object> first = record(0, 0L, "v1".getBytes(StandardCharsets.UTF_8));
+        ConsumerRecord<Object, Object> second = record(0, 1L, "v2".getBytes(StandardCharsets.UTF_8));
+        ConsumerRecord<Object, Object> third = record(0, 2L, "v3".getBytes(StandardCharsets.UTF_8));
+        coalescingInterceptor.onConsume(records(0, first, second, third));
+
+        coalescingHandler.process(new DelayItem<>(0L, 0L, first));
+        coalescingHandler.process(new DelayItem<>(0L, 0L, second));
+        coalescingHandler.process(new DelayItem<>(0L, 0L, third));
+
+        assertEquals(Collections.singletonList("v3"), received);
+        assertEquals(2, coalescing.getSupersededCount());
+        assertEquals(0, coalescing.size());
+    }
+
+    @Test
+    public void testStandardHeadersExposedToListener() {
+        List<D2kMessageHeaders> seen = new ArrayList<>();
+        D2kMessageHandler<Object, Object> headersHandler = new D2kMessageHandler<>(
+                item -> seen.add(D2kMessageHeaders.from(item.getRecord())), index);
+        D2kMessageHeaders sent = new D2kMessageHeaders("order-1", false, 1000L, 6000L, "order-service",
+                "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+
+        headersHandler.process(new DelayItem<>(0L, 0L, record(0, 0L, envelope(sent, "ORD-1"))));
+
+        D2kMessageHeaders headers = seen.get(0);
+        assertEquals("order-1", headers.getMessageId());
+        assertEquals(1000L, headers.getSendTimestamp());
+        assertEquals(6000L, headers.getDueTimestamp());
+        assertEquals("order-service", headers.getOrigin());
+        assertEquals(sent.getTraceParent(), headers.getTraceParent());
+        assertEquals(500L, headers.getLatenessMs(6500L));
+    }
+
+    @Test
+    public void testMissingHeaderFieldsDecodeAsUnknown() {
+        D2kMessage<byte[]> message = D2kMessageCodec.decode(envelope(D2kMessageHeaders.of("id"), "v"));
+
+        assertEquals(D2kMessageHeaders.UNKNOWN_TIMESTAMP, message.getHeaders().getDueTimestamp());
+        assertEquals(D2kMessageHeaders.UNKNOWN_TIMESTAMP, message.getHeaders().getLatenessMs(1000L));
+        assertNull(message.getHeaders().getOrigin());
+        assertNull(D2kMessageHeaders.from(record(0, 0L, "plain".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testNullValueRoundTrip() {
+        Object value = deserializer.deserialize(TOPIC, envelope(D2kMessageHeaders.of("id"), null));
+
+        assertTrue(D2kMessageCodec.isEnvelope(envelope(D2kMessageHeaders.of("id"), null)));
+        assertNull(((D2kMessage<?>) value).getValue());
+    }
+
+    private static byte[] envelope(D2kMessageHeaders headers, String payload) {
+        return D2kMessageCodec.encode(headers, payload == null ? null : payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ConsumerRecord<Object, Object> record(int partition, long offset, byte[] data) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, "key", deserializer.deserialize(TOPIC, data));
+    }
+
+    @SafeVarargs
+    private static ConsumerRecords<Object, Object> records(int partition, ConsumerRecord<Object, Object>... records) {
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> map = new HashMap<>();
+        List<ConsumerRecord<Object, Object>> list = new ArrayList<>();
+        Collections.addAll(list, records);
+        map.put(new TopicPartition(TOPIC, partition), list);
+        return new ConsumerRecords<>(map);
+    }
+}
@@ -0,0 +1,218 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.spring.boot.autoconfigure.metrics.DelayContainerMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * 到期预测测试
+ * 验证按到期时间分桶统计各时间范围内将要到期的消息、投递后扣减（包括乱序投递）、重新拉取和分区撤销后的登记，
+ * 以及落盘消息按主题计入预测
+ *
+ * @author xiajuan96
+ */
+public class DueForecastTest {
+
+    private static final String TOPIC = "order-timeout";
+    private static final long DELAY_MS = 60000L;
+
+    @Test
+    public void testForecastCountsPendingRecordsByHorizon() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS), 1000L, Arrays.asList(3600000L, 60000L, 300000L));
+        assertEquals(Arrays.asList("1m", "5m", "1h"), new ArrayList<>(state.getForecastHorizons().keySet()));
+
+        long now = System.currentTimeMillis();
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        // 按主题延迟 1 分钟计算：第一条已逾期，第二条 30 秒后到期，第三条 4 分钟后到期，第四条 50 分钟后到期
+        state.recordPolled(partition, Arrays.asList(
+                record(0, 0L, now - DELAY_MS - 1000L),
+                record(0, 1L, now - DELAY_MS + 30000L),
+                record(0, 2L, now - DELAY_MS + 240000L),
+                record(0, 3L, now - DELAY_MS + 3000000L)));
+        state.recordPolled(new TopicPartition(TOPIC, 1), Collections.singletonList(
+                record(1, 0L, now - DELAY_MS + 10000L)));
+
+        Map<String, Long> forecast = state.getDueForecast().get(TOPIC);
+        assertEquals(3L, (long) forecast.get("1m"));
+        assertEquals(4L, (long) forecast.get("5m"));
+        assertEquals(5L, (long) forecast.get("1h"));
+        assertEquals(4L, state.getDueForecast(TOPIC, 300000L));
+
+        Map<Integer, Map<String, Long>> partitions = state.getPartitionDueForecast(TOPIC);
+        assertEquals(2L, (long) partitions.get(0).get("1m"));
+        assertEquals(1L, (long) partitions.get(1).get("1h"));
+        assertEquals(partitions.get(0), state.getPartitions().get(0).getDueForecast());
+
+        // 投递 offset 0 和 1 后前两条不再计入
+        state.recordDelivered(partition, 0L);
+        state.recordDelivered(partition, 1L);
+        assertEquals(1L, (long) state.getDueForecast().get(TOPIC).get("1m"));
+        assertEquals(3L, (long) state.getDueForecast().get(TOPIC).get("1h"));
+    }
+
+    @Test
+    public void testOutOfOrderDeliveryRemovesOnlyDeliveredOffset() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        long now = System.currentTimeMillis();
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        state.recordPolled(partition, Arrays.asList(
+                record(0, 0L, now), record(0, 1L, now), record(0, 2L, now)));
+
+        // 异步处理时 offset 2 先开始处理，之前的消息仍在等待
+        state.recordDelivered(partition, 2L);
+        assertEquals(2L, state.getPendingCount());
+        assertEquals(2L, state.getDueForecast(TOPIC, 3600000L));
+        assertEquals(Long.valueOf(now + DELAY_MS), state.getPartitions().get(0).getNextDueTime());
+
+        state.recordDelivered(partition, 0L);
+        state.recordDelivered(partition, 1L);
+        // 重复投递和未登记的 offset 不影响计数
+        state.recordDelivered(partition, 1L);
+        state.recordDelivered(partition, 7L);
+        assertEquals(0L, state.getPendingCount());
+        assertEquals(0L, state.getDueForecast(TOPIC, 3600000L));
+        assertNull(state.getPartitions().get(0).getNextDueTime());
+    }
+
+    @Test
+    public void testRepolledOffsetsReplaceRegistrations() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        long now = System.currentTimeMillis();
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        state.recordPolled(partition, Arrays.asList(
+                record(0, 0L, now), record(0, 1L, now), record(0, 2L, now), record(0, 3L, now)));
+        state.recordDelivered(partition, 0L);
+
+        // seek 回 offset 1 后重新拉取，offset 1 之后的登记被替换而不是重复计数
+        state.recordPolled(partition, Arrays.asList(record(0, 1L, now), record(0, 2L, now)));
+        assertEquals(2L, state.getPendingCount());
+        assertEquals(2L, state.getDueForecast(TOPIC, 3600000L));
+        assertEquals(Long.valueOf(2L), state.getPartitions().get(0).getLastPolledOffset());
+
+        state.recordDelivered(partition, 1L);
+        state.recordDelivered(partition, 2L);
+        assertEquals(0L, state.getPendingCount());
+        assertEquals(0L, state.getDueForecast(TOPIC, 3600000L));
+    }
+
+    @Test
+    public void testRevokedPartitionClearedAndReassigned() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        long now = System.currentTimeMillis();
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        Metric lag = lagMetric("client-1");
+        state.addPartitionLag(TOPIC.replace('.', '_'), 0, lag);
+        state.recordPolled(partition, Arrays.asList(record(0, 5L, now), record(0, 6L, now), record(0, 7L, now)));
+        state.recordDelivered(partition, 5L);
+        assertEquals(2L, state.getDueForecast(TOPIC, 3600000L));
+
+        // 分区被撤销：等待中的消息不再由本容器投递，不再计入预测
+        state.removePartitionLag(TOPIC.replace('.', '_'), 0, lag);
+        assertFalse(state.getPartitions().get(0).isAssigned());
+        assertEquals(0L, state.getPendingCount());
+        assertEquals(0L, state.getDueForecast(TOPIC, 3600000L));
+        assertEquals(0L, (long) state.getPartitionDueForecast(TOPIC).get(0).get("1h"));
+        // 撤销前的消息迟到的投递不影响计数
+        state.recordDelivered(partition, 6L);
+        assertEquals(0L, state.getPendingCount());
+
+        // 重新分配后从已提交的 offset 6 重新拉取
+        state.addPartitionLag(TOPIC.replace('.', '_'), 0, lagMetric("client-1"));
+        state.recordPolled(partition, Arrays.asList(record(0, 6L, now), record(0, 7L, now), record(0, 8L, now)));
+        assertTrue(state.getPartitions().get(0).isAssigned());
+        assertEquals(3L, state.getPendingCount());
+        assertEquals(3L, state.getDueForecast(TOPIC, 3600000L));
+
+        state.recordDelivered(partition, 6L);
+        assertEquals(2L, state.getDueForecast(TOPIC, 3600000L));
+        assertEquals(Long.valueOf(6L), state.getPartitions().get(0).getLastDeliveredOffset());
+    }
+
+    @Test
+    public void testSpilledRecordsCountedPerTopic() throws IOException {
+        File directory = Files.createTempDirectory("d2k-forecast-test").toFile();
+        SpillSegmentStore store = new SpillSegmentStore(directory, 4096, 1000L);
+        store.append(1500L, TOPIC, 0, 1L, 0L, null, new byte[]{1});
+        store.append(5500L, TOPIC, 1, 2L, 0L, null, new byte[]{2});
+        store.append(5600L, "payment-timeout", 0, 3L, 0L, null, new byte[]{3});
+
+        Map<String, long[]> counts = store.countDue(new long[]{2000L, 6000L});
+        assertArrayEquals(new long[]{1L, 2L}, counts.get(TOPIC));
+        assertArrayEquals(new long[]{0L, 1L}, counts.get("payment-timeout"));
+        store.close();
+
+        // 重启后恢复的段同样按主题计数
+        SpillSegmentStore reopened = new SpillSegmentStore(directory, 4096, 1000L);
+        assertArrayEquals(new long[]{2L}, reopened.countDue(new long[]{6000L}).get(TOPIC));
+        for (SpillSegmentStore.Segment segment : reopened.takeDue(Long.MAX_VALUE)) {
+            segment.delete();
+        }
+        reopened.close();
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testListenerMetricsReadBoundForecast() {
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, DELAY_MS));
+        state.recordPolled(new TopicPartition(TOPIC, 0), Collections.singletonList(
+                record(0, 0L, System.currentTimeMillis())));
+
+        DelayContainerMetrics.ListenerMetrics metrics = new DelayContainerMetrics().forListener("orders");
+        List<String> registered = new ArrayList<>();
+        metrics.addDueForecastCallback(() -> registered.addAll(metrics.getForecastHorizons().keySet()));
+        assertEquals(0L, metrics.getDueForecast(TOPIC, 3600000L));
+
+        metrics.bindDueForecast(state.getTopics(), state.getForecastHorizons(), state::getDueForecast);
+        assertEquals(Arrays.asList("1m", "5m", "1h", "24h"), registered);
+        assertEquals(Collections.singletonList(TOPIC), new ArrayList<>(metrics.getForecastTopics()));
+        assertEquals(0L, metrics.getDueForecast(TOPIC, 1000L));
+        assertEquals(1L, metrics.getDueForecast(TOPIC, 3600000L));
+    }
+
+    private static Metric lagMetric(String clientId) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("client-id", clientId);
+        tags.put("topic", TOPIC.replace('.', '_'));
+        tags.put("partition", "0");
+        MetricName name = new MetricName("records-lag", "consumer-fetch-manager-metrics", "", tags);
+        return new Metric() {
+            @Override
+            public MetricName metricName() {
+                return name;
+            }
+
+            @Override
+            public Object metricValue() {
+                return 0.0;
+            }
+        };
+    }
+
+    private static ConsumerRecord<Object, Object> record(int partition, long offset, long timestamp) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, timestamp, TimestampType.CREATE_TIME, -1, -1,
+                null, "value", new RecordHeaders(), Optional.empty());
+    }
+}
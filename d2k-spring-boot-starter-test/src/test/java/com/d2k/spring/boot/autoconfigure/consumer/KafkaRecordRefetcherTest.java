@@ -0,0 +1,89 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * KafkaRecordRefetcher 测试
+ * 验证已过保留期和超出日志末尾的 offset 被跳过而不是无限重试
+ *
+ * @author xiajuan96
+ */
+public class KafkaRecordRefetcherTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("coupon-expire", 0);
+
+    private MockConsumer<byte[], byte[]> consumer;
+    private KafkaRecordRefetcher refetcher;
+
+    @Before
+    public void setUp() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.NONE);
+        refetcher = new KafkaRecordRefetcher(consumer, Duration.ofMillis(10));
+        consumer.assign(Collections.singleton(PARTITION));
+    }
+
+    @Test
+    public void testContiguousOffsetsFetched() {
+        log(0L, 5L);
+
+        List<ConsumerRecord<byte[], byte[]>> records = refetcher.refetch(PARTITION, new long[]{1L, 2L, 4L});
+
+        assertOffsets(records, 1L, 2L, 4L);
+    }
+
+    @Test
+    public void testOffsetsBeforeLogStartSkipped() {
+        // offset 0-4 已过保留期
+        log(5L, 10L);
+
+        List<ConsumerRecord<byte[], byte[]>> records = refetcher.refetch(PARTITION, new long[]{2L, 3L, 6L, 8L});
+
+        assertOffsets(records, 6L, 8L);
+    }
+
+    @Test
+    public void testOffsetsBeyondLogEndSkipped() {
+        // 日志被截断到 offset 10
+        log(5L, 10L);
+
+        List<ConsumerRecord<byte[], byte[]>> records = refetcher.refetch(PARTITION, new long[]{7L, 12L, 15L});
+
+        assertOffsets(records, 7L);
+    }
+
+    @Test
+    public void testAllOffsetsGoneReturnsEmpty() {
+        log(20L, 20L);
+
+        assertTrue(refetcher.refetch(PARTITION, new long[]{3L, 4L}).isEmpty());
+    }
+
+    private void log(long beginning, long end) {
+        consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, beginning));
+        consumer.updateEndOffsets(Collections.singletonMap(PARTITION, end));
+        for (long offset = beginning; offset < end; offset++) {
+            byte[] value = ("value-" + offset).getBytes(StandardCharsets.UTF_8);
+            consumer.addRecord(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, null, value));
+        }
+    }
+
+    private static void assertOffsets(List<ConsumerRecord<byte[], byte[]>> records, long... offsets) {
+        assertEquals(offsets.length, records.size());
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(offsets[i], records.get(i).offset());
+            assertEquals("value-" + offsets[i], new String(records.get(i).value(), StandardCharsets.UTF_8));
+        }
+    }
+}
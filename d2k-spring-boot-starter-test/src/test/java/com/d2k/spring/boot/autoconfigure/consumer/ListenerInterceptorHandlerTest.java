@@ -0,0 +1,130 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ListenerInterceptorHandler 测试
+ * 验证拦截器的调用顺序、异常时的回调、上下文按线程复用以及属性在调用之间清空
+ *
+ * @author xiajuan96
+ */
+public class ListenerInterceptorHandlerTest {
+
+    private static final Object START_KEY = new Object();
+
+    @Test
+    public void testCallbacksInvokedInOrderAndReverseOrder() {
+        List<String> events = new ArrayList<>();
+        ListenerInterceptorHandler<String, String> handler = new ListenerInterceptorHandler<>(
+                item -> events.add("invoke " + item.getRecord().value()), "orders", null,
+                Arrays.asList(new RecordingInterceptor("a", events), new RecordingInterceptor("b", events)));
+
+        handler.process(item("v1"));
+
+        assertEquals(Arrays.asList("a.before orders", "b.before orders", "invoke v1", "b.after", "a.after"), events);
+    }
+
+    @Test
+    public void testErrorsReportedToEnteredInterceptorsAndRethrown() {
+        List<String> events = new ArrayList<>();
+        IllegalStateException failure = new IllegalStateException("boom");
+        ListenerInterceptorHandler<String, String> handler = new ListenerInterceptorHandler<>(item -> {
+            throw failure;
+        }, "orders", null, Arrays.asList(new RecordingInterceptor("a", events), new RecordingInterceptor("b", events)));
+
+        try {
+            handler.process(item("v1"));
+            fail("Expected listener failure");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(Arrays.asList("a.before orders", "b.before orders", "b.error boom", "a.error boom"), events);
+
+        // beforeInvoke 失败时不调用监听器，只有已进入的拦截器收到 onError
+        events.clear();
+        D2kListenerInterceptor rejecting = new D2kListenerInterceptor() {
+            @Override
+            public void beforeInvoke(D2kListenerContext context) {
+                throw new IllegalArgumentException("rejected");
+            }
+        };
+        handler = new ListenerInterceptorHandler<>(item -> events.add("invoke"), "orders", null,
+                Arrays.asList(new RecordingInterceptor("a", events), rejecting, new RecordingInterceptor("c", events)));
+        try {
+            handler.process(item("v2"));
+            fail("Expected interceptor failure");
+        } catch (IllegalArgumentException e) {
+            assertEquals("rejected", e.getMessage());
+        }
+        assertEquals(Arrays.asList("a.before orders", "a.error rejected"), events);
+    }
+
+    @Test
+    public void testContextReusedAndAttributesCleared() {
+        List<D2kListenerContext> contexts = new ArrayList<>();
+        List<Object> previousStarts = new ArrayList<>();
+        D2kListenerInterceptor interceptor = new D2kListenerInterceptor() {
+            @Override
+            public void beforeInvoke(D2kListenerContext context) {
+                previousStarts.add(context.getAttribute(START_KEY));
+                context.setAttribute(START_KEY, context.getStartNanos());
+            }
+
+            @Override
+            public void afterInvoke(D2kListenerContext context) {
+                contexts.add(context);
+                assertEquals(context.getStartNanos(), context.getAttribute(START_KEY));
+                assertEquals("v" + contexts.size(), context.getRecord().value());
+            }
+        };
+        ListenerInterceptorHandler<String, String> handler = new ListenerInterceptorHandler<>(
+                item -> { }, "orders", null, Collections.singletonList(interceptor));
+
+        handler.process(item("v1"));
+        handler.process(item("v2"));
+
+        assertEquals(2, contexts.size());
+        assertSame(contexts.get(0), contexts.get(1));
+        assertEquals(Arrays.asList(null, null), previousStarts);
+        assertNull(contexts.get(0).getRecord());
+    }
+
+    private static DelayItem<String, String> item(String value) {
+        return new DelayItem<>(0L, 0L, new ConsumerRecord<>("order-timeout", 0, 0L, "key", value));
+    }
+
+    private static final class RecordingInterceptor implements D2kListenerInterceptor {
+
+        private final String name;
+        private final List<String> events;
+
+        private RecordingInterceptor(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public void beforeInvoke(D2kListenerContext context) {
+            events.add(name + ".before " + context.getListenerId());
+        }
+
+        @Override
+        public void afterInvoke(D2kListenerContext context) {
+            events.add(name + ".after");
+        }
+
+        @Override
+        public void onError(D2kListenerContext context, Throwable error) {
+            events.add(name + ".error " + error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * OffsetDueIndex 与只记录 offset 的落盘模式测试
+ * 验证索引的排序与查询，以及落盘消息到期前从 Kafka 重新拉取后按时投递
+ *
+ * @author xiajuan96
+ */
+public class OffsetDueIndexTest {
+
+    private static final String TOPIC = "coupon-expire";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("d2k-refetch-test").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testOffsetsSortedPerPartition() {
+        OffsetDueIndex index = new OffsetDueIndex();
+        TopicPartition p0 = new TopicPartition(TOPIC, 0);
+        TopicPartition p1 = new TopicPartition(TOPIC, 1);
+        for (long offset = 0; offset < 40; offset += 2) {
+            index.add(p0, offset, 1000L + offset);
+        }
+        index.add(p0, 5L, 2005L);
+        index.add(p1, 7L, 3007L);
+        // 重复的 offset 以后加入的到期时间为准
+        index.add(p0, 4L, 9004L);
+
+        assertEquals(22, index.size());
+        long[] offsets = index.offsets(p0);
+        assertEquals(21, offsets.length);
+        for (int i = 1; i < offsets.length; i++) {
+            assertTrue(offsets[i - 1] < offsets[i]);
+        }
+        assertEquals(2005L, index.dueTime(p0, 5L));
+        assertEquals(9004L, index.dueTime(p0, 4L));
+        assertEquals(3007L, index.dueTime(p1, 7L));
+        assertEquals(-1L, index.dueTime(p0, 7L));
+        assertEquals(-1L, index.dueTime(new TopicPartition(TOPIC, 2), 0L));
+    }
+
+    @Test
+    public void testSpilledOffsetsRefetchedWhenDue() throws Exception {
+        long delayMs = 1000L;
+        List<long[]> requested = new CopyOnWriteArrayList<>();
+        RecordRefetcher refetcher = (partition, offsets) -> {
+            requested.add(offsets);
+            List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+            for (long offset : offsets) {
+                // offset 2 已过保留期
+                if (offset != 2L) {
+                    records.add(record(offset, bytes("key-" + offset), bytes("value-" + offset), 0L));
+                }
+            }
+            return records;
+        };
+        SpillingDelayBuffer<String, String> buffer = new SpillingDelayBuffer<>(
+                new SpillSegmentStore(directory, 1 << 16, 100L), 0, 50L,
+                Collections.singletonMap(TOPIC, delayMs), new StringDeserializer(),
+                new StringDeserializer(), refetcher, 1, 1L, 64);
+        List<ConsumerRecord<String, String>> delivered = new CopyOnWriteArrayList<>();
+        buffer.start(new D2kMessageHandler<>(item -> delivered.add(item.getRecord()),
+                new CancellationIndex(16), null, null, buffer));
+
+        D2kReceiveInterceptor interceptor = new D2kReceiveInterceptor();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(D2kReceiveInterceptor.SPILL_BUFFER_CONFIG, buffer);
+        interceptor.configure(configs);
+
+        // 不保留原始字节的普通消息同样可以落盘
+        long timestamp = System.currentTimeMillis();
+        List<ConsumerRecord<Object, Object>> polled = new ArrayList<>();
+        for (long offset = 0; offset < 4; offset++) {
+            polled.add(record(offset, "key-" + offset, "value-" + offset, timestamp));
+        }
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        assertTrue(interceptor.onConsume(new ConsumerRecords<>(Collections.singletonMap(partition, polled))).isEmpty());
+        assertEquals(4L, buffer.getSpilledCount());
+
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (delivered.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(3, delivered.size());
+        assertEquals(1, requested.size());
+        assertArrayEquals(new long[]{0L, 1L, 2L, 3L}, requested.get(0));
+        assertEquals(1L, buffer.getRefetchMissingCount());
+        for (ConsumerRecord<String, String> record : delivered) {
+            assertNotEquals(2L, record.offset());
+            assertEquals("value-" + record.offset(), record.value());
+        }
+        buffer.close(1, TimeUnit.SECONDS);
+    }
+
+    private static <K, V> ConsumerRecord<K, V> record(long offset, K key, V value, long timestamp) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, timestamp, TimestampType.CREATE_TIME, -1, -1, key, value,
+                new RecordHeaders(), Optional.empty());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,131 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * ReleaseSmoothingHandler 测试
+ * 验证速率上限、抖动窗口、额外延迟统计、处理器异常的传播以及关闭时结束等待
+ *
+ * @author xiajuan96
+ */
+public class ReleaseSmoothingHandlerTest {
+
+    private static DelayItem<Object, Object> item(long offset) {
+        return new DelayItem<>(0L, 0L, new ConsumerRecord<>("topic", 0, offset, "key", "value"));
+    }
+
+    @Test
+    public void testReleaseRateSpreadsBurst() {
+        AtomicInteger processed = new AtomicInteger();
+        ReleaseSmoothingHandler<Object, Object> handler = new ReleaseSmoothingHandler<>(
+                delayItem -> processed.incrementAndGet(), 100.0, 0L);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            handler.process(item(i));
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("burst should be spread over ~190ms, took " + elapsedMs, elapsedMs >= 150);
+        assertEquals("Each item is processed before process returns", 20, processed.get());
+        assertEquals(20, handler.getReleasedCount());
+        assertEquals(0, handler.getPendingCount());
+    }
+
+    @Test
+    public void testRateSharedAcrossContainerThreads() throws Exception {
+        AtomicInteger processed = new AtomicInteger();
+        ReleaseSmoothingHandler<Object, Object> handler = new ReleaseSmoothingHandler<>(
+                delayItem -> processed.incrementAndGet(), 100.0, 0L);
+        Thread[] threads = new Thread[2];
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    handler.process(item(i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(5000L);
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(20, processed.get());
+        assertTrue("two threads share one rate limit, took " + elapsedMs, elapsedMs >= 150);
+    }
+
+    @Test
+    public void testJitterBounded() {
+        ReleaseSmoothingHandler<Object, Object> handler = new ReleaseSmoothingHandler<>(
+                delayItem -> { }, 0, 20L);
+
+        for (int i = 0; i < 20; i++) {
+            handler.process(item(i));
+        }
+
+        assertTrue(handler.getMaxAddedLatenessMs() < 500);
+        assertTrue(handler.getAverageAddedLatenessMs() > 0);
+    }
+
+    @Test
+    public void testListenerFailurePropagates() {
+        RuntimeException failure = new RuntimeException("boom");
+        ReleaseSmoothingHandler<Object, Object> handler = new ReleaseSmoothingHandler<>(
+                delayItem -> {
+                    throw failure;
+                }, 0, 1L);
+
+        try {
+            handler.process(item(0));
+            fail("Listener failure should reach the container");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+
+        assertEquals(1, handler.getFailedCount());
+        assertEquals(0, handler.getReleasedCount());
+        assertEquals(0, handler.getPendingCount());
+    }
+
+    @Test
+    public void testCloseEndsWaitWithoutProcessing() throws Exception {
+        AtomicInteger processed = new AtomicInteger();
+        ReleaseSmoothingHandler<Object, Object> handler = new ReleaseSmoothingHandler<>(
+                delayItem -> processed.incrementAndGet(), 0.5, 0L);
+        handler.process(item(0));
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                handler.process(item(1));
+            } catch (Throwable e) {
+                error.set(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        waiter.start();
+        while (handler.getPendingCount() == 0) {
+            Thread.sleep(5L);
+        }
+
+        handler.close();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(error.get() instanceof IllegalStateException);
+        assertEquals("The waiting item is not handed to the listener", 1, processed.get());
+        assertTrue(handler.isClosed());
+    }
+}
@@ -0,0 +1,223 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageDeserializer;
+import com.d2k.spring.boot.autoconfigure.message.RawKeyCapturingDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * SpillingDelayBuffer 与 SpillSegmentStore 测试
+ * 验证段文件的写入与重启恢复、按时间窗口读回，超出堆内预算的消息落盘后按到期时间投递，以及读回的消息经过容器的暂停闸门
+ *
+ * @author xiajuan96
+ */
+public class SpillingDelayBufferTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("d2k-spill-test").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testSegmentsRecoveredAfterReopen() throws IOException {
+        SpillSegmentStore store = new SpillSegmentStore(directory, 4096, 1000L);
+        store.append(5500L, TOPIC, 2, 42L, 500L, bytes("k1"), bytes("v1"));
+        store.append(5900L, TOPIC, 2, 43L, 900L, null, bytes("v2"));
+        store.close();
+
+        SpillSegmentStore reopened = new SpillSegmentStore(directory, 4096, 1000L);
+        assertEquals(2, reopened.getRecordCount());
+        List<SpillSegmentStore.Segment> segments = reopened.takeDue(5000L);
+        assertEquals(1, segments.size());
+        List<SpillSegmentStore.SpilledRecord> records = segments.get(0).read();
+        assertEquals(2, records.size());
+        SpillSegmentStore.SpilledRecord first = records.get(0);
+        assertEquals(TOPIC, first.getTopic());
+        assertEquals(2, first.getPartition());
+        assertEquals(42L, first.getOffset());
+        assertEquals(500L, first.getTimestamp());
+        assertEquals(5500L, first.getDueTime());
+        assertEquals("k1", new String(first.getKey(), StandardCharsets.UTF_8));
+        assertNull(records.get(1).getKey());
+        assertEquals(0, reopened.getRecordCount());
+
+        segments.get(0).delete();
+        reopened.close();
+        assertEquals(0, new SpillSegmentStore(directory, 4096, 1000L).getRecordCount());
+    }
+
+    @Test
+    public void testTakeDueOnlyReturnsWindowsWithinHorizon() throws IOException {
+        SpillSegmentStore store = new SpillSegmentStore(directory, 4096, 1000L);
+        store.append(1500L, TOPIC, 0, 1L, 0L, null, bytes("a"));
+        store.append(3500L, TOPIC, 0, 2L, 0L, null, bytes("b"));
+
+        assertEquals(1, store.takeDue(1999L).size());
+        assertTrue(store.takeDue(2999L).isEmpty());
+        assertEquals(1, store.getRecordCount());
+
+        // 已读回的窗口再次写入时使用新段
+        store.append(1600L, TOPIC, 0, 3L, 0L, null, bytes("c"));
+        List<SpillSegmentStore.Segment> segments = store.takeDue(1999L);
+        assertEquals(1, segments.size());
+        assertEquals(3L, segments.get(0).read().get(0).getOffset());
+        store.close();
+    }
+
+    @Test
+    public void testOverBudgetRecordsSpillAndDeliverWhenDue() throws Exception {
+        long delayMs = 1000L;
+        SpillingDelayBuffer<String, String> buffer = new SpillingDelayBuffer<>(
+                new SpillSegmentStore(directory, 1 << 16, 100L), 1, 50L,
+                Collections.singletonMap(TOPIC, delayMs), new StringDeserializer(),
+                new D2kMessageDeserializer<>(new StringDeserializer()), 1, 1L, 64);
+        List<ConsumerRecord<String, String>> delivered = new CopyOnWriteArrayList<>();
+        List<Long> deliveredAt = new CopyOnWriteArrayList<>();
+        D2kMessageHandler<String, String> handler = new D2kMessageHandler<>(item -> {
+            delivered.add(item.getRecord());
+            deliveredAt.add(System.currentTimeMillis());
+        }, new CancellationIndex(16), null, null, buffer);
+        buffer.start(handler);
+
+        D2kReceiveInterceptor interceptor = new D2kReceiveInterceptor();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(D2kReceiveInterceptor.SPILL_BUFFER_CONFIG, buffer);
+        interceptor.configure(configs);
+
+        long timestamp = System.currentTimeMillis();
+        List<ConsumerRecord<Object, Object>> polled = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            polled.add(poll(i, "key-" + i, "value-" + i, timestamp));
+        }
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        ConsumerRecords<Object, Object> kept = interceptor.onConsume(
+                new ConsumerRecords<>(Collections.singletonMap(partition, polled)));
+
+        // 预算为 1：第一条留在堆内，其余两条落盘
+        assertEquals(1, kept.count());
+        assertEquals(0L, kept.records(partition).get(0).offset());
+        assertEquals(2L, buffer.getSpilledCount());
+        assertEquals(1, buffer.getHeapPendingCount());
+
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (delivered.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(2, delivered.size());
+        for (int i = 0; i < 2; i++) {
+            ConsumerRecord<String, String> record = delivered.get(i);
+            assertEquals("key-" + record.offset(), record.key());
+            assertEquals("value-" + record.offset(), record.value());
+            assertTrue("Spilled record delivered early", deliveredAt.get(i) >= timestamp + delayMs);
+        }
+        buffer.close(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPausedContainerHoldsSpilledRecords() throws Exception {
+        long delayMs = 1000L;
+        SpillingDelayBuffer<String, String> buffer = new SpillingDelayBuffer<>(
+                new SpillSegmentStore(directory, 1 << 16, 100L), 0, 50L,
+                Collections.singletonMap(TOPIC, delayMs), new StringDeserializer(),
+                new D2kMessageDeserializer<>(new StringDeserializer()), 1, 1L, 64);
+        DelayContainerState state = new DelayContainerState("orders", Collections.singletonList(TOPIC),
+                Collections.singletonMap(TOPIC, delayMs));
+        List<ConsumerRecord<String, String>> delivered = new CopyOnWriteArrayList<>();
+        buffer.start(new D2kMessageHandler<>(item -> delivered.add(item.getRecord()),
+                new CancellationIndex(16), null, null, buffer), state);
+
+        state.pause();
+        long timestamp = System.currentTimeMillis();
+        assertTrue(buffer.offer(poll(0L, "key-0", "value-0", timestamp)));
+        buffer.flush();
+
+        // 到期后读回的消息在暂停闸门前等待，计入正在处理的数量
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (state.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(1, state.getInFlightCount());
+        Thread.sleep(100L);
+        assertTrue("Spilled record delivered while paused", delivered.isEmpty());
+
+        state.resume();
+        deadline = System.currentTimeMillis() + 5000L;
+        while (delivered.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(1, delivered.size());
+        assertEquals("value-0", delivered.get(0).value());
+        buffer.close(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRawKeyNotAttachedToFollowingRecord() {
+        RawKeyCapturingDeserializer<String> keys = new RawKeyCapturingDeserializer<>(new StringDeserializer());
+        D2kMessageDeserializer<String> values = new D2kMessageDeserializer<>(new StringDeserializer(), true);
+
+        // 值为 null 的消息不会调用值反序列化器，其键字节不能被下一条键为 null 的消息取走
+        keys.deserialize(TOPIC, bytes("tombstone-key"));
+        D2kMessage<?> message = (D2kMessage<?>) values.deserialize(TOPIC, bytes("value"));
+
+        assertNull(message.getHeaders());
+        assertFalse(message.hasRaw(null));
+
+        String key = keys.deserialize(TOPIC, bytes("key"));
+        message = (D2kMessage<?>) values.deserialize(TOPIC, bytes("value"));
+        assertTrue(message.hasRaw(key));
+        assertEquals("key", new String(message.getRawKey(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 模拟 KafkaConsumer 的反序列化顺序：先键后值
+     */
+    private static ConsumerRecord<Object, Object> poll(long offset, String key, String value, long timestamp) {
+        RawKeyCapturingDeserializer<String> keys = new RawKeyCapturingDeserializer<>(new StringDeserializer());
+        D2kMessageDeserializer<String> values = new D2kMessageDeserializer<>(new StringDeserializer(), true);
+        Object k = keys.deserialize(TOPIC, bytes(key));
+        Object v = values.deserialize(TOPIC, bytes(value));
+        return new ConsumerRecord<>(TOPIC, 0, offset, timestamp, TimestampType.CREATE_TIME, -1, -1, k, v,
+                new RecordHeaders(), Optional.empty());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,103 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * TimingWheelScheduler 测试
+ * 验证跨层级重新分配后的触发时间、取消、大量定时器以及关闭时的处理
+ *
+ * @author xiajuan96
+ */
+public class TimingWheelSchedulerTest {
+
+    private TimingWheelScheduler scheduler;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.close(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testTimersFireNoEarlierThanDeadlineAcrossLevels() throws Exception {
+        // 每层 4 个槽，300ms 的延迟需要经过多层重新分配
+        scheduler = new TimingWheelScheduler("test-wheel", 1, TimeUnit.MILLISECONDS, 4, Runnable::run);
+        long[] delays = {0L, 3L, 17L, 64L, 150L, 300L};
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        AtomicInteger early = new AtomicInteger();
+        for (long delay : delays) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            scheduler.schedule(() -> {
+                if (System.nanoTime() < deadline) {
+                    early.incrementAndGet();
+                }
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        assertEquals(0, scheduler.getPendingCount());
+        assertTrue("lateness " + scheduler.getMaxLatenessMs(), scheduler.getMaxLatenessMs() < 100);
+    }
+
+    @Test
+    public void testCancelledTimerDoesNotFire() throws Exception {
+        scheduler = new TimingWheelScheduler("test-wheel", 1, TimeUnit.MILLISECONDS, 8, Runnable::run);
+        AtomicInteger fired = new AtomicInteger();
+        TimingWheelScheduler.Timeout timeout = scheduler.schedule(fired::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        CountDownLatch later = new CountDownLatch(1);
+        scheduler.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, fired.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void testManyTimers() throws Exception {
+        scheduler = new TimingWheelScheduler("test-wheel", 1, TimeUnit.MILLISECONDS, 512, Runnable::run);
+        int count = 200_000;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicLong sum = new AtomicLong();
+        for (int i = 0; i < count; i++) {
+            long delay = i % 200;
+            scheduler.schedule(() -> {
+                sum.addAndGet(1);
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(count, sum.get());
+        assertEquals(count, scheduler.getExpiredCount());
+    }
+
+    @Test
+    public void testCloseDrainsPendingAndRejectsNew() throws Exception {
+        scheduler = new TimingWheelScheduler("test-wheel", 1, TimeUnit.MILLISECONDS, 16, Runnable::run);
+        AtomicInteger fired = new AtomicInteger();
+        scheduler.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(scheduler.close(1, TimeUnit.SECONDS));
+        assertEquals(1, fired.get());
+        try {
+            scheduler.schedule(fired::incrementAndGet, 1, TimeUnit.MILLISECONDS);
+            fail("Closed scheduler should reject new timers");
+        } catch (RejectedExecutionException expected) {
+            // 已关闭
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.d2k.spring.boot.autoconfigure.factory;
+
+import com.d2k.consumer.DelayConsumerContainer;
+import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderForwarder;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderRouter;
+import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import com.d2k.spring.boot.autoconfigure.consumer.SpillingDelayBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * DelayConsumerContainerFactory 测试
+ * 验证固定拉取等待按订阅主题的最短延迟计算 fetch.max.wait.ms，以及容器停止时释放平滑释放和落盘缓冲等附属资源
+ *
+ * @author xiajuan96
+ */
+public class DelayConsumerContainerFactoryTest {
+
+    private D2kProperties properties;
+    private DelayConsumerContainerFactory factory;
+
+    @Before
+    public void setUp() {
+        properties = new D2kProperties();
+        properties.getConsumer().getTopicDelays().put("order-timeout", 60000L);
+        properties.getConsumer().getTopicDelays().put("coupon-expire", 3600000L);
+        properties.getConsumer().getTopicDelays().put("retry-fast", 400L);
+        factory = new DelayConsumerContainerFactory(properties);
+    }
+
+    @Test
+    public void testLongDelaysCappedAtFixedFetchWaitMax() {
+        assertEquals(5000, factory.resolveFetchMaxWaitMs(Arrays.asList("order-timeout", "coupon-expire")));
+
+        properties.getConsumer().setFixedFetchWaitMaxMs(20000);
+        assertEquals(20000, factory.resolveFetchMaxWaitMs(Collections.singletonList("order-timeout")));
+    }
+
+    @Test
+    public void testShortOrUnknownDelaysKeepFetchMaxWait() {
+        // 最短延迟的一半小于 fetchMaxWaitMs 时不缩短
+        assertEquals(500, factory.resolveFetchMaxWaitMs(Arrays.asList("order-timeout", "retry-fast")));
+        assertEquals(500, factory.resolveFetchMaxWaitMs(Arrays.asList("order-timeout", "unknown")));
+    }
+
+    @Test
+    public void testLadderRungsUseRungDelay() {
+        DelayLadderRouter router = new DelayLadderRouter(
+                Collections.singletonMap("payment", Arrays.asList(4000L, 60000L)));
+        factory.setLadderForwarder(new DelayLadderForwarder(router, null, 1000L));
+
+        assertEquals(2000, factory.resolveFetchMaxWaitMs(router.expand(Collections.singletonList("payment"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxWaitMustStayBelowRequestTimeout() {
+        properties.getConsumer().setFixedFetchWaitMaxMs(30000);
+        factory.resolveFetchMaxWaitMs(Collections.singletonList("order-timeout"));
+    }
+
+    @Test
+    public void testStopReleasesSmoothingResources() {
+        DelayConsumerContainerOptions options = new DelayConsumerContainerOptions();
+        options.setListenerId("orders");
+        options.setReleaseRate(100.0);
+        DelayConsumerContainer<String, String> container = factory.createContainer(
+                Collections.singletonList("order-timeout"), item -> { }, 1, null, options);
+        D2kConsumerManager manager = new D2kConsumerManager();
+        manager.setContainerFactory(factory);
+        manager.registerContainer("orders", container);
+
+        manager.stopContainer("orders");
+
+        assertFalse("Resources are closed once", factory.closeContainerResources("orders"));
+        try {
+            manager.startContainer("orders");
+            fail("A container whose resources were released cannot be restarted");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStopClosesSpillBuffer() throws Exception {
+        File directory = Files.createTempDirectory("d2k-spill-factory-test").toFile();
+        properties.getConsumer().setSpillEnabled(true);
+        properties.getConsumer().setSpillDirectory(directory.getAbsolutePath());
+        DelayConsumerContainerOptions options = new DelayConsumerContainerOptions();
+        options.setListenerId("orders");
+        DelayConsumerContainer<String, String> container = factory.createContainer(
+                Collections.singletonList("order-timeout"), item -> { }, 1, null, options);
+        SpillingDelayBuffer<?, ?> spillBuffer = factory.getContainerState("orders").getSpillBuffer();
+        assertTrue(spillBuffer.isRunning());
+        D2kConsumerManager manager = new D2kConsumerManager();
+        manager.setContainerFactory(factory);
+        manager.registerContainer("orders", container);
+
+        manager.stopContainer("orders");
+
+        assertFalse(spillBuffer.isRunning());
+        assertFalse(factory.closeContainerResources("orders"));
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
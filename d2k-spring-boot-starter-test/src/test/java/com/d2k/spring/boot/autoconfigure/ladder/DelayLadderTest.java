@@ -0,0 +1,268 @@
+package com.d2k.spring.boot.autoconfigure.ladder;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.consumer.CancellationIndex;
+import com.d2k.spring.boot.autoconfigure.consumer.ContainerStateHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kMessageHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.DelayContainerState;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageCodec;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageDeserializer;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import com.d2k.spring.boot.autoconfigure.message.RawKeyCapturingDeserializer;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 延迟阶梯测试
+ * 验证梯级选择、逻辑主题展开，梯级到期后按剩余时间转发到下一梯级、剩余时间短于最短梯级时不早于到期时间投递、
+ * 到期时以逻辑主题交给监听器，
+ * 以及同一批到期消息的转发在批次结束时才等待确认
+ *
+ * @author xiajuan96
+ */
+public class DelayLadderTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    @Test
+    public void testRouteSelectsLongestRungNotExceedingDelay() {
+        DelayLadder ladder = new DelayLadder(TOPIC, Arrays.asList(60000L, 1000L, 10000L, 1000L));
+
+        assertEquals(Arrays.asList(1000L, 10000L, 60000L), ladder.getRungs());
+        assertEquals("order-timeout-delay-1000ms", ladder.route(1000L));
+        assertEquals("order-timeout-delay-1000ms", ladder.route(9999L));
+        assertEquals("order-timeout-delay-10000ms", ladder.route(59999L));
+        assertEquals("order-timeout-delay-60000ms", ladder.route(3600000L));
+
+        // 剩余时间短于最短梯级时不再转发
+        assertNull(ladder.next(-20L));
+        assertNull(ladder.next(500L));
+        assertNull(ladder.next(999L));
+        assertEquals("order-timeout-delay-1000ms", ladder.next(1000L));
+        assertEquals("order-timeout-delay-10000ms", ladder.next(25000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteRejectsDelayShorterThanShortestRung() {
+        new DelayLadder(TOPIC, Arrays.asList(1000L, 10000L)).route(500L);
+    }
+
+    @Test
+    public void testShortRemainderIsNeverDeliveredEarly() {
+        DelayLadderRouter router = new DelayLadderRouter(
+                Collections.singletonMap(TOPIC, Arrays.asList(400L, 10000L)));
+        RecordingPool pool = new RecordingPool();
+        DelayLadderForwarder forwarder = new DelayLadderForwarder(router, pool, 1000L);
+        List<Long> deliveredAt = new ArrayList<>();
+        D2kMessageHandler<Object, Object> handler = new D2kMessageHandler<>(
+                item -> deliveredAt.add(System.currentTimeMillis()),
+                new CancellationIndex(16), null, null, null, forwarder);
+
+        // 剩余时间介于最短梯级的一半和最短梯级之间，以及不到一半
+        long[] remainders = {300L, 150L};
+        for (int i = 0; i < remainders.length; i++) {
+            long due = System.currentTimeMillis() + remainders[i];
+            handler.process(new DelayItem<>(0L, 0L,
+                    poll("order-timeout-delay-10000ms", i, "k" + i, envelope("order-" + i, due, "ORD-" + i))));
+
+            assertEquals(i + 1, deliveredAt.size());
+            assertTrue("Delivered " + (due - deliveredAt.get(i)) + "ms before it was due", deliveredAt.get(i) >= due);
+        }
+        assertTrue("Short remainders are not forwarded to a longer rung", pool.topics.isEmpty());
+        assertEquals(2L, forwarder.getAwaitedCount());
+    }
+
+    @Test
+    public void testRouterExpandsLogicalTopics() {
+        Map<String, List<Long>> ladders = new HashMap<>();
+        ladders.put(TOPIC, Arrays.asList(1000L, 10000L));
+        DelayLadderRouter router = new DelayLadderRouter(ladders);
+
+        assertTrue(router.containsLadder(Arrays.asList("audit", TOPIC)));
+        assertFalse(router.containsLadder(Collections.singletonList("audit")));
+        assertEquals(Arrays.asList("audit", "order-timeout-delay-1000ms", "order-timeout-delay-10000ms"),
+                router.expand(Arrays.asList("audit", TOPIC)));
+        assertEquals(Long.valueOf(10000L), router.getRungDelays().get("order-timeout-delay-10000ms"));
+        assertEquals(2, router.getRungDelays().size());
+        assertSame(router.getLadder(TOPIC), router.getLadderOfRung("order-timeout-delay-1000ms"));
+        assertNull(router.getLadderOfRung(TOPIC));
+    }
+
+    @Test
+    public void testHandlerForwardsUntilDue() {
+        DelayLadderRouter router = new DelayLadderRouter(
+                Collections.singletonMap(TOPIC, Arrays.asList(1000L, 10000L, 60000L)));
+        RecordingPool pool = new RecordingPool();
+        DelayLadderForwarder forwarder = new DelayLadderForwarder(router, pool, 1000L);
+        List<ConsumerRecord<Object, Object>> delivered = new ArrayList<>();
+        D2kMessageHandler<Object, Object> handler = new D2kMessageHandler<>(item -> delivered.add(item.getRecord()),
+                new CancellationIndex(16), null, null, null, forwarder);
+
+        // 还剩 30 秒：从 60 秒梯级转入 10 秒梯级，原样转发信封字节
+        long now = System.currentTimeMillis();
+        byte[] envelope = envelope("order-1", now + 30000L, "ORD-1");
+        handler.process(new DelayItem<>(0L, 0L, poll("order-timeout-delay-60000ms", 7L, "k1", envelope)));
+
+        assertTrue(delivered.isEmpty());
+        assertEquals(1, pool.topics.size());
+        assertEquals("order-timeout-delay-10000ms", pool.topics.get(0));
+        assertEquals("k1", new String(pool.keys.get(0), StandardCharsets.UTF_8));
+        assertArrayEquals(envelope, pool.values.get(0));
+        assertEquals("Forward does not wait for the ack", 1, forwarder.getPendingCount());
+        assertEquals(0L, forwarder.getForwardedCount());
+        forwarder.flush();
+        assertEquals(0, forwarder.getPendingCount());
+        assertEquals(1L, forwarder.getForwardedCount());
+
+        // 已到期：以逻辑主题交给监听器
+        handler.process(new DelayItem<>(0L, 0L,
+                poll("order-timeout-delay-1000ms", 9L, "k2", envelope("order-2", now + 100L, "ORD-2"))));
+
+        assertEquals(1, pool.topics.size());
+        assertEquals(1, delivered.size());
+        ConsumerRecord<Object, Object> record = delivered.get(0);
+        assertEquals(TOPIC, record.topic());
+        assertEquals(9L, record.offset());
+        assertEquals("ORD-2", record.value());
+        assertEquals("order-2", D2kMessageHeaders.from(record).getMessageId());
+    }
+
+    @Test
+    public void testContainerWaitsForForwardAcksAtEndOfDueRun() {
+        DelayLadderRouter router = new DelayLadderRouter(
+                Collections.singletonMap(TOPIC, Arrays.asList(1000L, 10000L, 60000L)));
+        RecordingPool pool = new RecordingPool();
+        pool.autoComplete = false;
+        DelayLadderForwarder forwarder = new DelayLadderForwarder(router, pool, 1000L);
+        String rung = "order-timeout-delay-60000ms";
+        DelayContainerState state = new DelayContainerState("orders", router.expand(Collections.singleton(TOPIC)),
+                Collections.emptyMap());
+        state.setRungDelays(router.getRungDelays());
+        ContainerStateHandler<Object, Object> handler = new ContainerStateHandler<>(new D2kMessageHandler<>(
+                item -> fail("Record should be forwarded"), new CancellationIndex(16), null, null, null, forwarder),
+                state, forwarder, true);
+
+        // 同一次拉取中三条已在梯级上到期的消息，最终到期时间还剩 30 秒
+        long now = System.currentTimeMillis();
+        List<ConsumerRecord<Object, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            records.add(poll(rung, i, now - 61000L, "k" + i, envelope("order-" + i, now + 30000L, "ORD-" + i)));
+        }
+        state.recordPolled(new TopicPartition(rung, 0), records);
+
+        handler.process(new DelayItem<>(0L, 0L, records.get(0)));
+        handler.process(new DelayItem<>(0L, 0L, records.get(1)));
+        assertEquals("Forwards within a due run are not awaited one by one", 2, forwarder.getPendingCount());
+        assertFalse(pool.futures.get(0).isDone());
+
+        pool.futures.get(0).complete(null);
+        pool.futures.get(1).complete(null);
+        pool.autoComplete = true;
+        handler.process(new DelayItem<>(0L, 0L, records.get(2)));
+
+        assertEquals("The last due record waits for the whole batch", 0, forwarder.getPendingCount());
+        assertEquals(3L, forwarder.getForwardedCount());
+    }
+
+    @Test
+    public void testForwardFailureSurfacesAtEndOfDueRun() {
+        DelayLadderRouter router = new DelayLadderRouter(
+                Collections.singletonMap(TOPIC, Arrays.asList(1000L, 10000L, 60000L)));
+        RecordingPool pool = new RecordingPool();
+        pool.autoComplete = false;
+        DelayLadderForwarder forwarder = new DelayLadderForwarder(router, pool, 1000L);
+        DelayContainerState state = new DelayContainerState("orders", router.expand(Collections.singleton(TOPIC)),
+                Collections.emptyMap());
+        ContainerStateHandler<Object, Object> handler = new ContainerStateHandler<>(new D2kMessageHandler<>(
+                item -> fail("Record should be forwarded"), new CancellationIndex(16), null, null, null, forwarder),
+                state, forwarder, true);
+        long now = System.currentTimeMillis();
+        ConsumerRecord<Object, Object> record = poll("order-timeout-delay-60000ms", 0L, now - 61000L, "k0",
+                envelope("order-0", now + 30000L, "ORD-0"));
+
+        IllegalStateException failure = new IllegalStateException("Not leader for partition");
+        pool.failure = failure;
+        try {
+            handler.process(new DelayItem<>(0L, 0L, record));
+            fail("Forward failure should fail the record");
+        } catch (RuntimeException e) {
+            assertSame(failure, e.getCause().getCause());
+        }
+        assertEquals(0, forwarder.getPendingCount());
+        assertEquals(0L, forwarder.getForwardedCount());
+    }
+
+    private static byte[] envelope(String messageId, long dueTimestamp, String payload) {
+        D2kMessageHeaders headers = new D2kMessageHeaders(messageId, false, System.currentTimeMillis(),
+                dueTimestamp, null, null);
+        return D2kMessageCodec.encode(headers, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 模拟 KafkaConsumer 的反序列化顺序：先键后值
+     */
+    private static ConsumerRecord<Object, Object> poll(String topic, long offset, String key, byte[] value) {
+        return poll(topic, offset, System.currentTimeMillis(), key, value);
+    }
+
+    private static ConsumerRecord<Object, Object> poll(String topic, long offset, long timestamp,
+                                                       String key, byte[] value) {
+        RawKeyCapturingDeserializer<String> keys = new RawKeyCapturingDeserializer<>(new StringDeserializer());
+        D2kMessageDeserializer<String> values = new D2kMessageDeserializer<>(new StringDeserializer(), true);
+        Object k = keys.deserialize(topic, key.getBytes(StandardCharsets.UTF_8));
+        Object v = values.deserialize(topic, value);
+        return new ConsumerRecord<>(topic, 0, offset, timestamp, TimestampType.CREATE_TIME, -1, -1, k, v,
+                new RecordHeaders(), Optional.empty());
+    }
+
+    private static class RecordingPool extends DelayProducerPool {
+
+        private final List<String> topics = new ArrayList<>();
+        private final List<byte[]> keys = new ArrayList<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private final List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>();
+        private boolean autoComplete = true;
+        private Exception failure;
+
+        @SuppressWarnings("unchecked")
+        RecordingPool() {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            topics.add(topic);
+            keys.add(key);
+            values.add(value);
+            CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else if (autoComplete) {
+                future.complete(null);
+            }
+            futures.add(future);
+            return future;
+        }
+    }
+}
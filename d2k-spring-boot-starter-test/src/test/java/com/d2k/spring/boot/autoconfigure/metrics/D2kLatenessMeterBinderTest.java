@@ -0,0 +1,58 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * D2kLatenessMeterBinder 测试
+ * 验证每个（监听器, 主题）组合第一次记录时注册到期延迟的分位数、最大值和计数指标，分区不作为标签
+ *
+ * @author xiajuan96
+ */
+public class D2kLatenessMeterBinderTest {
+
+    @Test
+    public void testLatenessExportedPerListenerAndTopic() {
+        DelayLatenessRecorder recorder = new DelayLatenessRecorder(60000L);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new D2kLatenessMeterBinder(recorder).bindTo(registry);
+        assertTrue(registry.getMeters().isEmpty());
+
+        DelayLatenessRecorder.ListenerLateness orders = recorder.forListener("orders");
+        for (int i = 0; i < 10; i++) {
+            orders.record("order-timeout", i % 2, 10L);
+        }
+        orders.record("order-timeout", 1, 40L);
+        orders.record("coupon-expire", 0, 5L);
+
+        // 每个组合 3 个分位数、1 个最大值和 1 个计数
+        assertEquals(10, registry.getMeters().size());
+        for (Meter meter : registry.getMeters()) {
+            assertEquals("orders", meter.getId().getTag("listener"));
+            assertNull(meter.getId().getTag("partition"));
+        }
+        assertEquals(10.0, registry.get("d2k.listener.lateness")
+                .tags("topic", "order-timeout", "quantile", "0.5").timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(40.0, registry.get("d2k.listener.lateness")
+                .tags("topic", "order-timeout", "quantile", "0.999").timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(40.0, registry.get("d2k.listener.lateness.max").tag("topic", "order-timeout")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(11.0, registry.get("d2k.listener.lateness.count").tag("topic", "order-timeout")
+                .functionCounter().count(), 0.0);
+        assertEquals(5.0, registry.get("d2k.listener.lateness.max").tag("topic", "coupon-expire")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(1.0, registry.get("d2k.listener.lateness.count").tag("topic", "coupon-expire")
+                .functionCounter().count(), 0.0);
+
+        // 之后的记录直接反映在已注册的指标中
+        orders.record("coupon-expire", 0, 25L);
+        assertEquals(10, registry.getMeters().size());
+        assertEquals(25.0, registry.get("d2k.listener.lateness.max").tag("topic", "coupon-expire")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+    }
+}
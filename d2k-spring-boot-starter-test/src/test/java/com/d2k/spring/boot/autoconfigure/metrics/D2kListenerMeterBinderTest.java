@@ -0,0 +1,118 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * D2kListenerMeterBinder 测试
+ * 验证监听器指标按名称和标签注册到 MeterRegistry，数值取自 DelayContainerMetrics，到期预测在绑定后按主题和时间范围注册
+ *
+ * @author xiajuan96
+ */
+public class D2kListenerMeterBinderTest {
+
+    private DelayContainerMetrics metrics;
+    private SimpleMeterRegistry registry;
+
+    @Before
+    public void setUp() {
+        metrics = new DelayContainerMetrics();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testListenerMetersRegisteredWithTags() {
+        new D2kListenerMeterBinder(metrics).bindTo(registry);
+        DelayContainerMetrics.ListenerMetrics listener = metrics.forListener("orders");
+
+        Set<String> names = new TreeSet<>();
+        for (Meter meter : registry.getMeters()) {
+            assertEquals("orders", meter.getId().getTag("listener"));
+            names.add(meter.getId().getName());
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(
+                "d2k.listener.records.received",
+                "d2k.listener.records.due",
+                "d2k.listener.records.dropped",
+                "d2k.listener.records.pending",
+                "d2k.listener.records.spilled",
+                "d2k.listener.handler",
+                "d2k.listener.handler.active",
+                "d2k.listener.consumer.lag",
+                "d2k.listener.rebalances")), names);
+        assertEquals(2, registry.find("d2k.listener.records.dropped").meters().size());
+        assertEquals(2, registry.find("d2k.listener.handler").meters().size());
+
+        listener.recordReceived(5);
+        listener.bindDueCount(() -> 3L);
+        listener.bindDroppedCounts(() -> 2L, () -> 1L);
+        listener.bindSpilledPendingCount(() -> 4);
+        listener.handlerStarted();
+        listener.handlerCompleted(TimeUnit.MILLISECONDS.toNanos(20), true);
+        listener.handlerStarted();
+        listener.handlerCompleted(TimeUnit.MILLISECONDS.toNanos(10), false);
+        listener.handlerStarted();
+
+        assertEquals(5.0, registry.get("d2k.listener.records.received").functionCounter().count(), 0.0);
+        assertEquals(3.0, registry.get("d2k.listener.records.due").functionCounter().count(), 0.0);
+        assertEquals(2.0, registry.get("d2k.listener.records.pending").gauge().value(), 0.0);
+        assertEquals(4.0, registry.get("d2k.listener.records.spilled").gauge().value(), 0.0);
+        assertEquals(2.0, registry.get("d2k.listener.records.dropped").tag("reason", "cancelled")
+                .functionCounter().count(), 0.0);
+        assertEquals(1.0, registry.get("d2k.listener.records.dropped").tag("reason", "superseded")
+                .functionCounter().count(), 0.0);
+        FunctionTimer success = registry.get("d2k.listener.handler").tag("outcome", "success").functionTimer();
+        assertEquals(1.0, success.count(), 0.0);
+        assertEquals(20.0, success.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        FunctionTimer error = registry.get("d2k.listener.handler").tag("outcome", "error").functionTimer();
+        assertEquals(1.0, error.count(), 0.0);
+        assertEquals(10.0, error.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1.0, registry.get("d2k.listener.handler.active").gauge().value(), 0.0);
+        // 消费者尚未上报延迟
+        assertTrue(Double.isNaN(registry.get("d2k.listener.consumer.lag").gauge().value()));
+        assertEquals(0.0, registry.get("d2k.listener.rebalances").functionCounter().count(), 0.0);
+    }
+
+    @Test
+    public void testExistingListenersRegisteredOnBind() {
+        metrics.forListener("orders").recordReceived(2);
+        metrics.forListener("coupons");
+
+        new D2kListenerMeterBinder(metrics).bindTo(registry);
+
+        assertEquals(2.0, registry.get("d2k.listener.records.received").tag("listener", "orders")
+                .functionCounter().count(), 0.0);
+        assertNotNull(registry.find("d2k.listener.records.received").tag("listener", "coupons").functionCounter());
+    }
+
+    @Test
+    public void testDueForecastRegisteredPerTopicAndHorizon() {
+        new D2kListenerMeterBinder(metrics).bindTo(registry);
+        DelayContainerMetrics.ListenerMetrics listener = metrics.forListener("orders");
+        assertNull(registry.find("d2k.listener.due.forecast").gauge());
+
+        Map<String, Long> horizons = new LinkedHashMap<>();
+        horizons.put("1m", 60000L);
+        horizons.put("1h", 3600000L);
+        listener.bindDueForecast(Arrays.asList("order-timeout", "coupon-expire"), horizons,
+                (topic, horizonMs) -> topic.length() + horizonMs / 60000L);
+
+        assertEquals(4, registry.find("d2k.listener.due.forecast").gauges().size());
+        assertEquals(14.0, registry.get("d2k.listener.due.forecast")
+                .tags("listener", "orders", "topic", "order-timeout", "horizon", "1m").gauge().value(), 0.0);
+        assertEquals(73.0, registry.get("d2k.listener.due.forecast")
+                .tags("listener", "orders", "topic", "coupon-expire", "horizon", "1h").gauge().value(), 0.0);
+    }
+}
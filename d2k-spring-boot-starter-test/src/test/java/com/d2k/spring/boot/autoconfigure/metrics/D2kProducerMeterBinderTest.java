@@ -0,0 +1,130 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * D2kProducerMeterBinder 测试
+ * 验证模板发送指标和计划延迟分位数按逻辑主题分别注册，以及生产者客户端指标按客户端和主题汇总后导出
+ *
+ * @author xiajuan96
+ */
+public class D2kProducerMeterBinderTest {
+
+    private DelayProducerMetrics metrics;
+    private SimpleMeterRegistry registry;
+
+    @Before
+    public void setUp() {
+        metrics = new DelayProducerMetrics(60000L);
+        registry = new SimpleMeterRegistry();
+        new D2kProducerMeterBinder(metrics).bindTo(registry);
+    }
+
+    @Test
+    public void testSendMetersAndDelaysPerTopic() {
+        DelayProducerMetrics.TopicSendMetrics orders = metrics.forTopic("order-timeout");
+        DelayProducerMetrics.TopicSendMetrics coupons = metrics.forTopic("coupon-expire");
+        for (int i = 0; i < 10; i++) {
+            orders.recordSend(TimeUnit.MILLISECONDS.toNanos(1), 20L, true);
+        }
+        orders.recordSend(TimeUnit.MILLISECONDS.toNanos(1), 50L, true);
+        orders.recordSend(TimeUnit.MILLISECONDS.toNanos(1), 30L, false);
+        orders.recordCompletion(TimeUnit.MILLISECONDS.toNanos(8), true);
+        orders.recordCompletion(TimeUnit.MILLISECONDS.toNanos(4), false);
+        coupons.recordSend(TimeUnit.MILLISECONDS.toNanos(2), 5L, true);
+
+        FunctionTimer call = registry.get("d2k.producer.send.call").tag("topic", "order-timeout").functionTimer();
+        assertEquals(12.0, call.count(), 0.0);
+        assertEquals(12.0, call.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        FunctionTimer send = registry.get("d2k.producer.send").tag("topic", "order-timeout").functionTimer();
+        assertEquals(2.0, send.count(), 0.0);
+        assertEquals(12.0, send.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(2.0, registry.get("d2k.producer.send.errors").tag("topic", "order-timeout")
+                .functionCounter().count(), 0.0);
+
+        // 计划延迟按主题分开统计，失败的发送不计入
+        assertEquals(3, registry.find("d2k.producer.delay").tag("topic", "order-timeout").timeGauges().size());
+        assertEquals(20.0, registry.get("d2k.producer.delay").tags("topic", "order-timeout", "quantile", "0.5")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(50.0, registry.get("d2k.producer.delay").tags("topic", "order-timeout", "quantile", "0.999")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(50.0, registry.get("d2k.producer.delay.max").tag("topic", "order-timeout")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(5.0, registry.get("d2k.producer.delay").tags("topic", "coupon-expire", "quantile", "0.5")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(5.0, registry.get("d2k.producer.delay.max").tag("topic", "coupon-expire")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(1.0, registry.get("d2k.producer.send.call").tag("topic", "coupon-expire")
+                .functionTimer().count(), 0.0);
+    }
+
+    @Test
+    public void testClientMetricsBridgedAcrossProducers() {
+        // 生产者尚未上报时计数器为 0，不出现 NaN
+        assertEquals(0.0, registry.get("d2k.producer.record.errors").functionCounter().count(), 0.0);
+        assertNull(registry.find("d2k.producer.topic.records").functionCounter());
+
+        for (int i = 0; i < 2; i++) {
+            String clientId = "d2k-producer-" + i;
+            metrics.addKafkaMetric(metric("request-latency-avg", clientId, null, 10.0 + 10 * i));
+            metrics.addKafkaMetric(metric("request-latency-max", clientId, null, 100.0 + 100 * i));
+            metrics.addKafkaMetric(metric("batch-size-avg", clientId, null, 1000.0 + 1000 * i));
+            metrics.addKafkaMetric(metric("record-error-total", clientId, null, 3.0));
+            metrics.addKafkaMetric(metric("bufferpool-wait-time-ns-total", clientId, null, 5e8));
+            metrics.addKafkaMetric(metric("record-send-total", clientId, "order-timeout", 50.0));
+            metrics.addKafkaMetric(metric("compression-rate", clientId, "order-timeout", 0.4 + 0.2 * i));
+        }
+
+        // 平均值取各生产者的平均，最大值取最大，累计值求和
+        assertEquals(15.0, registry.get("d2k.producer.request.latency").tag("statistic", "avg")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(200.0, registry.get("d2k.producer.request.latency").tag("statistic", "max")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1500.0, registry.get("d2k.producer.batch.size").tag("statistic", "avg")
+                .gauge().value(), 0.001);
+        assertTrue(Double.isNaN(registry.get("d2k.producer.batch.size").tag("statistic", "max")
+                .gauge().value()));
+        assertEquals(6.0, registry.get("d2k.producer.record.errors").functionCounter().count(), 0.0);
+        assertEquals(1.0, registry.get("d2k.producer.bufferpool.wait").functionCounter().count(), 0.001);
+
+        // 主题级指标在生产者第一次上报该主题时注册
+        assertEquals(100.0, registry.get("d2k.producer.topic.records").tag("topic", "order-timeout")
+                .functionCounter().count(), 0.0);
+        assertEquals(0.0, registry.get("d2k.producer.topic.record.errors").tag("topic", "order-timeout")
+                .functionCounter().count(), 0.0);
+        assertEquals(0.5, registry.get("d2k.producer.topic.compression.ratio").tag("topic", "order-timeout")
+                .gauge().value(), 0.001);
+    }
+
+    private static Metric metric(String name, String clientId, String topic, double value) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("client-id", clientId);
+        if (topic != null) {
+            tags.put("topic", topic);
+        }
+        MetricName metricName = new MetricName(name, topic == null ? "producer-metrics" : "producer-topic-metrics",
+                "", tags);
+        return new Metric() {
+            @Override
+            public MetricName metricName() {
+                return metricName;
+            }
+
+            @Override
+            public Object metricValue() {
+                return value;
+            }
+        };
+    }
+}
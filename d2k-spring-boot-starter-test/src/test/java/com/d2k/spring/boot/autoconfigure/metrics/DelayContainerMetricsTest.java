@@ -0,0 +1,153 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.spring.boot.autoconfigure.consumer.CancellationIndex;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kMessageHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kReceiveInterceptor;
+import com.d2k.spring.boot.autoconfigure.consumer.ListenerMetricsHandler;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * DelayContainerMetrics 测试
+ * 验证处理器调用按结果计数计时、拉取与到期计数得出等待中的消息数，以及消费者延迟和再均衡指标的汇总
+ *
+ * @author xiajuan96
+ */
+public class DelayContainerMetricsTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    @Test
+    public void testHandlerOutcomesCountedAndTimed() {
+        DelayContainerMetrics metrics = new DelayContainerMetrics();
+        DelayContainerMetrics.ListenerMetrics listener = metrics.forListener("orders");
+        List<Integer> activeDuringCall = new ArrayList<>();
+        ListenerMetricsHandler<String, String> handler = new ListenerMetricsHandler<>(item -> {
+            activeDuringCall.add(listener.getActiveCount());
+            if ("bad".equals(item.getRecord().value())) {
+                throw new IllegalStateException("boom");
+            }
+        }, listener);
+
+        handler.process(item(0L, "ok"));
+        handler.process(item(1L, "ok"));
+        try {
+            handler.process(item(2L, "bad"));
+            fail("Handler exception should propagate");
+        } catch (IllegalStateException expected) {
+            // 异常原样抛出
+        }
+
+        assertEquals(2L, listener.getSuccessCount());
+        assertEquals(1L, listener.getErrorCount());
+        assertTrue(listener.getSuccessTotalNanos() > 0);
+        assertEquals(Collections.nCopies(3, 1), activeDuringCall);
+        assertEquals(0, listener.getActiveCount());
+    }
+
+    @Test
+    public void testPendingIsReceivedMinusDue() {
+        DelayContainerMetrics metrics = new DelayContainerMetrics();
+        List<String> registered = new ArrayList<>();
+        metrics.forListener("existing");
+        metrics.addListenerCallback(l -> registered.add(l.getListener()));
+        DelayContainerMetrics.ListenerMetrics listener = metrics.forListener("orders");
+        assertSame(listener, metrics.forListener("orders"));
+        assertEquals(Arrays.asList("existing", "orders"), registered);
+
+        CancellationIndex cancellationIndex = new CancellationIndex(16);
+        D2kMessageHandler<String, String> messageHandler = new D2kMessageHandler<>(
+                new ListenerMetricsHandler<>(item -> {
+                }, listener), cancellationIndex);
+        listener.bindDueCount(messageHandler::getDueCount);
+        listener.bindDroppedCounts(cancellationIndex::getDroppedCount, null);
+
+        D2kReceiveInterceptor interceptor = new D2kReceiveInterceptor();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(D2kReceiveInterceptor.LISTENER_METRICS_CONFIG, listener);
+        interceptor.configure(configs);
+        List<ConsumerRecord<Object, Object>> polled = new ArrayList<>();
+        for (long offset = 0; offset < 5; offset++) {
+            polled.add(new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, "value-" + offset));
+        }
+        interceptor.onConsume(new ConsumerRecords<>(Collections.singletonMap(new TopicPartition(TOPIC, 0), polled)));
+        assertEquals(5L, listener.getReceivedCount());
+        assertEquals(5L, listener.getPendingCount());
+
+        messageHandler.process(item(0L, "value-0"));
+        messageHandler.process(item(1L, "value-1"));
+        assertEquals(2L, listener.getDueCount());
+        assertEquals(3L, listener.getPendingCount());
+        assertEquals(2L, listener.getSuccessCount());
+        assertEquals(0L, listener.getCancelledCount());
+        assertEquals(0L, listener.getSupersededCount());
+        assertEquals(0, listener.getSpilledPendingCount());
+    }
+
+    @Test
+    public void testConsumerMetricsAggregated() {
+        DelayContainerMetrics.ListenerMetrics listener = new DelayContainerMetrics().forListener("orders");
+        assertTrue(Double.isNaN(listener.getConsumerLag()));
+
+        listener.addLagMetric(metric("records-lag-max", "consumer-1", 12.0));
+        FakeMetric lag2 = metric("records-lag-max", "consumer-2", 40.0);
+        listener.addLagMetric(lag2);
+        // 消费者尚未分配分区时上报 NaN
+        listener.addLagMetric(metric("records-lag-max", "consumer-3", Double.NaN));
+        assertEquals(40.0, listener.getConsumerLag(), 0.0);
+
+        listener.addRebalanceMetric(metric("rebalance-total", "consumer-1", 2.0));
+        listener.addRebalanceMetric(metric("rebalance-total", "consumer-2", 3.0));
+        // 同名指标替换旧值
+        listener.addRebalanceMetric(metric("rebalance-total", "consumer-2", 4.0));
+        assertEquals(6.0, listener.getRebalanceCount(), 0.0);
+
+        listener.removeKafkaMetric(lag2);
+        assertEquals(12.0, listener.getConsumerLag(), 0.0);
+    }
+
+    private static DelayItem<String, String> item(long offset, String value) {
+        return new DelayItem<>(0L, System.currentTimeMillis(),
+                new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, value));
+    }
+
+    private static FakeMetric metric(String name, String clientId, double value) {
+        return new FakeMetric(new MetricName(name, "consumer-metrics", "",
+                Collections.singletonMap("client-id", clientId)), value);
+    }
+
+    private static final class FakeMetric implements Metric {
+
+        private final MetricName name;
+        private final double value;
+
+        private FakeMetric(MetricName name, double value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public MetricName metricName() {
+            return name;
+        }
+
+        @Override
+        public Object metricValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderRouter;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.producer.SendAcknowledgements;
+import com.d2k.spring.boot.autoconfigure.producer.SendFutureCompleter;
+import com.d2k.spring.boot.autoconfigure.template.StringD2kTemplate;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * DelayProducerMetrics 测试
+ * 验证模板按逻辑主题记录发送次数、失败、发送到确认的耗时和计划延迟，以及池中各生产者客户端指标的汇总方式
+ *
+ * @author xiajuan96
+ */
+public class DelayProducerMetricsTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    @Test
+    public void testTemplateRecordsSendsAndDelaysPerTopic() {
+        RecordingPool pool = new RecordingPool();
+        StringD2kTemplate template = new StringD2kTemplate(pool);
+        template.setTopicDelays(Collections.singletonMap(TOPIC, 30000L));
+        DelayProducerMetrics metrics = new DelayProducerMetrics(60000L);
+        List<String> registered = new ArrayList<>();
+        metrics.addTopicCallback(topic -> registered.add(topic.getTopic()));
+        template.setProducerMetrics(metrics);
+
+        template.sendAsync(TOPIC, "k1", "v1");
+        template.sendAsync(TOPIC, "k2", "v2");
+        pool.failing = true;
+        try {
+            template.sendAsync(TOPIC, "k3", "v3");
+            fail("Send failure should propagate");
+        } catch (TimeoutException expected) {
+            // 缓冲区阻塞超时等同步异常原样抛出
+        }
+
+        DelayProducerMetrics.TopicSendMetrics topic = metrics.getTopic(TOPIC);
+        assertEquals(Collections.singletonList(TOPIC), registered);
+        assertEquals(3L, topic.getSendCount());
+        assertEquals(1L, topic.getErrorCount());
+        assertTrue(topic.getSendTotalNanos() > 0);
+        // 失败的发送不计入延迟分布
+        LatenessSnapshot delays = topic.getDelaySnapshot();
+        assertEquals(2L, delays.getTotalCount());
+        assertEquals(30000L, delays.getMax());
+    }
+
+    @Test
+    public void testLadderSendRecordedUnderLogicalTopic() {
+        RecordingPool pool = new RecordingPool();
+        StringD2kTemplate template = new StringD2kTemplate(pool);
+        template.setLadderRouter(new DelayLadderRouter(
+                Collections.singletonMap(TOPIC, Arrays.asList(1000L, 60000L, 600000L))));
+        DelayProducerMetrics metrics = new DelayProducerMetrics(60000L);
+        template.setProducerMetrics(metrics);
+
+        template.sendAsync(TOPIC, "k1", "v1", 2700000L);
+        template.sendAsync(TOPIC, "k2", "v2", 5000L);
+
+        assertEquals(Arrays.asList("order-timeout-delay-600000ms", "order-timeout-delay-1000ms"), pool.topics);
+        assertEquals(Collections.singleton(TOPIC), metrics.getTopics());
+        LatenessSnapshot delays = metrics.getTopic(TOPIC).getDelaySnapshot();
+        assertEquals(2L, delays.getTotalCount());
+        assertEquals(2700000L, delays.getMax());
+    }
+
+    @Test
+    public void testSendTimedUntilAcknowledgement() throws Exception {
+        SendAcknowledgements acknowledgements = new SendAcknowledgements();
+        RecordingPool pool = new RecordingPool(acknowledgements);
+        pool.manual = true;
+        StringD2kTemplate template = new StringD2kTemplate(pool);
+        template.setTopicDelays(Collections.singletonMap(TOPIC, 30000L));
+        DelayProducerMetrics metrics = new DelayProducerMetrics(60000L);
+        template.setProducerMetrics(metrics);
+        SendFutureCompleter completer = new SendFutureCompleter();
+        template.setSendFutureCompleter(completer);
+
+        template.sendAsync(TOPIC, "k1", "v1");
+        template.sendAsync(TOPIC, "k2", "v2");
+        DelayProducerMetrics.TopicSendMetrics topic = metrics.getTopic(TOPIC);
+        assertEquals(2L, topic.getSendCount());
+        assertEquals("Sends are not complete until acknowledged", 0L, topic.getCompletedCount());
+
+        Thread.sleep(5L);
+        pool.futures.get(0).complete(null);
+        acknowledgements.onAcknowledgement(null, null);
+        IllegalStateException failure = new IllegalStateException("Not leader for partition");
+        pool.futures.get(1).completeExceptionally(failure);
+        acknowledgements.onAcknowledgement(null, failure);
+
+        assertEquals(2L, topic.getCompletedCount());
+        assertTrue("Completion time includes the wait for the ack",
+                topic.getCompletedTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals("Acknowledgement failures are counted per logical topic", 1L, topic.getErrorCount());
+        completer.close();
+    }
+
+    @Test
+    public void testClientMetricsAggregatedAcrossProducers() {
+        DelayProducerMetrics metrics = new DelayProducerMetrics(60000L);
+        assertTrue(Double.isNaN(metrics.getClientMetric("request-latency-avg")));
+        List<String> kafkaTopics = new ArrayList<>();
+        metrics.addKafkaTopicCallback(kafkaTopics::add);
+
+        for (int i = 0; i < 2; i++) {
+            String clientId = "d2k-producer-" + i;
+            metrics.addKafkaMetric(metric("request-latency-avg", clientId, null, 10.0 + 10 * i));
+            metrics.addKafkaMetric(metric("request-latency-max", clientId, null, 100.0 + 100 * i));
+            metrics.addKafkaMetric(metric("record-error-total", clientId, null, 3.0));
+            metrics.addKafkaMetric(metric("record-send-total", clientId, TOPIC, 50.0));
+            metrics.addKafkaMetric(metric("record-send-total", clientId, "coupon-expire", 7.0));
+        }
+        // 尚无数据的生产者上报 NaN，不参与平均
+        metrics.addKafkaMetric(metric("request-latency-avg", "d2k-producer-2", null, Double.NaN));
+
+        assertEquals(15.0, metrics.getClientMetric("request-latency-avg"), 0.0);
+        assertEquals(200.0, metrics.getClientMetric("request-latency-max"), 0.0);
+        assertEquals(6.0, metrics.getClientMetric("record-error-total"), 0.0);
+        assertEquals(100.0, metrics.getTopicMetric("record-send-total", TOPIC), 0.0);
+        assertEquals(14.0, metrics.getTopicMetric("record-send-total", "coupon-expire"), 0.0);
+        // 客户端级别的查询不包含主题级别的同名指标
+        assertTrue(Double.isNaN(metrics.getClientMetric("record-send-total")));
+        assertEquals(Arrays.asList(TOPIC, "coupon-expire"), kafkaTopics);
+    }
+
+    private static Metric metric(String name, String clientId, String topic, double value) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("client-id", clientId);
+        if (topic != null) {
+            tags.put("topic", topic);
+        }
+        MetricName metricName = new MetricName(name, topic == null ? "producer-metrics" : "producer-topic-metrics",
+                "", tags);
+        return new Metric() {
+            @Override
+            public MetricName metricName() {
+                return metricName;
+            }
+
+            @Override
+            public Object metricValue() {
+                return value;
+            }
+        };
+    }
+
+    private static class RecordingPool extends DelayProducerPool {
+
+        private final List<String> topics = new ArrayList<>();
+        private final List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>();
+        private boolean failing;
+        private boolean manual;
+
+        RecordingPool() {
+            this(new SendAcknowledgements());
+        }
+
+        @SuppressWarnings("unchecked")
+        RecordingPool(SendAcknowledgements acknowledgements) {
+            super(Collections.singletonList((DelayProducer<byte[], byte[]>) mock(DelayProducer.class)),
+                    Collections.singletonList(acknowledgements));
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            if (failing) {
+                throw new TimeoutException("Failed to allocate memory within the configured max blocking time");
+            }
+            topics.add(topic);
+            if (!manual) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+            futures.add(future);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.spring.boot.autoconfigure.consumer.LatenessRecordingHandler;
+import com.d2k.spring.boot.autoconfigure.message.D2kConsumerRecord;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatenessHistogram 与 DelayLatenessRecorder 测试
+ * 验证分桶边界与分位数精度、按分区记录后合并为主题快照，以及处理器按元数据中的到期时间记录延迟
+ *
+ * @author xiajuan96
+ */
+public class LatenessHistogramTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    @Test
+    public void testBucketBoundsContainValues() {
+        int last = -1;
+        for (long value : new long[]{0L, 1L, 63L, 64L, 65L, 127L, 128L, 1000L, 86_400_000L, (1L << 32) - 1}) {
+            int index = LatenessHistogram.bucketIndex(value);
+            assertTrue(index >= last);
+            assertTrue(index < LatenessHistogram.bucketCount());
+            long upper = LatenessHistogram.bucketUpperBound(index);
+            assertTrue(value <= upper);
+            // 相对误差不超过 1/32
+            assertTrue(upper - value <= value / 32);
+            last = index;
+        }
+        assertEquals(LatenessHistogram.bucketCount() - 1, LatenessHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError() {
+        LatenessHistogram histogram = new LatenessHistogram(60000L);
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5L);
+
+        LatenessSnapshot snapshot = histogram.snapshot();
+        assertEquals(10001L, snapshot.getTotalCount());
+        assertEquals(10001L, snapshot.getWindowCount());
+        assertEquals(10000L, snapshot.getMax());
+        assertWithin(5000L, snapshot.getP50());
+        assertWithin(9900L, snapshot.getP99());
+        assertWithin(9990L, snapshot.getP999());
+    }
+
+    @Test
+    public void testPartitionsMergedIntoTopicSnapshot() {
+        DelayLatenessRecorder recorder = new DelayLatenessRecorder(60000L);
+        List<String> series = new ArrayList<>();
+        recorder.addSeriesListener((listener, topic) -> series.add(listener + "/" + topic));
+
+        DelayLatenessRecorder.ListenerLateness lateness = recorder.forListener("orderListener");
+        for (int i = 0; i < 99; i++) {
+            lateness.record(TOPIC, 0, 10L);
+        }
+        lateness.record(TOPIC, 3, 2000L);
+
+        assertEquals(Collections.singletonList("orderListener/" + TOPIC), series);
+        LatenessSnapshot merged = recorder.getSnapshot("orderListener", TOPIC);
+        assertEquals(100L, merged.getTotalCount());
+        assertEquals(10L, merged.getP50());
+        assertEquals(2000L, merged.getMax());
+
+        Map<Integer, LatenessSnapshot> partitions = recorder.getPartitionSnapshots("orderListener", TOPIC);
+        assertEquals(2, partitions.size());
+        assertEquals(99L, partitions.get(0).getTotalCount());
+        assertEquals(2000L, partitions.get(3).getP50());
+        assertEquals(0L, recorder.getSnapshot("orderListener", "other").getTotalCount());
+    }
+
+    @Test
+    public void testHandlerRecordsLatenessFromDueTimestamp() {
+        DelayLatenessRecorder recorder = new DelayLatenessRecorder(60000L);
+        List<Object> delivered = new ArrayList<>();
+        LatenessRecordingHandler<String, String> handler = new LatenessRecordingHandler<>(
+                item -> delivered.add(item.getRecord().value()), recorder.forListener("orderListener"),
+                Collections.singletonMap(TOPIC, 1000L));
+
+        long now = System.currentTimeMillis();
+        D2kMessageHeaders headers = new D2kMessageHeaders("m-1", false, now - 6000L, now - 5000L, null, null);
+        ConsumerRecord<String, String> record = new D2kConsumerRecord<>(
+                new ConsumerRecord<>(TOPIC, 1, 0L, "key", "value"), "value", headers);
+        handler.process(new DelayItem<>(0L, 0L, record));
+
+        assertEquals(Collections.singletonList("value"), delivered);
+        LatenessSnapshot snapshot = recorder.getPartitionSnapshots("orderListener", TOPIC).get(1);
+        assertEquals(1L, snapshot.getTotalCount());
+        assertTrue(snapshot.getMax() >= 5000L && snapshot.getMax() < 10000L);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual - expected <= expected / 32 + 1);
+    }
+}
@@ -0,0 +1,196 @@
+package com.d2k.spring.boot.autoconfigure.outbox;
+
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.producer.TopicRateLimiter;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * D2kOutbox 测试
+ * 验证批次中部分消息未确认时，已确认的消息立即完成且重试时不再发送，检查点只推进到连续确认的位置；
+ * 中继按主题限流时消息留在日志中匀速发出；以及关闭时中继线程退出后才关闭日志
+ *
+ * @author xiajuan96
+ */
+public class D2kOutboxTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("d2k-outbox-relay-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testPartialFailureResendsOnlyUnacknowledged() throws Exception {
+        FlakyPool pool = new FlakyPool("v2");
+        OutboxJournal journal = new OutboxJournal(directory, 4096);
+        D2kOutbox outbox = new D2kOutbox(journal, pool, 10, 0L, 1000L);
+        Future<RecordMetadata> first = outbox.append("test-topic", null, bytes("v1"), true);
+        Future<RecordMetadata> second = outbox.append("test-topic", null, bytes("v2"), true);
+        Future<RecordMetadata> third = outbox.append("test-topic", null, bytes("v3"), true);
+
+        outbox.start();
+        try {
+            third.get(5, TimeUnit.SECONDS);
+            assertTrue("Acknowledged records complete even when an earlier one failed", first.isDone());
+            second.get(5, TimeUnit.SECONDS);
+            waitForCheckpoint(outbox);
+        } finally {
+            outbox.close();
+        }
+
+        assertEquals(0L, outbox.getPendingBytes());
+        assertEquals("Only the unacknowledged record is re-sent", 4, pool.sent.size());
+        assertEquals(1, Collections.frequency(pool.sent, "v3"));
+        assertEquals(2, Collections.frequency(pool.sent, "v2"));
+    }
+
+    @Test
+    public void testRelayWaitsForRatePermits() throws Exception {
+        FlakyPool pool = new FlakyPool(null);
+        TopicRateLimiter limiter = new TopicRateLimiter(Collections.singletonMap("test-topic", 20.0), 1L,
+                TopicRateLimiter.OverflowPolicy.REJECT, 0);
+        D2kOutbox outbox = new D2kOutbox(new OutboxJournal(directory, 4096), pool, 10, 0L, 1000L);
+        outbox.setRateLimiter(limiter);
+        Future<RecordMetadata> last = null;
+        for (int i = 0; i < 5; i++) {
+            last = outbox.append("test-topic", null, bytes("v" + i), true);
+        }
+
+        long start = System.nanoTime();
+        outbox.start();
+        try {
+            last.get(5, TimeUnit.SECONDS);
+        } finally {
+            outbox.close();
+            limiter.close();
+        }
+
+        assertTrue("Five sends at 20/s with a burst of one take at least 200 ms",
+                System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+        assertEquals(5, pool.sent.size());
+        assertEquals("Over-rate records wait in the journal instead of being rejected",
+                0, limiter.getRejectedCount("test-topic"));
+    }
+
+    @Test
+    public void testCloseWaitsForBlockedRelayToExit() throws Exception {
+        BlockingPool pool = new BlockingPool();
+        OutboxJournal journal = new OutboxJournal(directory, 4096);
+        D2kOutbox outbox = new D2kOutbox(journal, pool, 10, 0L, 100L);
+        outbox.append("test-topic", null, bytes("v1"), false);
+        outbox.start();
+        assertTrue(pool.entered.await(5, TimeUnit.SECONDS));
+
+        outbox.close();
+
+        assertFalse("Relay thread has exited before the journal is closed", pool.relayThread.isAlive());
+        assertTrue(pool.interrupted);
+        // 未发送的消息留在日志中，重新打开后继续发送
+        OutboxJournal reopened = new OutboxJournal(directory, 4096);
+        try {
+            assertEquals(1, reopened.read(reopened.getCheckpointOffset(), 10).size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void waitForCheckpoint(D2kOutbox outbox) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (outbox.getPendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 发送一直阻塞到线程被中断，模拟等待元数据或缓冲区的生产者
+     */
+    private static class BlockingPool extends DelayProducerPool {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile Thread relayThread;
+        private volatile boolean interrupted;
+
+        @SuppressWarnings("unchecked")
+        BlockingPool() {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            relayThread = Thread.currentThread();
+            entered.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Interrupted while waiting for the producer");
+        }
+    }
+
+    /**
+     * 指定消息第一次发送时返回失败的 Future
+     */
+    private static class FlakyPool extends DelayProducerPool {
+
+        private final String failOnce;
+        private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        private boolean failed;
+
+        @SuppressWarnings("unchecked")
+        FlakyPool(String failOnce) {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+            this.failOnce = failOnce;
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            String text = new String(value, StandardCharsets.UTF_8);
+            sent.add(text);
+            CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+            if (text.equals(failOnce) && !failed) {
+                failed = true;
+                future.completeExceptionally(new IllegalStateException("Not leader for partition"));
+            } else {
+                future.complete(null);
+            }
+            return future;
+        }
+    }
+}
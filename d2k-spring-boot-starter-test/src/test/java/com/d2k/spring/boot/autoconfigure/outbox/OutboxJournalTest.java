@@ -0,0 +1,166 @@
+package com.d2k.spring.boot.autoconfigure.outbox;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * OutboxJournal 测试
+ * 验证追加、读取、检查点、段滚动、删除前解除段映射以及重启恢复
+ *
+ * @author xiajuan96
+ */
+public class OutboxJournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("d2k-outbox-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, 4096);
+        journal.append("test-topic", bytes("k1"), bytes("v1"));
+        journal.append("test-topic", null, bytes("v2"));
+
+        List<OutboxRecord> records = journal.read(journal.getCheckpointOffset(), 10);
+
+        assertEquals(2, records.size());
+        assertEquals("test-topic", records.get(0).getTopic());
+        assertEquals("k1", string(records.get(0).getKey()));
+        assertEquals("v1", string(records.get(0).getValue()));
+        assertNull(records.get(1).getKey());
+        assertEquals(records.get(0).getNextOffset(), records.get(1).getOffset());
+        journal.close();
+    }
+
+    @Test
+    public void testCommitAdvancesCheckpoint() throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, 4096);
+        journal.append("test-topic", bytes("k1"), bytes("v1"));
+        journal.append("test-topic", bytes("k2"), bytes("v2"));
+
+        List<OutboxRecord> records = journal.read(journal.getCheckpointOffset(), 1);
+        assertEquals(1, records.size());
+        journal.commit(records.get(0).getNextOffset());
+
+        records = journal.read(journal.getCheckpointOffset(), 10);
+        assertEquals(1, records.size());
+        assertEquals("k2", string(records.get(0).getKey()));
+        assertTrue(journal.hasPending());
+
+        journal.commit(records.get(0).getNextOffset());
+        assertFalse(journal.hasPending());
+        journal.close();
+    }
+
+    @Test
+    public void testSegmentRollAndCleanup() throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, 256);
+        for (int i = 0; i < 20; i++) {
+            journal.append("test-topic", bytes("key-" + i), bytes("value-" + i));
+        }
+        assertTrue("Journal should roll into multiple segments", journal.getSegmentCount() > 1);
+
+        List<OutboxRecord> records = journal.read(journal.getCheckpointOffset(), 100);
+        assertEquals(20, records.size());
+        assertEquals("value-19", string(records.get(19).getValue()));
+
+        journal.commit(records.get(19).getNextOffset());
+        assertEquals("Fully relayed segments should be deleted", 1, journal.getSegmentCount());
+        journal.close();
+    }
+
+    @Test
+    public void testCommittedSegmentsUnmappedBeforeDelete() throws IOException {
+        File maps = new File("/proc/self/maps");
+        Assume.assumeTrue("Requires /proc/self/maps", maps.canRead());
+        Assume.assumeTrue(MappedBufferCleaner.isSupported());
+
+        OutboxJournal journal = new OutboxJournal(directory, 256);
+        for (int i = 0; i < 20; i++) {
+            journal.append("test-topic", bytes("key-" + i), bytes("value-" + i));
+        }
+        int segmentCount = journal.getSegmentCount();
+        assertEquals(segmentCount, mappedSegmentCount(maps));
+
+        List<OutboxRecord> records = journal.read(journal.getCheckpointOffset(), 100);
+        journal.commit(records.get(19).getNextOffset());
+
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals("Deleted segments should no longer be mapped", 1, mappedSegmentCount(maps));
+        journal.close();
+    }
+
+    @Test
+    public void testRecoverUnsentRecordsAfterRestart() throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, 256);
+        for (int i = 0; i < 10; i++) {
+            journal.append("test-topic", bytes("key-" + i), bytes("value-" + i));
+        }
+        List<OutboxRecord> records = journal.read(journal.getCheckpointOffset(), 4);
+        journal.commit(records.get(3).getNextOffset());
+        journal.close();
+
+        OutboxJournal reopened = new OutboxJournal(directory, 256);
+        records = reopened.read(reopened.getCheckpointOffset(), 100);
+        assertEquals(6, records.size());
+        assertEquals("key-4", string(records.get(0).getKey()));
+
+        // 重启后继续追加的记录排在未发送记录之后
+        reopened.append("test-topic", bytes("key-10"), bytes("value-10"));
+        records = reopened.read(reopened.getCheckpointOffset(), 100);
+        assertEquals(7, records.size());
+        assertEquals("key-10", string(records.get(6).getKey()));
+        reopened.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecordLargerThanSegmentRejected() throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, 64);
+        try {
+            journal.append("test-topic", null, new byte[128]);
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private long mappedSegmentCount(File maps) throws IOException {
+        String prefix = directory.getCanonicalPath() + File.separator;
+        return Files.readAllLines(maps.toPath()).stream()
+                .filter(line -> line.contains(prefix) && line.contains(".log"))
+                .map(line -> line.substring(line.indexOf(prefix)))
+                .distinct()
+                .count();
+    }
+}
@@ -0,0 +1,142 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import com.d2k.producer.DelayProducer;
+import org.apache.kafka.common.KafkaException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * DelayProducerPool 测试
+ * 验证按键哈希与轮询的生产者选择以及池级统计（含发送完成回调报告的失败）
+ *
+ * @author xiajuan96
+ */
+public class DelayProducerPoolTest {
+
+    @SuppressWarnings("unchecked")
+    private DelayProducerPool createPool(int size) {
+        List<DelayProducer<byte[], byte[]>> producers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            producers.add(mock(DelayProducer.class));
+        }
+        return new DelayProducerPool(producers);
+    }
+
+    @Test
+    public void testSameKeyAlwaysSelectsSameProducer() {
+        DelayProducerPool pool = createPool(4);
+        byte[] key = "order-1".getBytes(StandardCharsets.UTF_8);
+
+        int index = pool.selectIndex(key);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(index, pool.selectIndex(key));
+        }
+    }
+
+    @Test
+    public void testKeylessSendsRoundRobin() {
+        DelayProducerPool pool = createPool(4);
+
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            indexes.add(pool.selectIndex(null));
+        }
+        assertEquals("Keyless sends should visit every producer", 4, indexes.size());
+    }
+
+    @Test
+    public void testSendDelegatesAndCounts() {
+        DelayProducerPool pool = createPool(2);
+        byte[] key = "k".getBytes(StandardCharsets.UTF_8);
+        byte[] value = "v".getBytes(StandardCharsets.UTF_8);
+
+        pool.send("test-topic", key, value);
+        pool.send("test-topic", null, value);
+
+        DelayProducer<byte[], byte[]> selected = pool.getProducer(key);
+        verify(selected).send(eq("test-topic"), eq(key), eq(value));
+        assertEquals(1, pool.getKeyedSendCount());
+        assertEquals(1, pool.getKeylessSendCount());
+
+        long total = 0;
+        for (long count : pool.getSendCounts()) {
+            total += count;
+        }
+        assertEquals(2, total);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSingleProducerPool() {
+        DelayProducer<byte[], byte[]> producer = mock(DelayProducer.class);
+        DelayProducerPool pool = new DelayProducerPool(producer);
+
+        assertEquals(1, pool.getSize());
+        assertSame(producer, pool.getProducer(null));
+        assertSame(producer, pool.getProducer("k".getBytes(StandardCharsets.UTF_8)));
+        verify(producer, never()).send(any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testErrorCountsIncludeAcknowledgementFailures() {
+        DelayProducer<byte[], byte[]> producer = mock(DelayProducer.class);
+        SendAcknowledgements acks = new SendAcknowledgements();
+        SendAcknowledgementInterceptor interceptor = new SendAcknowledgementInterceptor();
+        interceptor.configure(Collections.singletonMap(SendAcknowledgementInterceptor.ACKNOWLEDGEMENTS_CONFIG, acks));
+        DelayProducerPool pool = new DelayProducerPool(Collections.singletonList(producer),
+                Collections.singletonList(acks));
+        byte[] value = "v".getBytes(StandardCharsets.UTF_8);
+
+        // broker 异步返回的失败
+        pool.send("test-topic", null, value);
+        interceptor.onAcknowledgement(null, new IllegalStateException("expired"));
+        interceptor.onAcknowledgement(null, null);
+        assertEquals(1, pool.getErrorCounts()[0]);
+
+        // KafkaProducer 在发送调用中报告并抛出的失败只计一次
+        KafkaException failure = new KafkaException("closed");
+        when(producer.send(any(), any(), any())).thenAnswer(invocation -> {
+            interceptor.onAcknowledgement(null, failure);
+            throw failure;
+        });
+        try {
+            pool.send("test-topic", null, value);
+            fail("Expected send failure");
+        } catch (KafkaException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(2, pool.getErrorCounts()[0]);
+
+        // DelayProducer 自身抛出、未经过回调的异常
+        doThrow(new IllegalArgumentException("bad topic")).when(producer).send(any(), any(), any());
+        try {
+            pool.send("test-topic", null, value);
+            fail("Expected send failure");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        assertEquals(3, pool.getErrorCounts()[0]);
+        assertEquals(1, acks.getAcknowledgedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPoolRejected() {
+        new DelayProducerPool(new ArrayList<DelayProducer<byte[], byte[]>>());
+    }
+}
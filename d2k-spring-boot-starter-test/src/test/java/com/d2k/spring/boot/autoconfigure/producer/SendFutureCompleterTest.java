@@ -0,0 +1,160 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * SendFutureCompleter 测试
+ * 验证每条消息的完成回调由各自的 Future 驱动，不依赖发送完成回调或轮询
+ *
+ * @author xiajuan96
+ */
+public class SendFutureCompleterTest {
+
+    private final SendFutureCompleter completer = new SendFutureCompleter();
+
+    @After
+    public void tearDown() {
+        completer.close();
+    }
+
+    @Test
+    public void testAlreadyDoneFutureCompletesImmediately() {
+        ManualFuture source = new ManualFuture();
+        source.set(null);
+
+        CompletableFuture<RecordMetadata> result = completer.toCompletableFuture(source);
+
+        assertTrue(result.isDone());
+        assertEquals(0, completer.getPendingCount());
+    }
+
+    @Test
+    public void testPendingFutureCompletesWhenDone() throws Exception {
+        ManualFuture source = new ManualFuture();
+        CompletableFuture<RecordMetadata> result = completer.toCompletableFuture(source);
+        assertFalse(result.isDone());
+        assertEquals(1, completer.getPendingCount());
+
+        source.set(null);
+
+        assertNull(result.get(5, TimeUnit.SECONDS));
+        assertEquals(0, completer.getPendingCount());
+    }
+
+    @Test
+    public void testFailedFuturePropagatesCause() throws Exception {
+        ManualFuture source = new ManualFuture();
+        CompletableFuture<RecordMetadata> result = completer.toCompletableFuture(source);
+
+        IllegalStateException failure = new IllegalStateException("broker unavailable");
+        source.setException(failure);
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testCallbackInvokedOncePerRecord() throws Exception {
+        ManualFuture first = new ManualFuture();
+        ManualFuture second = new ManualFuture();
+        List<String> completed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        completer.whenComplete(first, (metadata, exception) -> {
+            completed.add("first:" + (exception == null ? "ok" : exception.getMessage()));
+            done.countDown();
+        });
+        completer.whenComplete(second, (metadata, exception) -> {
+            completed.add("second:" + (exception == null ? "ok" : exception.getMessage()));
+            done.countDown();
+        });
+
+        second.setException(new IllegalStateException("record too large"));
+        first.set(null);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("first:ok", "second:record too large"), completed);
+        assertEquals(0, completer.getPendingCount());
+    }
+
+    @Test
+    public void testDeferredSendDoesNotBlockOtherRecords() throws Exception {
+        DeferredSendFuture deferred = new DeferredSendFuture();
+        CompletableFuture<RecordMetadata> deferredResult = completer.toCompletableFuture(deferred);
+        ManualFuture direct = new ManualFuture();
+        CompletableFuture<RecordMetadata> directResult = completer.toCompletableFuture(direct);
+
+        direct.set(null);
+        assertNull("Records behind an unresolved deferred send still complete",
+                directResult.get(5, TimeUnit.SECONDS));
+        assertFalse(deferredResult.isDone());
+
+        ManualFuture handedOver = new ManualFuture();
+        deferred.complete(handedOver);
+        handedOver.set(null);
+        assertNull(deferredResult.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancelledDeferredSendCompletes() {
+        DeferredSendFuture source = new DeferredSendFuture();
+        CompletableFuture<RecordMetadata> result = completer.toCompletableFuture(source);
+        assertFalse(result.isDone());
+
+        source.cancel(false);
+
+        assertTrue(result.isCancelled());
+        assertEquals(0, completer.getPendingCount());
+    }
+
+    @Test
+    public void testCloseFailsPendingFutures() throws Exception {
+        CompletableFuture<RecordMetadata> result = completer.toCompletableFuture(new ManualFuture());
+
+        completer.close();
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, completer.getPendingCount());
+    }
+
+    /**
+     * 手动完成的普通 Future，模拟 KafkaProducer 返回的结果
+     */
+    static class ManualFuture extends FutureTask<RecordMetadata> {
+
+        ManualFuture() {
+            super(() -> null);
+        }
+
+        @Override
+        public void set(RecordMetadata metadata) {
+            super.set(metadata);
+        }
+
+        @Override
+        public void setException(Throwable failure) {
+            super.setException(failure);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * TopicRateLimiter 测试
+ * 验证突发配额、拒绝模式、排队模式的匀速发出、未限流主题的直通以及中继使用的非排队配额
+ *
+ * @author xiajuan96
+ */
+public class TopicRateLimiterTest {
+
+    private final AtomicInteger sends = new AtomicInteger();
+    private TopicRateLimiter limiter;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (limiter != null) {
+            limiter.close();
+        }
+    }
+
+    private Future<RecordMetadata> send() {
+        sends.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Test
+    public void testUnlimitedTopicPassesThrough() {
+        limiter = new TopicRateLimiter(Collections.singletonMap("orders", 1.0), 1000L,
+                TopicRateLimiter.OverflowPolicy.REJECT, 0);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.submit("payments", this::send);
+        }
+
+        assertEquals(100, sends.get());
+    }
+
+    @Test
+    public void testRejectAfterBurst() {
+        limiter = new TopicRateLimiter(Collections.singletonMap("orders", 10.0), 500L,
+                TopicRateLimiter.OverflowPolicy.REJECT, 0);
+
+        int rejected = 0;
+        for (int i = 0; i < 20; i++) {
+            try {
+                limiter.submit("orders", this::send);
+            } catch (RejectedExecutionException e) {
+                rejected++;
+            }
+        }
+
+        assertEquals(5, sends.get());
+        assertEquals(15, rejected);
+        assertEquals(5, limiter.getPermittedCount("orders"));
+        assertEquals(15, limiter.getRejectedCount("orders"));
+    }
+
+    @Test
+    public void testQueuedSendsReleasedAtRate() throws Exception {
+        limiter = new TopicRateLimiter(Collections.singletonMap("orders", 100.0), 10L,
+                TopicRateLimiter.OverflowPolicy.QUEUE, 100);
+
+        Future<RecordMetadata> last = null;
+        for (int i = 0; i < 10; i++) {
+            last = limiter.submit("orders", this::send);
+        }
+        assertTrue(limiter.getQueuedCount("orders") > 0);
+
+        last.get(5, TimeUnit.SECONDS);
+        assertEquals(10, sends.get());
+        assertEquals(0, limiter.getQueueDepth("orders"));
+    }
+
+    @Test
+    public void testQueueFullRejects() {
+        limiter = new TopicRateLimiter(Collections.singletonMap("orders", 0.01), 1L,
+                TopicRateLimiter.OverflowPolicy.QUEUE, 2);
+
+        limiter.submit("orders", this::send);
+        limiter.submit("orders", this::send);
+        limiter.submit("orders", this::send);
+        try {
+            limiter.submit("orders", this::send);
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, limiter.getRejectedCount("orders"));
+        }
+    }
+
+    @Test
+    public void testQueuedSendWithoutResultCompletes() throws Exception {
+        limiter = new TopicRateLimiter(Collections.singletonMap("orders", 100.0), 10L,
+                TopicRateLimiter.OverflowPolicy.QUEUE, 100);
+
+        limiter.submit("orders", this::send);
+        Future<RecordMetadata> queued = limiter.submit("orders", () -> {
+            sends.incrementAndGet();
+            return null;
+        });
+
+        assertNull(queued.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.isDone());
+        assertEquals(2, sends.get());
+    }
+
+    @Test
+    public void testTryAcquireDoesNotQueueOrReject() {
+        limiter = new TopicRateLimiter(Collections.singletonMap("orders", 10.0), 100L,
+                TopicRateLimiter.OverflowPolicy.QUEUE, 100);
+
+        assertTrue(limiter.tryAcquire("orders"));
+        assertFalse(limiter.tryAcquire("orders"));
+        assertTrue(limiter.nanosUntilPermit("orders") > 0);
+        assertTrue(limiter.tryAcquire("payments"));
+
+        assertEquals(1, limiter.getPermittedCount("orders"));
+        assertEquals(0, limiter.getQueuedCount("orders"));
+        assertEquals(0, limiter.getRejectedCount("orders"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.d2k.spring.boot.autoconfigure.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JsonD2kSerializer 测试
+ * 验证对象编码、透传规则、ObjectWriter 缓存和缓冲区复用
+ *
+ * @author xiajuan96
+ */
+public class JsonD2kSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testSerializePojoToJsonBytes() throws Exception {
+        JsonD2kSerializer<Object> serializer = new JsonD2kSerializer<>(objectMapper);
+        OrderEvent event = new OrderEvent("order-1", 3);
+
+        byte[] bytes = serializer.serialize("topic", event);
+
+        OrderEvent decoded = objectMapper.readValue(bytes, OrderEvent.class);
+        assertEquals("order-1", decoded.getOrderId());
+        assertEquals(3, decoded.getQuantity());
+    }
+
+    @Test
+    public void testStringAndBytesPassThrough() {
+        JsonD2kSerializer<Object> serializer = new JsonD2kSerializer<>(objectMapper);
+        byte[] raw = new byte[]{1, 2, 3};
+
+        assertNull(serializer.serialize("topic", null));
+        assertSame(raw, serializer.serialize("topic", raw));
+        assertArrayEquals("{\"a\":1}".getBytes(StandardCharsets.UTF_8), serializer.serialize("topic", "{\"a\":1}"));
+    }
+
+    @Test
+    public void testWriterCachedPerType() {
+        JsonD2kSerializer<Object> serializer = new JsonD2kSerializer<>(objectMapper);
+
+        serializer.serialize("topic", new OrderEvent("a", 1));
+        serializer.serialize("topic", new OrderEvent("b", 2));
+        serializer.serialize("topic", Collections.singletonMap("k", "v"));
+
+        assertEquals(2, serializer.getCachedWriterCount());
+    }
+
+    @Test
+    public void testLargePayloadExceedsInitialBuffer() throws Exception {
+        JsonD2kSerializer<Object> serializer = new JsonD2kSerializer<>(objectMapper, 16, 64);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append('x');
+        }
+
+        byte[] large = serializer.serialize("topic", new OrderEvent(sb.toString(), 1));
+        byte[] small = serializer.serialize("topic", new OrderEvent("s", 2));
+
+        assertEquals(sb.toString(), objectMapper.readValue(large, OrderEvent.class).getOrderId());
+        assertEquals("s", objectMapper.readValue(small, OrderEvent.class).getOrderId());
+    }
+
+    @Test
+    public void testConfigureReplacesObjectMapperAndBuffer() {
+        JsonD2kSerializer<Object> serializer = new JsonD2kSerializer<>();
+        ObjectMapper configured = new ObjectMapper();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(JsonD2kSerializer.OBJECT_MAPPER_CONFIG, configured);
+        configs.put(JsonD2kSerializer.BUFFER_SIZE_CONFIG, "256");
+
+        serializer.configure(configs, false);
+
+        assertSame(configured, serializer.getObjectMapper());
+    }
+
+    @Test
+    public void testBufferShrinksAfterReset() {
+        PooledByteArrayOutputStream out = new PooledByteArrayOutputStream(8, 32);
+        out.write(new byte[100], 0, 100);
+        assertEquals(100, out.size());
+
+        out.reset();
+
+        assertEquals(0, out.size());
+        assertEquals(8, out.capacity());
+    }
+
+    public static class OrderEvent {
+        private String orderId;
+        private int quantity;
+
+        public OrderEvent() {
+        }
+
+        public OrderEvent(String orderId, int quantity) {
+            this.orderId = orderId;
+            this.quantity = quantity;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        public void setOrderId(String orderId) {
+            this.orderId = orderId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.producer.SendFutureCompleter;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * ReactiveD2kTemplate 测试
+ * 验证批量发送的未确认消息数上限、结果顺序以及单条失败不终止整个流
+ *
+ * @author xiajuan96
+ */
+public class ReactiveD2kTemplateTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    private final SendFutureCompleter completer = new SendFutureCompleter();
+    private ManualPool pool;
+    private ReactiveD2kTemplate<String, String> template;
+
+    @Before
+    public void setUp() {
+        pool = new ManualPool();
+        template = new ReactiveD2kTemplate<>(new StringD2kTemplate(pool), completer, 3);
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        CompletableFuture<List<D2kSendResult<String, String>>> results = send("v0", "v1", "v2", "v3", "v4");
+
+        assertEquals("Only maxInFlight sends are started", 3, pool.values.size());
+
+        acknowledge(0, null);
+        awaitSends(4);
+        assertEquals(4, pool.values.size());
+
+        acknowledge(1, null);
+        acknowledge(2, null);
+        acknowledge(3, null);
+        awaitSends(5);
+        acknowledge(4, null);
+        assertEquals(5, results.get(5, TimeUnit.SECONDS).size());
+        assertEquals(5, pool.values.size());
+    }
+
+    @Test
+    public void testResultsFollowInputOrder() throws Exception {
+        CompletableFuture<List<D2kSendResult<String, String>>> results = send("v0", "v1", "v2");
+
+        acknowledge(2, null);
+        acknowledge(1, null);
+        assertFalse(results.isDone());
+        acknowledge(0, null);
+
+        List<D2kSendResult<String, String>> list = results.get(5, TimeUnit.SECONDS);
+        assertEquals(3, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals("v" + i, list.get(i).getRecord().getValue());
+            assertTrue(list.get(i).isSuccess());
+        }
+    }
+
+    @Test
+    public void testFailureIsEmittedAsResult() throws Exception {
+        CompletableFuture<List<D2kSendResult<String, String>>> results = send("v0", "v1", "v2");
+
+        IllegalStateException failure = new IllegalStateException("Not leader for partition");
+        acknowledge(0, null);
+        acknowledge(1, failure);
+        acknowledge(2, null);
+
+        List<D2kSendResult<String, String>> list = results.get(5, TimeUnit.SECONDS);
+        assertEquals("A failed send does not terminate the stream", 3, list.size());
+        assertTrue(list.get(0).isSuccess());
+        assertFalse(list.get(1).isSuccess());
+        assertSame(failure, list.get(1).getException());
+        assertTrue(list.get(2).isSuccess());
+    }
+
+    @Test
+    public void testSingleSendPropagatesError() throws Exception {
+        CompletableFuture<RecordMetadata> result = template.send(TOPIC, "k", "v0").toFuture();
+
+        IllegalStateException failure = new IllegalStateException("Not leader for partition");
+        acknowledge(0, failure);
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Send failure should surface through the Mono");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    private CompletableFuture<List<D2kSendResult<String, String>>> send(String... values) {
+        List<D2kSendRecord<String, String>> records = new ArrayList<>();
+        for (String value : values) {
+            records.add(new D2kSendRecord<>(TOPIC, null, value));
+        }
+        return template.send(Flux.fromIterable(records)).collectList().toFuture();
+    }
+
+    @After
+    public void tearDown() {
+        completer.close();
+    }
+
+    /**
+     * 完成第 index 次发送
+     */
+    private void acknowledge(int index, Exception failure) {
+        ManualFuture future = pool.futures.get(index);
+        if (failure == null) {
+            future.set(null);
+        } else {
+            future.setException(failure);
+        }
+    }
+
+    /**
+     * 等待发送次数达到 count，完成回调在转换器的等待线程上执行
+     */
+    private void awaitSends(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (pool.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+    }
+
+    private static class ManualPool extends DelayProducerPool {
+
+        private final List<String> values = new CopyOnWriteArrayList<>();
+        private final List<ManualFuture> futures = new CopyOnWriteArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        ManualPool() {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            ManualFuture future = new ManualFuture();
+            futures.add(future);
+            values.add(new String(value, StandardCharsets.UTF_8));
+            return future;
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * 手动完成的普通 Future，模拟 KafkaProducer 返回的结果
+     */
+    private static class ManualFuture extends FutureTask<RecordMetadata> {
+
+        ManualFuture() {
+            super(() -> null);
+        }
+
+        @Override
+        public void set(RecordMetadata metadata) {
+            super.set(metadata);
+        }
+
+        @Override
+        public void setException(Throwable failure) {
+            super.setException(failure);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * SendDeduplicationCache 测试
+ * 验证窗口内去重、并发首次发送只发一次、失败后重发、窗口过期和容量淘汰
+ *
+ * @author xiajuan96
+ */
+public class SendDeduplicationCacheTest {
+
+    private final AtomicInteger sends = new AtomicInteger();
+
+    private Future<RecordMetadata> send() {
+        sends.incrementAndGet();
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        future.complete(null);
+        return future;
+    }
+
+    @Test
+    public void testDuplicateWithinWindowSuppressed() {
+        SendDeduplicationCache cache = new SendDeduplicationCache(60000L, 100, 4);
+
+        Future<RecordMetadata> first = cache.deduplicate("orders", "evt-1", this::send);
+        Future<RecordMetadata> second = cache.deduplicate("orders", "evt-1", this::send);
+
+        assertSame(first, second);
+        assertEquals(1, sends.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testConcurrentFirstSendsReachBrokerOnce() throws Exception {
+        SendDeduplicationCache cache = new SendDeduplicationCache(60000L, 100, 4);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<RecordMetadata> sent = new CompletableFuture<>();
+        AtomicReference<Future<RecordMetadata>> first = new AtomicReference<>();
+        Thread sender = new Thread(() -> first.set(cache.deduplicate("orders", "evt-1", () -> {
+            sends.incrementAndGet();
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return sent;
+        })));
+        sender.start();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        Future<RecordMetadata> second = cache.deduplicate("orders", "evt-1", this::send);
+        assertFalse("Duplicate waits on the in-flight send", second.isDone());
+
+        release.countDown();
+        sender.join(5000L);
+        sent.complete(null);
+
+        assertSame(first.get(), second);
+        assertNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, sends.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testSendExceptionRemovesPlaceholder() {
+        SendDeduplicationCache cache = new SendDeduplicationCache(60000L, 100, 4);
+
+        try {
+            cache.deduplicate("orders", "evt-1", () -> {
+                throw new IllegalStateException("Producer closed");
+            });
+            fail("Send exception should propagate");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        assertEquals(0, cache.size());
+        cache.deduplicate("orders", "evt-1", this::send);
+        assertEquals(1, sends.get());
+    }
+
+    @Test
+    public void testKeysScopedByTopic() {
+        SendDeduplicationCache cache = new SendDeduplicationCache(60000L, 100, 4);
+
+        cache.deduplicate("orders", "evt-1", this::send);
+        cache.deduplicate("payments", "evt-1", this::send);
+
+        assertEquals(2, sends.get());
+    }
+
+    @Test
+    public void testFailedSendCanBeRetried() {
+        SendDeduplicationCache cache = new SendDeduplicationCache(60000L, 100, 4);
+        CompletableFuture<RecordMetadata> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException("broker down"));
+
+        cache.deduplicate("orders", "evt-1", () -> failed);
+        cache.deduplicate("orders", "evt-1", this::send);
+
+        assertEquals(1, sends.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testEntryExpiresAfterWindow() throws InterruptedException {
+        SendDeduplicationCache cache = new SendDeduplicationCache(20L, 100, 1);
+
+        cache.deduplicate("orders", "evt-1", this::send);
+        Thread.sleep(40L);
+        cache.deduplicate("orders", "evt-1", this::send);
+
+        assertEquals(2, sends.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testOldestEntryEvictedWhenFull() {
+        SendDeduplicationCache cache = new SendDeduplicationCache(60000L, 2, 1);
+
+        cache.deduplicate("orders", "a", this::send);
+        cache.deduplicate("orders", "b", this::send);
+        cache.deduplicate("orders", "c", this::send);
+        cache.deduplicate("orders", "a", this::send);
+
+        assertEquals(4, sends.get());
+        assertTrue(cache.getEvictionCount() >= 1);
+    }
+}
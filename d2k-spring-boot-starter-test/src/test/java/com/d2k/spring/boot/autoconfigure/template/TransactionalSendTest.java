@@ -0,0 +1,292 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 事务同步发送测试
+ * 验证事务内的消息在提交后按顺序发出、回滚时全部丢弃，事务内禁止同步发送，
+ * 以及 REQUIRES_NEW 挂起外层事务时内外层各自缓冲
+ *
+ * @author xiajuan96
+ */
+public class TransactionalSendTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    private RecordingPool pool;
+    private StringD2kTemplate template;
+
+    @Before
+    public void setUp() {
+        pool = new RecordingPool();
+        template = new StringD2kTemplate(pool);
+        template.setTransactionSynchronized(true);
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    public void testSendsAreDeferredUntilCommit() throws Exception {
+        beginTransaction();
+        Future<RecordMetadata> first = template.sendAsync(TOPIC, "k1", "v1");
+        Future<RecordMetadata> second = template.sendAsync(TOPIC, "k2", "v2");
+
+        assertTrue("Nothing is sent before commit", pool.values.isEmpty());
+        assertFalse(first.isDone());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(2, pool.values.size());
+        assertEquals("v1", pool.values.get(0));
+        assertEquals("v2", pool.values.get(1));
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertNull(first.get());
+        assertNull(TransactionSynchronizationManager.getResource(pool));
+    }
+
+    @Test
+    public void testRollbackDiscardsBufferedSends() throws Exception {
+        beginTransaction();
+        Future<RecordMetadata> future = template.sendAsync(TOPIC, "k1", "v1");
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue("Rolled back sends never reach the producer", pool.values.isEmpty());
+        assertTrue(future.isCancelled());
+        try {
+            future.get();
+            fail("Rolled back send should be cancelled");
+        } catch (CancellationException expected) {
+            // expected
+        }
+
+        // 事务结束后恢复直接发送
+        template.sendAsync(TOPIC, "k2", "v2");
+        assertEquals(1, pool.values.size());
+    }
+
+    @Test
+    public void testFailedHandOffFailsOnlyThatSend() throws Exception {
+        beginTransaction();
+        Future<RecordMetadata> failing = template.sendAsync("broken-topic", "k1", "v1");
+        Future<RecordMetadata> ok = template.sendAsync(TOPIC, "k2", "v2");
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        try {
+            failing.get();
+            fail("Send failure should surface through the future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertNull(ok.get());
+        assertEquals(1, pool.values.size());
+    }
+
+    @Test
+    public void testSendSyncRejectedInsideTransaction() {
+        beginTransaction();
+        try {
+            template.sendSync(TOPIC, "k1", "v1");
+            fail("sendSync would block until timeout inside a transaction");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+
+        template.sendSync(TOPIC, "k1", "v1");
+        assertEquals(1, pool.values.size());
+    }
+
+    @Test
+    public void testSendsImmediatelyWhenNotSynchronized() {
+        template.setTransactionSynchronized(false);
+        beginTransaction();
+
+        template.sendAsync(TOPIC, "k1", "v1");
+
+        assertEquals(1, pool.values.size());
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    @Test
+    public void testRequiresNewUsesItsOwnBuffer() {
+        TransactionTemplate outer = new TransactionTemplate(new InMemoryTransactionManager());
+        TransactionTemplate inner = new TransactionTemplate(outer.getTransactionManager());
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        outer.executeWithoutResult(outerStatus -> {
+            template.sendAsync(TOPIC, "k1", "outer-before");
+            inner.executeWithoutResult(innerStatus -> template.sendAsync(TOPIC, "k2", "inner-committed"));
+            assertEquals("Inner transaction sends on its own commit", 1, pool.values.size());
+
+            inner.executeWithoutResult(innerStatus -> {
+                template.sendAsync(TOPIC, "k3", "inner-rolled-back");
+                innerStatus.setRollbackOnly();
+            });
+            template.sendAsync(TOPIC, "k4", "outer-after");
+            assertEquals(1, pool.values.size());
+            outerStatus.setRollbackOnly();
+        });
+
+        assertEquals("Outer rollback discards only the outer sends",
+                Collections.singletonList("inner-committed"), pool.values);
+        assertNull(TransactionSynchronizationManager.getResource(pool));
+    }
+
+    @Test
+    public void testRequiresNewInnerRollbackKeepsOuterSends() {
+        TransactionTemplate outer = new TransactionTemplate(new InMemoryTransactionManager());
+        TransactionTemplate inner = new TransactionTemplate(outer.getTransactionManager());
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        outer.executeWithoutResult(outerStatus -> {
+            template.sendAsync(TOPIC, "k1", "outer-before");
+            inner.executeWithoutResult(innerStatus -> {
+                template.sendAsync(TOPIC, "k2", "inner-rolled-back");
+                innerStatus.setRollbackOnly();
+            });
+            template.sendAsync(TOPIC, "k3", "outer-after");
+        });
+
+        assertEquals(Arrays.asList("outer-before", "outer-after"), pool.values);
+    }
+
+    @Test
+    public void testSynchronizationWithoutTransactionSendsImmediately() {
+        TransactionTemplate supports = new TransactionTemplate(new InMemoryTransactionManager());
+        supports.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+
+        supports.executeWithoutResult(status -> {
+            assertTrue(TransactionSynchronizationManager.isSynchronizationActive());
+            template.sendAsync(TOPIC, "k1", "v1");
+            assertEquals("No actual transaction, nothing to wait for", 1, pool.values.size());
+            template.sendSync(TOPIC, "k2", "v2");
+        });
+
+        assertEquals(2, pool.values.size());
+    }
+
+    private static void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            for (TransactionSynchronization synchronization : synchronizations) {
+                synchronization.afterCommit();
+            }
+        }
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    /**
+     * 只维护事务嵌套关系的事务管理器，挂起和恢复由 AbstractPlatformTransactionManager 驱动事务同步
+     */
+    private static class InMemoryTransactionManager extends AbstractPlatformTransactionManager {
+
+        private final Deque<Object> active = new ArrayDeque<>();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object[]{active.peek()};
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return ((Object[]) transaction)[0] != null;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            active.push(transaction);
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            return active.pop();
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+            active.push(suspendedResources);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            active.pop();
+        }
+    }
+
+    private static class RecordingPool extends DelayProducerPool {
+
+        private final List<String> values = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        RecordingPool() {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            if ("broken-topic".equals(topic)) {
+                throw new IllegalStateException("Producer rejected " + topic);
+            }
+            values.add(new String(value, StandardCharsets.UTF_8));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+import brave.ScopedSpan;
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.ThreadLocalCurrentTraceContext;
+import brave.propagation.TraceContext;
+import com.d2k.consumer.DelayItem;
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.config.D2kAutoConfiguration;
+import com.d2k.spring.boot.autoconfigure.consumer.ListenerInterceptorHandler;
+import com.d2k.spring.boot.autoconfigure.message.D2kConsumerRecord;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageCodec;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.template.StringD2kTemplate;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * BraveTracingBridge 测试
+ * 验证自动配置在存在 Brave Tracing 时创建桥接，发送时写入的链路上下文在监听器中恢复为 CONSUMER span 的父上下文，
+ * 以及没有 Tracing Bean 或 Brave 不在类路径时不创建桥接
+ *
+ * @author xiajuan96
+ */
+public class BraveTracingBridgeTest {
+
+    private static final String TOPIC = "order-timeout";
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(D2kAutoConfiguration.class))
+            .withUserConfiguration(RecordingPoolConfiguration.class)
+            .withPropertyValues(
+                    "d2k.producer.bootstrap-servers=localhost:9092",
+                    "d2k.consumer.bootstrap-servers=localhost:9092",
+                    "d2k.producer.stamp-headers=true");
+
+    @Test
+    public void testTraceContextRestoredInListener() {
+        contextRunner.withUserConfiguration(BraveConfiguration.class).run(context -> {
+            assertThat(context).getBean(D2kTracingBridge.class).isInstanceOf(BraveTracingBridge.class);
+            Tracing tracing = context.getBean(Tracing.class);
+            SpanCollector collector = context.getBean(SpanCollector.class);
+            RecordingPool pool = context.getBean(RecordingPool.class);
+            StringD2kTemplate template = context.getBean(StringD2kTemplate.class);
+
+            ScopedSpan sendSpan = tracing.tracer().startScopedSpan("checkout");
+            TraceContext sendContext = sendSpan.context();
+            try {
+                template.sendAsync(TOPIC, "order-1", "created");
+            } finally {
+                sendSpan.finish();
+            }
+            assertThat(tracing.tracer().currentSpan()).isNull();
+
+            D2kMessage<byte[]> message = D2kMessageCodec.decode(pool.values.get(0));
+            assertThat(message.getHeaders().getTraceParent()).isEqualTo(TraceParent.format(
+                    sendContext.traceIdHigh(), sendContext.traceId(), sendContext.spanId(), true));
+
+            AtomicReference<TraceContext> listenerContext = new AtomicReference<>();
+            ListenerInterceptorHandler<String, String> handler = new ListenerInterceptorHandler<>(
+                    item -> listenerContext.set(tracing.tracer().currentSpan().context()), "orders", null,
+                    Collections.singletonList(context.getBean(TracingListenerInterceptor.class)));
+            handler.process(item(message));
+
+            TraceContext restored = listenerContext.get();
+            assertThat(restored.traceIdHigh()).isEqualTo(sendContext.traceIdHigh());
+            assertThat(restored.traceId()).isEqualTo(sendContext.traceId());
+            assertThat(restored.parentId()).isEqualTo(sendContext.spanId());
+            assertThat(tracing.tracer().currentSpan()).isNull();
+
+            MutableSpan listenerSpan = collector.spans.get(collector.spans.size() - 1);
+            assertThat(listenerSpan.name()).isEqualTo("d2k.listener");
+            assertThat(listenerSpan.kind()).isEqualTo(Span.Kind.CONSUMER);
+            assertThat(listenerSpan.tag("d2k.listener")).isEqualTo("orders");
+            assertThat(listenerSpan.tag("messaging.destination")).isEqualTo(TOPIC);
+            assertThat(listenerSpan.parentId()).isEqualTo(sendContext.spanIdString());
+        });
+    }
+
+    @Test
+    public void testBridgeBacksOffWithoutTracingBean() {
+        contextRunner.run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).doesNotHaveBean(D2kTracingBridge.class);
+            assertThat(context).doesNotHaveBean(TracingListenerInterceptor.class);
+
+            context.getBean(StringD2kTemplate.class).sendAsync(TOPIC, "order-1", "created");
+            RecordingPool pool = context.getBean(RecordingPool.class);
+            assertThat(D2kMessageCodec.decode(pool.values.get(0)).getHeaders().getTraceParent()).isNull();
+        });
+    }
+
+    @Test
+    public void testBridgeBacksOffWithoutBrave() {
+        contextRunner.withClassLoader(new FilteredClassLoader("brave."))
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).doesNotHaveBean(D2kTracingBridge.class);
+                });
+    }
+
+    private static DelayItem<String, String> item(D2kMessage<byte[]> message) {
+        String value = new String(message.getValue(), StandardCharsets.UTF_8);
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(TOPIC, 0, 0L, "order-1", value);
+        return new DelayItem<>(0L, 0L, new D2kConsumerRecord<>(record, value, message.getHeaders()));
+    }
+
+    @Configuration
+    static class BraveConfiguration {
+
+        @Bean
+        SpanCollector spanCollector() {
+            return new SpanCollector();
+        }
+
+        @Bean
+        Tracing tracing(SpanCollector spanCollector) {
+            return Tracing.newBuilder()
+                    .localServiceName("d2k-test")
+                    .currentTraceContext(ThreadLocalCurrentTraceContext.create())
+                    .addSpanHandler(spanCollector)
+                    .build();
+        }
+    }
+
+    @Configuration
+    static class RecordingPoolConfiguration {
+
+        @Bean
+        RecordingPool d2kDelayProducerPool() {
+            return new RecordingPool();
+        }
+    }
+
+    static class SpanCollector extends SpanHandler {
+
+        private final List<MutableSpan> spans = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+            spans.add(span);
+            return true;
+        }
+    }
+
+    static class RecordingPool extends DelayProducerPool {
+
+        private final List<byte[]> values = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        RecordingPool() {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            values.add(value);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerContext;
+import com.d2k.spring.boot.autoconfigure.consumer.ListenerInterceptorHandler;
+import com.d2k.spring.boot.autoconfigure.message.D2kConsumerRecord;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageCodec;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.template.StringD2kTemplate;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 链路上下文传递测试
+ * 验证 traceparent 的生成与解析、发送端按主题采样且未采样时不查询当前链路，以及消费端只恢复已采样的链路
+ *
+ * @author xiajuan96
+ */
+public class TraceContextPropagationTest {
+
+    private static final String TOPIC = "order-timeout";
+    private static final String AUDIT_TOPIC = "audit-log";
+    private static final String SAMPLED = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    public void testTraceParentFormatAndParse() {
+        assertTrue(TraceParent.isSampled(SAMPLED));
+        assertEquals(0x4bf92f3577b34da6L, TraceParent.getTraceIdHigh(SAMPLED));
+        assertEquals(0xa3ce929d0e0e4736L, TraceParent.getTraceIdLow(SAMPLED));
+        assertEquals(0x00f067aa0ba902b7L, TraceParent.getParentId(SAMPLED));
+        assertEquals(SAMPLED, TraceParent.format(0x4bf92f3577b34da6L, 0xa3ce929d0e0e4736L, 0x00f067aa0ba902b7L, true));
+
+        assertFalse(TraceParent.isSampled(SAMPLED.substring(0, 53) + "00"));
+        assertTrue(TraceParent.isValid(SAMPLED.substring(0, 53) + "00"));
+        assertFalse(TraceParent.isSampled(null));
+        assertFalse(TraceParent.isSampled("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertFalse(TraceParent.isSampled("00-4bf92f3577b34da6a3ce929d0e0e473G-00f067aa0ba902b7-01"));
+    }
+
+    @Test
+    public void testTemplateSamplesPerTopicWithoutQueryingUnsampled() {
+        RecordingPool pool = new RecordingPool();
+        StringD2kTemplate template = new StringD2kTemplate(pool);
+        template.setStampHeaders(true);
+        AtomicInteger lookups = new AtomicInteger();
+        template.setTraceParentSupplier(() -> {
+            lookups.incrementAndGet();
+            return SAMPLED;
+        });
+        D2kTraceSampler sampler = new D2kTraceSampler(1.0, Collections.singletonMap(AUDIT_TOPIC, 0.0));
+        template.setTraceSampler(sampler::isSampled);
+
+        template.sendAsync(TOPIC, "k1", "v1");
+        template.sendAsync(AUDIT_TOPIC, "k2", "v2");
+
+        assertEquals(1, lookups.get());
+        assertEquals(SAMPLED, D2kMessageCodec.decode(pool.values.get(0)).getHeaders().getTraceParent());
+        assertNull(D2kMessageCodec.decode(pool.values.get(1)).getHeaders().getTraceParent());
+        assertFalse(sampler.isEnabled(AUDIT_TOPIC));
+    }
+
+    @Test
+    public void testInterceptorRestoresSampledParentOnly() {
+        RecordingBridge bridge = new RecordingBridge();
+        D2kTraceSampler sampler = new D2kTraceSampler(1.0, Collections.singletonMap(AUDIT_TOPIC, 0.0));
+        IllegalStateException failure = new IllegalStateException("boom");
+        ListenerInterceptorHandler<String, String> handler = new ListenerInterceptorHandler<>(item -> {
+            if ("fail".equals(item.getRecord().value())) {
+                throw failure;
+            }
+        }, "orders", null, Collections.singletonList(new TracingListenerInterceptor(bridge, sampler)));
+
+        handler.process(item(TOPIC, "ok", SAMPLED));
+        try {
+            handler.process(item(TOPIC, "fail", SAMPLED));
+            fail("Expected listener failure");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(2, bridge.started.size());
+        assertEquals(SAMPLED, bridge.started.get(0));
+        assertEquals(2, bridge.finished.size());
+        assertNull(bridge.finished.get(0));
+        assertSame(failure, bridge.finished.get(1));
+
+        // 未采样、没有链路上下文或主题采样率为 0 时不调用追踪库
+        handler.process(item(TOPIC, "ok", SAMPLED.substring(0, 53) + "00"));
+        handler.process(item(TOPIC, "ok", null));
+        handler.process(item(AUDIT_TOPIC, "ok", SAMPLED));
+        assertEquals(2, bridge.started.size());
+        assertEquals(2, bridge.finished.size());
+    }
+
+    private static DelayItem<String, String> item(String topic, String value, String traceParent) {
+        D2kMessageHeaders headers = new D2kMessageHeaders("id", false, 0L, 0L, "test", traceParent);
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(topic, 0, 0L, "key", value);
+        return new DelayItem<>(0L, 0L, new D2kConsumerRecord<>(record, value, headers));
+    }
+
+    private static class RecordingBridge implements D2kTracingBridge {
+
+        private final List<String> started = new ArrayList<>();
+        private final List<Throwable> finished = new ArrayList<>();
+
+        @Override
+        public String currentTraceParent() {
+            return null;
+        }
+
+        @Override
+        public Object startListenerSpan(String traceParent, D2kListenerContext context) {
+            assertEquals("orders", context.getListenerId());
+            started.add(traceParent);
+            return traceParent;
+        }
+
+        @Override
+        public void finishListenerSpan(Object span, Throwable error) {
+            finished.add(error);
+        }
+    }
+
+    private static class RecordingPool extends DelayProducerPool {
+
+        private final List<byte[]> values = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        RecordingPool() {
+            super((DelayProducer<byte[], byte[]>) mock(DelayProducer.class));
+        }
+
+        @Override
+        public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+            values.add(value);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package com.d2k.spring.boot.autoconfigure;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +17,9 @@ public class D2kProperties {
 
     private Producer producer = new Producer();
     private Consumer consumer = new Consumer();
+    private ClaimCheck claimCheck = new ClaimCheck();
+    private Ladder ladder = new Ladder();
+    private Tracing tracing = new Tracing();
 
     public Producer getProducer() {
         return producer;
@@ -31,6 +37,30 @@ public class D2kProperties {
         this.consumer = consumer;
     }
 
+    public ClaimCheck getClaimCheck() {
+        return claimCheck;
+    }
+
+    public void setClaimCheck(ClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    public Ladder getLadder() {
+        return ladder;
+    }
+
+    public void setLadder(Ladder ladder) {
+        this.ladder = ladder;
+    }
+
+    public Tracing getTracing() {
+        return tracing;
+    }
+
+    public void setTracing(Tracing tracing) {
+        this.tracing = tracing;
+    }
+
     /**
      * 生产者配置
      */
@@ -44,6 +74,47 @@ public class D2kProperties {
         private long bufferMemory = 33554432L;
         private Map<String, Long> topicDelays = new HashMap<>();
 
+        // 生产者池大小，所有模板共享；大于 1 时有键消息按键哈希、无键消息轮询选择生产者
+        private int poolSize = 1;
+
+        // 是否与 Spring 事务同步：事务内发送的消息在提交后统一发送，回滚时丢弃
+        private boolean transactionSynchronized = false;
+
+        // 本地 Outbox 配置：消息先写入本地内存映射日志，再由后台中继批量发送
+        private boolean outboxEnabled = false;
+        private String outboxDirectory = "d2k-outbox";
+        private int outboxSegmentSize = 64 * 1024 * 1024;
+        private long outboxFsyncIntervalMs = 10L;
+        private int outboxRelayBatchSize = 500;
+        private long outboxSendTimeoutMs = 30000L;
+
+        // 响应式模板配置：批量发送时最多未确认的消息数
+        private int reactiveMaxInFlight = 256;
+
+        // 发送去重：sendIdempotent 的去重窗口（毫秒）、最多保留的幂等键数量和分段数
+        private boolean dedupeEnabled = false;
+        private long dedupeWindowMs = 60000L;
+        private int dedupeMaxEntries = 100000;
+        private int dedupeStripes = 16;
+
+        // 按主题限流：每秒发送数、突发配额（毫秒）、溢出策略（QUEUE 排队匀速发出 / REJECT 直接拒绝）和每个主题的队列容量
+        private boolean rateLimitEnabled = false;
+        private Map<String, Double> topicRateLimits = new HashMap<>();
+        private long rateLimitBurstMs = 1000L;
+        private String rateLimitOverflowPolicy = "QUEUE";
+        private int rateLimitQueueCapacity = 10000;
+
+        // 模板序列化输出缓冲区：每个线程复用的初始大小，以及超过后释放的保留上限（字节）
+        private int serializationBufferSize = 4096;
+        private int serializationBufferMaxRetained = 1024 * 1024;
+
+        // 标准元数据：为每条消息写入消息 ID、发送时间、预期到期时间、来源和链路上下文；来源默认取 spring.application.name
+        // 会改变消息值的格式，默认关闭，所有消费端升级到能识别信封的版本后再开启
+        private boolean stampHeaders = false;
+        private String origin;
+        // 发送指标：延迟分布的分位数统计窗口（毫秒）
+        private long metricsWindowMs = 60000L;
+
         public String getBootstrapServers() {
             return bootstrapServers;
         }
@@ -107,6 +178,190 @@ public class D2kProperties {
         public void setTopicDelays(Map<String, Long> topicDelays) {
             this.topicDelays = topicDelays;
         }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public boolean isTransactionSynchronized() {
+            return transactionSynchronized;
+        }
+
+        public void setTransactionSynchronized(boolean transactionSynchronized) {
+            this.transactionSynchronized = transactionSynchronized;
+        }
+
+        public boolean isOutboxEnabled() {
+            return outboxEnabled;
+        }
+
+        public void setOutboxEnabled(boolean outboxEnabled) {
+            this.outboxEnabled = outboxEnabled;
+        }
+
+        public String getOutboxDirectory() {
+            return outboxDirectory;
+        }
+
+        public void setOutboxDirectory(String outboxDirectory) {
+            this.outboxDirectory = outboxDirectory;
+        }
+
+        public int getOutboxSegmentSize() {
+            return outboxSegmentSize;
+        }
+
+        public void setOutboxSegmentSize(int outboxSegmentSize) {
+            this.outboxSegmentSize = outboxSegmentSize;
+        }
+
+        public long getOutboxFsyncIntervalMs() {
+            return outboxFsyncIntervalMs;
+        }
+
+        public void setOutboxFsyncIntervalMs(long outboxFsyncIntervalMs) {
+            this.outboxFsyncIntervalMs = outboxFsyncIntervalMs;
+        }
+
+        public int getOutboxRelayBatchSize() {
+            return outboxRelayBatchSize;
+        }
+
+        public void setOutboxRelayBatchSize(int outboxRelayBatchSize) {
+            this.outboxRelayBatchSize = outboxRelayBatchSize;
+        }
+
+        public long getOutboxSendTimeoutMs() {
+            return outboxSendTimeoutMs;
+        }
+
+        public void setOutboxSendTimeoutMs(long outboxSendTimeoutMs) {
+            this.outboxSendTimeoutMs = outboxSendTimeoutMs;
+        }
+
+        public int getReactiveMaxInFlight() {
+            return reactiveMaxInFlight;
+        }
+
+        public void setReactiveMaxInFlight(int reactiveMaxInFlight) {
+            this.reactiveMaxInFlight = reactiveMaxInFlight;
+        }
+
+        public boolean isDedupeEnabled() {
+            return dedupeEnabled;
+        }
+
+        public void setDedupeEnabled(boolean dedupeEnabled) {
+            this.dedupeEnabled = dedupeEnabled;
+        }
+
+        public long getDedupeWindowMs() {
+            return dedupeWindowMs;
+        }
+
+        public void setDedupeWindowMs(long dedupeWindowMs) {
+            this.dedupeWindowMs = dedupeWindowMs;
+        }
+
+        public int getDedupeMaxEntries() {
+            return dedupeMaxEntries;
+        }
+
+        public void setDedupeMaxEntries(int dedupeMaxEntries) {
+            this.dedupeMaxEntries = dedupeMaxEntries;
+        }
+
+        public int getDedupeStripes() {
+            return dedupeStripes;
+        }
+
+        public void setDedupeStripes(int dedupeStripes) {
+            this.dedupeStripes = dedupeStripes;
+        }
+
+        public boolean isRateLimitEnabled() {
+            return rateLimitEnabled;
+        }
+
+        public void setRateLimitEnabled(boolean rateLimitEnabled) {
+            this.rateLimitEnabled = rateLimitEnabled;
+        }
+
+        public Map<String, Double> getTopicRateLimits() {
+            return topicRateLimits;
+        }
+
+        public void setTopicRateLimits(Map<String, Double> topicRateLimits) {
+            this.topicRateLimits = topicRateLimits;
+        }
+
+        public long getRateLimitBurstMs() {
+            return rateLimitBurstMs;
+        }
+
+        public void setRateLimitBurstMs(long rateLimitBurstMs) {
+            this.rateLimitBurstMs = rateLimitBurstMs;
+        }
+
+        public String getRateLimitOverflowPolicy() {
+            return rateLimitOverflowPolicy;
+        }
+
+        public void setRateLimitOverflowPolicy(String rateLimitOverflowPolicy) {
+            this.rateLimitOverflowPolicy = rateLimitOverflowPolicy;
+        }
+
+        public int getRateLimitQueueCapacity() {
+            return rateLimitQueueCapacity;
+        }
+
+        public void setRateLimitQueueCapacity(int rateLimitQueueCapacity) {
+            this.rateLimitQueueCapacity = rateLimitQueueCapacity;
+        }
+
+        public int getSerializationBufferSize() {
+            return serializationBufferSize;
+        }
+
+        public void setSerializationBufferSize(int serializationBufferSize) {
+            this.serializationBufferSize = serializationBufferSize;
+        }
+
+        public int getSerializationBufferMaxRetained() {
+            return serializationBufferMaxRetained;
+        }
+
+        public void setSerializationBufferMaxRetained(int serializationBufferMaxRetained) {
+            this.serializationBufferMaxRetained = serializationBufferMaxRetained;
+        }
+
+        public boolean isStampHeaders() {
+            return stampHeaders;
+        }
+
+        public void setStampHeaders(boolean stampHeaders) {
+            this.stampHeaders = stampHeaders;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public void setOrigin(String origin) {
+            this.origin = origin;
+        }
+
+        public long getMetricsWindowMs() {
+            return metricsWindowMs;
+        }
+
+        public void setMetricsWindowMs(long metricsWindowMs) {
+            this.metricsWindowMs = metricsWindowMs;
+        }
     }
 
     /**
@@ -134,6 +389,35 @@ public class D2kProperties {
         private int asyncQueueCapacity = 100;
         private String asyncRejectedExecutionPolicy = "CALLER_RUNS";
 
+        // 取消索引：每个分区最多保留的已取消消息 ID 数量
+        private int cancellationIndexSize = 10000;
+
+        // 按键合并索引：开启 coalesce 的监听器每个分区最多跟踪的键数量
+        private int coalescingIndexSize = 100000;
+
+        // 落盘读回时间轮：tick 时长（毫秒）决定调度精度，每层槽数决定单层覆盖的时间范围
+        private long timerTickMs = 1L;
+        private int timerWheelSize = 512;
+
+        // 落盘：容器堆内未到期消息超过预算后，距到期超过预读时间的消息写入内存映射段文件，到期前按时间窗口读回
+        private boolean spillEnabled = false;
+        private String spillDirectory = "d2k-spill";
+        private int spillHeapBudget = 100000;
+        private long spillLookaheadMs = 60000L;
+        private long spillWindowMs = 60000L;
+        private int spillSegmentSize = 8 * 1024 * 1024;
+        // 落盘时只记录 offset 和到期时间，读回时从 Kafka 重新拉取消息，要求主题保留时间大于最长延迟
+        private boolean spillRefetch = false;
+        // 到期延迟：分位数统计窗口（毫秒）
+        private long latenessWindowMs = 60000L;
+        // 固定拉取等待：按订阅主题的最短延迟放宽 fetch.max.wait.ms（最短延迟的一半，不超过上限），新数据到达时 Broker 仍立即返回；
+        // 创建容器时计算一次的固定值，不是按下一次到期时间自适应的空闲拉取
+        private boolean fixedFetchWaitEnabled = false;
+        private int fixedFetchWaitMaxMs = 5000;
+        // 到期预测：未到期消息按到期时间划入固定宽度（毫秒）的桶计数，按各时间范围（毫秒）统计即将到期的消息数
+        private long dueForecastBucketMs = 10000L;
+        private List<Long> dueForecastHorizonsMs = new ArrayList<>(Arrays.asList(60000L, 300000L, 3600000L, 86400000L));
+
         public String getBootstrapServers() {
             return bootstrapServers;
         }
@@ -277,5 +561,250 @@ public class D2kProperties {
         public void setAsyncRejectedExecutionPolicy(String asyncRejectedExecutionPolicy) {
             this.asyncRejectedExecutionPolicy = asyncRejectedExecutionPolicy;
         }
+
+        public int getCancellationIndexSize() {
+            return cancellationIndexSize;
+        }
+
+        public void setCancellationIndexSize(int cancellationIndexSize) {
+            this.cancellationIndexSize = cancellationIndexSize;
+        }
+
+        public int getCoalescingIndexSize() {
+            return coalescingIndexSize;
+        }
+
+        public void setCoalescingIndexSize(int coalescingIndexSize) {
+            this.coalescingIndexSize = coalescingIndexSize;
+        }
+
+        public long getTimerTickMs() {
+            return timerTickMs;
+        }
+
+        public void setTimerTickMs(long timerTickMs) {
+            this.timerTickMs = timerTickMs;
+        }
+
+        public int getTimerWheelSize() {
+            return timerWheelSize;
+        }
+
+        public void setTimerWheelSize(int timerWheelSize) {
+            this.timerWheelSize = timerWheelSize;
+        }
+
+        public boolean isSpillEnabled() {
+            return spillEnabled;
+        }
+
+        public void setSpillEnabled(boolean spillEnabled) {
+            this.spillEnabled = spillEnabled;
+        }
+
+        public String getSpillDirectory() {
+            return spillDirectory;
+        }
+
+        public void setSpillDirectory(String spillDirectory) {
+            this.spillDirectory = spillDirectory;
+        }
+
+        public int getSpillHeapBudget() {
+            return spillHeapBudget;
+        }
+
+        public void setSpillHeapBudget(int spillHeapBudget) {
+            this.spillHeapBudget = spillHeapBudget;
+        }
+
+        public long getSpillLookaheadMs() {
+            return spillLookaheadMs;
+        }
+
+        public void setSpillLookaheadMs(long spillLookaheadMs) {
+            this.spillLookaheadMs = spillLookaheadMs;
+        }
+
+        public long getSpillWindowMs() {
+            return spillWindowMs;
+        }
+
+        public void setSpillWindowMs(long spillWindowMs) {
+            this.spillWindowMs = spillWindowMs;
+        }
+
+        public int getSpillSegmentSize() {
+            return spillSegmentSize;
+        }
+
+        public void setSpillSegmentSize(int spillSegmentSize) {
+            this.spillSegmentSize = spillSegmentSize;
+        }
+
+        public boolean isSpillRefetch() {
+            return spillRefetch;
+        }
+
+        public void setSpillRefetch(boolean spillRefetch) {
+            this.spillRefetch = spillRefetch;
+        }
+
+        public long getLatenessWindowMs() {
+            return latenessWindowMs;
+        }
+
+        public void setLatenessWindowMs(long latenessWindowMs) {
+            this.latenessWindowMs = latenessWindowMs;
+        }
+
+        public boolean isFixedFetchWaitEnabled() {
+            return fixedFetchWaitEnabled;
+        }
+
+        public void setFixedFetchWaitEnabled(boolean fixedFetchWaitEnabled) {
+            this.fixedFetchWaitEnabled = fixedFetchWaitEnabled;
+        }
+
+        public int getFixedFetchWaitMaxMs() {
+            return fixedFetchWaitMaxMs;
+        }
+
+        public void setFixedFetchWaitMaxMs(int fixedFetchWaitMaxMs) {
+            this.fixedFetchWaitMaxMs = fixedFetchWaitMaxMs;
+        }
+
+        public long getDueForecastBucketMs() {
+            return dueForecastBucketMs;
+        }
+
+        public void setDueForecastBucketMs(long dueForecastBucketMs) {
+            this.dueForecastBucketMs = dueForecastBucketMs;
+        }
+
+        public List<Long> getDueForecastHorizonsMs() {
+            return dueForecastHorizonsMs;
+        }
+
+        public void setDueForecastHorizonsMs(List<Long> dueForecastHorizonsMs) {
+            this.dueForecastHorizonsMs = dueForecastHorizonsMs;
+        }
+    }
+
+    /**
+     * Claim Check 配置
+     * 生产端和消费端共用：超过阈值的消息值写入外部存储，Kafka 中只发送引用
+     */
+    public static class ClaimCheck {
+        private boolean enabled = false;
+        // 超过该大小（字节）的消息值写入外部存储
+        private int threshold = 64 * 1024;
+        // 本地文件系统存储的目录和保留时间，保留时间应大于最长的主题延迟加上可能的消费积压时间
+        private String directory = "d2k-claim-check";
+        private long retentionMs = 7 * 24 * 60 * 60 * 1000L;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getRetentionMs() {
+            return retentionMs;
+        }
+
+        public void setRetentionMs(long retentionMs) {
+            this.retentionMs = retentionMs;
+        }
+    }
+
+    /**
+     * 延迟阶梯配置
+     * 生产端和消费端共用：逻辑主题映射为一组固定延迟的梯级主题，支持按条指定任意延迟
+     */
+    public static class Ladder {
+        private boolean enabled = false;
+        // 逻辑主题到各梯级延迟（毫秒）的映射，梯级主题名为 <逻辑主题>-delay-<延迟>ms，需预先创建且分区数相同
+        private Map<String, List<Long>> topics = new HashMap<>();
+        // 消费端转发到下一梯级时等待一批发送确认的超时时间（毫秒）
+        private long forwardTimeoutMs = 30000L;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<String, List<Long>> getTopics() {
+            return topics;
+        }
+
+        public void setTopics(Map<String, List<Long>> topics) {
+            this.topics = topics;
+        }
+
+        public long getForwardTimeoutMs() {
+            return forwardTimeoutMs;
+        }
+
+        public void setForwardTimeoutMs(long forwardTimeoutMs) {
+            this.forwardTimeoutMs = forwardTimeoutMs;
+        }
+    }
+
+    /**
+     * 链路追踪配置
+     * 生产端和消费端共用：存在链路追踪桥接时，发送端在消息元数据中写入 W3C traceparent，消费端调用监听器时恢复
+     */
+    public static class Tracing {
+        private boolean enabled = true;
+        // 发送端未单独配置的主题的采样率（0 到 1），未采样的消息不写入链路上下文
+        private double sampleRate = 1.0;
+        // 各主题的采样率，消费端不恢复采样率为 0 的主题的链路
+        private Map<String, Double> topicSampleRates = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Map<String, Double> getTopicSampleRates() {
+            return topicSampleRates;
+        }
+
+        public void setTopicSampleRates(Map<String, Double> topicSampleRates) {
+            this.topicSampleRates = topicSampleRates;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+package com.d2k.spring.boot.autoconfigure.actuate;
+
+import com.d2k.spring.boot.autoconfigure.consumer.DelayContainerState;
+import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * D2K 管理端点（/actuator/d2k）
+ * 按容器报告运行和暂停状态、正在处理的消息数，以及各分区的分配情况、消费延迟、等待中的消息数、
+ * 下一次到期时间、最近拉取和投递的 offset 与最近提交，以及各主题和分区的到期预测；写操作支持 pause / resume / start / stop
+ *
+ * @author xiajuan96
+ */
+@Endpoint(id = "d2k")
+public class D2kEndpoint {
+
+    private final D2kConsumerManager consumerManager;
+
+    public D2kEndpoint(D2kConsumerManager consumerManager) {
+        this.consumerManager = consumerManager;
+    }
+
+    /**
+     * 所有容器的状态
+     */
+    @ReadOperation
+    public Map<String, ContainerDescriptor> containers() {
+        Map<String, ContainerDescriptor> containers = new TreeMap<>();
+        for (String name : consumerManager.getContainerNames()) {
+            containers.put(name, describe(name));
+        }
+        return containers;
+    }
+
+    /**
+     * 单个容器的状态，容器不存在时返回 null（404）
+     */
+    @ReadOperation
+    public ContainerDescriptor container(@Selector String name) {
+        return consumerManager.getContainer(name) == null ? null : describe(name);
+    }
+
+    /**
+     * 对容器执行操作
+     *
+     * @param name   容器名称
+     * @param action pause / resume / start / stop
+     * @return 操作后的容器状态，容器不存在时返回 null（404）
+     * @throws IllegalArgumentException 如果操作不受支持
+     */
+    @WriteOperation
+    public ContainerDescriptor operate(@Selector String name, String action) {
+        if (consumerManager.getContainer(name) == null) {
+            return null;
+        }
+        switch (action == null ? "" : action.toLowerCase()) {
+            case "pause":
+                consumerManager.pauseContainer(name);
+                break;
+            case "resume":
+                consumerManager.resumeContainer(name);
+                break;
+            case "start":
+                consumerManager.startContainer(name);
+                break;
+            case "stop":
+                consumerManager.stopContainer(name);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported action '" + action
+                        + "', expected one of pause, resume, start, stop");
+        }
+        return describe(name);
+    }
+
+    private ContainerDescriptor describe(String name) {
+        return new ContainerDescriptor(name, consumerManager.getContainerState(name));
+    }
+
+    /**
+     * 容器状态，不是由容器工厂创建的容器只有名称
+     */
+    public static final class ContainerDescriptor {
+
+        private final String name;
+        private final Boolean running;
+        private final Boolean paused;
+        private final Integer inFlightCount;
+        private final Long pendingCount;
+        private final Long nextDueTime;
+        private final Long lastCommitTime;
+        private final Map<String, Map<String, Long>> dueForecast;
+        private final List<DelayContainerState.PartitionSnapshot> partitions;
+
+        private ContainerDescriptor(String name, DelayContainerState state) {
+            this.name = name;
+            if (state == null) {
+                this.running = null;
+                this.paused = null;
+                this.inFlightCount = null;
+                this.pendingCount = null;
+                this.nextDueTime = null;
+                this.lastCommitTime = null;
+                this.dueForecast = Collections.emptyMap();
+                this.partitions = Collections.emptyList();
+                return;
+            }
+            this.running = state.isRunning();
+            this.paused = state.isPaused();
+            this.inFlightCount = state.getInFlightCount();
+            this.dueForecast = state.getDueForecast();
+            this.partitions = state.getPartitions();
+            long pending = 0;
+            Long nextDue = null;
+            Long lastCommit = null;
+            for (DelayContainerState.PartitionSnapshot partition : partitions) {
+                pending += partition.getPendingCount();
+                if (partition.getNextDueTime() != null
+                        && (nextDue == null || partition.getNextDueTime() < nextDue)) {
+                    nextDue = partition.getNextDueTime();
+                }
+                if (partition.getLastCommitTime() != null
+                        && (lastCommit == null || partition.getLastCommitTime() > lastCommit)) {
+                    lastCommit = partition.getLastCommitTime();
+                }
+            }
+            this.pendingCount = pending;
+            this.nextDueTime = nextDue;
+            this.lastCommitTime = lastCommit;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Boolean getRunning() {
+            return running;
+        }
+
+        public Boolean getPaused() {
+            return paused;
+        }
+
+        /**
+         * 正在处理（包括暂停时等待）的到期消息数
+         */
+        public Integer getInFlightCount() {
+            return inFlightCount;
+        }
+
+        /**
+         * 容器堆内已拉取尚未到期的消息数
+         */
+        public Long getPendingCount() {
+            return pendingCount;
+        }
+
+        /**
+         * 所有分区中最早的下一次到期时间（毫秒时间戳）
+         */
+        public Long getNextDueTime() {
+            return nextDueTime;
+        }
+
+        /**
+         * 最近一次提交的时间（毫秒时间戳）
+         */
+        public Long getLastCommitTime() {
+            return lastCommitTime;
+        }
+
+        /**
+         * 各主题在各预测时间范围内将要到期（包括已逾期）的消息数，包括落盘尚未读回的消息
+         */
+        public Map<String, Map<String, Long>> getDueForecast() {
+            return dueForecast;
+        }
+
+        public List<DelayContainerState.PartitionSnapshot> getPartitions() {
+            return partitions;
+        }
+    }
+}
@@ -77,6 +77,24 @@ public @interface D2kListener {
      */
     int asyncQueueCapacity() default 100;
 
+    /**
+     * 是否按键合并
+     * 同一个键有多条未到期的消息时只投递最新的一条，较早的消息到期后直接丢弃
+     */
+    boolean coalesce() default false;
+
+    /**
+     * 每秒最多释放给监听器的到期消息数
+     * 大量消息同时到期时按该速率分散处理，0 表示不限速
+     */
+    double releaseRate() default 0;
+
+    /**
+     * 到期消息的随机抖动窗口（毫秒）
+     * 每条消息在到期后额外延迟 [0, releaseJitterMs) 内的随机时间，0 表示不抖动
+     */
+    long releaseJitterMs() default 0L;
+
     /**
      * 是否自动启动
      */
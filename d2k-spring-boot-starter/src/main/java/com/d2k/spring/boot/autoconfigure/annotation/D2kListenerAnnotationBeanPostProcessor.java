@@ -5,22 +5,30 @@ import com.d2k.consumer.DelayItemHandler;
 import com.d2k.consumer.DelayItem;
 import com.d2k.consumer.AsyncProcessingConfig;
 import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerInterceptor;
+import com.d2k.spring.boot.autoconfigure.consumer.ListenerInterceptorHandler;
 import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
+import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerOptions;
 import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.StringUtils;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 /**
  * D2K 监听器注解处理器
- * 处理 @D2kListener 注解，自动创建和配置消费者容器
+ * 处理 @D2kListener 注解，自动创建和配置消费者容器；容器中声明的 {@link D2kListenerInterceptor} 直接串在监听器方法调用外
  */
 public class D2kListenerAnnotationBeanPostProcessor implements BeanPostProcessor, BeanFactoryAware {
 
@@ -28,6 +36,7 @@ public class D2kListenerAnnotationBeanPostProcessor implements BeanPostProcessor
     private D2kConsumerManager consumerManager;
     private D2kProperties d2kProperties;
     private DelayConsumerContainerFactory containerFactory;
+    private ObjectProvider<D2kListenerInterceptor> interceptors;
 
     @Override
     public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
@@ -35,6 +44,7 @@ public class D2kListenerAnnotationBeanPostProcessor implements BeanPostProcessor
         this.consumerManager = beanFactory.getBean(D2kConsumerManager.class);
         this.d2kProperties = beanFactory.getBean(D2kProperties.class);
         this.containerFactory = beanFactory.getBean(DelayConsumerContainerFactory.class);
+        this.interceptors = beanFactory.getBeanProvider(D2kListenerInterceptor.class);
     }
 
     @Override
@@ -56,41 +66,73 @@ public class D2kListenerAnnotationBeanPostProcessor implements BeanPostProcessor
         // 验证方法签名
         validateListenerMethod(method);
 
-        // 创建消息处理器
+        // 生成容器名称，同时作为监听器标识
+        String containerName = generateContainerName(bean.getClass(), method, annotation);
+
+        // 创建消息处理器，有拦截器时直接串在方法调用外
         DelayItemHandler<Object, Object> messageHandler = createMessageHandler(bean, method);
+        List<D2kListenerInterceptor> listenerInterceptors = getInterceptors();
+        if (!listenerInterceptors.isEmpty()) {
+            messageHandler = new ListenerInterceptorHandler<>(messageHandler, containerName, method,
+                    listenerInterceptors);
+        }
 
         // 使用工厂创建消费者容器，传递注解中的并发配置和异步处理配置
         java.util.Collection<String> topics = java.util.Collections.singletonList(annotation.topic());
         
         // 根据注解配置创建异步处理配置
         AsyncProcessingConfig asyncConfig = createAsyncProcessingConfig(annotation);
-        
+
+        DelayConsumerContainerOptions options = new DelayConsumerContainerOptions();
+        options.setListenerId(containerName);
+        options.setCoalesce(annotation.coalesce());
+        options.setReleaseRate(annotation.releaseRate());
+        options.setReleaseJitterMs(annotation.releaseJitterMs());
+
         DelayConsumerContainer<Object, Object> container = containerFactory.createContainer(
-                topics, messageHandler, annotation.concurrency(), asyncConfig);
+                topics, messageHandler, annotation.concurrency(), asyncConfig, options);
 
-        // 生成容器名称并注册
-        String containerName = generateContainerName(bean.getClass(), method, annotation);
+        // 注册容器
         consumerManager.registerContainer(containerName, container);
 
         // 如果设置了自动启动，则启动容器
         if (annotation.autoStartup()) {
-            container.start();
+            consumerManager.startContainer(containerName);
         }
     }
 
+    /**
+     * 创建容器时按顺序取得当前所有 {@link D2kListenerInterceptor} Bean
+     * 设置 BeanFactory 时只保存 ObjectProvider，拦截器 Bean 推迟到创建容器时才实例化，不缓存结果
+     */
+    List<D2kListenerInterceptor> getInterceptors() {
+        ObjectProvider<D2kListenerInterceptor> provider = interceptors;
+        return provider == null ? Collections.emptyList() : provider.orderedStream().collect(Collectors.toList());
+    }
+
     private void validateListenerMethod(Method method) {
         Class<?>[] parameterTypes = method.getParameterTypes();
         
-        // 支持0个或1个参数
-        if (parameterTypes.length > 1) {
+        // 支持0个或1个参数，另外可以追加一个 D2kMessageHeaders 参数接收消息元数据
+        int payloadParameterCount = 0;
+        int headersParameterCount = 0;
+        Class<?> paramType = null;
+        for (Class<?> type : parameterTypes) {
+            if (type == D2kMessageHeaders.class) {
+                headersParameterCount++;
+            } else {
+                payloadParameterCount++;
+                paramType = type;
+            }
+        }
+        if (payloadParameterCount > 1 || headersParameterCount > 1) {
             throw new IllegalArgumentException(
-                "@D2kListener method must have 0 or 1 parameter, but found " + parameterTypes.length + ": " + method);
+                "@D2kListener method must have 0 or 1 parameter (plus an optional D2kMessageHeaders), but found "
+                    + parameterTypes.length + ": " + method);
         }
         
         // 如果有参数，验证参数类型是否支持
-        if (parameterTypes.length == 1) {
-            Class<?> paramType = parameterTypes[0];
-            
+        if (paramType != null) {
             // 支持的参数类型：String、ConsumerRecord、或任意Object类型（用于泛型支持）
             boolean isValidType = paramType == String.class || 
                                  ConsumerRecord.class.isAssignableFrom(paramType) ||
@@ -143,12 +185,15 @@ public class D2kListenerAnnotationBeanPostProcessor implements BeanPostProcessor
                     if (paramTypes.length == 0) {
                         // 无参数方法
                         method.invoke(bean);
-                    } else if (paramTypes.length == 1) {
-                        Class<?> paramType = paramTypes[0];
-                        Object argument = convertToParameterType(delayItem, paramType);
-                        method.invoke(bean, argument);
                     } else {
-                        throw new IllegalArgumentException("@D2kListener method must have 0 or 1 parameter");
+                        Object[] arguments = new Object[paramTypes.length];
+                        for (int i = 0; i < paramTypes.length; i++) {
+                            // D2kMessageHeaders 参数取消息元数据，未携带信封的消息为 null
+                            arguments[i] = paramTypes[i] == D2kMessageHeaders.class
+                                    ? D2kMessageHeaders.from(delayItem.getRecord())
+                                    : convertToParameterType(delayItem, paramTypes[i]);
+                        }
+                        method.invoke(bean, arguments);
                     }
                 } catch (Exception e) {
                     throw new RuntimeException("Error invoking @D2kListener method: " + method, e);
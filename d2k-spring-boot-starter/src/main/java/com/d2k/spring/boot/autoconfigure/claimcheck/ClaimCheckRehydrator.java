@@ -0,0 +1,50 @@
+package com.d2k.spring.boot.autoconfigure.claimcheck;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Claim Check 消息还原器
+ * 消费端拉取时只保留引用，消息到期、调用监听器前才从存储读取并反序列化消息值，
+ * 延迟等待期间不占用消息值的内存
+ *
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class ClaimCheckRehydrator<V> {
+
+    private final ClaimCheckStore store;
+    private final Deserializer<? extends V> deserializer;
+
+    /**
+     * @param store        Claim Check 存储
+     * @param deserializer 原始的值反序列化器
+     */
+    public ClaimCheckRehydrator(ClaimCheckStore store, Deserializer<? extends V> deserializer) {
+        this.store = store;
+        this.deserializer = deserializer;
+    }
+
+    /**
+     * 读取并反序列化消息值
+     *
+     * @param topic     主题
+     * @param reference 引用
+     * @return 消息值
+     * @throws IllegalStateException 如果存储读取失败
+     */
+    public V rehydrate(String topic, String reference) {
+        byte[] payload;
+        try {
+            payload = store.load(reference);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load claim-checked payload: " + reference, e);
+        }
+        return deserializer.deserialize(topic, payload);
+    }
+
+    public ClaimCheckStore getStore() {
+        return store;
+    }
+}
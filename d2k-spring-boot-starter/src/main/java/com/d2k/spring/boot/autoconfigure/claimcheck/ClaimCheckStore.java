@@ -0,0 +1,40 @@
+package com.d2k.spring.boot.autoconfigure.claimcheck;
+
+import java.io.IOException;
+
+/**
+ * 大消息的外部存储（Claim Check 模式）
+ * 超过阈值的消息值写入外部存储，Kafka 中只发送引用，消费端在调用监听器前按引用取回。
+ * 同一条消息可能被多个消费组读取，因此存储不应在读取后删除内容，而应按保留时间清理
+ *
+ * @author xiajuan96
+ */
+public interface ClaimCheckStore {
+
+    /**
+     * 保存消息值
+     *
+     * @param topic   主题
+     * @param payload 序列化后的消息值
+     * @return 引用，编码后不超过 65535 字节
+     * @throws IOException 如果写入失败
+     */
+    String store(String topic, byte[] payload) throws IOException;
+
+    /**
+     * 按引用取回消息值
+     *
+     * @param reference {@link #store(String, byte[])} 返回的引用
+     * @return 序列化后的消息值
+     * @throws IOException 如果读取失败或内容已被清理
+     */
+    byte[] load(String reference) throws IOException;
+
+    /**
+     * 删除消息值，引用不存在时忽略
+     *
+     * @param reference 引用
+     * @throws IOException 如果删除失败
+     */
+    void delete(String reference) throws IOException;
+}
@@ -0,0 +1,121 @@
+package com.d2k.spring.boot.autoconfigure.claimcheck;
+
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于本地文件系统的 Claim Check 存储
+ * 每条消息值保存为目录下按主题划分的一个文件，引用为 "主题/文件名"。
+ * 写入先落临时文件再原子改名，读取方不会看到写了一半的内容；超过保留时间的文件在写入时顺带清理。
+ * 适用于测试和单机部署，生产者与消费者不在同一台机器时需挂载共享目录或实现其它存储
+ *
+ * @author xiajuan96
+ */
+public class FileSystemClaimCheckStore implements ClaimCheckStore {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long retentionMs;
+    private final long purgeIntervalMs;
+    private final AtomicLong nextPurgeTime = new AtomicLong();
+
+    /**
+     * @param directory   存储目录
+     * @param retentionMs 保留时间（毫秒），应大于最长的主题延迟加上可能的消费积压时间
+     * @throws IOException 如果目录无法创建
+     */
+    public FileSystemClaimCheckStore(File directory, long retentionMs) throws IOException {
+        if (retentionMs <= 0) {
+            throw new IllegalArgumentException("Claim check retention must be positive, but was " + retentionMs);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create claim check directory: " + directory);
+        }
+        this.directory = directory.toPath().toAbsolutePath().normalize();
+        this.retentionMs = retentionMs;
+        this.purgeIntervalMs = Math.max(1000L, retentionMs / 10);
+        this.nextPurgeTime.set(System.currentTimeMillis() + purgeIntervalMs);
+    }
+
+    @Override
+    public String store(String topic, byte[] payload) throws IOException {
+        purgeIfDue();
+        Path topicDirectory = Files.createDirectories(directory.resolve(sanitize(topic)));
+        String name = D2kMessageHeaders.newMessageId();
+        Path temp = topicDirectory.resolve(name + TEMP_SUFFIX);
+        Files.write(temp, payload);
+        Files.move(temp, topicDirectory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        return topicDirectory.getFileName() + "/" + name;
+    }
+
+    @Override
+    public byte[] load(String reference) throws IOException {
+        return Files.readAllBytes(resolve(reference));
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    /**
+     * 删除超过保留时间的文件
+     *
+     * @return 删除的文件数
+     * @throws IOException 如果目录无法遍历
+     */
+    public int purgeExpired() throws IOException {
+        long expireBefore = System.currentTimeMillis() - retentionMs;
+        int purged = 0;
+        try (DirectoryStream<Path> topics = Files.newDirectoryStream(directory)) {
+            for (Path topicDirectory : topics) {
+                if (!Files.isDirectory(topicDirectory)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(topicDirectory)) {
+                    for (Path file : files) {
+                        if (Files.getLastModifiedTime(file).toMillis() < expireBefore && Files.deleteIfExists(file)) {
+                            purged++;
+                        }
+                    }
+                }
+            }
+        }
+        return purged;
+    }
+
+    public File getDirectory() {
+        return directory.toFile();
+    }
+
+    private void purgeIfDue() throws IOException {
+        long now = System.currentTimeMillis();
+        long next = nextPurgeTime.get();
+        if (now >= next && nextPurgeTime.compareAndSet(next, now + purgeIntervalMs)) {
+            purgeExpired();
+        }
+    }
+
+    private Path resolve(String reference) {
+        Path path = directory.resolve(reference).normalize();
+        // 引用来自消息内容，拒绝指向存储目录之外的路径
+        if (!path.startsWith(directory) || path.getNameCount() != directory.getNameCount() + 2) {
+            throw new IllegalArgumentException("Invalid claim check reference: " + reference);
+        }
+        return path;
+    }
+
+    private static String sanitize(String topic) {
+        // Kafka 主题名只包含字母、数字、'.'、'_'、'-'，这里仍做一次防御性替换
+        String name = topic.replaceAll("[^A-Za-z0-9._-]", "_");
+        return ".".equals(name) || "..".equals(name) ? "_" : name;
+    }
+}
@@ -1,18 +1,95 @@
 package com.d2k.spring.boot.autoconfigure.config;
 
+import brave.Tracing;
 import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckStore;
+import com.d2k.spring.boot.autoconfigure.claimcheck.FileSystemClaimCheckStore;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderRouter;
+import com.d2k.spring.boot.autoconfigure.tracing.BraveTracingBridge;
+import com.d2k.spring.boot.autoconfigure.tracing.D2kTraceSampler;
+import com.d2k.spring.boot.autoconfigure.tracing.D2kTracingBridge;
+import com.d2k.spring.boot.autoconfigure.tracing.TracingListenerInterceptor;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * D2K 自动配置类
- * 导入 Producer 和 Consumer 的独立配置类
+ * 导入 Producer 和 Consumer 的独立配置类，并配置两端共用的 Bean；在 Sleuth 之后配置，以便检测其 Brave Tracing
  */
 @Configuration
+@AutoConfigureAfter(name = "org.springframework.cloud.sleuth.autoconfig.brave.BraveAutoConfiguration")
 @EnableConfigurationProperties(D2kProperties.class)
 @Import({D2kProducerAutoConfiguration.class, D2kConsumerAutoConfiguration.class})
 public class D2kAutoConfiguration {
 
+    /**
+     * 配置 Claim Check 存储 Bean（d2k.claim-check.enabled=true 时启用）
+     * 默认使用本地文件系统，可以声明自己的 ClaimCheckStore Bean 替换为对象存储等实现
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "d2k.claim-check", name = "enabled", havingValue = "true")
+    public ClaimCheckStore d2kClaimCheckStore(D2kProperties properties) throws IOException {
+        D2kProperties.ClaimCheck claimCheck = properties.getClaimCheck();
+        return new FileSystemClaimCheckStore(new File(claimCheck.getDirectory()), claimCheck.getRetentionMs());
+    }
+
+    /**
+     * 配置延迟阶梯路由 Bean（d2k.ladder.enabled=true 时启用）
+     * 生产端按延迟选择梯级主题，消费端订阅所有梯级并逐级转发
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "d2k.ladder", name = "enabled", havingValue = "true")
+    public DelayLadderRouter d2kDelayLadderRouter(D2kProperties properties) {
+        return new DelayLadderRouter(properties.getLadder().getTopics());
+    }
+
+    /**
+     * 配置按主题的链路采样器 Bean
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public D2kTraceSampler d2kTraceSampler(D2kProperties properties) {
+        D2kProperties.Tracing tracing = properties.getTracing();
+        return new D2kTraceSampler(tracing.getSampleRate(), tracing.getTopicSampleRates());
+    }
+
+    /**
+     * 配置恢复链路上下文的监听器拦截器 Bean（存在链路追踪桥接且 d2k.tracing.enabled 不为 false 时启用）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(D2kTracingBridge.class)
+    @ConditionalOnProperty(prefix = "d2k.tracing", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public TracingListenerInterceptor d2kTracingListenerInterceptor(D2kTracingBridge tracingBridge,
+                                                                    D2kTraceSampler traceSampler) {
+        return new TracingListenerInterceptor(tracingBridge, traceSampler);
+    }
+
+    /**
+     * Brave 链路追踪桥接，独立成类以免 Brave 不在类路径时加载失败
+     */
+    @Configuration
+    @ConditionalOnClass(name = "brave.Tracing")
+    @ConditionalOnProperty(prefix = "d2k.tracing", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class D2kBraveTracingConfiguration {
 
-}
\ No newline at end of file
+        @Bean
+        @ConditionalOnMissingBean(D2kTracingBridge.class)
+        @ConditionalOnBean(type = "brave.Tracing")
+        public D2kTracingBridge d2kTracingBridge(Tracing tracing) {
+            return new BraveTracingBridge(tracing);
+        }
+    }
+}
@@ -2,11 +2,23 @@ package com.d2k.spring.boot.autoconfigure.config;
 
 
 import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.actuate.D2kEndpoint;
 import com.d2k.spring.boot.autoconfigure.annotation.D2kListenerAnnotationBeanPostProcessor;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckStore;
 import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderForwarder;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderRouter;
 import com.d2k.spring.boot.autoconfigure.manager.D2kConsumerManager;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kLatenessMeterBinder;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kListenerMeterBinder;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayContainerMetrics;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayLatenessRecorder;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,13 +34,54 @@ import java.util.Properties;
 @EnableConfigurationProperties(D2kProperties.class)
 public class D2kConsumerAutoConfiguration {
 
+    /**
+     * 配置到期延迟记录器 Bean
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public DelayLatenessRecorder d2kLatenessRecorder(D2kProperties properties) {
+        return new DelayLatenessRecorder(properties.getConsumer().getLatenessWindowMs());
+    }
+
+    /**
+     * 配置延迟消费容器指标 Bean
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public DelayContainerMetrics d2kContainerMetrics() {
+        return new DelayContainerMetrics();
+    }
+
+    /**
+     * 配置延迟阶梯转发器 Bean（d2k.ladder.enabled=true 时启用）
+     * 梯级到期的消息通过共享的生产者池转发到下一梯级
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "d2k.ladder", name = "enabled", havingValue = "true")
+    public DelayLadderForwarder d2kDelayLadderForwarder(DelayLadderRouter d2kDelayLadderRouter,
+                                                        @Qualifier("d2kDelayProducerPool") DelayProducerPool d2kDelayProducerPool,
+                                                        D2kProperties properties) {
+        return new DelayLadderForwarder(d2kDelayLadderRouter, d2kDelayProducerPool,
+                properties.getLadder().getForwardTimeoutMs());
+    }
+
     /**
      * 配置 DelayConsumerContainerFactory Bean
      */
     @Bean
     @ConditionalOnMissingBean
-    public DelayConsumerContainerFactory delayConsumerContainerFactory(D2kProperties properties) {
-        return new DelayConsumerContainerFactory(properties);
+    public DelayConsumerContainerFactory delayConsumerContainerFactory(D2kProperties properties,
+                                                                       ObjectProvider<ClaimCheckStore> claimCheckStore,
+                                                                       ObjectProvider<DelayLatenessRecorder> latenessRecorder,
+                                                                       ObjectProvider<DelayLadderForwarder> ladderForwarder,
+                                                                       ObjectProvider<DelayContainerMetrics> containerMetrics) {
+        DelayConsumerContainerFactory factory = new DelayConsumerContainerFactory(properties);
+        factory.setClaimCheckStore(claimCheckStore.getIfAvailable());
+        factory.setLatenessRecorder(latenessRecorder.getIfAvailable());
+        factory.setLadderForwarder(ladderForwarder.getIfAvailable());
+        factory.setContainerMetrics(containerMetrics.getIfAvailable());
+        return factory;
     }
 
     /**
@@ -36,8 +89,12 @@ public class D2kConsumerAutoConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean
-    public D2kConsumerManager d2kConsumerManager() {
-        return new D2kConsumerManager();
+    public D2kConsumerManager d2kConsumerManager(ObjectProvider<DelayLatenessRecorder> latenessRecorder,
+                                                 ObjectProvider<DelayConsumerContainerFactory> containerFactory) {
+        D2kConsumerManager manager = new D2kConsumerManager();
+        manager.setLatenessRecorder(latenessRecorder.getIfAvailable());
+        manager.setContainerFactory(containerFactory.getIfAvailable());
+        return manager;
     }
 
     /**
@@ -48,4 +105,47 @@ public class D2kConsumerAutoConfiguration {
     public D2kListenerAnnotationBeanPostProcessor d2kListenerAnnotationBeanPostProcessor() {
         return new D2kListenerAnnotationBeanPostProcessor();
     }
-}
\ No newline at end of file
+
+    /**
+     * 指标配置，类路径中存在 Micrometer 时生效
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class D2kConsumerMetricsConfiguration {
+
+        /**
+         * 配置到期延迟指标 Bean
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public D2kLatenessMeterBinder d2kLatenessMeterBinder(DelayLatenessRecorder d2kLatenessRecorder) {
+            return new D2kLatenessMeterBinder(d2kLatenessRecorder);
+        }
+
+        /**
+         * 配置延迟消费容器指标 Bean
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public D2kListenerMeterBinder d2kListenerMeterBinder(DelayContainerMetrics d2kContainerMetrics) {
+            return new D2kListenerMeterBinder(d2kContainerMetrics);
+        }
+    }
+
+    /**
+     * 管理端点配置，类路径中存在 Spring Boot Actuator 时生效
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class D2kEndpointConfiguration {
+
+        /**
+         * 配置 d2k 管理端点 Bean
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public D2kEndpoint d2kEndpoint(D2kConsumerManager d2kConsumerManager) {
+            return new D2kEndpoint(d2kConsumerManager);
+        }
+    }
+}
@@ -2,16 +2,52 @@ package com.d2k.spring.boot.autoconfigure.config;
 
 import com.d2k.producer.DelayProducer;
 import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckStore;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderRouter;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kProducerMeterBinder;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kProducerMetricsReporter;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayProducerMetrics;
+import com.d2k.spring.boot.autoconfigure.outbox.D2kOutbox;
+import com.d2k.spring.boot.autoconfigure.outbox.OutboxJournal;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.producer.SendAcknowledgementInterceptor;
+import com.d2k.spring.boot.autoconfigure.producer.SendAcknowledgements;
+import com.d2k.spring.boot.autoconfigure.producer.SendFutureCompleter;
+import com.d2k.spring.boot.autoconfigure.producer.TopicRateLimiter;
+import com.d2k.spring.boot.autoconfigure.serializer.JsonD2kSerializer;
 import com.d2k.spring.boot.autoconfigure.template.D2kTemplate;
+import com.d2k.spring.boot.autoconfigure.template.ReactiveD2kTemplate;
+import com.d2k.spring.boot.autoconfigure.template.SendDeduplicationCache;
 import com.d2k.spring.boot.autoconfigure.template.StringD2kTemplate;
+import com.d2k.spring.boot.autoconfigure.tracing.D2kTraceSampler;
+import com.d2k.spring.boot.autoconfigure.tracing.D2kTracingBridge;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,31 +56,160 @@ import java.util.Map;
  */
 @Configuration
 @ConditionalOnClass(DelayProducer.class)
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @EnableConfigurationProperties(D2kProperties.class)
 public class D2kProducerAutoConfiguration {
 
+    private static final boolean JACKSON_PRESENT = ClassUtils.isPresent(
+            "com.fasterxml.jackson.databind.ObjectMapper", D2kProducerAutoConfiguration.class.getClassLoader());
+
     private final D2kProperties d2kProperties;
 
     public D2kProducerAutoConfiguration(D2kProperties d2kProperties) {
         this.d2kProperties = d2kProperties;
     }
 
+    /**
+     * 配置共享的 DelayProducerPool Bean
+     * 所有模板共用一组生产者，序列化在模板中完成，这里固定使用字节数组序列化器；
+     * 默认池大小为 1，即所有模板共享同一个 KafkaProducer；配置了延迟阶梯时各梯级主题的延迟一并交给生产者；
+     * 存在发送指标时各生产者的客户端指标通过 metric.reporters 汇总到其中；
+     * 每个生产者注册 SendAcknowledgementInterceptor，发送完成回调中报告的失败计入池的错误统计
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(name = "d2kDelayProducerPool")
+    public DelayProducerPool d2kDelayProducerPool(D2kProperties properties,
+                                                  ObjectProvider<DelayLadderRouter> ladderRouter,
+                                                  ObjectProvider<DelayProducerMetrics> producerMetrics) {
+        int poolSize = properties.getProducer().getPoolSize();
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("d2k.producer.pool-size must be at least 1, but was " + poolSize);
+        }
+        String clientId = properties.getProducer().getClientId();
+        Map<String, Long> topicDelays = new HashMap<>(properties.getProducer().getTopicDelays());
+        DelayLadderRouter router = ladderRouter.getIfAvailable();
+        if (router != null) {
+            topicDelays.putAll(router.getRungDelays());
+        }
+        DelayProducerMetrics metrics = producerMetrics.getIfAvailable();
+        List<DelayProducer<byte[], byte[]>> producers = new ArrayList<>(poolSize);
+        List<SendAcknowledgements> acknowledgements = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            Map<String, Object> producerProps = getProperties(properties);
+            producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+            producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+            // 池中多个生产者需要区分 client.id，避免 JMX 指标冲突
+            if (poolSize > 1 && StringUtils.hasText(clientId)) {
+                producerProps.put(ProducerConfig.CLIENT_ID_CONFIG, clientId + "-" + i);
+            }
+            if (metrics != null) {
+                producerProps.put(ProducerConfig.METRIC_REPORTER_CLASSES_CONFIG, D2kProducerMetricsReporter.class.getName());
+                producerProps.put(D2kProducerMetricsReporter.PRODUCER_METRICS_CONFIG, metrics);
+            }
+            SendAcknowledgements acks = new SendAcknowledgements();
+            producerProps.put(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, SendAcknowledgementInterceptor.class.getName());
+            producerProps.put(SendAcknowledgementInterceptor.ACKNOWLEDGEMENTS_CONFIG, acks);
+            producers.add(createDelayProducer(producerProps, topicDelays));
+            acknowledgements.add(acks);
+        }
+        return new DelayProducerPool(producers, acknowledgements);
+    }
+
+    /**
+     * 配置发送结果转换器 Bean，为每条消息登记完成回调；
+     * 存在发送指标时模板用它记录发送到确认的耗时，响应式模板用它转换发送结果，两者都没有时不创建
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @Conditional(SendCompletionCondition.class)
+    public SendFutureCompleter d2kSendFutureCompleter() {
+        return new SendFutureCompleter();
+    }
+
+    /**
+     * 配置本地 Outbox Bean（d2k.producer.outbox-enabled=true 时启用）
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "d2k.producer", name = "outbox-enabled", havingValue = "true")
+    public D2kOutbox d2kOutbox(@Qualifier("d2kDelayProducerPool") DelayProducerPool d2kDelayProducerPool,
+                               ObjectProvider<TopicRateLimiter> rateLimiter,
+                               D2kProperties properties) throws IOException {
+        D2kProperties.Producer producer = properties.getProducer();
+        OutboxJournal journal = new OutboxJournal(new File(producer.getOutboxDirectory()), producer.getOutboxSegmentSize());
+        D2kOutbox outbox = new D2kOutbox(journal, d2kDelayProducerPool, producer.getOutboxRelayBatchSize(),
+                producer.getOutboxFsyncIntervalMs(), producer.getOutboxSendTimeoutMs());
+        outbox.setRateLimiter(rateLimiter.getIfAvailable());
+        return outbox;
+    }
+
+    /**
+     * 配置发送去重缓存 Bean（d2k.producer.dedupe-enabled=true 时启用）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "d2k.producer", name = "dedupe-enabled", havingValue = "true")
+    public SendDeduplicationCache d2kSendDeduplicationCache(D2kProperties properties) {
+        D2kProperties.Producer producer = properties.getProducer();
+        return new SendDeduplicationCache(producer.getDedupeWindowMs(), producer.getDedupeMaxEntries(),
+                producer.getDedupeStripes());
+    }
+
+    /**
+     * 配置按主题的发送限流器 Bean（d2k.producer.rate-limit-enabled=true 时启用）
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "d2k.producer", name = "rate-limit-enabled", havingValue = "true")
+    public TopicRateLimiter d2kTopicRateLimiter(D2kProperties properties) {
+        D2kProperties.Producer producer = properties.getProducer();
+        TopicRateLimiter.OverflowPolicy policy;
+        try {
+            policy = TopicRateLimiter.OverflowPolicy.valueOf(producer.getRateLimitOverflowPolicy().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid d2k.producer.rate-limit-overflow-policy: "
+                    + producer.getRateLimitOverflowPolicy(), e);
+        }
+        return new TopicRateLimiter(producer.getTopicRateLimits(), producer.getRateLimitBurstMs(), policy,
+                producer.getRateLimitQueueCapacity());
+    }
+
     /**
      * 配置 D2kTemplate Bean（Object类型）
+     * 键值序列化器取自 d2k.producer.key-serializer / value-serializer 配置，
+     * 配置为 JsonD2kSerializer 时对象直接编码为 JSON 字节
      */
     @Bean
     @ConditionalOnMissingBean(name = "d2kTemplate")
-    public D2kTemplate<Object, Object> d2kTemplate(D2kProperties properties) {
-        Map<String, Object> producerProps = getProperties(properties);
-        // 使用 topic 延迟配置创建 DelayProducer
-        Map<String, Long> topicDelays = properties.getProducer().getTopicDelays();
-        DelayProducer<Object, Object> delayProducer;
-        if (topicDelays != null && !topicDelays.isEmpty()) {
-            delayProducer = new DelayProducer<>(producerProps, topicDelays);
-        } else {
-            delayProducer = new DelayProducer<>(producerProps);
-        }
-        return new D2kTemplate<>(delayProducer);
+    public D2kTemplate<Object, Object> d2kTemplate(
+            @Qualifier("d2kDelayProducerPool") DelayProducerPool d2kDelayProducerPool,
+            ObjectProvider<D2kOutbox> outbox,
+            ObjectProvider<SendDeduplicationCache> deduplicationCache,
+            ObjectProvider<TopicRateLimiter> rateLimiter,
+            ObjectProvider<ClaimCheckStore> claimCheckStore,
+            ObjectProvider<DelayLadderRouter> ladderRouter,
+            ObjectProvider<DelayProducerMetrics> producerMetrics,
+            ObjectProvider<SendFutureCompleter> sendFutureCompleter,
+            ObjectProvider<D2kTracingBridge> tracingBridge,
+            ObjectProvider<D2kTraceSampler> traceSampler,
+            ListableBeanFactory beanFactory,
+            Environment environment,
+            D2kProperties properties) {
+        Map<String, Object> serializerConfigs = getSerializerConfigs(properties, beanFactory);
+        Serializer<Object> keySerializer = createSerializer(properties.getProducer().getKeySerializer(), serializerConfigs, true);
+        Serializer<Object> valueSerializer = createSerializer(properties.getProducer().getValueSerializer(), serializerConfigs, false);
+        D2kTemplate<Object, Object> template = new D2kTemplate<>(d2kDelayProducerPool, keySerializer, valueSerializer);
+        template.setTransactionSynchronized(properties.getProducer().isTransactionSynchronized());
+        template.setOutbox(outbox.getIfAvailable());
+        template.setDeduplicationCache(deduplicationCache.getIfAvailable());
+        template.setRateLimiter(rateLimiter.getIfAvailable());
+        configureMessageHeaders(template, properties, environment);
+        configureClaimCheck(template, properties, claimCheckStore.getIfAvailable());
+        template.setLadderRouter(ladderRouter.getIfAvailable());
+        template.setProducerMetrics(producerMetrics.getIfAvailable());
+        template.setSendFutureCompleter(sendFutureCompleter.getIfAvailable());
+        configureTracing(template, properties, tracingBridge.getIfAvailable(), traceSampler.getIfAvailable());
+        return template;
     }
 
     /**
@@ -52,21 +217,102 @@ public class D2kProducerAutoConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean(name = "stringD2kTemplate")
-    public StringD2kTemplate stringD2kTemplate() {
-        // 直接创建StringDelayProducer实例
-        Map<String, Object> configMap = getProperties(d2kProperties);
-        Map<String, Long> topicDelays = d2kProperties.getProducer().getTopicDelays();
+    public StringD2kTemplate stringD2kTemplate(
+            @Qualifier("d2kDelayProducerPool") DelayProducerPool d2kDelayProducerPool,
+            ObjectProvider<D2kOutbox> outbox,
+            ObjectProvider<SendDeduplicationCache> deduplicationCache,
+            ObjectProvider<TopicRateLimiter> rateLimiter,
+            ObjectProvider<ClaimCheckStore> claimCheckStore,
+            ObjectProvider<DelayLadderRouter> ladderRouter,
+            ObjectProvider<DelayProducerMetrics> producerMetrics,
+            ObjectProvider<SendFutureCompleter> sendFutureCompleter,
+            ObjectProvider<D2kTracingBridge> tracingBridge,
+            ObjectProvider<D2kTraceSampler> traceSampler,
+            Environment environment) {
+        StringD2kTemplate template = new StringD2kTemplate(d2kDelayProducerPool);
+        template.setTransactionSynchronized(d2kProperties.getProducer().isTransactionSynchronized());
+        template.setOutbox(outbox.getIfAvailable());
+        template.setDeduplicationCache(deduplicationCache.getIfAvailable());
+        template.setRateLimiter(rateLimiter.getIfAvailable());
+        configureMessageHeaders(template, d2kProperties, environment);
+        configureClaimCheck(template, d2kProperties, claimCheckStore.getIfAvailable());
+        template.setLadderRouter(ladderRouter.getIfAvailable());
+        template.setProducerMetrics(producerMetrics.getIfAvailable());
+        template.setSendFutureCompleter(sendFutureCompleter.getIfAvailable());
+        configureTracing(template, d2kProperties, tracingBridge.getIfAvailable(), traceSampler.getIfAvailable());
+        return template;
+    }
 
-        DelayProducer<String, String> stringDelayProducer;
+    private void configureMessageHeaders(D2kTemplate<?, ?> template, D2kProperties properties,
+                                         Environment environment) {
+        D2kProperties.Producer producer = properties.getProducer();
+        template.setStampHeaders(producer.isStampHeaders());
+        template.setTopicDelays(producer.getTopicDelays());
+        String origin = producer.getOrigin();
+        if (!StringUtils.hasText(origin)) {
+            origin = environment.getProperty("spring.application.name", producer.getClientId());
+        }
+        template.setOrigin(StringUtils.hasText(origin) ? origin : null);
+    }
+
+    /**
+     * 存在链路追踪桥接时在元数据中写入 traceparent，按主题采样，未采样的消息不查询当前链路
+     */
+    private void configureTracing(D2kTemplate<?, ?> template, D2kProperties properties,
+                                  D2kTracingBridge tracingBridge, D2kTraceSampler traceSampler) {
+        if (tracingBridge == null || !properties.getTracing().isEnabled()) {
+            return;
+        }
+        template.setTraceParentSupplier(tracingBridge::currentTraceParent);
+        template.setTraceSampler(traceSampler == null ? null : traceSampler::isSampled);
+    }
+
+    private void configureClaimCheck(D2kTemplate<?, ?> template, D2kProperties properties,
+                                     ClaimCheckStore claimCheckStore) {
+        template.setClaimCheckStore(claimCheckStore);
+        template.setClaimCheckThreshold(properties.getClaimCheck().getThreshold());
+    }
+
+    private DelayProducer<byte[], byte[]> createDelayProducer(Map<String, Object> producerProps,
+                                                             Map<String, Long> topicDelays) {
+        // 使用 topic 延迟配置创建 DelayProducer
         if (topicDelays != null && !topicDelays.isEmpty()) {
-            stringDelayProducer = new DelayProducer<>(configMap, topicDelays);
-        } else {
-            stringDelayProducer = new DelayProducer<>(configMap);
+            return new DelayProducer<>(producerProps, topicDelays);
         }
+        return new DelayProducer<>(producerProps);
+    }
 
-        return new StringD2kTemplate(stringDelayProducer);
+    /**
+     * 根据类名创建并初始化序列化器
+     */
+    @SuppressWarnings("unchecked")
+    private Serializer<Object> createSerializer(String className, Map<String, Object> configs, boolean isKey) {
+        Class<?> serializerClass;
+        try {
+            serializerClass = ClassUtils.forName(className, getClass().getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalArgumentException("Serializer class not found: " + className, e);
+        }
+        Serializer<Object> serializer = BeanUtils.instantiateClass(serializerClass, Serializer.class);
+        serializer.configure(configs, isKey);
+        return serializer;
     }
 
+    /**
+     * 序列化器配置：生产者配置加上缓冲区大小，存在 Jackson 时附带容器中的 ObjectMapper
+     */
+    private Map<String, Object> getSerializerConfigs(D2kProperties properties, ListableBeanFactory beanFactory) {
+        Map<String, Object> configs = getProperties(properties);
+        configs.put(JsonD2kSerializer.BUFFER_SIZE_CONFIG, properties.getProducer().getSerializationBufferSize());
+        configs.put(JsonD2kSerializer.BUFFER_MAX_RETAINED_CONFIG, properties.getProducer().getSerializationBufferMaxRetained());
+        if (JACKSON_PRESENT) {
+            Object objectMapper = ObjectMapperResolver.resolve(beanFactory);
+            if (objectMapper != null) {
+                configs.put(JsonD2kSerializer.OBJECT_MAPPER_CONFIG, objectMapper);
+            }
+        }
+        return configs;
+    }
 
     private Map<String, Object> getProperties(D2kProperties properties) {
         Map<String, Object> producerProps = new HashMap<String, Object>();
@@ -80,5 +326,84 @@ public class D2kProducerAutoConfiguration {
         return producerProps;
     }
 
+    /**
+     * 查找序列化使用的 ObjectMapper，独立成类以免 Jackson 不在类路径时加载失败；
+     * 优先使用名为 d2kObjectMapper 的 Bean（可用于切换 Smile / CBOR 等二进制格式），其次是唯一的 ObjectMapper
+     */
+    private static class ObjectMapperResolver {
+
+        static Object resolve(ListableBeanFactory beanFactory) {
+            if (beanFactory.containsBean("d2kObjectMapper")) {
+                return beanFactory.getBean("d2kObjectMapper", ObjectMapper.class);
+            }
+            return beanFactory.getBeanProvider(ObjectMapper.class).getIfUnique();
+        }
+    }
+
+    /**
+     * 指标配置，容器中存在 Micrometer 的 MeterRegistry 时生效；
+     * 没有注册表时不统计发送指标，模板也不为每条消息登记完成回调
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    static class D2kProducerMetricsConfiguration {
+
+        /**
+         * 配置发送指标 Bean
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public DelayProducerMetrics d2kProducerMetrics(D2kProperties properties) {
+            return new DelayProducerMetrics(properties.getProducer().getMetricsWindowMs());
+        }
+
+        /**
+         * 配置发送指标的 Micrometer 绑定 Bean
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public D2kProducerMeterBinder d2kProducerMeterBinder(DelayProducerMetrics d2kProducerMetrics) {
+            return new D2kProducerMeterBinder(d2kProducerMetrics);
+        }
+    }
+
+    /**
+     * 响应式模板配置，类路径中存在 Reactor 时生效
+     */
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+    static class ReactiveD2kTemplateConfiguration {
+
+        /**
+         * 配置 ReactiveD2kTemplate Bean，与 d2kTemplate 共享生产者和序列化配置
+         */
+        @Bean
+        @ConditionalOnMissingBean(name = "reactiveD2kTemplate")
+        public ReactiveD2kTemplate<Object, Object> reactiveD2kTemplate(
+                @Qualifier("d2kTemplate") D2kTemplate<Object, Object> d2kTemplate,
+                SendFutureCompleter d2kSendFutureCompleter,
+                D2kProperties properties) {
+            return new ReactiveD2kTemplate<>(d2kTemplate, d2kSendFutureCompleter,
+                    properties.getProducer().getReactiveMaxInFlight());
+        }
+    }
 
-}
\ No newline at end of file
+    /**
+     * 发送结果转换器的创建条件：存在 MeterRegistry 或类路径中存在 Reactor
+     */
+    static class SendCompletionCondition extends AnyNestedCondition {
+
+        SendCompletionCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+        static class OnMeterRegistry {
+        }
+
+        @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+        static class OnReactor {
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已取消消息索引
+ * 取消标记在拉取时登记，消息到期时查询；按分区保存，每个分区最多保留 maxEntriesPerPartition 个消息 ID，
+ * 超出时淘汰最早登记的条目，被淘汰的取消不再生效，消息仍会照常投递
+ *
+ * @author xiajuan96
+ */
+public class CancellationIndex {
+
+    private final int maxEntriesPerPartition;
+    private final ConcurrentMap<TopicPartition, PartitionIndex> partitions = new ConcurrentHashMap<>();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    public CancellationIndex(int maxEntriesPerPartition) {
+        if (maxEntriesPerPartition < 1) {
+            throw new IllegalArgumentException("maxEntriesPerPartition must be positive, but was " + maxEntriesPerPartition);
+        }
+        this.maxEntriesPerPartition = maxEntriesPerPartition;
+    }
+
+    /**
+     * 登记取消标记
+     */
+    public void markCancelled(TopicPartition partition, String messageId) {
+        if (messageId == null) {
+            return;
+        }
+        PartitionIndex index = partitions.computeIfAbsent(partition, p -> new PartitionIndex());
+        synchronized (index) {
+            index.put(messageId, Boolean.TRUE);
+        }
+        cancelledCount.increment();
+    }
+
+    /**
+     * 判断消息是否已被取消，命中后移除对应条目
+     *
+     * @return 已取消返回 true
+     */
+    public boolean consume(TopicPartition partition, String messageId) {
+        PartitionIndex index = partitions.get(partition);
+        if (index == null || messageId == null) {
+            return false;
+        }
+        synchronized (index) {
+            return index.remove(messageId) != null;
+        }
+    }
+
+    /**
+     * 记录一条因取消而丢弃的消息
+     */
+    void recordDropped() {
+        droppedCount.increment();
+    }
+
+    public int size() {
+        int size = 0;
+        for (PartitionIndex index : partitions.values()) {
+            synchronized (index) {
+                size += index.size();
+            }
+        }
+        return size;
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    private class PartitionIndex extends LinkedHashMap<String, Boolean> {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            if (size() > maxEntriesPerPartition) {
+                evictedCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按键合并的最新消息索引
+ * 拉取时记录每个键最新一条消息的 offset，到期时旧消息被判定为已被覆盖而丢弃，只有最新的一条交给监听器。
+ * 按分区保存，每个分区最多跟踪 maxKeysPerPartition 个键，超出时淘汰最久未更新的键，
+ * 被淘汰键的消息不再合并，照常投递
+ *
+ * @author xiajuan96
+ */
+public class CoalescingIndex {
+
+    private final int maxKeysPerPartition;
+    private final ConcurrentMap<TopicPartition, PartitionIndex> partitions = new ConcurrentHashMap<>();
+    private final LongAdder supersededCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    public CoalescingIndex(int maxKeysPerPartition) {
+        if (maxKeysPerPartition < 1) {
+            throw new IllegalArgumentException("maxKeysPerPartition must be positive, but was " + maxKeysPerPartition);
+        }
+        this.maxKeysPerPartition = maxKeysPerPartition;
+    }
+
+    /**
+     * 记录拉取到的消息，同一个键只保留最大的 offset
+     */
+    public void recordLatest(TopicPartition partition, Object key, long offset) {
+        if (key == null) {
+            return;
+        }
+        PartitionIndex index = partitions.computeIfAbsent(partition, p -> new PartitionIndex());
+        synchronized (index) {
+            Long current = index.get(key);
+            if (current == null || current < offset) {
+                index.put(key, offset);
+            }
+        }
+    }
+
+    /**
+     * 判断到期的消息是否已被同一个键的更新消息覆盖；最新的消息到期时移除对应条目
+     *
+     * @return 已被覆盖返回 true
+     */
+    public boolean isSuperseded(TopicPartition partition, Object key, long offset) {
+        PartitionIndex index = partitions.get(partition);
+        if (index == null || key == null) {
+            return false;
+        }
+        synchronized (index) {
+            Long latest = index.get(key);
+            if (latest == null) {
+                return false;
+            }
+            if (latest > offset) {
+                supersededCount.increment();
+                return true;
+            }
+            if (latest == offset) {
+                index.remove(key);
+            }
+            return false;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (PartitionIndex index : partitions.values()) {
+            synchronized (index) {
+                size += index.size();
+            }
+        }
+        return size;
+    }
+
+    public long getSupersededCount() {
+        return supersededCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    private class PartitionIndex extends LinkedHashMap<Object, Long> {
+
+        PartitionIndex() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Long> eldest) {
+            if (size() > maxKeysPerPartition) {
+                evictedCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.consumer.DelayItemHandler;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderForwarder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * 跟踪容器状态的处理器装饰
+ * 位于最外层，到期消息进入时登记投递并计入正在处理的数量；容器暂停时在此等待恢复，
+ * 消息保留在处理线程中，offset 不会越过尚未处理的消息。从磁盘读回的消息由落盘缓冲经同一个闸门交给处理器。
+ * 同步处理时处理线程就是拉取线程，容器状态不支持暂停，见 {@link DelayContainerState#setPauseSupported(boolean)}
+ * <p>
+ * 配置延迟阶梯转发器时，同步处理下同一分区连续到期的一批消息的转发不逐条等待确认，
+ * 该分区没有紧接着到期的消息、容器可能提交偏移量之前才等待整批确认；异步处理时每条消息处理完即等待
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class ContainerStateHandler<K, V> implements DelayItemHandler<K, V> {
+
+    private final DelayItemHandler<K, V> delegate;
+    private final DelayContainerState state;
+    private final DelayLadderForwarder ladderForwarder;
+    private final boolean batchForwards;
+
+    /**
+     * @param delegate 实际处理器
+     * @param state    容器状态
+     */
+    public ContainerStateHandler(DelayItemHandler<K, V> delegate, DelayContainerState state) {
+        this(delegate, state, null, false);
+    }
+
+    /**
+     * @param delegate        实际处理器
+     * @param state           容器状态
+     * @param ladderForwarder 延迟阶梯转发器，为 null 时不等待转发确认
+     * @param batchForwards   是否合并同一分区连续到期消息的转发确认，仅适用于同步处理
+     */
+    public ContainerStateHandler(DelayItemHandler<K, V> delegate, DelayContainerState state,
+                                 DelayLadderForwarder ladderForwarder, boolean batchForwards) {
+        this.delegate = delegate;
+        this.state = state;
+        this.ladderForwarder = ladderForwarder;
+        this.batchForwards = batchForwards;
+    }
+
+    @Override
+    public void process(DelayItem<K, V> delayItem) {
+        ConsumerRecord<K, V> record = delayItem.getRecord();
+        state.deliveryStarted();
+        try {
+            try {
+                state.awaitResumed();
+            } catch (InterruptedException e) {
+                // 容器停止时中断等待，继续处理这条消息，保留中断状态
+                Thread.currentThread().interrupt();
+            }
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            state.recordDelivered(partition, record.offset());
+            try {
+                delegate.process(delayItem);
+            } catch (RuntimeException | Error e) {
+                flushForwards(e);
+                throw e;
+            }
+            if (ladderForwarder != null && ladderForwarder.getPendingCount() > 0
+                    && !(batchForwards && state.hasDueRecord(partition, System.currentTimeMillis()))) {
+                ladderForwarder.flush();
+            }
+        } finally {
+            state.deliveryCompleted();
+        }
+    }
+
+    /**
+     * 处理失败时仍等待之前已转发消息的确认，等待失败作为 suppressed 附加
+     */
+    private void flushForwards(Throwable failure) {
+        if (ladderForwarder != null) {
+            try {
+                ladderForwarder.flush();
+            } catch (RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    public DelayItemHandler<K, V> getDelegate() {
+        return delegate;
+    }
+}
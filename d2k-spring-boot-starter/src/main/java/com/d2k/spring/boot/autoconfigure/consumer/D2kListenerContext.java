@@ -0,0 +1,102 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * 监听器调用上下文
+ * 每个监听器在每个处理线程上复用同一个实例，每次调用前重置；属性按键保存在数组中，
+ * 键按引用比较（建议使用拦截器中的静态常量），容量够用后不再分配对象
+ *
+ * @author xiajuan96
+ */
+public final class D2kListenerContext {
+
+    private final String listenerId;
+    private final Method method;
+    private DelayItem<?, ?> delayItem;
+    private long startNanos;
+    private Object[] attributes = new Object[8];
+    private int attributeCount;
+
+    D2kListenerContext(String listenerId, Method method) {
+        this.listenerId = listenerId;
+        this.method = method;
+    }
+
+    void reset(DelayItem<?, ?> delayItem) {
+        this.delayItem = delayItem;
+        this.startNanos = System.nanoTime();
+    }
+
+    void clear() {
+        this.delayItem = null;
+        Arrays.fill(attributes, 0, attributeCount << 1, null);
+        attributeCount = 0;
+    }
+
+    /**
+     * 监听器标识，与容器名称相同
+     */
+    public String getListenerId() {
+        return listenerId;
+    }
+
+    /**
+     * 被调用的 @D2kListener 方法，没有方法时为 null
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    public DelayItem<?, ?> getDelayItem() {
+        return delayItem;
+    }
+
+    public ConsumerRecord<?, ?> getRecord() {
+        return delayItem == null ? null : delayItem.getRecord();
+    }
+
+    /**
+     * 本次调用开始（第一个 beforeInvoke 之前）的 {@link System#nanoTime()}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * 设置属性，值为 null 时等同于移除
+     */
+    public void setAttribute(Object key, Object value) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributes[i << 1] == key) {
+                attributes[(i << 1) + 1] = value;
+                return;
+            }
+        }
+        if (value == null) {
+            return;
+        }
+        if (attributeCount << 1 == attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length << 1);
+        }
+        attributes[attributeCount << 1] = key;
+        attributes[(attributeCount << 1) + 1] = value;
+        attributeCount++;
+    }
+
+    /**
+     * @return 属性值，未设置时为 null
+     */
+    public Object getAttribute(Object key) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributes[i << 1] == key) {
+                return attributes[(i << 1) + 1];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+/**
+ * 监听器调用拦截器
+ * 声明为 Bean 后由 {@link com.d2k.spring.boot.autoconfigure.annotation.D2kListenerAnnotationBeanPostProcessor}
+ * 按 {@link org.springframework.core.Ordered} / {@code @Order} 排序后直接串在每个 @D2kListener 方法外，不创建代理。
+ * <p>
+ * {@link #beforeInvoke} 按顺序调用，{@link #afterInvoke} 和 {@link #onError} 按相反顺序调用，
+ * 只有 beforeInvoke 成功返回的拦截器才会收到 afterInvoke 或 onError。上下文对象按线程复用，
+ * 不能在回调之外保留；需要在回调之间传递的数据通过 {@link D2kListenerContext#setAttribute} 保存。
+ * 所有方法在处理线程上同步调用，实现应避免阻塞和分配对象
+ *
+ * @author xiajuan96
+ */
+public interface D2kListenerInterceptor {
+
+    /**
+     * 调用监听器方法之前，抛出异常时不再调用监听器方法，异常交给容器处理
+     */
+    default void beforeInvoke(D2kListenerContext context) {
+    }
+
+    /**
+     * 监听器方法正常返回之后
+     */
+    default void afterInvoke(D2kListenerContext context) {
+    }
+
+    /**
+     * 监听器方法（或后续拦截器的 beforeInvoke）抛出异常之后，异常随后原样抛给容器
+     *
+     * @param error 抛出的异常
+     */
+    default void onError(D2kListenerContext context, Throwable error) {
+    }
+}
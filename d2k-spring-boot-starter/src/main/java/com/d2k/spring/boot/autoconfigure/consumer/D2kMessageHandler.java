@@ -0,0 +1,190 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.consumer.DelayItemHandler;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckRehydrator;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderForwarder;
+import com.d2k.spring.boot.autoconfigure.message.D2kConsumerRecord;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * D2K 消息处理器装饰
+ * 在消息到期后、交给实际处理器前处理信封：丢弃已取消的消息和取消标记本身，
+ * 并把信封消息还原为携带元数据的 {@link D2kConsumerRecord}，普通消息原样透传；
+ * 开启按键合并时还会丢弃已被同一个键的更新消息覆盖的旧消息；Claim Check 消息在此时才从外部存储取回消息值；
+ * 延迟阶梯的梯级主题上尚未到期的消息转发到下一梯级，不交给实际处理器；剩余时间短于最短梯级时等到到期时间再交给实际处理器
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class D2kMessageHandler<K, V> implements DelayItemHandler<K, V> {
+
+    private final DelayItemHandler<K, V> delegate;
+    private final CancellationIndex cancellationIndex;
+    private final CoalescingIndex coalescingIndex;
+    private final ClaimCheckRehydrator<V> rehydrator;
+    private final SpillingDelayBuffer<K, V> spillBuffer;
+    private final DelayLadderForwarder ladderForwarder;
+    private final LongAdder dueCount = new LongAdder();
+
+    public D2kMessageHandler(DelayItemHandler<K, V> delegate, CancellationIndex cancellationIndex) {
+        this(delegate, cancellationIndex, null);
+    }
+
+    /**
+     * @param delegate          实际处理器
+     * @param cancellationIndex 取消索引
+     * @param coalescingIndex   按键合并索引，为 null 时不合并
+     */
+    public D2kMessageHandler(DelayItemHandler<K, V> delegate, CancellationIndex cancellationIndex,
+                             CoalescingIndex coalescingIndex) {
+        this(delegate, cancellationIndex, coalescingIndex, null);
+    }
+
+    /**
+     * @param delegate          实际处理器
+     * @param cancellationIndex 取消索引
+     * @param coalescingIndex   按键合并索引，为 null 时不合并
+     * @param rehydrator        Claim Check 消息还原器，为 null 时收到 Claim Check 消息会处理失败
+     */
+    public D2kMessageHandler(DelayItemHandler<K, V> delegate, CancellationIndex cancellationIndex,
+                             CoalescingIndex coalescingIndex, ClaimCheckRehydrator<V> rehydrator) {
+        this(delegate, cancellationIndex, coalescingIndex, rehydrator, null);
+    }
+
+    /**
+     * @param delegate          实际处理器
+     * @param cancellationIndex 取消索引
+     * @param coalescingIndex   按键合并索引，为 null 时不合并
+     * @param rehydrator        Claim Check 消息还原器，为 null 时收到 Claim Check 消息会处理失败
+     * @param spillBuffer       落盘缓冲，为 null 时不落盘
+     */
+    public D2kMessageHandler(DelayItemHandler<K, V> delegate, CancellationIndex cancellationIndex,
+                             CoalescingIndex coalescingIndex, ClaimCheckRehydrator<V> rehydrator,
+                             SpillingDelayBuffer<K, V> spillBuffer) {
+        this(delegate, cancellationIndex, coalescingIndex, rehydrator, spillBuffer, null);
+    }
+
+    /**
+     * @param delegate          实际处理器
+     * @param cancellationIndex 取消索引
+     * @param coalescingIndex   按键合并索引，为 null 时不合并
+     * @param rehydrator        Claim Check 消息还原器，为 null 时收到 Claim Check 消息会处理失败
+     * @param spillBuffer       落盘缓冲，为 null 时不落盘
+     * @param ladderForwarder   延迟阶梯转发器，为 null 时不转发
+     */
+    public D2kMessageHandler(DelayItemHandler<K, V> delegate, CancellationIndex cancellationIndex,
+                             CoalescingIndex coalescingIndex, ClaimCheckRehydrator<V> rehydrator,
+                             SpillingDelayBuffer<K, V> spillBuffer, DelayLadderForwarder ladderForwarder) {
+        this.delegate = delegate;
+        this.cancellationIndex = cancellationIndex;
+        this.coalescingIndex = coalescingIndex;
+        this.rehydrator = rehydrator;
+        this.spillBuffer = spillBuffer;
+        this.ladderForwarder = ladderForwarder;
+    }
+
+    @Override
+    public void process(DelayItem<K, V> delayItem) {
+        if (spillBuffer != null) {
+            // 容器堆内队列中的消息到期，归还落盘预算
+            spillBuffer.released();
+        }
+        deliver(delayItem);
+    }
+
+    /**
+     * 处理到期消息，从磁盘读回的消息不占用堆内预算，直接由此进入
+     */
+    @SuppressWarnings("unchecked")
+    void deliver(DelayItem<K, V> delayItem) {
+        dueCount.increment();
+        ConsumerRecord<K, V> record = delayItem.getRecord();
+        Object value = record.value();
+        if (!(value instanceof D2kMessage)) {
+            if (!isSuperseded(record)) {
+                delegate.process(delayItem);
+            }
+            return;
+        }
+        D2kMessage<V> message = (D2kMessage<V>) value;
+        D2kMessageHeaders headers = message.getHeaders();
+        if (headers == null) {
+            // 落盘模式下包装的普通消息
+            if (!isSuperseded(record)) {
+                delegate.process(withRecord(delayItem, new D2kConsumerRecord<>(record, message.getValue(), null)));
+            }
+            return;
+        }
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        if (headers.isCancel()) {
+            // 取消标记到期时原消息必然已经到期，清理残留的索引条目
+            cancellationIndex.consume(partition, headers.getMessageId());
+            return;
+        }
+        if (cancellationIndex.consume(partition, headers.getMessageId())) {
+            cancellationIndex.recordDropped();
+            return;
+        }
+        if (isSuperseded(record)) {
+            return;
+        }
+        String topic = record.topic();
+        if (ladderForwarder != null) {
+            if (ladderForwarder.forward(record, message)) {
+                return;
+            }
+            ladderForwarder.awaitDue(record, message);
+            topic = ladderForwarder.logicalTopic(topic);
+        }
+        V payload = message.isClaimCheck() ? rehydrate(topic, message) : message.getValue();
+        delegate.process(withRecord(delayItem, new D2kConsumerRecord<>(topic, record, payload, headers)));
+    }
+
+    /**
+     * 替换消息记录，保留原延迟项的延迟时间和恢复时间
+     */
+    private static <K, V> DelayItem<K, V> withRecord(DelayItem<K, V> delayItem, ConsumerRecord<K, V> record) {
+        return new DelayItem<>(delayItem.getDelayMilliseconds(), delayItem.getResumeAtTimestamp(), record);
+    }
+
+    private boolean isSuperseded(ConsumerRecord<K, V> record) {
+        return coalescingIndex != null && coalescingIndex.isSuperseded(
+                new TopicPartition(record.topic(), record.partition()), record.key(), record.offset());
+    }
+
+    private V rehydrate(String topic, D2kMessage<V> message) {
+        if (rehydrator == null) {
+            throw new IllegalStateException("Received claim-checked message " + message.getHeaders().getMessageId()
+                    + " but no ClaimCheckStore is configured");
+        }
+        return rehydrator.rehydrate(topic, message.getClaimCheckReference());
+    }
+
+    /**
+     * 等待当前线程转发到下一梯级的消息的确认；容器投递的消息由 {@link ContainerStateHandler} 等待，
+     * 落盘读回的消息不经过它，投递后由此等待
+     */
+    void flushForwards() {
+        if (ladderForwarder != null) {
+            ladderForwarder.flush();
+        }
+    }
+
+    /**
+     * 已到期的消息数，包括随后被丢弃、转发的消息和取消标记
+     */
+    public long getDueCount() {
+        return dueCount.sum();
+    }
+
+    public DelayItemHandler<K, V> getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,136 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayContainerMetrics;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * D2K 拉取拦截器
+ * 由 KafkaConsumer 在拉取到消息、进入延迟队列之前调用，用于登记取消标记和每个键的最新消息；
+ * 开启落盘时，堆内预算用尽后把远未到期的消息从本批中移出并写入磁盘；配置了监听器指标时统计拉取到的消息数，
+ * 配置了容器状态时登记留在容器中的消息和提交的 offset。
+ * 共享状态通过消费者配置中的自定义配置项传入
+ *
+ * @author xiajuan96
+ */
+public class D2kReceiveInterceptor implements ConsumerInterceptor<Object, Object> {
+
+    /** 配置项：容器的 CancellationIndex 实例 */
+    public static final String CANCELLATION_INDEX_CONFIG = "d2k.consumer.cancellation-index";
+    /** 配置项：容器的 CoalescingIndex 实例，未配置时不合并 */
+    public static final String COALESCING_INDEX_CONFIG = "d2k.consumer.coalescing-index";
+    /** 配置项：容器的 SpillingDelayBuffer 实例，未配置时不落盘 */
+    public static final String SPILL_BUFFER_CONFIG = "d2k.consumer.spill-buffer";
+    /** 配置项：容器的 ListenerMetrics 实例，未配置时不统计 */
+    public static final String LISTENER_METRICS_CONFIG = "d2k.consumer.listener-metrics";
+    /** 配置项：容器的 DelayContainerState 实例，未配置时不跟踪 */
+    public static final String CONTAINER_STATE_CONFIG = "d2k.consumer.container-state";
+
+    private CancellationIndex cancellationIndex;
+    private CoalescingIndex coalescingIndex;
+    private SpillingDelayBuffer<?, ?> spillBuffer;
+    private DelayContainerMetrics.ListenerMetrics listenerMetrics;
+    private DelayContainerState containerState;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object index = configs.get(CANCELLATION_INDEX_CONFIG);
+        if (index instanceof CancellationIndex) {
+            this.cancellationIndex = (CancellationIndex) index;
+        }
+        Object coalescing = configs.get(COALESCING_INDEX_CONFIG);
+        if (coalescing instanceof CoalescingIndex) {
+            this.coalescingIndex = (CoalescingIndex) coalescing;
+        }
+        Object spill = configs.get(SPILL_BUFFER_CONFIG);
+        if (spill instanceof SpillingDelayBuffer) {
+            this.spillBuffer = (SpillingDelayBuffer<?, ?>) spill;
+        }
+        Object metrics = configs.get(LISTENER_METRICS_CONFIG);
+        if (metrics instanceof DelayContainerMetrics.ListenerMetrics) {
+            this.listenerMetrics = (DelayContainerMetrics.ListenerMetrics) metrics;
+        }
+        Object state = configs.get(CONTAINER_STATE_CONFIG);
+        if (state instanceof DelayContainerState) {
+            this.containerState = (DelayContainerState) state;
+        }
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> onConsume(ConsumerRecords<Object, Object> records) {
+        CancellationIndex cancellation = cancellationIndex;
+        CoalescingIndex coalescing = coalescingIndex;
+        SpillingDelayBuffer<?, ?> spill = spillBuffer;
+        DelayContainerState state = containerState;
+        if (listenerMetrics != null) {
+            listenerMetrics.recordReceived(records.count());
+        }
+        if (cancellation == null && coalescing == null && spill == null && state == null) {
+            return records;
+        }
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> retained = null;
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<Object, Object>> partitionRecords = records.records(partition);
+            List<ConsumerRecord<Object, Object>> kept = spill == null ? null : new ArrayList<>(partitionRecords.size());
+            for (ConsumerRecord<Object, Object> record : partitionRecords) {
+                Object value = record.value();
+                D2kMessageHeaders headers = value instanceof D2kMessage ? ((D2kMessage<?>) value).getHeaders() : null;
+                if (headers != null && headers.isCancel()) {
+                    if (cancellation != null) {
+                        cancellation.markCancelled(partition, headers.getMessageId());
+                    }
+                } else if (coalescing != null) {
+                    coalescing.recordLatest(partition, record.key(), record.offset());
+                }
+                if (spill != null) {
+                    if (spill.offer(record)) {
+                        continue;
+                    }
+                    kept.add(record);
+                }
+            }
+            if (state != null) {
+                state.recordPolled(partition, kept != null ? kept : partitionRecords);
+            }
+            if (kept != null && kept.size() < partitionRecords.size()) {
+                if (retained == null) {
+                    retained = new HashMap<>();
+                    for (TopicPartition p : records.partitions()) {
+                        retained.put(p, records.records(p));
+                    }
+                }
+                retained.put(partition, kept);
+            }
+        }
+        if (spill != null) {
+            spill.flush();
+        }
+        if (retained == null) {
+            return records;
+        }
+        retained.values().removeIf(List::isEmpty);
+        return new ConsumerRecords<>(retained);
+    }
+
+    @Override
+    public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        DelayContainerState state = containerState;
+        if (state != null) {
+            state.recordCommitted(offsets);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
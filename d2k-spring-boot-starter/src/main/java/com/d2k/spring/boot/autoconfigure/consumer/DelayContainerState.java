@@ -0,0 +1,724 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 延迟消费容器的运行状态
+ * 按分区跟踪已拉取尚未到期的消息（offset 和到期时间）、最近拉取和投递的 offset、最近提交的 offset 和时间，
+ * 以及消费者当前分配到的分区；同时提供暂停投递的闸门。
+ * <p>
+ * 拉取拦截器登记拉取和提交，{@link ContainerStateHandler} 登记投递，消费者指标上报器登记分区分配
+ * （以分区级别的 records-lag 指标存在与否为准）。落盘的消息不在容器堆内，不计入分区的等待数。
+ * 重新拉取较早的 offset（再均衡或 seek 后）时替换该 offset 之后的登记，分区被撤销时清空其等待中的消息，
+ * 避免重复计数或残留已不归本容器投递的消息
+ * <p>
+ * 到期预测：每个分区按到期时间把未到期消息划入固定宽度的桶并计数，按预测时间范围统计即将到期（包括已逾期）的消息数，
+ * 精度为一个桶宽。主题级别的预测另外计入落盘尚未读回的消息（精度为落盘时间窗口），已读回等待到期的消息不计入；
+ * 到期时间未知的消息不计入预测
+ *
+ * @author xiajuan96
+ */
+public class DelayContainerState {
+
+    /** 默认的到期预测桶宽（毫秒） */
+    public static final long DEFAULT_FORECAST_BUCKET_MS = 10000L;
+    /** 默认的到期预测时间范围（毫秒）：1 分钟、5 分钟、1 小时、24 小时 */
+    public static final List<Long> DEFAULT_FORECAST_HORIZONS_MS =
+            Collections.unmodifiableList(Arrays.asList(60000L, 300000L, 3600000L, 86400000L));
+
+    private final String name;
+    private final Map<String, Long> topicDelays;
+    private final long forecastBucketMs;
+    private final long[] forecastHorizonsMs;
+    private final Map<String, Long> forecastHorizons = new LinkedHashMap<>();
+    private final Map<String, String> topicsByMetricTag = new HashMap<>();
+    private final ConcurrentMap<TopicPartition, PartitionState> partitions = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object pauseLock = new Object();
+    private volatile boolean paused;
+    private volatile boolean pauseSupported = true;
+    private volatile boolean running;
+    private volatile SpillingDelayBuffer<?, ?> spillBuffer;
+    private volatile Map<String, Long> rungDelays = Collections.emptyMap();
+
+    /**
+     * 使用默认的到期预测桶宽和时间范围
+     *
+     * @param name        容器名称
+     * @param topics      实际订阅的主题
+     * @param topicDelays 各主题的延迟（毫秒），用于计算不携带元数据的消息的到期时间
+     */
+    public DelayContainerState(String name, Collection<String> topics, Map<String, Long> topicDelays) {
+        this(name, topics, topicDelays, DEFAULT_FORECAST_BUCKET_MS, DEFAULT_FORECAST_HORIZONS_MS);
+    }
+
+    /**
+     * @param name               容器名称
+     * @param topics             实际订阅的主题
+     * @param topicDelays        各主题的延迟（毫秒），用于计算不携带元数据的消息的到期时间
+     * @param forecastBucketMs   到期预测的桶宽（毫秒）
+     * @param forecastHorizonsMs 到期预测的时间范围（毫秒）
+     */
+    public DelayContainerState(String name, Collection<String> topics, Map<String, Long> topicDelays,
+                               long forecastBucketMs, Collection<Long> forecastHorizonsMs) {
+        if (forecastBucketMs <= 0) {
+            throw new IllegalArgumentException("forecastBucketMs must be positive, but was " + forecastBucketMs);
+        }
+        this.name = name;
+        this.topicDelays = topicDelays == null ? Collections.emptyMap() : topicDelays;
+        this.forecastBucketMs = forecastBucketMs;
+        this.forecastHorizonsMs = forecastHorizonsMs.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+        for (long horizon : this.forecastHorizonsMs) {
+            if (horizon <= 0) {
+                throw new IllegalArgumentException("Forecast horizon must be positive, but was " + horizon);
+            }
+            forecastHorizons.put(horizonLabel(horizon), horizon);
+        }
+        for (String topic : topics) {
+            // 消费者指标的 topic 标签中 . 被替换为 _
+            topicsByMetricTag.put(topic.replace('.', '_'), topic);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 设置容器的落盘缓冲，主题级别的到期预测计入其中尚未读回的消息
+     */
+    public void setSpillBuffer(SpillingDelayBuffer<?, ?> spillBuffer) {
+        this.spillBuffer = spillBuffer;
+    }
+
+    public SpillingDelayBuffer<?, ?> getSpillBuffer() {
+        return spillBuffer;
+    }
+
+    /**
+     * 设置延迟阶梯梯级主题的延迟；梯级上的消息按写入梯级的时间加梯级延迟从容器释放，
+     * 信封中的到期时间是最终到期时间，不用于这些主题
+     */
+    public void setRungDelays(Map<String, Long> rungDelays) {
+        this.rungDelays = rungDelays == null ? Collections.emptyMap() : rungDelays;
+    }
+
+    /**
+     * 登记一个分区本次拉取后留在容器中的消息
+     */
+    public void recordPolled(TopicPartition partition, List<? extends ConsumerRecord<?, ?>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        PartitionState state = partition(partition);
+        synchronized (state) {
+            for (ConsumerRecord<?, ?> record : records) {
+                state.add(record.offset(), dueTime(record));
+            }
+        }
+    }
+
+    /**
+     * 登记一条消息到期并交给处理器，只移除该 offset 的登记；不在容器堆内的消息（如从磁盘读回的消息）不影响状态
+     */
+    public void recordDelivered(TopicPartition partition, long offset) {
+        PartitionState state = partitions.get(partition);
+        if (state != null) {
+            synchronized (state) {
+                state.delivered(offset);
+            }
+        }
+    }
+
+    /**
+     * 分区在容器堆内的下一条消息是否已经到期，即容器是否会紧接着投递该分区的下一条消息
+     *
+     * @param partition 分区
+     * @param now       当前时间
+     */
+    public boolean hasDueRecord(TopicPartition partition, long now) {
+        PartitionState state = partitions.get(partition);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            if (state.pending == 0) {
+                return false;
+            }
+            long dueTime = state.dueTimes[state.head];
+            return dueTime >= 0 && dueTime <= now;
+        }
+    }
+
+    /**
+     * 登记消费者提交的 offset
+     */
+    public void recordCommitted(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet()) {
+            PartitionState state = partition(entry.getKey());
+            synchronized (state) {
+                state.committedOffset = entry.getValue().offset();
+                state.lastCommitTime = now;
+            }
+        }
+    }
+
+    /**
+     * 消费者开始拉取某个分区时登记其 records-lag 指标，分区视为已分配
+     *
+     * @param topicTag  指标的 topic 标签
+     * @param partition 分区
+     * @param metric    records-lag 指标
+     */
+    public void addPartitionLag(String topicTag, int partition, Metric metric) {
+        String topic = topicsByMetricTag.get(topicTag);
+        if (topic != null) {
+            partition(new TopicPartition(topic, partition)).lagMetric = metric;
+        }
+    }
+
+    /**
+     * 消费者不再拉取某个分区时移除其 records-lag 指标并清空该分区等待中的消息；
+     * 分区在同一容器的消费者之间转移时只移除旧消费者的指标，新消费者重新拉取时替换原有登记
+     */
+    public void removePartitionLag(String topicTag, int partition, Metric metric) {
+        String topic = topicsByMetricTag.get(topicTag);
+        PartitionState state = topic == null ? null : partitions.get(new TopicPartition(topic, partition));
+        if (state != null) {
+            Metric current = state.lagMetric;
+            if (current != null && current.metricName().equals(metric.metricName())) {
+                state.lagMetric = null;
+                // 分区已撤销，新的消费者从已提交的 offset 重新拉取，堆内的登记不再由本容器投递
+                synchronized (state) {
+                    state.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置是否支持暂停投递
+     * 暂停时到期消息在处理线程上等待；同步处理时处理线程就是拉取线程，等待会阻塞拉取和提交，
+     * 超过 max.poll.interval.ms 后触发再均衡，而容器不开放消费者的 pause / resume，因此同步处理的容器不支持暂停
+     *
+     * @param pauseSupported 是否支持，默认支持，容器工厂为同步处理的容器关闭
+     */
+    public void setPauseSupported(boolean pauseSupported) {
+        this.pauseSupported = pauseSupported;
+    }
+
+    public boolean isPauseSupported() {
+        return pauseSupported;
+    }
+
+    /**
+     * 暂停投递，已到期的消息在处理器前等待，直到恢复
+     *
+     * @throws IllegalStateException 如果容器不支持暂停（同步处理）
+     */
+    public void pause() {
+        if (!pauseSupported) {
+            throw new IllegalStateException("D2K container " + name + " processes records on the poll thread "
+                    + "and cannot be paused; enable async processing to pause delivery");
+        }
+        paused = true;
+    }
+
+    /**
+     * 恢复投递
+     */
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * 暂停时阻塞直到恢复
+     */
+    void awaitResumed() throws InterruptedException {
+        if (!paused) {
+            return;
+        }
+        synchronized (pauseLock) {
+            while (paused) {
+                pauseLock.wait();
+            }
+        }
+    }
+
+    void deliveryStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void deliveryCompleted() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 正在处理（包括暂停时等待）的到期消息数
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 容器堆内已拉取尚未到期的消息数
+     */
+    public long getPendingCount() {
+        long pending = 0;
+        for (PartitionState state : partitions.values()) {
+            synchronized (state) {
+                pending += state.pending;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 订阅的主题
+     */
+    public Collection<String> getTopics() {
+        return Collections.unmodifiableCollection(topicsByMetricTag.values());
+    }
+
+    /**
+     * 到期预测的时间范围，标签（如 1m、1h）到毫秒的映射，按时间范围升序
+     */
+    public Map<String, Long> getForecastHorizons() {
+        return Collections.unmodifiableMap(forecastHorizons);
+    }
+
+    /**
+     * 各主题在各预测时间范围内将要到期（包括已逾期）的消息数，包括落盘尚未读回的消息
+     *
+     * @return 主题到（时间范围标签到消息数）的映射，按主题排序
+     */
+    public Map<String, Map<String, Long>> getDueForecast() {
+        Map<String, long[]> counts = countDue(System.currentTimeMillis());
+        Map<String, Map<String, Long>> forecast = new TreeMap<>();
+        for (String topic : topicsByMetricTag.values()) {
+            forecast.put(topic, labelled(counts.get(topic)));
+        }
+        return forecast;
+    }
+
+    /**
+     * 某个主题在给定时间范围内将要到期（包括已逾期）的消息数，包括落盘尚未读回的消息
+     *
+     * @param topic     主题
+     * @param horizonMs 时间范围（毫秒）
+     */
+    public long getDueForecast(String topic, long horizonMs) {
+        long now = System.currentTimeMillis();
+        long[] deadline = {now + horizonMs};
+        long[] count = new long[1];
+        for (Map.Entry<TopicPartition, PartitionState> entry : partitions.entrySet()) {
+            if (entry.getKey().topic().equals(topic)) {
+                PartitionState state = entry.getValue();
+                synchronized (state) {
+                    state.countDue(deadline, count);
+                }
+            }
+        }
+        SpillingDelayBuffer<?, ?> spill = spillBuffer;
+        long[] spilled = spill == null ? null : spill.countSpilledDue(deadline).get(topic);
+        return spilled == null ? count[0] : count[0] + spilled[0];
+    }
+
+    /**
+     * 某个主题各分区在各预测时间范围内将要到期（包括已逾期）的堆内消息数
+     *
+     * @return 分区到（时间范围标签到消息数）的映射，按分区排序
+     */
+    public Map<Integer, Map<String, Long>> getPartitionDueForecast(String topic) {
+        long[] deadlines = deadlines(System.currentTimeMillis());
+        Map<Integer, Map<String, Long>> forecast = new TreeMap<>();
+        for (Map.Entry<TopicPartition, PartitionState> entry : partitions.entrySet()) {
+            if (entry.getKey().topic().equals(topic)) {
+                long[] counts = new long[deadlines.length];
+                PartitionState state = entry.getValue();
+                synchronized (state) {
+                    state.countDue(deadlines, counts);
+                }
+                forecast.put(entry.getKey().partition(), labelled(counts));
+            }
+        }
+        return forecast;
+    }
+
+    /**
+     * 各分区的状态快照，按主题和分区排序
+     */
+    public List<PartitionSnapshot> getPartitions() {
+        List<PartitionSnapshot> snapshots = new ArrayList<>(partitions.size());
+        long[] deadlines = deadlines(System.currentTimeMillis());
+        for (Map.Entry<TopicPartition, PartitionState> entry : partitions.entrySet()) {
+            PartitionState state = entry.getValue();
+            long[] counts = new long[deadlines.length];
+            synchronized (state) {
+                state.countDue(deadlines, counts);
+                snapshots.add(new PartitionSnapshot(entry.getKey(), state, labelled(counts)));
+            }
+        }
+        snapshots.sort(Comparator.comparing(PartitionSnapshot::getTopic)
+                .thenComparingInt(PartitionSnapshot::getPartition));
+        return snapshots;
+    }
+
+    /**
+     * 时间范围的标签：能整除时按小时、分钟、秒表示（超过一天的整天数按天），否则按毫秒，如 1m、24h、7d
+     */
+    public static String horizonLabel(long horizonMs) {
+        if (horizonMs % 86400000L == 0 && horizonMs > 86400000L) {
+            return horizonMs / 86400000L + "d";
+        }
+        if (horizonMs % 3600000L == 0) {
+            return horizonMs / 3600000L + "h";
+        }
+        if (horizonMs % 60000L == 0) {
+            return horizonMs / 60000L + "m";
+        }
+        if (horizonMs % 1000L == 0) {
+            return horizonMs / 1000L + "s";
+        }
+        return horizonMs + "ms";
+    }
+
+    private Map<String, long[]> countDue(long now) {
+        long[] deadlines = deadlines(now);
+        Map<String, long[]> counts = new HashMap<>();
+        for (Map.Entry<TopicPartition, PartitionState> entry : partitions.entrySet()) {
+            long[] topicCounts = counts.computeIfAbsent(entry.getKey().topic(), k -> new long[deadlines.length]);
+            PartitionState state = entry.getValue();
+            synchronized (state) {
+                state.countDue(deadlines, topicCounts);
+            }
+        }
+        SpillingDelayBuffer<?, ?> spill = spillBuffer;
+        if (spill != null) {
+            for (Map.Entry<String, long[]> entry : spill.countSpilledDue(deadlines).entrySet()) {
+                long[] topicCounts = counts.computeIfAbsent(entry.getKey(), k -> new long[deadlines.length]);
+                for (int i = 0; i < deadlines.length; i++) {
+                    topicCounts[i] += entry.getValue()[i];
+                }
+            }
+        }
+        return counts;
+    }
+
+    private long[] deadlines(long now) {
+        long[] deadlines = new long[forecastHorizonsMs.length];
+        for (int i = 0; i < deadlines.length; i++) {
+            deadlines[i] = now + forecastHorizonsMs[i];
+        }
+        return deadlines;
+    }
+
+    private Map<String, Long> labelled(long[] counts) {
+        Map<String, Long> labelled = new LinkedHashMap<>();
+        int i = 0;
+        for (String label : forecastHorizons.keySet()) {
+            labelled.put(label, counts == null ? 0L : counts[i]);
+            i++;
+        }
+        return labelled;
+    }
+
+    private PartitionState partition(TopicPartition partition) {
+        return partitions.computeIfAbsent(partition, p -> new PartitionState(forecastBucketMs));
+    }
+
+    private long dueTime(ConsumerRecord<?, ?> record) {
+        Long rungDelay = rungDelays.get(record.topic());
+        if (rungDelay != null) {
+            return record.timestamp() < 0 ? -1L : record.timestamp() + rungDelay;
+        }
+        Object value = record.value();
+        D2kMessageHeaders headers = value instanceof D2kMessage ? ((D2kMessage<?>) value).getHeaders() : null;
+        if (headers != null && headers.getDueTimestamp() != D2kMessageHeaders.UNKNOWN_TIMESTAMP) {
+            return headers.getDueTimestamp();
+        }
+        Long delay = topicDelays.get(record.topic());
+        return delay == null || record.timestamp() < 0 ? -1L : record.timestamp() + delay;
+    }
+
+    /**
+     * 单个分区的状态，未到期消息按 offset 严格递增保存在环形数组中，另按到期时间所在的桶计数
+     * <p>
+     * 拉取到不晚于队尾的 offset 说明消费者回到了较早的位置，先移除队尾不早于该 offset 的条目再追加；
+     * 投递时按 offset 二分查找只移除该条消息（异步处理时同一分区的消息可能乱序开始处理），
+     * 不在队首的条目先标记为已投递，到达队首时出队
+     */
+    private static final class PartitionState {
+
+        private static final long DELIVERED = Long.MIN_VALUE;
+
+        private final long bucketMs;
+        private final TreeMap<Long, int[]> dueBuckets = new TreeMap<>();
+        private long[] offsets = new long[16];
+        private long[] dueTimes = new long[16];
+        private int head;
+        private int size;
+        private int pending;
+        private long lastPolledOffset = -1L;
+        private long lastDeliveredOffset = -1L;
+        private long committedOffset = -1L;
+        private long lastCommitTime = -1L;
+        private volatile Metric lagMetric;
+
+        private PartitionState(long bucketMs) {
+            this.bucketMs = bucketMs;
+        }
+
+        private void add(long offset, long dueTime) {
+            while (size > 0 && offsets[index(size - 1)] >= offset) {
+                removeLast();
+            }
+            if (size == offsets.length) {
+                grow();
+            }
+            int tail = index(size);
+            offsets[tail] = offset;
+            dueTimes[tail] = dueTime;
+            size++;
+            pending++;
+            lastPolledOffset = offset;
+            if (dueTime >= 0) {
+                dueBuckets.computeIfAbsent(dueTime / bucketMs, k -> new int[1])[0]++;
+            }
+        }
+
+        private void delivered(long offset) {
+            int i = find(offset);
+            if (i < 0 || dueTimes[i] == DELIVERED) {
+                return;
+            }
+            uncount(dueTimes[i]);
+            dueTimes[i] = DELIVERED;
+            pending--;
+            while (size > 0 && dueTimes[head] == DELIVERED) {
+                head = index(1);
+                size--;
+            }
+            lastDeliveredOffset = offset;
+        }
+
+        private void clear() {
+            dueBuckets.clear();
+            head = 0;
+            size = 0;
+            pending = 0;
+        }
+
+        private void removeLast() {
+            int tail = index(size - 1);
+            if (dueTimes[tail] != DELIVERED) {
+                uncount(dueTimes[tail]);
+                pending--;
+            }
+            size--;
+        }
+
+        private void uncount(long dueTime) {
+            if (dueTime >= 0) {
+                Long bucket = dueTime / bucketMs;
+                int[] count = dueBuckets.get(bucket);
+                if (count != null && --count[0] == 0) {
+                    dueBuckets.remove(bucket);
+                }
+            }
+        }
+
+        /**
+         * 二分查找 offset 所在的数组下标，不存在时返回 -1
+         */
+        private int find(long offset) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = offsets[index(mid)];
+                if (value < offset) {
+                    low = mid + 1;
+                } else if (value > offset) {
+                    high = mid - 1;
+                } else {
+                    return index(mid);
+                }
+            }
+            return -1;
+        }
+
+        private int index(int position) {
+            return (head + position) & (offsets.length - 1);
+        }
+
+        /**
+         * 把到期时间所在的桶不晚于各截止时间所在的桶的消息数累加到 counts 中
+         *
+         * @param deadlines 截止时间，升序
+         * @param counts    与 deadlines 一一对应的累计消息数
+         */
+        private void countDue(long[] deadlines, long[] counts) {
+            if (deadlines.length == 0 || dueBuckets.isEmpty()) {
+                return;
+            }
+            int first = 0;
+            for (Map.Entry<Long, int[]> entry
+                    : dueBuckets.headMap(deadlines[deadlines.length - 1] / bucketMs, true).entrySet()) {
+                while (deadlines[first] / bucketMs < entry.getKey()) {
+                    first++;
+                }
+                for (int i = first; i < deadlines.length; i++) {
+                    counts[i] += entry.getValue()[0];
+                }
+            }
+        }
+
+        private void grow() {
+            int capacity = offsets.length << 1;
+            long[] newOffsets = new long[capacity];
+            long[] newDueTimes = new long[capacity];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (offsets.length - 1);
+                newOffsets[i] = offsets[index];
+                newDueTimes[i] = dueTimes[index];
+            }
+            offsets = newOffsets;
+            dueTimes = newDueTimes;
+            head = 0;
+        }
+    }
+
+    /**
+     * 分区状态快照，时间均为毫秒时间戳，未知时为 null
+     */
+    public static final class PartitionSnapshot {
+
+        private final String topic;
+        private final int partition;
+        private final boolean assigned;
+        private final Double lag;
+        private final int pendingCount;
+        private final Long nextDueTime;
+        private final Long lastPolledOffset;
+        private final Long lastDeliveredOffset;
+        private final Long committedOffset;
+        private final Long lastCommitTime;
+        private final Map<String, Long> dueForecast;
+
+        private PartitionSnapshot(TopicPartition topicPartition, PartitionState state, Map<String, Long> dueForecast) {
+            this.topic = topicPartition.topic();
+            this.partition = topicPartition.partition();
+            Metric lagMetric = state.lagMetric;
+            this.assigned = lagMetric != null;
+            Object lagValue = lagMetric == null ? null : lagMetric.metricValue();
+            this.lag = lagValue instanceof Number && !Double.isNaN(((Number) lagValue).doubleValue())
+                    ? ((Number) lagValue).doubleValue() : null;
+            this.pendingCount = state.pending;
+            this.nextDueTime = state.pending == 0 || state.dueTimes[state.head] < 0 ? null : state.dueTimes[state.head];
+            this.lastPolledOffset = orNull(state.lastPolledOffset);
+            this.lastDeliveredOffset = orNull(state.lastDeliveredOffset);
+            this.committedOffset = orNull(state.committedOffset);
+            this.lastCommitTime = orNull(state.lastCommitTime);
+            this.dueForecast = dueForecast;
+        }
+
+        private static Long orNull(long value) {
+            return value < 0 ? null : value;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        /**
+         * 是否分配给容器的某个消费者
+         */
+        public boolean isAssigned() {
+            return assigned;
+        }
+
+        /**
+         * 消费者上报的消费延迟（条）
+         */
+        public Double getLag() {
+            return lag;
+        }
+
+        /**
+         * 容器堆内已拉取尚未到期的消息数
+         */
+        public int getPendingCount() {
+            return pendingCount;
+        }
+
+        /**
+         * 最早一条未到期消息的到期时间
+         */
+        public Long getNextDueTime() {
+            return nextDueTime;
+        }
+
+        public Long getLastPolledOffset() {
+            return lastPolledOffset;
+        }
+
+        public Long getLastDeliveredOffset() {
+            return lastDeliveredOffset;
+        }
+
+        public Long getCommittedOffset() {
+            return committedOffset;
+        }
+
+        public Long getLastCommitTime() {
+            return lastCommitTime;
+        }
+
+        /**
+         * 各预测时间范围内将要到期（包括已逾期）的堆内消息数
+         */
+        public Map<String, Long> getDueForecast() {
+            return dueForecast;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于独立 KafkaConsumer 的消息重新拉取
+ * 使用手动分配分区、不加入消费组的消费者，按需 seek 到目标 offset；相邻的 offset 连续拉取，不重复 seek，
+ * 近期写入的消息通常仍在 Broker 的页缓存中。
+ * <p>
+ * 已过保留期、被截断或位于日志末尾之后的 offset 不会重试，直接从结果中省略，由调用方计为缺失；
+ * 只有拉取超时等暂时性错误才抛出异常
+ *
+ * @author xiajuan96
+ */
+public class KafkaRecordRefetcher implements RecordRefetcher, Closeable {
+
+    private static final int MAX_EMPTY_POLLS = 3;
+
+    private final Consumer<byte[], byte[]> consumer;
+    private final Duration pollTimeout;
+
+    /**
+     * @param consumerConfigs 容器的消费者配置，去掉消费组相关配置后用于创建拉取用的消费者
+     */
+    public KafkaRecordRefetcher(Map<String, Object> consumerConfigs) {
+        this(new KafkaConsumer<>(refetchConfigs(consumerConfigs),
+                new ByteArrayDeserializer(), new ByteArrayDeserializer()), Duration.ofSeconds(1));
+    }
+
+    public KafkaRecordRefetcher(Consumer<byte[], byte[]> consumer, Duration pollTimeout) {
+        this.consumer = consumer;
+        this.pollTimeout = pollTimeout;
+    }
+
+    @Override
+    public synchronized List<ConsumerRecord<byte[], byte[]>> refetch(TopicPartition partition, long[] offsets) {
+        List<ConsumerRecord<byte[], byte[]>> result = new ArrayList<>(offsets.length);
+        Set<TopicPartition> assignment = Collections.singleton(partition);
+        consumer.assign(assignment);
+        int index = 0;
+        int emptyPolls = 0;
+        long position = -1L;
+        while (index < offsets.length) {
+            if (position != offsets[index]) {
+                consumer.seek(partition, offsets[index]);
+                position = offsets[index];
+            }
+            List<ConsumerRecord<byte[], byte[]>> polled;
+            try {
+                polled = consumer.poll(pollTimeout).records(partition);
+            } catch (OffsetOutOfRangeException e) {
+                polled = Collections.emptyList();
+                position = -1L;
+            }
+            if (polled.isEmpty()) {
+                // 已过保留期、被截断或位于日志末尾之后的 offset 不会再出现，跳过而不是重试
+                long beginning = consumer.beginningOffsets(assignment).get(partition);
+                while (index < offsets.length && offsets[index] < beginning) {
+                    index++;
+                }
+                if (index == offsets.length || offsets[index] >= consumer.endOffsets(assignment).get(partition)) {
+                    break;
+                }
+                if (++emptyPolls >= MAX_EMPTY_POLLS) {
+                    throw new IllegalStateException("Timed out refetching " + partition + " from offset "
+                            + offsets[index] + ", " + (offsets.length - index) + " records remaining");
+                }
+                continue;
+            }
+            emptyPolls = 0;
+            for (ConsumerRecord<byte[], byte[]> record : polled) {
+                // 小于当前消息 offset 的目标已被删除或压缩
+                while (index < offsets.length && offsets[index] < record.offset()) {
+                    index++;
+                }
+                if (index == offsets.length) {
+                    break;
+                }
+                if (offsets[index] == record.offset()) {
+                    result.add(record);
+                    index++;
+                }
+            }
+            position = polled.get(polled.size() - 1).offset() + 1;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void close() {
+        consumer.close();
+    }
+
+    private static Map<String, Object> refetchConfigs(Map<String, Object> consumerConfigs) {
+        Map<String, Object> configs = new HashMap<>(consumerConfigs);
+        configs.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        configs.remove(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG);
+        configs.remove(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG);
+        configs.remove(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+        configs.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // 目标 offset 超出有效范围时抛出 OffsetOutOfRangeException，由 refetch 跳过缺失的 offset
+        configs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "none");
+        Object clientId = configs.get(ConsumerConfig.CLIENT_ID_CONFIG);
+        if (clientId != null && !clientId.toString().isEmpty()) {
+            configs.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId + "-refetch");
+        }
+        return configs;
+    }
+}
@@ -0,0 +1,61 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.consumer.DelayItemHandler;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayLatenessRecorder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 记录到期延迟的处理器装饰
+ * 在调用实际处理器前记录当前时间与计划到期时间之差：携带元数据的消息使用其中的到期时间，
+ * 否则按消息时间戳加主题延迟计算，两者都没有时不记录
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class LatenessRecordingHandler<K, V> implements DelayItemHandler<K, V> {
+
+    private final DelayItemHandler<K, V> delegate;
+    private final DelayLatenessRecorder.ListenerLateness lateness;
+    private final Map<String, Long> topicDelays;
+
+    /**
+     * @param delegate    实际处理器
+     * @param lateness    监听器的延迟记录入口
+     * @param topicDelays 各主题的延迟（毫秒）
+     */
+    public LatenessRecordingHandler(DelayItemHandler<K, V> delegate, DelayLatenessRecorder.ListenerLateness lateness,
+                                    Map<String, Long> topicDelays) {
+        this.delegate = delegate;
+        this.lateness = lateness;
+        this.topicDelays = topicDelays == null ? Collections.emptyMap() : topicDelays;
+    }
+
+    @Override
+    public void process(DelayItem<K, V> delayItem) {
+        ConsumerRecord<K, V> record = delayItem.getRecord();
+        long dueTime = dueTime(record);
+        if (dueTime >= 0) {
+            lateness.record(record.topic(), record.partition(), System.currentTimeMillis() - dueTime);
+        }
+        delegate.process(delayItem);
+    }
+
+    private long dueTime(ConsumerRecord<K, V> record) {
+        D2kMessageHeaders headers = D2kMessageHeaders.from(record);
+        if (headers != null && headers.getDueTimestamp() != D2kMessageHeaders.UNKNOWN_TIMESTAMP) {
+            return headers.getDueTimestamp();
+        }
+        Long delay = topicDelays.get(record.topic());
+        return delay == null || record.timestamp() < 0 ? -1L : record.timestamp() + delay;
+    }
+
+    public DelayItemHandler<K, V> getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,78 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.consumer.DelayItemHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 按顺序调用 {@link D2kListenerInterceptor} 的装饰
+ * 紧贴监听器方法，上下文按线程复用；afterInvoke 和 onError 中抛出的异常只记录日志，
+ * 保证其余拦截器都能收到回调（例如清理 MDC），监听器方法的异常原样抛出
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class ListenerInterceptorHandler<K, V> implements DelayItemHandler<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(ListenerInterceptorHandler.class);
+
+    private final DelayItemHandler<K, V> delegate;
+    private final D2kListenerInterceptor[] interceptors;
+    private final ThreadLocal<D2kListenerContext> contexts;
+
+    /**
+     * @param delegate     监听器方法的处理器
+     * @param listenerId   监听器标识
+     * @param method       监听器方法，可以为 null
+     * @param interceptors 拦截器，按调用顺序排列
+     */
+    public ListenerInterceptorHandler(DelayItemHandler<K, V> delegate, String listenerId, Method method,
+                                      List<D2kListenerInterceptor> interceptors) {
+        this.delegate = delegate;
+        this.interceptors = interceptors.toArray(new D2kListenerInterceptor[0]);
+        this.contexts = ThreadLocal.withInitial(() -> new D2kListenerContext(listenerId, method));
+    }
+
+    @Override
+    public void process(DelayItem<K, V> delayItem) {
+        D2kListenerContext context = contexts.get();
+        context.reset(delayItem);
+        int entered = 0;
+        try {
+            for (D2kListenerInterceptor interceptor : interceptors) {
+                interceptor.beforeInvoke(context);
+                entered++;
+            }
+            delegate.process(delayItem);
+        } catch (RuntimeException | Error e) {
+            for (int i = entered - 1; i >= 0; i--) {
+                try {
+                    interceptors[i].onError(context, e);
+                } catch (RuntimeException callbackError) {
+                    log.warn("D2kListenerInterceptor {} failed in onError for listener {}",
+                            interceptors[i].getClass().getName(), context.getListenerId(), callbackError);
+                }
+            }
+            context.clear();
+            throw e;
+        }
+        for (int i = entered - 1; i >= 0; i--) {
+            try {
+                interceptors[i].afterInvoke(context);
+            } catch (RuntimeException callbackError) {
+                log.warn("D2kListenerInterceptor {} failed in afterInvoke for listener {}",
+                        interceptors[i].getClass().getName(), context.getListenerId(), callbackError);
+            }
+        }
+        context.clear();
+    }
+
+    public DelayItemHandler<K, V> getDelegate() {
+        return delegate;
+    }
+}
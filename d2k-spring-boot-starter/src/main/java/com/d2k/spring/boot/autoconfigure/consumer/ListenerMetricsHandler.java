@@ -0,0 +1,45 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.consumer.DelayItemHandler;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayContainerMetrics;
+
+/**
+ * 统计处理器调用的装饰
+ * 紧贴实际处理器，记录正在处理的消息数以及按成功、失败区分的处理次数和耗时，异常原样抛出
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class ListenerMetricsHandler<K, V> implements DelayItemHandler<K, V> {
+
+    private final DelayItemHandler<K, V> delegate;
+    private final DelayContainerMetrics.ListenerMetrics metrics;
+
+    /**
+     * @param delegate 实际处理器
+     * @param metrics  监听器的指标
+     */
+    public ListenerMetricsHandler(DelayItemHandler<K, V> delegate, DelayContainerMetrics.ListenerMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void process(DelayItem<K, V> delayItem) {
+        metrics.handlerStarted();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.process(delayItem);
+            success = true;
+        } finally {
+            metrics.handlerCompleted(System.nanoTime() - start, success);
+        }
+    }
+
+    public DelayItemHandler<K, V> getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,92 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按分区保存 (offset, 到期时间) 的紧凑索引
+ * 每个分区用两个按 offset 升序排列的 long 数组保存，每条消息只占 16 字节，不持有消息对象。
+ * 消息通常按 offset 顺序加入，插入为均摊 O(1)；同一 offset 重复加入时以后加入的到期时间为准。非线程安全
+ *
+ * @author xiajuan96
+ */
+public class OffsetDueIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<TopicPartition, Entries> partitions = new LinkedHashMap<>();
+    private int size;
+
+    /**
+     * 加入一条消息
+     */
+    public void add(TopicPartition partition, long offset, long dueTime) {
+        if (partitions.computeIfAbsent(partition, p -> new Entries()).add(offset, dueTime)) {
+            size++;
+        }
+    }
+
+    public Set<TopicPartition> partitions() {
+        return partitions.keySet();
+    }
+
+    /**
+     * 分区内的全部 offset，升序
+     */
+    public long[] offsets(TopicPartition partition) {
+        Entries entries = partitions.get(partition);
+        return entries == null ? new long[0] : Arrays.copyOf(entries.offsets, entries.size);
+    }
+
+    /**
+     * 查询消息的到期时间
+     *
+     * @return 到期时间，不存在时返回 -1
+     */
+    public long dueTime(TopicPartition partition, long offset) {
+        Entries entries = partitions.get(partition);
+        if (entries == null) {
+            return -1L;
+        }
+        int index = Arrays.binarySearch(entries.offsets, 0, entries.size, offset);
+        return index < 0 ? -1L : entries.dueTimes[index];
+    }
+
+    /**
+     * 索引中的消息数
+     */
+    public int size() {
+        return size;
+    }
+
+    private static final class Entries {
+        private long[] offsets = new long[INITIAL_CAPACITY];
+        private long[] dueTimes = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private boolean add(long offset, long dueTime) {
+            int index = size;
+            while (index > 0 && offsets[index - 1] > offset) {
+                index--;
+            }
+            if (index > 0 && offsets[index - 1] == offset) {
+                dueTimes[index - 1] = dueTime;
+                return false;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                dueTimes = Arrays.copyOf(dueTimes, size * 2);
+            }
+            System.arraycopy(offsets, index, offsets, index + 1, size - index);
+            System.arraycopy(dueTimes, index, dueTimes, index + 1, size - index);
+            offsets[index] = offset;
+            dueTimes[index] = dueTime;
+            size++;
+            return true;
+        }
+    }
+}
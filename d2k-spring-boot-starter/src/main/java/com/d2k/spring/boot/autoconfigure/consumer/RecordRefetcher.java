@@ -0,0 +1,25 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.List;
+
+/**
+ * 按 offset 从 Kafka 重新拉取消息
+ * 落盘时只记录 offset 和到期时间的消息在读回时通过它取回原始字节
+ *
+ * @author xiajuan96
+ */
+public interface RecordRefetcher {
+
+    /**
+     * 拉取分区中指定 offset 的消息
+     *
+     * @param partition 分区
+     * @param offsets   升序排列的 offset
+     * @return 取到的原始消息，已被删除、压缩或超出日志范围的 offset 不在结果中
+     * @throws RuntimeException 如果拉取失败或超时等暂时性错误，调用方稍后重试
+     */
+    List<ConsumerRecord<byte[], byte[]>> refetch(TopicPartition partition, long[] offsets);
+}
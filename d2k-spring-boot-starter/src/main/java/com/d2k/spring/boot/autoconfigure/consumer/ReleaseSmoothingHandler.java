@@ -0,0 +1,162 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.consumer.DelayItemHandler;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 到期消息平滑释放处理器
+ * 大量消息同时到期时，按监听器的释放速率上限和随机抖动窗口把它们分散到之后的时间点再交给实际处理器，
+ * 避免下游被瞬时洪峰压垮。
+ * <p>
+ * 等待在调用处理器的容器线程上进行，到达释放时间点后在同一线程上调用实际处理器，处理器的异常原样抛出，
+ * 因此消息处理完成之前不会被视为已消费。速率上限由同一监听器的所有容器线程共享。
+ * 同步处理时等待发生在拉取线程上，单条消息的等待时间不应接近 max.poll.interval.ms；
+ * 大量消息同时到期时建议开启异步处理。
+ * <p>
+ * 容器停止时由 {@link #close()} 结束等待，等待中的消息以异常结束，不会被视为已消费。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class ReleaseSmoothingHandler<K, V> implements DelayItemHandler<K, V> {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final DelayItemHandler<K, V> delegate;
+    private final long intervalNanos;
+    private final long jitterNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder releasedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder totalAddedLatenessNanos = new LongAdder();
+    private final AtomicLong maxAddedLatenessNanos = new AtomicLong();
+
+    /**
+     * @param delegate    实际处理器
+     * @param releaseRate 每秒最多释放的消息数，0 表示不限速
+     * @param jitterMs    随机抖动窗口（毫秒），0 表示不抖动
+     */
+    public ReleaseSmoothingHandler(DelayItemHandler<K, V> delegate, double releaseRate, long jitterMs) {
+        if (releaseRate < 0 || jitterMs < 0) {
+            throw new IllegalArgumentException("releaseRate and jitterMs must not be negative");
+        }
+        this.delegate = delegate;
+        this.intervalNanos = releaseRate > 0 ? Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / releaseRate)) : 0L;
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMs);
+    }
+
+    /**
+     * 等待到释放时间点后调用实际处理器
+     *
+     * @throws IllegalStateException 如果处理器已关闭或等待时线程被中断
+     */
+    @Override
+    public void process(DelayItem<K, V> delayItem) {
+        long arrival = System.nanoTime();
+        awaitRelease(reserve(arrival + jitter()));
+        long added = System.nanoTime() - arrival;
+        totalAddedLatenessNanos.add(added);
+        maxAddedLatenessNanos.accumulateAndGet(added, Math::max);
+        try {
+            delegate.process(delayItem);
+            releasedCount.increment();
+        } catch (RuntimeException | Error e) {
+            failedCount.increment();
+            throw e;
+        }
+    }
+
+    private void awaitRelease(long releaseAt) {
+        waiting.incrementAndGet();
+        try {
+            long remaining;
+            while ((remaining = releaseAt - System.nanoTime()) > 0) {
+                if (closed) {
+                    break;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for smoothed release");
+                }
+            }
+            if (closed) {
+                throw new IllegalStateException("Release smoothing handler is closed");
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * 按速率上限预留释放时间点，返回不早于 earliest 的可释放时间
+     */
+    private long reserve(long earliest) {
+        if (intervalNanos == 0) {
+            return earliest;
+        }
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long slot = Math.max(tat, earliest);
+            if (theoreticalArrival.compareAndSet(tat, slot + intervalNanos)) {
+                return slot;
+            }
+        }
+    }
+
+    private long jitter() {
+        return jitterNanos == 0 ? 0L : ThreadLocalRandom.current().nextLong(jitterNanos);
+    }
+
+    /**
+     * 正在等待释放的消息数
+     */
+    public int getPendingCount() {
+        return waiting.get();
+    }
+
+    public long getReleasedCount() {
+        return releasedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 平滑带来的平均额外延迟（毫秒）
+     */
+    public double getAverageAddedLatenessMs() {
+        long count = releasedCount.sum() + failedCount.sum();
+        return count == 0 ? 0.0 : totalAddedLatenessNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * 平滑带来的最大额外延迟（毫秒）
+     */
+    public double getMaxAddedLatenessMs() {
+        return maxAddedLatenessNanos.get() / 1_000_000.0;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 结束所有等待并拒绝之后的消息，等待中的容器线程最迟在 100 毫秒内退出等待
+     */
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,429 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的延迟消息落盘存储
+ * <p>
+ * 消息按到期时间划入固定长度的时间窗口，每个窗口对应一个或多个预分配的段文件，文件名为
+ * [窗口起始时间]_[序号].spill。每条记录的格式为
+ * [int 负载长度][int 负载 CRC32][long 到期时间][long 消息时间戳][long 偏移量][int 分区]
+ * [short topic 长度][topic][int 键长度][键][int 值长度][值]，长度为 -1 表示 null，长度为 0 表示段内没有更多记录。
+ * <p>
+ * 追加只写内存映射区域，刷盘由调用方按批次通过 {@link #sync()} 触发；同时打开写入的段数有上限，
+ * 超出时最久未写入的段被刷盘并封存，该窗口后续的消息写入新段。{@link #takeDue(long)} 取出起始时间
+ * 不晚于给定时间的所有窗口，段文件由调用方在其中的消息全部处理完后通过 {@link Segment#delete()} 删除，
+ * 重启时未删除的段会被重新读取。所有方法都是线程安全的。
+ *
+ * @author xiajuan96
+ */
+public class SpillSegmentStore implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".spill";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_OPEN_SEGMENTS = 64;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long windowMs;
+    private final CRC32 writeCrc = new CRC32();
+    private final TreeMap<Long, List<Segment>> windows = new TreeMap<>();
+    // 按最近写入排序的可写段
+    private final LinkedHashMap<Long, Segment> openSegments = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long nextSequence;
+    private int recordCount;
+    private boolean dirty;
+
+    /**
+     * 打开（或创建）落盘存储，并登记目录中已有的段
+     *
+     * @param directory   段文件目录
+     * @param segmentSize 单个段文件大小（字节）
+     * @param windowMs    时间窗口长度（毫秒）
+     * @throws IOException 如果目录或段文件无法访问
+     */
+    public SpillSegmentStore(File directory, int segmentSize, long windowMs) throws IOException {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Spill segment size is too small: " + segmentSize);
+        }
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("Spill window must be positive: " + windowMs);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create spill directory: " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.windowMs = windowMs;
+        recover();
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param dueTime   到期时间
+     * @param topic     主题
+     * @param partition 分区
+     * @param offset    偏移量
+     * @param timestamp 消息时间戳
+     * @param key       原始键字节，可以为 null
+     * @param value     原始值字节，可以为 null
+     * @throws IOException 如果需要新段但创建失败
+     */
+    public synchronized void append(long dueTime, String topic, int partition, long offset, long timestamp,
+                                    byte[] key, byte[] value) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 8 + 8 + 8 + 4 + 2 + topicBytes.length + 4 + length(key) + 4 + length(value);
+        int recordSize = RECORD_HEADER_SIZE + payloadLength;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Spill record of " + recordSize
+                    + " bytes exceeds segment size " + segmentSize);
+        }
+        long windowStart = Math.floorDiv(dueTime, windowMs) * windowMs;
+        Segment segment = openSegments.get(windowStart);
+        if (segment == null || segment.buffer.position() + recordSize > segment.capacity) {
+            if (segment != null) {
+                seal(segment);
+            }
+            segment = createSegment(windowStart);
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.putLong(dueTime);
+        buffer.putLong(timestamp);
+        buffer.putLong(offset);
+        buffer.putInt(partition);
+        buffer.putShort((short) topicBytes.length);
+        buffer.put(topicBytes);
+        putBytes(buffer, key);
+        putBytes(buffer, value);
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + RECORD_HEADER_SIZE);
+        payload.limit(start + recordSize);
+        writeCrc.reset();
+        writeCrc.update(payload);
+        // 最后写入长度，崩溃时半条记录的长度仍为 0 或校验失败
+        buffer.putInt(start + 4, (int) writeCrc.getValue());
+        buffer.putInt(start, payloadLength);
+        segment.recordCount++;
+        segment.topicCounts.merge(topic, 1, Integer::sum);
+        recordCount++;
+        dirty = true;
+    }
+
+    /**
+     * 将自上次刷盘以来的写入刷到磁盘
+     */
+    public synchronized void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        for (Segment segment : openSegments.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * 取出起始时间不晚于 horizon 的所有时间窗口中的段，取出的段不再接收写入
+     *
+     * @param horizon 时间上限
+     * @return 取出的段，按窗口起始时间排序
+     */
+    public synchronized List<Segment> takeDue(long horizon) {
+        List<Segment> due = new ArrayList<>();
+        Iterator<Map.Entry<Long, List<Segment>>> iterator = windows.headMap(horizon, true).entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, List<Segment>> entry = iterator.next();
+            Segment open = openSegments.remove(entry.getKey());
+            if (open != null) {
+                open.buffer.force();
+            }
+            for (Segment segment : entry.getValue()) {
+                recordCount -= segment.recordCount;
+                due.add(segment);
+            }
+            iterator.remove();
+        }
+        return due;
+    }
+
+    /**
+     * 尚未取出的消息数
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 按主题统计到期时间不晚于各个截止时间的尚未取出的消息数
+     * 统计以时间窗口为粒度：起始时间不晚于截止时间的窗口整体计入，可能多计最多一个窗口长度内稍晚到期的消息
+     *
+     * @param deadlines 截止时间，升序
+     * @return 主题到各截止时间累计消息数的映射，数组与 deadlines 一一对应
+     */
+    public synchronized Map<String, long[]> countDue(long[] deadlines) {
+        Map<String, long[]> counts = new HashMap<>();
+        if (deadlines.length == 0) {
+            return counts;
+        }
+        for (Map.Entry<Long, List<Segment>> entry
+                : windows.headMap(deadlines[deadlines.length - 1], true).entrySet()) {
+            int first = 0;
+            while (deadlines[first] < entry.getKey()) {
+                first++;
+            }
+            for (Segment segment : entry.getValue()) {
+                for (Map.Entry<String, Integer> topic : segment.topicCounts.entrySet()) {
+                    long[] topicCounts = counts.computeIfAbsent(topic.getKey(), k -> new long[deadlines.length]);
+                    for (int i = first; i < deadlines.length; i++) {
+                        topicCounts[i] += topic.getValue();
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    public synchronized int getSegmentCount() {
+        int count = 0;
+        for (List<Segment> segments : windows.values()) {
+            count += segments.size();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        // MappedByteBuffer 无法显式解除映射，释放引用后由 GC 回收
+        openSegments.clear();
+        windows.clear();
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            int separator = name.indexOf('_');
+            long windowStart;
+            long sequence;
+            try {
+                windowStart = Long.parseLong(name.substring(0, separator));
+                sequence = Long.parseLong(name.substring(separator + 1, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (RuntimeException e) {
+                continue;
+            }
+            Segment segment = mapSegment(file, (int) Math.min(file.length(), Integer.MAX_VALUE));
+            int position = 0;
+            SpilledRecord record;
+            while ((record = readRecord(segment.buffer, segment.capacity, position)) != null) {
+                position = record.nextPosition;
+                segment.recordCount++;
+                segment.topicCounts.merge(record.getTopic(), 1, Integer::sum);
+            }
+            recordCount += segment.recordCount;
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            windows.computeIfAbsent(windowStart, k -> new ArrayList<>()).add(segment);
+        }
+    }
+
+    private Segment createSegment(long windowStart) throws IOException {
+        File file = new File(directory, String.format("%020d_%010d%s", windowStart, nextSequence++, SEGMENT_SUFFIX));
+        Segment segment = mapSegment(file, segmentSize);
+        windows.computeIfAbsent(windowStart, k -> new ArrayList<>()).add(segment);
+        openSegments.put(windowStart, segment);
+        if (openSegments.size() > MAX_OPEN_SEGMENTS) {
+            Iterator<Segment> eldest = openSegments.values().iterator();
+            Segment evicted = eldest.next();
+            eldest.remove();
+            evicted.buffer.force();
+        }
+        return segment;
+    }
+
+    private void seal(Segment segment) {
+        segment.buffer.force();
+        openSegments.values().remove(segment);
+    }
+
+    private static Segment mapSegment(File file, int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new Segment(file, capacity, buffer);
+        }
+    }
+
+    private static SpilledRecord readRecord(ByteBuffer source, int capacity, int position) {
+        if (position + RECORD_HEADER_SIZE > capacity) {
+            return null;
+        }
+        ByteBuffer buffer = source.duplicate();
+        int payloadLength = buffer.getInt(position);
+        if (payloadLength <= 0 || position + RECORD_HEADER_SIZE + payloadLength > capacity) {
+            return null;
+        }
+        int checksum = buffer.getInt(position + 4);
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.limit(position + RECORD_HEADER_SIZE + payloadLength);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        long dueTime = buffer.getLong();
+        long timestamp = buffer.getLong();
+        long offset = buffer.getLong();
+        int partition = buffer.getInt();
+        byte[] topicBytes = new byte[buffer.getShort()];
+        buffer.get(topicBytes);
+        byte[] key = getBytes(buffer);
+        byte[] value = getBytes(buffer);
+        return new SpilledRecord(new String(topicBytes, StandardCharsets.UTF_8), partition, offset, timestamp,
+                dueTime, key, value, position + RECORD_HEADER_SIZE + payloadLength);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 段文件
+     */
+    public static final class Segment {
+        private final File file;
+        private final int capacity;
+        private final MappedByteBuffer buffer;
+        private final Map<String, Integer> topicCounts = new HashMap<>();
+        private int recordCount;
+
+        private Segment(File file, int capacity, MappedByteBuffer buffer) {
+            this.file = file;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 读取段内的全部消息
+         */
+        public List<SpilledRecord> read() {
+            List<SpilledRecord> records = new ArrayList<>();
+            int position = 0;
+            SpilledRecord record;
+            while ((record = readRecord(buffer, capacity, position)) != null) {
+                records.add(record);
+                position = record.nextPosition;
+            }
+            return records;
+        }
+
+        /**
+         * 删除段文件，删除失败时留待重启后重新读取
+         */
+        public void delete() {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+
+    /**
+     * 落盘的消息
+     */
+    public static final class SpilledRecord {
+        private final String topic;
+        private final int partition;
+        private final long offset;
+        private final long timestamp;
+        private final long dueTime;
+        private final byte[] key;
+        private final byte[] value;
+        private final int nextPosition;
+
+        SpilledRecord(String topic, int partition, long offset, long timestamp, long dueTime,
+                              byte[] key, byte[] value, int nextPosition) {
+            this.topic = topic;
+            this.partition = partition;
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.dueTime = dueTime;
+            this.key = key;
+            this.value = value;
+            this.nextPosition = nextPosition;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getDueTime() {
+            return dueTime;
+        }
+
+        public byte[] getKey() {
+            return key;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+    }
+}
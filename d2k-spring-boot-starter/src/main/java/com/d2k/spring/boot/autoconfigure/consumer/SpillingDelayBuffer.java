@@ -0,0 +1,406 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import com.d2k.consumer.DelayItem;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟消息落盘缓冲
+ * <p>
+ * 容器堆内持有的未到期消息达到预算后，拉取拦截器把距到期还超过预读时间的消息交给本缓冲，
+ * 以原始字节写入 {@link SpillSegmentStore}，不再进入容器的堆内队列。后台线程在消息所在时间窗口
+ * 距当前不超过预读时间时把整个窗口读回内存，重新反序列化后按到期时间由 {@link TimingWheelScheduler}
+ * 交给 {@link D2kMessageHandler}，取消、合并和 Claim Check 照常生效。
+ * <p>
+ * 配置 {@link RecordRefetcher} 时段文件中只记录 offset 和到期时间，读回时按分区整理为 {@link OffsetDueIndex}
+ * 从 Kafka 重新拉取消息，等待期间每条消息只占几十字节磁盘空间，要求主题的保留时间大于最长延迟。
+ * <p>
+ * 段文件在其中的消息全部处理完后才删除，进程重启时未删除的段会被重新读取，消息至少投递一次。
+ * 落盘消息的偏移量已随本批提交，分区再均衡后这些消息仍由本实例投递；落盘时不保留 Kafka Header。
+ * <p>
+ * 读回的消息在本缓冲自己的线程池（threads 个线程）上交给处理器，不经过容器的异步处理线程池，
+ * 其队列容量和拒绝策略对这些消息不生效；启动时传入容器状态的，读回的消息与容器投递的消息经过同一个
+ * {@link ContainerStateHandler}，容器暂停时同样在处理器前等待。容器停止时由容器工厂调用 {@link #close(long, TimeUnit)}，
+ * 释放读回线程、段文件映射和重新拉取使用的消费者。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class SpillingDelayBuffer<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillingDelayBuffer.class);
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final SpillSegmentStore store;
+    private final int heapBudget;
+    private final long lookaheadMs;
+    private final Map<String, Long> topicDelays;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<?> valueDeserializer;
+    private final RecordRefetcher refetcher;
+    private final ThreadPoolExecutor workers;
+    private final TimingWheelScheduler scheduler;
+    private final Thread pager;
+    private final AtomicInteger heapPending = new AtomicInteger();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder pagedInCount = new LongAdder();
+    private final LongAdder refetchMissingCount = new LongAdder();
+    // 只由读回线程访问：读回失败、等待重试的段
+    private final List<SpillSegmentStore.Segment> retrying = new ArrayList<>();
+
+    private volatile D2kMessageHandler<K, V> handler;
+    private volatile ContainerStateHandler<K, V> stateHandler;
+    private volatile boolean running;
+    private volatile boolean retainRawOnHeap;
+
+    /**
+     * @param store             落盘存储
+     * @param heapBudget        容器堆内最多持有的未到期消息数，超出后开始落盘
+     * @param lookaheadMs       预读时间（毫秒），距到期不超过该时间的消息不落盘，落盘的时间窗口提前该时间读回
+     * @param topicDelays       各主题的延迟（毫秒），用于计算没有携带到期时间的消息的到期时间
+     * @param keyDeserializer   键反序列化器
+     * @param valueDeserializer 值反序列化器，通常为不保留原始字节的 D2kMessageDeserializer
+     * @param threads           执行到期消息的线程数
+     * @param timerTickMs       时间轮 tick 时长（毫秒）
+     * @param timerWheelSize    时间轮每层槽数
+     */
+    public SpillingDelayBuffer(SpillSegmentStore store, int heapBudget, long lookaheadMs,
+                               Map<String, Long> topicDelays, Deserializer<K> keyDeserializer,
+                               Deserializer<?> valueDeserializer, int threads, long timerTickMs, int timerWheelSize) {
+        this(store, heapBudget, lookaheadMs, topicDelays, keyDeserializer, valueDeserializer, null,
+                threads, timerTickMs, timerWheelSize);
+    }
+
+    /**
+     * @param store             落盘存储
+     * @param heapBudget        容器堆内最多持有的未到期消息数，超出后开始落盘
+     * @param lookaheadMs       预读时间（毫秒），距到期不超过该时间的消息不落盘，落盘的时间窗口提前该时间读回
+     * @param topicDelays       各主题的延迟（毫秒），用于计算没有携带到期时间的消息的到期时间
+     * @param keyDeserializer   键反序列化器
+     * @param valueDeserializer 值反序列化器，通常为不保留原始字节的 D2kMessageDeserializer
+     * @param refetcher         重新拉取消息，不为 null 时落盘只记录 offset 和到期时间
+     * @param threads           执行到期消息的线程数
+     * @param timerTickMs       时间轮 tick 时长（毫秒）
+     * @param timerWheelSize    时间轮每层槽数
+     */
+    public SpillingDelayBuffer(SpillSegmentStore store, int heapBudget, long lookaheadMs,
+                               Map<String, Long> topicDelays, Deserializer<K> keyDeserializer,
+                               Deserializer<?> valueDeserializer, RecordRefetcher refetcher,
+                               int threads, long timerTickMs, int timerWheelSize) {
+        if (heapBudget < 0 || lookaheadMs < 0) {
+            throw new IllegalArgumentException("heapBudget and lookaheadMs must not be negative");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.store = store;
+        this.heapBudget = heapBudget;
+        this.lookaheadMs = lookaheadMs;
+        this.topicDelays = topicDelays == null ? Collections.emptyMap() : topicDelays;
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+        this.refetcher = refetcher;
+        int id = SEQUENCE.incrementAndGet();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setName("d2k-spill-" + id + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = new TimingWheelScheduler("d2k-spill-" + id + "-timer",
+                timerTickMs, TimeUnit.MILLISECONDS, timerWheelSize, workers);
+        this.pager = new Thread(this::pageIn, "d2k-spill-" + id + "-pager");
+        this.pager.setDaemon(true);
+    }
+
+    /**
+     * 设置留在堆内的消息是否继续保留原始字节
+     * 延迟阶梯需要在梯级到期时原样转发，此时不能在拉取后释放；落盘的消息按最终到期时间读回，不再经过后续梯级
+     *
+     * @param retainRawOnHeap 是否保留，默认不保留
+     */
+    public void setRetainRawOnHeap(boolean retainRawOnHeap) {
+        this.retainRawOnHeap = retainRawOnHeap;
+    }
+
+    /**
+     * 开始把落盘的消息读回并交给处理器
+     */
+    public void start(D2kMessageHandler<K, V> handler) {
+        start(handler, null);
+    }
+
+    /**
+     * 开始把落盘的消息读回并交给处理器
+     *
+     * @param handler        处理器
+     * @param containerState 容器状态，不为 null 时读回的消息经过容器的暂停闸门并计入正在处理的数量
+     */
+    public synchronized void start(D2kMessageHandler<K, V> handler, DelayContainerState containerState) {
+        if (running) {
+            return;
+        }
+        this.handler = handler;
+        this.stateHandler = containerState == null ? null : new ContainerStateHandler<>(handler::deliver, containerState);
+        this.running = true;
+        pager.start();
+    }
+
+    /**
+     * 拉取拦截器对每条拉取到的消息调用：需要落盘时写入磁盘并返回 true，否则计入堆内预算并返回 false
+     */
+    public boolean offer(ConsumerRecord<?, ?> record) {
+        Object value = record.value();
+        D2kMessage<?> message = value instanceof D2kMessage ? (D2kMessage<?>) value : null;
+        D2kMessageHeaders headers = message == null ? null : message.getHeaders();
+        // 取消标记必须在拉取时登记，不落盘
+        boolean spillable = (refetcher != null || message != null && message.hasRaw(record.key()))
+                && (headers == null || !headers.isCancel());
+        if (spillable && heapPending.get() >= heapBudget) {
+            long dueTime = dueTime(record, headers);
+            if (dueTime >= 0 && dueTime - System.currentTimeMillis() > lookaheadMs) {
+                try {
+                    store.append(dueTime, record.topic(), record.partition(), record.offset(), record.timestamp(),
+                            refetcher == null ? message.getRawKey() : null,
+                            refetcher == null ? message.getRawValue() : null);
+                    spilledCount.increment();
+                    return true;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to spill delayed record {}-{}@{}, keeping it on heap",
+                            record.topic(), record.partition(), record.offset(), e);
+                }
+            }
+        }
+        if (message != null && !retainRawOnHeap) {
+            message.releaseRaw();
+        }
+        heapPending.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 把本批落盘的消息刷到磁盘
+     */
+    public void flush() {
+        store.sync();
+    }
+
+    /**
+     * 堆内的一条消息已到期
+     */
+    public void released() {
+        heapPending.decrementAndGet();
+    }
+
+    /**
+     * 是否正在读回落盘的消息
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 容器堆内持有的未到期消息数（估计值）
+     */
+    public int getHeapPendingCount() {
+        return Math.max(0, heapPending.get());
+    }
+
+    /**
+     * 磁盘上尚未读回的消息数
+     */
+    public int getSpilledPendingCount() {
+        return store.getRecordCount();
+    }
+
+    /**
+     * 按主题统计落盘尚未读回、到期时间不晚于各个截止时间的消息数，见 {@link SpillSegmentStore#countDue(long[])}
+     */
+    public Map<String, long[]> countSpilledDue(long[] deadlines) {
+        return store.countDue(deadlines);
+    }
+
+    /**
+     * 已读回、等待到期的消息数
+     */
+    public int getPagedInPendingCount() {
+        return scheduler.getPendingCount();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    public long getPagedInCount() {
+        return pagedInCount.sum();
+    }
+
+    /**
+     * 重新拉取时已不存在（过了保留期或被压缩）的消息数
+     */
+    public long getRefetchMissingCount() {
+        return refetchMissingCount.sum();
+    }
+
+    /**
+     * 停止读回，已读回的消息在超时前继续按时处理，尚未处理的消息所在段保留在磁盘上，重启后重新读取
+     */
+    public void close(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        running = false;
+        pager.interrupt();
+        if (pager.isAlive()) {
+            pager.join(Math.max(1L, unit.toMillis(timeout)));
+        }
+        if (refetcher instanceof Closeable) {
+            try {
+                ((Closeable) refetcher).close();
+            } catch (IOException e) {
+                log.warn("Failed to close record refetcher", e);
+            }
+        }
+        scheduler.close(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        workers.shutdown();
+        workers.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        store.close();
+    }
+
+    private long dueTime(ConsumerRecord<?, ?> record, D2kMessageHeaders headers) {
+        if (headers != null && headers.getDueTimestamp() != D2kMessageHeaders.UNKNOWN_TIMESTAMP) {
+            return headers.getDueTimestamp();
+        }
+        Long delay = topicDelays.get(record.topic());
+        return delay == null ? -1L : record.timestamp() + delay;
+    }
+
+    private void pageIn() {
+        long interval = Math.max(10L, Math.min(1000L, lookaheadMs / 4));
+        while (running) {
+            try {
+                List<SpillSegmentStore.Segment> segments = new ArrayList<>(retrying);
+                retrying.clear();
+                segments.addAll(store.takeDue(System.currentTimeMillis() + lookaheadMs));
+                for (SpillSegmentStore.Segment segment : segments) {
+                    try {
+                        schedule(segment);
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to page in spill segment {}, will retry", segment.getFile(), e);
+                        retrying.add(segment);
+                    }
+                }
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error paging in spilled delay records", e);
+            }
+        }
+    }
+
+    private void schedule(SpillSegmentStore.Segment segment) {
+        List<SpillSegmentStore.SpilledRecord> records = segment.read();
+        if (refetcher != null && !records.isEmpty()) {
+            records = refetch(records);
+        }
+        if (records.isEmpty()) {
+            segment.delete();
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(records.size());
+        for (SpillSegmentStore.SpilledRecord spilled : records) {
+            pagedInCount.increment();
+            scheduler.schedule(() -> {
+                try {
+                    deliver(spilled);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        segment.delete();
+                    }
+                }
+            }, spilled.getDueTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 按分区整理 offset 后批量重新拉取，全部分区成功后才返回，失败时整个段稍后重试
+     */
+    private List<SpillSegmentStore.SpilledRecord> refetch(List<SpillSegmentStore.SpilledRecord> records) {
+        OffsetDueIndex index = new OffsetDueIndex();
+        for (SpillSegmentStore.SpilledRecord record : records) {
+            index.add(new TopicPartition(record.getTopic(), record.getPartition()),
+                    record.getOffset(), record.getDueTime());
+        }
+        List<SpillSegmentStore.SpilledRecord> fetched = new ArrayList<>(index.size());
+        for (TopicPartition partition : index.partitions()) {
+            for (ConsumerRecord<byte[], byte[]> record : refetcher.refetch(partition, index.offsets(partition))) {
+                long dueTime = index.dueTime(partition, record.offset());
+                if (dueTime >= 0) {
+                    fetched.add(new SpillSegmentStore.SpilledRecord(partition.topic(), partition.partition(),
+                            record.offset(), record.timestamp(), dueTime, record.key(), record.value(), 0));
+                }
+            }
+        }
+        int missing = index.size() - fetched.size();
+        if (missing > 0) {
+            refetchMissingCount.add(missing);
+            log.warn("{} spilled delay records no longer exist in Kafka and were skipped", missing);
+        }
+        return fetched;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(SpillSegmentStore.SpilledRecord spilled) {
+        try {
+            String topic = spilled.getTopic();
+            K key = spilled.getKey() == null ? null : keyDeserializer.deserialize(topic, spilled.getKey());
+            V value = spilled.getValue() == null ? null
+                    : (V) valueDeserializer.deserialize(topic, spilled.getValue());
+            ConsumerRecord<K, V> record = new ConsumerRecord<>(topic, spilled.getPartition(), spilled.getOffset(),
+                    spilled.getTimestamp(), TimestampType.CREATE_TIME, -1, -1, key, value,
+                    new RecordHeaders(), Optional.empty());
+            // 落盘发生在拉取时，尚未生成延迟项；按落盘时记录的到期时间还原，与容器计算的延迟和恢复时间一致
+            D2kMessageHandler<K, V> target = handler;
+            ContainerStateHandler<K, V> gate = stateHandler;
+            DelayItem<K, V> item = new DelayItem<>(Math.max(0L, spilled.getDueTime() - spilled.getTimestamp()),
+                    spilled.getDueTime(), record);
+            try {
+                if (gate != null) {
+                    gate.process(item);
+                } else {
+                    target.deliver(item);
+                }
+            } finally {
+                target.flushForwards();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error processing spilled delay record {}-{}@{}",
+                    spilled.getTopic(), spilled.getPartition(), spilled.getOffset(), e);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.d2k.spring.boot.autoconfigure.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分层哈希时间轮调度器
+ * <p>
+ * 每层时间轮有 wheelSize 个槽，第 0 层每槽跨 1 个 tick，第 n 层每槽跨 wheelSize^n 个 tick，
+ * 高层槽位中的定时器在低层转到对应的一圈时重新分配到低层。插入和到期都是 O(1)，
+ * 与待触发的定时器数量无关；层数按最远的到期时间按需增加。
+ * <p>
+ * 为避免低层转完一圈时一次性搬移整个高层槽位造成毫秒级的停顿，高层的下一个槽位在低层当前这一圈内
+ * 按剩余 tick 数分批提前搬移：低层对应槽位本圈已经访问过的直接放入，尚未访问的先暂存，访问后再放入。
+ * <p>
+ * 时间轮只由一个 tick 线程访问，其它线程提交的定时器经无锁队列交给 tick 线程，没有待触发的定时器时
+ * tick 线程挂起，不空转。到期任务交给传入的执行器运行，不占用 tick 线程。定时器不会早于到期时间触发，
+ * 触发延迟通常不超过一个 tick 加上线程唤醒的开销。
+ *
+ * @author xiajuan96
+ */
+public class TimingWheelScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    private final long tickNanos;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int maxLevels;
+    private final long startNanos;
+    private final Executor executor;
+    private final Thread worker;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder expiredCount = new LongAdder();
+    private final AtomicLong maxLatenessNanos = new AtomicLong();
+
+    // 以下字段只由 tick 线程访问
+    private final Timeout[][] wheels;
+    private final int[][] slotCounts;
+    private final Timeout[][] staged;
+    private int levelCount;
+    private long currentTick;
+    private int wheelTimerCount;
+
+    private volatile boolean idle;
+    private volatile boolean shutdown;
+    private volatile boolean stopped;
+
+    /**
+     * @param name      tick 线程名
+     * @param tick      tick 时长，决定触发精度
+     * @param unit      tick 时长单位
+     * @param wheelSize 每层的槽数，向上取整为 2 的幂
+     * @param executor  执行到期任务的执行器
+     */
+    public TimingWheelScheduler(String name, long tick, TimeUnit unit, int wheelSize, Executor executor) {
+        if (tick <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("tick must be positive and wheelSize at least 2");
+        }
+        if (wheelSize > 1 << 20) {
+            throw new IllegalArgumentException("wheelSize too large: " + wheelSize);
+        }
+        this.tickNanos = Math.max(1L, unit.toNanos(tick));
+        this.wheelBits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        this.wheelMask = (1 << wheelBits) - 1;
+        this.maxLevels = (63 + wheelBits - 1) / wheelBits;
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+        this.wheels = new Timeout[maxLevels][];
+        this.slotCounts = new int[maxLevels][];
+        this.staged = new Timeout[maxLevels][];
+        addLevel();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 提交定时任务
+     *
+     * @param task  到期后执行的任务
+     * @param delay 延迟
+     * @param unit  延迟单位
+     * @return 定时器，可用于取消
+     * @throws RejectedExecutionException 如果调度器已关闭
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Timing wheel scheduler has been shut down");
+        }
+        long deadline = System.nanoTime() + Math.max(0L, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingCount.incrementAndGet();
+        incoming.offer(timeout);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    /**
+     * 已提交、尚未触发或取消的定时器数
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * 定时器实际触发时间相对到期时间的最大延迟（毫秒）
+     */
+    public double getMaxLatenessMs() {
+        return maxLatenessNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * 停止接收新的定时器，已提交的定时器在超时前继续按时触发，超时后未触发的定时器被丢弃
+     *
+     * @return 超时前所有定时器是否都已触发
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown = true;
+        LockSupport.unpark(worker);
+        worker.join(Math.max(1L, unit.toMillis(timeout)));
+        boolean drained = !worker.isAlive();
+        stopped = true;
+        LockSupport.unpark(worker);
+        return drained;
+    }
+
+    private void run() {
+        while (!stopped) {
+            Timeout timeout;
+            while ((timeout = incoming.poll()) != null) {
+                timeout.deadlineTick = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+                insert(timeout);
+            }
+            long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+            if (wheelTimerCount == 0) {
+                // 时间轮为空时直接跳到当前 tick，无需逐格推进
+                currentTick = Math.max(currentTick, targetTick);
+            }
+            while (currentTick < targetTick) {
+                advance(++currentTick);
+            }
+            if (shutdown && pendingCount.get() == 0) {
+                return;
+            }
+            if (wheelTimerCount == 0) {
+                idle = true;
+                if (incoming.isEmpty() && !shutdown) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            } else {
+                LockSupport.parkNanos(this, startNanos + (currentTick + 1) * tickNanos - System.nanoTime());
+            }
+        }
+    }
+
+    private void addLevel() {
+        int slots = 1 << wheelBits;
+        wheels[levelCount] = new Timeout[slots];
+        slotCounts[levelCount] = new int[slots];
+        if (levelCount > 0) {
+            staged[levelCount] = new Timeout[slots];
+        }
+        levelCount++;
+    }
+
+    private void insert(Timeout timeout) {
+        if (timeout.state != Timeout.PENDING) {
+            return;
+        }
+        long delta = timeout.deadlineTick - currentTick;
+        if (delta <= 0) {
+            expire(timeout);
+            return;
+        }
+        int level = 0;
+        while (level < maxLevels - 1 && (delta >>> ((level + 1) * wheelBits)) != 0) {
+            level++;
+        }
+        while (levelCount <= level) {
+            addLevel();
+        }
+        place(level, slotIndex(timeout.deadlineTick, level), timeout);
+        wheelTimerCount++;
+    }
+
+    private void place(int level, int index, Timeout timeout) {
+        timeout.next = wheels[level][index];
+        wheels[level][index] = timeout;
+        slotCounts[level][index]++;
+    }
+
+    private int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (level * wheelBits)) & wheelMask);
+    }
+
+    private void advance(long tick) {
+        // 低层每转完一圈，把上一层当前槽位中剩余的定时器重新分配，并放入为下一圈暂存的定时器
+        for (int level = 1; level < levelCount && (tick & ((1L << (level * wheelBits)) - 1)) == 0; level++) {
+            int index = slotIndex(tick, level);
+            Timeout head = take(level, index);
+            while (head != null) {
+                Timeout next = head.next;
+                head.next = null;
+                insert(head);
+                head = next;
+            }
+            unstage(level + 1, level, index);
+        }
+        int index = slotIndex(tick, 0);
+        Timeout head = take(0, index);
+        while (head != null) {
+            Timeout next = head.next;
+            head.next = null;
+            if (head.deadlineTick > tick) {
+                insert(head);
+            } else {
+                expire(head);
+            }
+            head = next;
+        }
+        unstage(1, 0, index);
+        for (int level = 1; level < levelCount; level++) {
+            predrain(tick, level);
+        }
+    }
+
+    /**
+     * 把高层下一个槽位中的定时器分批提前搬到低层，在该槽位到期前刚好搬完
+     */
+    private void predrain(long tick, int level) {
+        int shift = level * wheelBits;
+        long rotation = (tick >>> shift) + 1;
+        int next = (int) (rotation & wheelMask);
+        int count = slotCounts[level][next];
+        if (count == 0) {
+            return;
+        }
+        long ticksLeft = (rotation << shift) - tick;
+        long chunk = Math.min(count, (count + ticksLeft - 1) / ticksLeft);
+        int lower = level - 1;
+        int visited = slotIndex(tick, lower);
+        Timeout[] slots = wheels[level];
+        Timeout[] pending = staged[level];
+        for (long i = 0; i < chunk; i++) {
+            Timeout timeout = slots[next];
+            slots[next] = timeout.next;
+            slotCounts[level][next]--;
+            int index = slotIndex(timeout.deadlineTick, lower);
+            if (index <= visited) {
+                place(lower, index, timeout);
+            } else {
+                timeout.next = pending[index];
+                pending[index] = timeout;
+            }
+        }
+    }
+
+    /**
+     * 低层槽位本圈访问过后，放入为它暂存的下一圈定时器
+     */
+    private void unstage(int stagedLevel, int level, int index) {
+        if (stagedLevel >= levelCount) {
+            return;
+        }
+        Timeout head = staged[stagedLevel][index];
+        staged[stagedLevel][index] = null;
+        while (head != null) {
+            Timeout next = head.next;
+            place(level, index, head);
+            head = next;
+        }
+    }
+
+    private Timeout take(int level, int index) {
+        Timeout head = wheels[level][index];
+        wheels[level][index] = null;
+        wheelTimerCount -= slotCounts[level][index];
+        slotCounts[level][index] = 0;
+        return head;
+    }
+
+    private void expire(Timeout timeout) {
+        if (!Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+            return;
+        }
+        pendingCount.decrementAndGet();
+        expiredCount.increment();
+        long lateness = System.nanoTime() - timeout.deadlineNanos;
+        if (lateness > maxLatenessNanos.get()) {
+            maxLatenessNanos.accumulateAndGet(lateness, Math::max);
+        }
+        try {
+            executor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+            log.error("Timer task rejected by executor", e);
+        }
+    }
+
+    /**
+     * 定时器
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheelScheduler scheduler;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long deadlineTick;
+        private Timeout next;
+        private volatile int state;
+
+        private Timeout(TimingWheelScheduler scheduler, Runnable task, long deadlineNanos) {
+            this.scheduler = scheduler;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * 取消定时器，已触发的定时器无法取消
+         *
+         * @return 是否取消成功
+         */
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                scheduler.pendingCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+}
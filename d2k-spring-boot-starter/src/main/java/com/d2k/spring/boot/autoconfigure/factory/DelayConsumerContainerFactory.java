@@ -4,13 +4,45 @@ import com.d2k.consumer.AsyncProcessingConfig;
 import com.d2k.consumer.DelayConsumerContainer;
 import com.d2k.consumer.DelayItemHandler;
 import com.d2k.spring.boot.autoconfigure.D2kProperties;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckRehydrator;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckStore;
+import com.d2k.spring.boot.autoconfigure.consumer.CancellationIndex;
+import com.d2k.spring.boot.autoconfigure.consumer.CoalescingIndex;
+import com.d2k.spring.boot.autoconfigure.consumer.ContainerStateHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kMessageHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kReceiveInterceptor;
+import com.d2k.spring.boot.autoconfigure.consumer.DelayContainerState;
+import com.d2k.spring.boot.autoconfigure.consumer.KafkaRecordRefetcher;
+import com.d2k.spring.boot.autoconfigure.consumer.LatenessRecordingHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.ListenerMetricsHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.RecordRefetcher;
+import com.d2k.spring.boot.autoconfigure.consumer.ReleaseSmoothingHandler;
+import com.d2k.spring.boot.autoconfigure.consumer.SpillSegmentStore;
+import com.d2k.spring.boot.autoconfigure.consumer.SpillingDelayBuffer;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadder;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderForwarder;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageDeserializer;
+import com.d2k.spring.boot.autoconfigure.message.RawKeyCapturingDeserializer;
+import com.d2k.spring.boot.autoconfigure.metrics.D2kConsumerMetricsReporter;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayContainerMetrics;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayLatenessRecorder;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * DelayConsumerContainer 工厂类
@@ -18,12 +50,114 @@ import java.util.Map;
  */
 public class DelayConsumerContainerFactory {
 
+    private static final Logger log = LoggerFactory.getLogger(DelayConsumerContainerFactory.class);
+
+    // 消费者 request.timeout.ms 的默认值，拉取等待时间必须小于它
+    private static final int DEFAULT_REQUEST_TIMEOUT_MS = 30000;
+
+    // 容器停止时等待已读回的落盘消息处理完的最长时间，之后未处理的段保留在磁盘上
+    private static final long SPILL_CLOSE_TIMEOUT_SECONDS = 10L;
+
     private final D2kProperties properties;
+    private volatile ClaimCheckStore claimCheckStore;
+    private volatile DelayLatenessRecorder latenessRecorder;
+    private volatile DelayLadderForwarder ladderForwarder;
+    private volatile DelayContainerMetrics containerMetrics;
+    private final ConcurrentMap<String, DelayContainerState> containerStates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<AutoCloseable>> containerResources = new ConcurrentHashMap<>();
 
     public DelayConsumerContainerFactory(D2kProperties properties) {
         this.properties = properties;
     }
 
+    /**
+     * 设置 Claim Check 存储，之后创建的容器在调用监听器前从中取回大消息的值
+     *
+     * @param claimCheckStore Claim Check 存储，为 null 时不支持 Claim Check 消息
+     */
+    public void setClaimCheckStore(ClaimCheckStore claimCheckStore) {
+        this.claimCheckStore = claimCheckStore;
+    }
+
+    public ClaimCheckStore getClaimCheckStore() {
+        return claimCheckStore;
+    }
+
+    /**
+     * 设置到期延迟记录器，之后创建的容器在调用实际处理器前记录每条消息的到期延迟
+     *
+     * @param latenessRecorder 到期延迟记录器，为 null 时不记录
+     */
+    public void setLatenessRecorder(DelayLatenessRecorder latenessRecorder) {
+        this.latenessRecorder = latenessRecorder;
+    }
+
+    public DelayLatenessRecorder getLatenessRecorder() {
+        return latenessRecorder;
+    }
+
+    /**
+     * 设置延迟阶梯转发器，之后创建的容器把配置了阶梯的逻辑主题展开为各梯级主题订阅，
+     * 梯级到期后尚未到期的消息转发到下一梯级
+     *
+     * @param ladderForwarder 延迟阶梯转发器，为 null 时按原主题订阅
+     */
+    public void setLadderForwarder(DelayLadderForwarder ladderForwarder) {
+        this.ladderForwarder = ladderForwarder;
+    }
+
+    public DelayLadderForwarder getLadderForwarder() {
+        return ladderForwarder;
+    }
+
+    /**
+     * 设置容器指标，之后创建的容器按监听器统计拉取、到期、处理和丢弃的消息数以及消费者的延迟和再均衡次数
+     *
+     * @param containerMetrics 容器指标，为 null 时不统计
+     */
+    public void setContainerMetrics(DelayContainerMetrics containerMetrics) {
+        this.containerMetrics = containerMetrics;
+    }
+
+    public DelayContainerMetrics getContainerMetrics() {
+        return containerMetrics;
+    }
+
+    /**
+     * 获取容器的运行状态
+     *
+     * @param listenerId 监听器标识，未设置时为逗号连接的主题名
+     * @return 最近一次以该标识创建的容器的状态，不存在时返回 null
+     */
+    public DelayContainerState getContainerState(String listenerId) {
+        return containerStates.get(listenerId);
+    }
+
+    /**
+     * 容器停止后释放其附属资源（平滑释放处理器等），按登记顺序关闭，单个资源关闭失败不影响其余资源
+     *
+     * @param listenerId 监听器标识
+     * @return 容器登记过附属资源时返回 true
+     */
+    public boolean closeContainerResources(String listenerId) {
+        List<AutoCloseable> resources = containerResources.remove(listenerId);
+        if (resources == null) {
+            return false;
+        }
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Failed to close resource of D2K container {}", listenerId, e);
+            }
+        }
+        return true;
+    }
+
+    private void registerResource(String listenerId, AutoCloseable resource) {
+        containerResources.computeIfAbsent(listenerId, id -> new CopyOnWriteArrayList<>()).add(resource);
+    }
+
     /**
      * 创建 DelayConsumerContainer 实例
      *
@@ -134,6 +268,30 @@ public class DelayConsumerContainerFactory {
                 keyDeserializer, valueDeserializer);
     }
 
+    /**
+     * 创建 DelayConsumerContainer 实例（指定并发数、异步配置和容器选项）
+     *
+     * @param topics           监听的主题
+     * @param delayItemHandler 消息处理器
+     * @param concurrency      并发消费者数量
+     * @param asyncConfig      异步处理配置
+     * @param options          容器选项
+     * @param <K>              键类型
+     * @param <V>              值类型
+     * @return DelayConsumerContainer 实例
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> DelayConsumerContainer<K, V> createContainer(
+            Collection<String> topics,
+            DelayItemHandler<K, V> delayItemHandler,
+            int concurrency,
+            AsyncProcessingConfig asyncConfig,
+            DelayConsumerContainerOptions options) {
+        return createContainer(topics, delayItemHandler, concurrency, asyncConfig, options,
+                (Deserializer<K>) new StringDeserializer(),
+                (Deserializer<V>) new StringDeserializer());
+    }
+
     /**
      * 创建 DelayConsumerContainer 实例（完整参数版本）
      *
@@ -147,29 +305,211 @@ public class DelayConsumerContainerFactory {
      * @param <V>               值类型
      * @return DelayConsumerContainer 实例
      */
+    public <K, V> DelayConsumerContainer<K, V> createContainer(
+            Collection<String> topics,
+            DelayItemHandler<K, V> delayItemHandler,
+            int concurrency,
+            AsyncProcessingConfig asyncConfig,
+            Deserializer<K> keyDeserializer,
+            Deserializer<V> valueDeserializer) {
+        return createContainer(topics, delayItemHandler, concurrency, asyncConfig,
+                new DelayConsumerContainerOptions(), keyDeserializer, valueDeserializer);
+    }
+
+    /**
+     * 创建 DelayConsumerContainer 实例（完整参数版本，带容器选项）
+     *
+     * @param topics            监听的主题
+     * @param delayItemHandler  消息处理器
+     * @param concurrency       并发消费者数量
+     * @param asyncConfig       异步处理配置
+     * @param options           容器选项
+     * @param keyDeserializer   键反序列化器
+     * @param valueDeserializer 值反序列化器
+     * @param <K>               键类型
+     * @param <V>               值类型
+     * @return DelayConsumerContainer 实例
+     */
     @SuppressWarnings("unchecked")
     public <K, V> DelayConsumerContainer<K, V> createContainer(
             Collection<String> topics,
             DelayItemHandler<K, V> delayItemHandler,
             int concurrency,
             AsyncProcessingConfig asyncConfig,
+            DelayConsumerContainerOptions options,
             Deserializer<K> keyDeserializer,
             Deserializer<V> valueDeserializer) {
 
         // 构建消费者配置
         Map<String, Object> configs = buildConsumerConfigs();
 
+        // 拉取时登记取消标记和每个键的最新消息，到期时丢弃已取消或已被覆盖的消息并还原信封
+        CancellationIndex cancellationIndex = new CancellationIndex(
+                properties.getConsumer().getCancellationIndexSize());
+        CoalescingIndex coalescingIndex = options.isCoalesce()
+                ? new CoalescingIndex(properties.getConsumer().getCoalescingIndexSize()) : null;
+        configs.put(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG, D2kReceiveInterceptor.class.getName());
+        configs.put(D2kReceiveInterceptor.CANCELLATION_INDEX_CONFIG, cancellationIndex);
+        if (coalescingIndex != null) {
+            configs.put(D2kReceiveInterceptor.COALESCING_INDEX_CONFIG, coalescingIndex);
+        }
+
+        D2kProperties.Consumer consumer = properties.getConsumer();
+        DelayItemHandler<K, V> handler = delayItemHandler;
+        String listenerId = options.getListenerId() != null ? options.getListenerId() : String.join(",", topics);
+
+        // 处理耗时和并发只统计实际处理器本身
+        DelayContainerMetrics metrics = containerMetrics;
+        DelayContainerMetrics.ListenerMetrics listenerMetrics = null;
+        if (metrics != null) {
+            listenerMetrics = metrics.forListener(listenerId);
+            handler = new ListenerMetricsHandler<>(handler, listenerMetrics);
+            configs.put(D2kReceiveInterceptor.LISTENER_METRICS_CONFIG, listenerMetrics);
+        }
+        configs.put(ConsumerConfig.METRIC_REPORTER_CLASSES_CONFIG, D2kConsumerMetricsReporter.class.getName());
+
+        // 到期延迟在调用实际处理器时记录，包含平滑释放带来的额外延迟
+        DelayLatenessRecorder recorder = latenessRecorder;
+        if (recorder != null) {
+            handler = new LatenessRecordingHandler<>(handler, recorder.forListener(listenerId),
+                    consumer.getTopicDelays());
+        }
+
+        // 开启平滑释放时，过滤后的到期消息在容器线程上按速率等待后再交给实际处理器
+        if (options.isSmoothingEnabled()) {
+            ReleaseSmoothingHandler<K, V> smoothingHandler = new ReleaseSmoothingHandler<>(handler,
+                    options.getReleaseRate(), options.getReleaseJitterMs());
+            registerResource(listenerId, smoothingHandler::close);
+            handler = smoothingHandler;
+        }
+
+        ClaimCheckStore store = claimCheckStore;
+        ClaimCheckRehydrator<V> rehydrator = store == null ? null : new ClaimCheckRehydrator<>(store, valueDeserializer);
+
+        // 订阅了阶梯主题时改为订阅各梯级主题，梯级到期后需要原样转发，因此同样保留原始字节
+        DelayLadderForwarder forwarder = ladderForwarder;
+        if (forwarder != null && !forwarder.getRouter().containsLadder(topics)) {
+            forwarder = null;
+        }
+        Collection<String> subscribedTopics = forwarder == null ? topics : forwarder.getRouter().expand(topics);
+
+        // 固定拉取等待：没有新数据时 Broker 挂起拉取请求更久，减少空闲主题上的请求和唤醒；
+        // 等待时间在此固定，消费者创建后不能修改，因此不随下一次到期时间自适应
+        if (consumer.isFixedFetchWaitEnabled()) {
+            configs.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, resolveFetchMaxWaitMs(subscribedTopics));
+            configs.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1);
+        }
+
+        // 开启落盘时堆内预算用尽后远未到期的消息写入磁盘；不重新拉取时需在拉取阶段保留原始字节。
+        // 读回的消息在落盘缓冲自己的 concurrency 个线程上处理，不经过容器的异步处理线程池
+        SpillingDelayBuffer<K, V> spillBuffer = null;
+        boolean retainRaw = consumer.isSpillEnabled() && !consumer.isSpillRefetch() || forwarder != null;
+        Deserializer<K> containerKeyDeserializer = keyDeserializer;
+        if (consumer.isSpillEnabled()) {
+            spillBuffer = createSpillBuffer(topics, concurrency, keyDeserializer, valueDeserializer);
+            spillBuffer.setRetainRawOnHeap(forwarder != null);
+            configs.put(D2kReceiveInterceptor.SPILL_BUFFER_CONFIG, spillBuffer);
+        }
+        if (retainRaw) {
+            containerKeyDeserializer = new RawKeyCapturingDeserializer<>(keyDeserializer);
+        }
+        D2kMessageHandler<K, V> messageHandler = new D2kMessageHandler<>(
+                handler, cancellationIndex, coalescingIndex, rehydrator, spillBuffer, forwarder);
+
+        // 容器状态跟踪留在堆内的消息、投递和提交，供管理接口查询；暂停时到期消息在最外层等待，
+        // 同步处理时等待会阻塞拉取线程，因此只有异步处理的容器支持暂停
+        boolean async = asyncConfig != null && asyncConfig.isEnabled();
+        DelayContainerState containerState = new DelayContainerState(listenerId, subscribedTopics,
+                consumer.getTopicDelays(), consumer.getDueForecastBucketMs(), consumer.getDueForecastHorizonsMs());
+        containerState.setPauseSupported(async);
+        if (forwarder != null) {
+            containerState.setRungDelays(forwarder.getRouter().getRungDelays());
+        }
+        configs.put(D2kReceiveInterceptor.CONTAINER_STATE_CONFIG, containerState);
+        containerStates.put(listenerId, containerState);
+        if (spillBuffer != null) {
+            containerState.setSpillBuffer(spillBuffer);
+            spillBuffer.start(messageHandler, containerState);
+            SpillingDelayBuffer<K, V> buffer = spillBuffer;
+            registerResource(listenerId, () -> buffer.close(SPILL_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        if (listenerMetrics != null) {
+            listenerMetrics.bindDueCount(messageHandler::getDueCount);
+            listenerMetrics.bindDroppedCounts(cancellationIndex::getDroppedCount,
+                    coalescingIndex == null ? null : coalescingIndex::getSupersededCount);
+            listenerMetrics.bindSpilledPendingCount(spillBuffer == null ? null : spillBuffer::getSpilledPendingCount);
+            listenerMetrics.bindDueForecast(containerState.getTopics(), containerState.getForecastHorizons(),
+                    containerState::getDueForecast);
+        }
+
         return new DelayConsumerContainer<K, V>(
                 concurrency,
                 configs,
-                keyDeserializer,
-                valueDeserializer,
-                topics,
-                delayItemHandler,
+                containerKeyDeserializer,
+                (Deserializer<V>) new D2kMessageDeserializer<>(valueDeserializer, retainRaw),
+                subscribedTopics,
+                new ContainerStateHandler<>(messageHandler, containerState, forwarder, !async),
                 asyncConfig
         );
     }
 
+    /**
+     * 计算固定拉取等待的 fetch.max.wait.ms，创建容器时计算一次，之后不再调整
+     * fetch.min.bytes 为 1 时新数据到达 Broker 即返回，等待时间只决定空闲时请求的间隔；
+     * 取订阅主题最短延迟的一半，新消息最早也要在延迟之后到期，因此不会增加到期延迟。
+     * 有主题的延迟未知时保持 fetchMaxWaitMs 不变
+     *
+     * @param topics 实际订阅的主题
+     * @return 拉取等待时间（毫秒），不小于 fetchMaxWaitMs，不超过 fixedFetchWaitMaxMs
+     * @throws IllegalArgumentException 如果 fixedFetchWaitMaxMs 不小于消费者的请求超时时间
+     */
+    int resolveFetchMaxWaitMs(Collection<String> topics) {
+        D2kProperties.Consumer consumer = properties.getConsumer();
+        int maxWaitMs = consumer.getFixedFetchWaitMaxMs();
+        if (maxWaitMs >= DEFAULT_REQUEST_TIMEOUT_MS) {
+            throw new IllegalArgumentException("d2k.consumer.fixed-fetch-wait-max-ms must be less than the consumer "
+                    + "request timeout (" + DEFAULT_REQUEST_TIMEOUT_MS + "ms), but was " + maxWaitMs);
+        }
+        DelayLadderForwarder forwarder = ladderForwarder;
+        long minDelay = Long.MAX_VALUE;
+        for (String topic : topics) {
+            Long delay = consumer.getTopicDelays().get(topic);
+            if (delay == null && forwarder != null) {
+                DelayLadder ladder = forwarder.getRouter().getLadderOfRung(topic);
+                delay = ladder == null ? null : ladder.getRungDelay(topic);
+            }
+            if (delay == null) {
+                return consumer.getFetchMaxWaitMs();
+            }
+            minDelay = Math.min(minDelay, delay);
+        }
+        long waitMs = Math.min(minDelay / 2, maxWaitMs);
+        return (int) Math.max(consumer.getFetchMaxWaitMs(), waitMs);
+    }
+
+    /**
+     * 创建落盘缓冲，段文件放在按消费组和主题区分的子目录中，重启后继续读取
+     */
+    private <K, V> SpillingDelayBuffer<K, V> createSpillBuffer(Collection<String> topics, int concurrency,
+                                                              Deserializer<K> keyDeserializer,
+                                                              Deserializer<V> valueDeserializer) {
+        D2kProperties.Consumer consumer = properties.getConsumer();
+        String name = String.valueOf(consumer.getGroupId()) + "-" + String.join("_", new TreeSet<>(topics));
+        File directory = new File(consumer.getSpillDirectory(), name.replaceAll("[^A-Za-z0-9._-]", "_"));
+        try {
+            SpillSegmentStore spillStore = new SpillSegmentStore(directory, consumer.getSpillSegmentSize(),
+                    consumer.getSpillWindowMs());
+            RecordRefetcher refetcher = consumer.isSpillRefetch()
+                    ? new KafkaRecordRefetcher(buildConsumerConfigs()) : null;
+            return new SpillingDelayBuffer<>(spillStore, consumer.getSpillHeapBudget(),
+                    consumer.getSpillLookaheadMs(), consumer.getTopicDelays(), keyDeserializer,
+                    new D2kMessageDeserializer<>(valueDeserializer), refetcher, concurrency,
+                    consumer.getTimerTickMs(), consumer.getTimerWheelSize());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open spill directory " + directory, e);
+        }
+    }
+
     /**
      * 构建消费者配置
      */
@@ -0,0 +1,59 @@
+package com.d2k.spring.boot.autoconfigure.factory;
+
+/**
+ * 单个 DelayConsumerContainer 的附加选项
+ * 对应 @D2kListener 上与延迟队列行为相关的配置
+ *
+ * @author xiajuan96
+ */
+public class DelayConsumerContainerOptions {
+
+    // 监听器标识，用于指标和管理接口，未设置时使用主题名
+    private String listenerId;
+
+    // 是否按键合并：同一个键有多条未到期消息时只投递最新的一条
+    private boolean coalesce = false;
+
+    // 到期消息平滑释放：每秒最多释放的消息数和随机抖动窗口（毫秒），均为 0 时不平滑
+    private double releaseRate = 0;
+    private long releaseJitterMs = 0L;
+
+    public String getListenerId() {
+        return listenerId;
+    }
+
+    public void setListenerId(String listenerId) {
+        this.listenerId = listenerId;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public double getReleaseRate() {
+        return releaseRate;
+    }
+
+    public void setReleaseRate(double releaseRate) {
+        this.releaseRate = releaseRate;
+    }
+
+    public long getReleaseJitterMs() {
+        return releaseJitterMs;
+    }
+
+    public void setReleaseJitterMs(long releaseJitterMs) {
+        this.releaseJitterMs = releaseJitterMs;
+    }
+
+    /**
+     * 是否需要平滑释放
+     */
+    public boolean isSmoothingEnabled() {
+        return releaseRate > 0 || releaseJitterMs > 0;
+    }
+}
@@ -0,0 +1,125 @@
+package com.d2k.spring.boot.autoconfigure.ladder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 延迟阶梯
+ * 一个逻辑主题对应一组固定延迟的物理主题（梯级），例如 1s/10s/1m/10m/1h。
+ * 消息先进入不超过剩余延迟的最长梯级，每次到期后按剩余时间转入不超过剩余时间的最长梯级，
+ * 剩余时间短于最短梯级时不再转发，由消费端在本地等到预期到期时间后投递。
+ * 因此同一梯级内的消息延迟相同、不会被更长的延迟阻塞，且任何消息都不会早于预期到期时间投递；
+ * 延迟短于最短梯级的消息无法放入任何梯级而不超时，发送时拒绝
+ *
+ * @author xiajuan96
+ */
+public class DelayLadder {
+
+    private final String logicalTopic;
+    private final long[] rungs;
+    private final String[] rungTopics;
+
+    /**
+     * @param logicalTopic 逻辑主题
+     * @param rungs        各梯级的延迟（毫秒）
+     */
+    public DelayLadder(String logicalTopic, Collection<Long> rungs) {
+        if (rungs == null || rungs.isEmpty()) {
+            throw new IllegalArgumentException("Delay ladder for topic " + logicalTopic + " requires at least one rung");
+        }
+        long[] sorted = rungs.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        if (sorted[0] <= 0) {
+            throw new IllegalArgumentException("Delay ladder rungs must be positive, but topic " + logicalTopic
+                    + " has " + sorted[0]);
+        }
+        this.logicalTopic = logicalTopic;
+        this.rungs = sorted;
+        this.rungTopics = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            rungTopics[i] = rungTopic(logicalTopic, sorted[i]);
+        }
+    }
+
+    /**
+     * 梯级的物理主题名：{@code <逻辑主题>-delay-<延迟毫秒>ms}
+     */
+    public static String rungTopic(String logicalTopic, long delayMs) {
+        return logicalTopic + "-delay-" + delayMs + "ms";
+    }
+
+    /**
+     * 发送时选择梯级：不超过延迟的最长梯级
+     *
+     * @param delayMs 延迟（毫秒）
+     * @return 梯级的物理主题
+     * @throws IllegalArgumentException 如果延迟短于最短梯级
+     */
+    public String route(long delayMs) {
+        if (delayMs < rungs[0]) {
+            throw new IllegalArgumentException("Delay " + delayMs + "ms is shorter than the shortest rung ("
+                    + rungs[0] + "ms) of the delay ladder for topic " + logicalTopic);
+        }
+        return rungTopics[floorIndex(delayMs)];
+    }
+
+    /**
+     * 梯级到期后选择下一梯级：不超过剩余时间的最长梯级
+     *
+     * @param remainingMs 距预期到期时间的剩余毫秒数
+     * @return 下一梯级的物理主题，剩余时间短于最短梯级时返回 null，表示不再转发，等到预期到期时间后投递
+     */
+    public String next(long remainingMs) {
+        if (remainingMs < rungs[0]) {
+            return null;
+        }
+        return rungTopics[floorIndex(remainingMs)];
+    }
+
+    /**
+     * 不超过给定延迟的最长梯级的下标，调用方保证延迟不短于最短梯级
+     */
+    private int floorIndex(long delayMs) {
+        int index = Arrays.binarySearch(rungs, delayMs);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * 最短梯级的延迟，也是阶梯支持的最短延迟
+     */
+    public long getShortestRung() {
+        return rungs[0];
+    }
+
+    public String getLogicalTopic() {
+        return logicalTopic;
+    }
+
+    public List<String> getRungTopics() {
+        return Collections.unmodifiableList(Arrays.asList(rungTopics));
+    }
+
+    public List<Long> getRungs() {
+        List<Long> list = new ArrayList<>(rungs.length);
+        for (long rung : rungs) {
+            list.add(rung);
+        }
+        return list;
+    }
+
+    /**
+     * 梯级主题的延迟
+     *
+     * @return 延迟毫秒数，不是本阶梯的梯级时返回 -1
+     */
+    public long getRungDelay(String rungTopic) {
+        for (int i = 0; i < rungTopics.length; i++) {
+            if (rungTopics[i].equals(rungTopic)) {
+                return rungs[i];
+            }
+        }
+        return -1L;
+    }
+}
@@ -0,0 +1,202 @@
+package com.d2k.spring.boot.autoconfigure.ladder;
+
+import com.d2k.spring.boot.autoconfigure.message.D2kMessage;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 延迟阶梯转发器
+ * 梯级主题上的消息到期后，若距预期到期时间的剩余不短于最短梯级，把原始的键和信封字节原样发送到下一梯级；
+ * 剩余时间短于最短梯级时不再转发，由 {@link #awaitDue} 在当前线程上等到预期到期时间，保证不早于到期时间投递。
+ * <p>
+ * 转发是异步的：发送加入当前线程的待确认批次后立即返回，同一批到期消息的转发由生产者合并发送；
+ * 调用方在原消息的偏移量可能被提交之前调用 {@link #flush()} 等待本线程批次中的全部确认，
+ * 转发过程中失败时消息至少投递一次。批次超过 {@value #MAX_PENDING_FORWARDS} 条时先等待已有的确认
+ *
+ * @author xiajuan96
+ */
+public class DelayLadderForwarder {
+
+    /** 单个线程最多累积的待确认转发数 */
+    static final int MAX_PENDING_FORWARDS = 1000;
+
+    private final DelayLadderRouter router;
+    private final DelayProducerPool producerPool;
+    private final long forwardTimeoutMs;
+    private final ThreadLocal<List<PendingForward>> pending = ThreadLocal.withInitial(ArrayList::new);
+    private final LongAdder forwardedCount = new LongAdder();
+    private final LongAdder awaitedCount = new LongAdder();
+
+    /**
+     * @param router           延迟阶梯路由
+     * @param producerPool     发送到下一梯级使用的生产者池，其中的生产者需配置各梯级主题的延迟
+     * @param forwardTimeoutMs 等待一批发送确认的超时时间（毫秒）
+     */
+    public DelayLadderForwarder(DelayLadderRouter router, DelayProducerPool producerPool, long forwardTimeoutMs) {
+        this.router = router;
+        this.producerPool = producerPool;
+        this.forwardTimeoutMs = forwardTimeoutMs;
+    }
+
+    /**
+     * 需要时把消息转发到下一梯级，发送加入当前线程的待确认批次，不等待确认
+     *
+     * @param record  到期的消息
+     * @param message 消息的信封，需保留原始字节
+     * @return 已转发时返回 true，消息不应再交给监听器；不是梯级主题或已经到期时返回 false
+     * @throws IllegalStateException 如果消息没有保留原始字节
+     * @throws RuntimeException      如果发送调用失败，或批次已满时等待已有的确认失败
+     */
+    public boolean forward(ConsumerRecord<?, ?> record, D2kMessage<?> message) {
+        DelayLadder ladder = router.getLadderOfRung(record.topic());
+        D2kMessageHeaders headers = message.getHeaders();
+        if (ladder == null || headers == null || headers.getDueTimestamp() == D2kMessageHeaders.UNKNOWN_TIMESTAMP) {
+            return false;
+        }
+        String next = ladder.next(headers.getDueTimestamp() - System.currentTimeMillis());
+        if (next == null) {
+            return false;
+        }
+        if (!message.hasRaw(record.key())) {
+            throw new IllegalStateException("Cannot forward message " + headers.getMessageId()
+                    + " to the next delay rung: raw bytes were not retained");
+        }
+        List<PendingForward> batch = pending.get();
+        if (batch.size() >= MAX_PENDING_FORWARDS) {
+            flush();
+        }
+        Future<RecordMetadata> future = producerPool.send(next, message.getRawKey(), message.getRawValue());
+        batch.add(new PendingForward(headers.getMessageId(), next, future));
+        message.releaseRaw();
+        return true;
+    }
+
+    /**
+     * 梯级主题上不再转发的消息在当前线程上等到预期到期时间，剩余时间不超过最短梯级；
+     * 不是梯级主题、没有到期时间或已经到期时立即返回
+     *
+     * @param record  到期的消息
+     * @param message 消息的信封
+     * @throws IllegalStateException 如果等待时线程被中断，消息不会被视为已消费
+     */
+    public void awaitDue(ConsumerRecord<?, ?> record, D2kMessage<?> message) {
+        D2kMessageHeaders headers = message.getHeaders();
+        if (headers == null || headers.getDueTimestamp() == D2kMessageHeaders.UNKNOWN_TIMESTAMP
+                || router.getLadderOfRung(record.topic()) == null) {
+            return;
+        }
+        long remainingMs = headers.getDueTimestamp() - System.currentTimeMillis();
+        if (remainingMs <= 0) {
+            return;
+        }
+        awaitedCount.increment();
+        do {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remainingMs));
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Interrupted while waiting for message " + headers.getMessageId()
+                        + " to become due");
+            }
+            remainingMs = headers.getDueTimestamp() - System.currentTimeMillis();
+        } while (remainingMs > 0);
+    }
+
+    /**
+     * 等待当前线程批次中全部转发的确认，所有等待共用 forwardTimeoutMs 的超时时间；
+     * 无论成功与否批次都会清空
+     *
+     * @throws RuntimeException 如果有转发失败或超时，第一个失败为原因，其余的作为 suppressed 附加
+     */
+    public void flush() {
+        List<PendingForward> batch = pending.get();
+        if (batch.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(forwardTimeoutMs);
+        RuntimeException failure = null;
+        try {
+            for (PendingForward forward : batch) {
+                try {
+                    forward.future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    forwardedCount.increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = addFailure(failure, new RuntimeException("Interrupted while forwarding message "
+                            + forward.messageId + " to " + forward.topic, e));
+                } catch (ExecutionException | TimeoutException e) {
+                    failure = addFailure(failure, new RuntimeException("Failed to forward message "
+                            + forward.messageId + " to " + forward.topic, e));
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * 当前线程尚未等待确认的转发数
+     */
+    public int getPendingCount() {
+        return pending.get().size();
+    }
+
+    /**
+     * 梯级主题对应的逻辑主题，交给监听器的消息使用逻辑主题名
+     */
+    public String logicalTopic(String topic) {
+        DelayLadder ladder = router.getLadderOfRung(topic);
+        return ladder == null ? topic : ladder.getLogicalTopic();
+    }
+
+    public DelayLadderRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * 已确认转发到下一梯级的消息数
+     */
+    public long getForwardedCount() {
+        return forwardedCount.sum();
+    }
+
+    /**
+     * 剩余时间短于最短梯级、在本地等到到期时间的消息数
+     */
+    public long getAwaitedCount() {
+        return awaitedCount.sum();
+    }
+
+    private static final class PendingForward {
+
+        private final String messageId;
+        private final String topic;
+        private final Future<RecordMetadata> future;
+
+        private PendingForward(String messageId, String topic, Future<RecordMetadata> future) {
+            this.messageId = messageId;
+            this.topic = topic;
+            this.future = future;
+        }
+    }
+}
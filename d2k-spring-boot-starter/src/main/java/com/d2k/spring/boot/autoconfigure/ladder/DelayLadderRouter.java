@@ -0,0 +1,90 @@
+package com.d2k.spring.boot.autoconfigure.ladder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 延迟阶梯路由
+ * 持有所有配置了阶梯的逻辑主题，生产端按延迟选择梯级，消费端把逻辑主题展开为各梯级主题并按梯级主题反查阶梯
+ *
+ * @author xiajuan96
+ */
+public class DelayLadderRouter {
+
+    private final Map<String, DelayLadder> ladders = new HashMap<>();
+    private final Map<String, DelayLadder> rungs = new HashMap<>();
+
+    /**
+     * @param ladders 逻辑主题到各梯级延迟（毫秒）的映射
+     */
+    public DelayLadderRouter(Map<String, ? extends Collection<Long>> ladders) {
+        if (ladders != null) {
+            for (Map.Entry<String, ? extends Collection<Long>> entry : ladders.entrySet()) {
+                DelayLadder ladder = new DelayLadder(entry.getKey(), entry.getValue());
+                this.ladders.put(entry.getKey(), ladder);
+                for (String rungTopic : ladder.getRungTopics()) {
+                    this.rungs.put(rungTopic, ladder);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 逻辑主题的阶梯，没有配置时返回 null
+     */
+    public DelayLadder getLadder(String logicalTopic) {
+        return ladders.get(logicalTopic);
+    }
+
+    /**
+     * @return 梯级主题所属的阶梯，不是梯级主题时返回 null
+     */
+    public DelayLadder getLadderOfRung(String rungTopic) {
+        return rungs.get(rungTopic);
+    }
+
+    /**
+     * 是否有主题配置了阶梯
+     */
+    public boolean containsLadder(Collection<String> topics) {
+        for (String topic : topics) {
+            if (ladders.containsKey(topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把配置了阶梯的逻辑主题展开为各梯级主题，其他主题保持不变
+     */
+    public List<String> expand(Collection<String> topics) {
+        Set<String> expanded = new LinkedHashSet<>();
+        for (String topic : topics) {
+            DelayLadder ladder = ladders.get(topic);
+            if (ladder == null) {
+                expanded.add(topic);
+            } else {
+                expanded.addAll(ladder.getRungTopics());
+            }
+        }
+        return new ArrayList<>(expanded);
+    }
+
+    /**
+     * 所有梯级主题的延迟，用于配置 DelayProducer
+     */
+    public Map<String, Long> getRungDelays() {
+        Map<String, Long> delays = new HashMap<>();
+        for (Map.Entry<String, DelayLadder> entry : rungs.entrySet()) {
+            delays.put(entry.getKey(), entry.getValue().getRungDelay(entry.getKey()));
+        }
+        return Collections.unmodifiableMap(delays);
+    }
+}
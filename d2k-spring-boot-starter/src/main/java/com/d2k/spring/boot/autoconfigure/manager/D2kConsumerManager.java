@@ -1,8 +1,15 @@
 package com.d2k.spring.boot.autoconfigure.manager;
 
 import com.d2k.consumer.DelayConsumerContainer;
+import com.d2k.spring.boot.autoconfigure.consumer.DelayContainerState;
+import com.d2k.spring.boot.autoconfigure.factory.DelayConsumerContainerFactory;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayLatenessRecorder;
+import com.d2k.spring.boot.autoconfigure.metrics.LatenessSnapshot;
 import org.springframework.beans.factory.DisposableBean;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -13,6 +20,24 @@ import java.util.concurrent.ConcurrentMap;
 public class D2kConsumerManager implements DisposableBean {
 
     private final ConcurrentMap<String, DelayConsumerContainer<?, ?>> containers = new ConcurrentHashMap<>();
+    // 已释放附属资源、不能再次启动的容器
+    private final Set<String> released = ConcurrentHashMap.newKeySet();
+    private volatile DelayLatenessRecorder latenessRecorder;
+    private volatile DelayConsumerContainerFactory containerFactory;
+
+    /**
+     * 设置到期延迟记录器，用于查询各容器的到期延迟
+     */
+    public void setLatenessRecorder(DelayLatenessRecorder latenessRecorder) {
+        this.latenessRecorder = latenessRecorder;
+    }
+
+    /**
+     * 设置容器工厂，用于查询各容器的运行状态和暂停、恢复投递
+     */
+    public void setContainerFactory(DelayConsumerContainerFactory containerFactory) {
+        this.containerFactory = containerFactory;
+    }
 
     /**
      * 注册消费者容器
@@ -22,6 +47,7 @@ public class D2kConsumerManager implements DisposableBean {
      */
     public void registerContainer(String name, DelayConsumerContainer<?, ?> container) {
         containers.put(name, container);
+        released.remove(name);
     }
 
     /**
@@ -42,34 +68,97 @@ public class D2kConsumerManager implements DisposableBean {
     public void startContainer(String name) {
         DelayConsumerContainer<?, ?> container = containers.get(name);
         if (container != null) {
+            if (released.contains(name)) {
+                throw new IllegalStateException("D2K container " + name
+                        + " was stopped and its resources were released; restart the application to start it again");
+            }
             container.start();
+            DelayContainerState state = getContainerState(name);
+            if (state != null) {
+                state.setRunning(true);
+            }
         }
     }
 
     /**
-     * 停止指定的消费者容器
+     * 停止指定的消费者容器，暂停中的容器先恢复投递，使等待中的处理线程能够退出；
+     * 停止后释放容器的附属资源（平滑释放处理器等），登记过附属资源的容器之后不能再次启动
      *
      * @param name 容器名称
      */
     public void stopContainer(String name) {
         DelayConsumerContainer<?, ?> container = containers.get(name);
         if (container != null) {
+            DelayContainerState state = getContainerState(name);
+            if (state != null) {
+                state.resume();
+            }
             container.stop();
+            if (state != null) {
+                state.setRunning(false);
+            }
+            DelayConsumerContainerFactory factory = containerFactory;
+            if (factory != null && factory.closeContainerResources(name)) {
+                released.add(name);
+            }
         }
     }
 
+    /**
+     * 暂停指定容器的投递
+     * 消费者继续拉取和提交，已到期的消息（包括从磁盘读回的消息）在处理器前等待；只有异步处理的容器支持暂停
+     *
+     * @param name 容器名称
+     * @return 容器存在时返回 true
+     * @throws IllegalStateException 如果容器使用同步处理
+     */
+    public boolean pauseContainer(String name) {
+        DelayContainerState state = containers.containsKey(name) ? getContainerState(name) : null;
+        if (state == null) {
+            return false;
+        }
+        state.pause();
+        return true;
+    }
+
+    /**
+     * 恢复指定容器的投递
+     *
+     * @param name 容器名称
+     * @return 容器存在时返回 true
+     */
+    public boolean resumeContainer(String name) {
+        DelayContainerState state = containers.containsKey(name) ? getContainerState(name) : null;
+        if (state == null) {
+            return false;
+        }
+        state.resume();
+        return true;
+    }
+
+    /**
+     * 获取容器的运行状态（分区、等待中的消息、下一次到期时间、正在处理的消息和最近提交）
+     *
+     * @param name 容器名称
+     * @return 容器状态，不存在或不是由容器工厂创建时返回 null
+     */
+    public DelayContainerState getContainerState(String name) {
+        DelayConsumerContainerFactory factory = containerFactory;
+        return factory == null ? null : factory.getContainerState(name);
+    }
+
     /**
      * 启动所有消费者容器
      */
     public void startAllContainers() {
-        containers.values().forEach(DelayConsumerContainer::start);
+        containers.keySet().forEach(this::startContainer);
     }
 
     /**
      * 停止所有消费者容器
      */
     public void stopAllContainers() {
-        containers.values().forEach(DelayConsumerContainer::stop);
+        containers.keySet().forEach(this::stopContainer);
     }
 
     /**
@@ -81,6 +170,52 @@ public class D2kConsumerManager implements DisposableBean {
         return containers.keySet();
     }
 
+    /**
+     * 获取容器各主题的到期延迟（p50/p99/p999/max，毫秒）
+     *
+     * @param name 容器名称
+     * @return 主题到延迟快照的映射，未记录时为空
+     */
+    public Map<String, LatenessSnapshot> getLateness(String name) {
+        DelayLatenessRecorder recorder = latenessRecorder;
+        return recorder == null ? Collections.emptyMap() : recorder.getTopicSnapshots(name);
+    }
+
+    /**
+     * 获取容器在某个主题上各分区的到期延迟
+     *
+     * @param name  容器名称
+     * @param topic 主题
+     * @return 分区到延迟快照的映射，未记录时为空
+     */
+    public Map<Integer, LatenessSnapshot> getPartitionLateness(String name, String topic) {
+        DelayLatenessRecorder recorder = latenessRecorder;
+        return recorder == null ? Collections.emptyMap() : recorder.getPartitionSnapshots(name, topic);
+    }
+
+    /**
+     * 获取容器各主题在各预测时间范围内将要到期（包括已逾期）的消息数，包括落盘尚未读回的消息
+     *
+     * @param name 容器名称
+     * @return 主题到（时间范围标签到消息数）的映射，容器不存在时为空
+     */
+    public Map<String, Map<String, Long>> getDueForecast(String name) {
+        DelayContainerState state = getContainerState(name);
+        return state == null ? Collections.emptyMap() : state.getDueForecast();
+    }
+
+    /**
+     * 获取容器在某个主题上各分区将要到期（包括已逾期）的堆内消息数
+     *
+     * @param name  容器名称
+     * @param topic 主题
+     * @return 分区到（时间范围标签到消息数）的映射，容器不存在时为空
+     */
+    public Map<Integer, Map<String, Long>> getPartitionDueForecast(String name, String topic) {
+        DelayContainerState state = getContainerState(name);
+        return state == null ? Collections.emptyMap() : state.getPartitionDueForecast(topic);
+    }
+
     /**
      * 应用关闭时停止所有容器
      */
@@ -0,0 +1,35 @@
+package com.d2k.spring.boot.autoconfigure.message;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * 携带 D2K 元数据的消费记录
+ * 信封消息还原后以此类型交给监听器，通过 {@link D2kMessageHeaders#from(ConsumerRecord)} 读取元数据，
+ * 不需要再解析 Kafka Header
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class D2kConsumerRecord<K, V> extends ConsumerRecord<K, V> {
+
+    private final D2kMessageHeaders messageHeaders;
+
+    public D2kConsumerRecord(ConsumerRecord<K, ?> record, V value, D2kMessageHeaders messageHeaders) {
+        this(record.topic(), record, value, messageHeaders);
+    }
+
+    /**
+     * @param topic 交给监听器的主题名，延迟阶梯的梯级主题还原为逻辑主题
+     */
+    public D2kConsumerRecord(String topic, ConsumerRecord<K, ?> record, V value, D2kMessageHeaders messageHeaders) {
+        super(topic, record.partition(), record.offset(), record.timestamp(), record.timestampType(),
+                record.serializedKeySize(), record.serializedValueSize(), record.key(), value,
+                record.headers(), record.leaderEpoch());
+        this.messageHeaders = messageHeaders;
+    }
+
+    public D2kMessageHeaders getMessageHeaders() {
+        return messageHeaders;
+    }
+}
@@ -0,0 +1,96 @@
+package com.d2k.spring.boot.autoconfigure.message;
+
+/**
+ * 带信封的 D2K 消息
+ * 由 D2kMessageDeserializer 在拉取时生成，监听器调用前会被还原为原始的消息值；
+ * 落盘模式下普通消息也会被包装，此时元数据为 null
+ *
+ * @param <V> 值类型
+ * @author xiajuan96
+ */
+public class D2kMessage<V> {
+
+    private final D2kMessageHeaders headers;
+    private final V value;
+    private final String claimCheckReference;
+    // 落盘模式下保留的原始字节，拦截器决定不落盘后即释放
+    private Object capturedKey;
+    private byte[] rawKey;
+    private byte[] rawValue;
+
+    public D2kMessage(D2kMessageHeaders headers, V value) {
+        this(headers, value, null);
+    }
+
+    private D2kMessage(D2kMessageHeaders headers, V value, String claimCheckReference) {
+        this.headers = headers;
+        this.value = value;
+        this.claimCheckReference = claimCheckReference;
+    }
+
+    /**
+     * 创建 Claim Check 消息，消息值保存在外部存储中，到期后按引用取回
+     *
+     * @param headers   元数据
+     * @param reference 外部存储中的引用
+     */
+    public static <V> D2kMessage<V> claimCheck(D2kMessageHeaders headers, String reference) {
+        return new D2kMessage<>(headers, null, reference);
+    }
+
+    public D2kMessageHeaders getHeaders() {
+        return headers;
+    }
+
+    public V getValue() {
+        return value;
+    }
+
+    /**
+     * 是否为 Claim Check 消息，此时 {@link #getValue()} 为 null
+     */
+    public boolean isClaimCheck() {
+        return claimCheckReference != null;
+    }
+
+    public String getClaimCheckReference() {
+        return claimCheckReference;
+    }
+
+    /**
+     * 保留消息的原始字节，供拦截器把尚未到期的消息写入磁盘
+     *
+     * @param capturedKey 与原始键字节对应的反序列化后的键，用于确认键字节属于同一条消息
+     * @param rawKey      原始键字节
+     * @param rawValue    原始值字节
+     */
+    void retainRaw(Object capturedKey, byte[] rawKey, byte[] rawValue) {
+        this.capturedKey = capturedKey;
+        this.rawKey = rawKey;
+        this.rawValue = rawValue;
+    }
+
+    /**
+     * 是否保留了原始字节，且键字节属于给定的键
+     */
+    public boolean hasRaw(Object key) {
+        return rawValue != null && capturedKey == key;
+    }
+
+    public byte[] getRawKey() {
+        return rawKey;
+    }
+
+    public byte[] getRawValue() {
+        return rawValue;
+    }
+
+    /**
+     * 释放保留的原始字节
+     */
+    public void releaseRaw() {
+        this.capturedKey = null;
+        this.rawKey = null;
+        this.rawValue = null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.d2k.spring.boot.autoconfigure.message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * D2K 消息信封编解码
+ * DelayProducer 不支持设置 Kafka Header，元数据以紧凑的二进制前缀写在消息值前面：
+ * <pre>
+ * [0x00][0xD2][version][flags][fieldCount] { [type][len:u16][bytes] }* [payload]
+ * </pre>
+ * 标志位：1 取消标记，2 空消息值，4 Claim Check（负载为外部存储中的引用）。
+ * 字段类型：1 消息 ID，2 发送时间，3 预期到期时间，4 来源，5 链路上下文（traceparent）。
+ * 未知字段类型在解码时跳过；不以魔数开头的消息按普通消息处理，因此新旧消息可以混合消费。
+ *
+ * @author xiajuan96
+ */
+public final class D2kMessageCodec {
+
+    static final byte MAGIC_0 = 0x00;
+    static final byte MAGIC_1 = (byte) 0xD2;
+    static final byte VERSION = 1;
+
+    static final int FLAG_CANCEL = 1;
+    static final int FLAG_NULL_VALUE = 1 << 1;
+    static final int FLAG_CLAIM_CHECK = 1 << 2;
+
+    static final byte FIELD_MESSAGE_ID = 1;
+    static final byte FIELD_SEND_TIMESTAMP = 2;
+    static final byte FIELD_DUE_TIMESTAMP = 3;
+    static final byte FIELD_ORIGIN = 4;
+    static final byte FIELD_TRACE_PARENT = 5;
+
+    private static final int PREFIX_LENGTH = 5;
+    private static final int FIELD_HEADER_LENGTH = 3;
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+    private D2kMessageCodec() {
+    }
+
+    /**
+     * 判断字节数组是否为 D2K 消息信封
+     */
+    public static boolean isEnvelope(byte[] data) {
+        return data != null && data.length >= PREFIX_LENGTH
+                && data[0] == MAGIC_0 && data[1] == MAGIC_1 && data[2] == VERSION;
+    }
+
+    /**
+     * 将元数据和序列化后的消息值编码为信封，未设置的元数据字段不写入
+     *
+     * @param headers 元数据
+     * @param payload 序列化后的消息值，可以为 null
+     * @return 编码后的字节数组
+     */
+    public static byte[] encode(D2kMessageHeaders headers, byte[] payload) {
+        return encode(headers, payload, false);
+    }
+
+    /**
+     * 将元数据和 Claim Check 引用编码为信封，消息值本身保存在外部存储中
+     *
+     * @param headers   元数据
+     * @param reference 外部存储中的引用
+     * @return 编码后的字节数组
+     */
+    public static byte[] encodeClaimCheck(D2kMessageHeaders headers, String reference) {
+        return encode(headers, toBytes("Claim check reference", reference), true);
+    }
+
+    private static byte[] encode(D2kMessageHeaders headers, byte[] payload, boolean claimCheck) {
+        byte[] messageId = toBytes("Message id", headers.getMessageId());
+        byte[] origin = toBytes("Origin", headers.getOrigin());
+        byte[] traceParent = toBytes("Trace parent", headers.getTraceParent());
+        boolean hasSendTimestamp = headers.getSendTimestamp() != D2kMessageHeaders.UNKNOWN_TIMESTAMP;
+        boolean hasDueTimestamp = headers.getDueTimestamp() != D2kMessageHeaders.UNKNOWN_TIMESTAMP;
+
+        int flags = (headers.isCancel() ? FLAG_CANCEL : 0) | (payload == null ? FLAG_NULL_VALUE : 0)
+                | (claimCheck ? FLAG_CLAIM_CHECK : 0);
+        int fieldCount = 0;
+        int length = PREFIX_LENGTH + (payload == null ? 0 : payload.length);
+        for (byte[] field : new byte[][]{messageId, origin, traceParent}) {
+            if (field != null) {
+                fieldCount++;
+                length += FIELD_HEADER_LENGTH + field.length;
+            }
+        }
+        for (boolean present : new boolean[]{hasSendTimestamp, hasDueTimestamp}) {
+            if (present) {
+                fieldCount++;
+                length += FIELD_HEADER_LENGTH + Long.BYTES;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) flags).put((byte) fieldCount);
+        putField(buffer, FIELD_MESSAGE_ID, messageId);
+        if (hasSendTimestamp) {
+            buffer.put(FIELD_SEND_TIMESTAMP).putShort((short) Long.BYTES).putLong(headers.getSendTimestamp());
+        }
+        if (hasDueTimestamp) {
+            buffer.put(FIELD_DUE_TIMESTAMP).putShort((short) Long.BYTES).putLong(headers.getDueTimestamp());
+        }
+        putField(buffer, FIELD_ORIGIN, origin);
+        putField(buffer, FIELD_TRACE_PARENT, traceParent);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 解码信封，返回元数据和原始的消息值字节
+     *
+     * @param data 信封字节，调用前需通过 {@link #isEnvelope(byte[])} 判断
+     * @return 解码后的消息
+     * @throws IllegalArgumentException 如果信封格式损坏
+     */
+    public static D2kMessage<byte[]> decode(byte[] data) {
+        if (!isEnvelope(data)) {
+            throw new IllegalArgumentException("Not a d2k message envelope");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data, 3, data.length - 3);
+            int flags = buffer.get() & 0xFF;
+            int fieldCount = buffer.get() & 0xFF;
+            String messageId = null;
+            String origin = null;
+            String traceParent = null;
+            long sendTimestamp = D2kMessageHeaders.UNKNOWN_TIMESTAMP;
+            long dueTimestamp = D2kMessageHeaders.UNKNOWN_TIMESTAMP;
+            for (int i = 0; i < fieldCount; i++) {
+                byte type = buffer.get();
+                int length = buffer.getShort() & 0xFFFF;
+                int position = buffer.position();
+                if (type == FIELD_MESSAGE_ID) {
+                    messageId = new String(data, position, length, StandardCharsets.UTF_8);
+                } else if (type == FIELD_SEND_TIMESTAMP && length == Long.BYTES) {
+                    sendTimestamp = buffer.getLong(position);
+                } else if (type == FIELD_DUE_TIMESTAMP && length == Long.BYTES) {
+                    dueTimestamp = buffer.getLong(position);
+                } else if (type == FIELD_ORIGIN) {
+                    origin = new String(data, position, length, StandardCharsets.UTF_8);
+                } else if (type == FIELD_TRACE_PARENT) {
+                    traceParent = new String(data, position, length, StandardCharsets.UTF_8);
+                }
+                buffer.position(position + length);
+            }
+            D2kMessageHeaders headers = new D2kMessageHeaders(messageId, (flags & FLAG_CANCEL) != 0,
+                    sendTimestamp, dueTimestamp, origin, traceParent);
+            if ((flags & FLAG_CLAIM_CHECK) != 0) {
+                return D2kMessage.claimCheck(headers, new String(data, buffer.position(),
+                        data.length - buffer.position(), StandardCharsets.UTF_8));
+            }
+            byte[] payload = (flags & FLAG_NULL_VALUE) != 0
+                    ? null : Arrays.copyOfRange(data, buffer.position(), data.length);
+            return new D2kMessage<>(headers, payload);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Corrupted d2k message envelope", e);
+        }
+    }
+
+    private static byte[] toBytes(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_LENGTH) {
+            throw new IllegalArgumentException(name + " too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putField(ByteBuffer buffer, byte type, byte[] value) {
+        if (value != null) {
+            buffer.put(type).putShort((short) value.length).put(value);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.d2k.spring.boot.autoconfigure.message;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * 识别 D2K 消息信封的值反序列化器
+ * 普通消息直接交给原反序列化器；信封消息解出元数据后反序列化其中的消息值，并返回 {@link D2kMessage}；
+ * Claim Check 消息只保留引用，到期后再取回消息值
+ *
+ * @param <V> 原反序列化器的值类型
+ * @author xiajuan96
+ */
+public class D2kMessageDeserializer<V> implements Deserializer<Object> {
+
+    private final Deserializer<V> delegate;
+    private final boolean retainRaw;
+
+    public D2kMessageDeserializer(Deserializer<V> delegate) {
+        this(delegate, false);
+    }
+
+    /**
+     * @param delegate  原反序列化器
+     * @param retainRaw 是否保留原始字节（落盘模式），开启后普通消息也包装为 {@link D2kMessage}，
+     *                  键反序列化器需使用 {@link RawKeyCapturingDeserializer}
+     */
+    public D2kMessageDeserializer(Deserializer<V> delegate, boolean retainRaw) {
+        this.delegate = delegate;
+        this.retainRaw = retainRaw;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        Object value = decode(topic, headers, data);
+        if (!retainRaw) {
+            return value;
+        }
+        D2kMessage<?> message = value instanceof D2kMessage ? (D2kMessage<?>) value : new D2kMessage<>(null, value);
+        Object[] key = RawKeyCapturingDeserializer.takeLastKey();
+        message.retainRaw(key == null ? null : key[0], key == null ? null : (byte[]) key[1], data);
+        return message;
+    }
+
+    private Object decode(String topic, Headers headers, byte[] data) {
+        if (!D2kMessageCodec.isEnvelope(data)) {
+            return headers == null ? delegate.deserialize(topic, data) : delegate.deserialize(topic, headers, data);
+        }
+        D2kMessage<byte[]> message = D2kMessageCodec.decode(data);
+        if (message.isClaimCheck()) {
+            return message;
+        }
+        byte[] payload = message.getValue();
+        V value = payload == null ? null
+                : headers == null ? delegate.deserialize(topic, payload) : delegate.deserialize(topic, headers, payload);
+        return new D2kMessage<>(message.getHeaders(), value);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public Deserializer<V> getDelegate() {
+        return delegate;
+    }
+}
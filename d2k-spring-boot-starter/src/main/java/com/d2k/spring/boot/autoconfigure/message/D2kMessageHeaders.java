@@ -0,0 +1,122 @@
+package com.d2k.spring.boot.autoconfigure.message;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * D2K 消息元数据
+ * 随消息值一起编码在消息信封中，包括消息 ID、发送时间、预期到期时间、来源和链路上下文，
+ * 消费端在调用监听器前读取。时间戳为毫秒，未知时为 -1
+ *
+ * @author xiajuan96
+ */
+public class D2kMessageHeaders {
+
+    public static final long UNKNOWN_TIMESTAMP = -1L;
+
+    private final String messageId;
+    private final boolean cancel;
+    private final long sendTimestamp;
+    private final long dueTimestamp;
+    private final String origin;
+    private final String traceParent;
+
+    public D2kMessageHeaders(String messageId, boolean cancel) {
+        this(messageId, cancel, UNKNOWN_TIMESTAMP, UNKNOWN_TIMESTAMP, null, null);
+    }
+
+    /**
+     * @param messageId     消息 ID
+     * @param cancel        是否为取消标记
+     * @param sendTimestamp 发送时间
+     * @param dueTimestamp  预期到期时间
+     * @param origin        发送方标识，通常为应用名
+     * @param traceParent   W3C traceparent 链路上下文
+     */
+    public D2kMessageHeaders(String messageId, boolean cancel, long sendTimestamp, long dueTimestamp,
+                             String origin, String traceParent) {
+        this.messageId = messageId;
+        this.cancel = cancel;
+        this.sendTimestamp = sendTimestamp;
+        this.dueTimestamp = dueTimestamp;
+        this.origin = origin;
+        this.traceParent = traceParent;
+    }
+
+    /**
+     * 创建普通消息的元数据
+     */
+    public static D2kMessageHeaders of(String messageId) {
+        return new D2kMessageHeaders(messageId, false);
+    }
+
+    /**
+     * 创建取消标记的元数据
+     */
+    public static D2kMessageHeaders cancelOf(String messageId) {
+        return new D2kMessageHeaders(messageId, true);
+    }
+
+    /**
+     * 获取消费记录携带的元数据
+     *
+     * @param record 监听器收到的消费记录
+     * @return 元数据，消息未携带信封时返回 null
+     */
+    public static D2kMessageHeaders from(ConsumerRecord<?, ?> record) {
+        return record instanceof D2kConsumerRecord ? ((D2kConsumerRecord<?, ?>) record).getMessageHeaders() : null;
+    }
+
+    /**
+     * 生成新的消息 ID（不依赖 SecureRandom，开销低）
+     */
+    public static String newMessageId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * 是否为取消标记，取消标记本身不会交给监听器
+     */
+    public boolean isCancel() {
+        return cancel;
+    }
+
+    public long getSendTimestamp() {
+        return sendTimestamp;
+    }
+
+    public long getDueTimestamp() {
+        return dueTimestamp;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getTraceParent() {
+        return traceParent;
+    }
+
+    /**
+     * 相对预期到期时间的延迟（毫秒），到期时间未知时返回 -1
+     *
+     * @param now 当前时间
+     */
+    public long getLatenessMs(long now) {
+        return dueTimestamp == UNKNOWN_TIMESTAMP ? UNKNOWN_TIMESTAMP : Math.max(0L, now - dueTimestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "D2kMessageHeaders{messageId='" + messageId + "', cancel=" + cancel
+                + ", sendTimestamp=" + sendTimestamp + ", dueTimestamp=" + dueTimestamp
+                + ", origin='" + origin + "', traceParent='" + traceParent + "'}";
+    }
+}
@@ -0,0 +1,63 @@
+package com.d2k.spring.boot.autoconfigure.message;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * 记录原始键字节的键反序列化器
+ * KafkaConsumer 在同一线程上先反序列化键、再反序列化值，值反序列化器借此拿到同一条消息的原始键字节。
+ * 键为 null 时不会调用键反序列化器，因此取出后即清空，并由调用方按反序列化后的键对象核对
+ *
+ * @param <K> 键类型
+ * @author xiajuan96
+ */
+public class RawKeyCapturingDeserializer<K> implements Deserializer<K> {
+
+    private static final ThreadLocal<Object[]> LAST_KEY = new ThreadLocal<>();
+
+    private final Deserializer<K> delegate;
+
+    public RawKeyCapturingDeserializer(Deserializer<K> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public K deserialize(String topic, byte[] data) {
+        return capture(data, delegate.deserialize(topic, data));
+    }
+
+    @Override
+    public K deserialize(String topic, Headers headers, byte[] data) {
+        return capture(data, delegate.deserialize(topic, headers, data));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public Deserializer<K> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 取出当前线程最近一次反序列化的键，返回 {反序列化后的键, 原始字节}，没有时返回 null
+     */
+    static Object[] takeLastKey() {
+        Object[] last = LAST_KEY.get();
+        LAST_KEY.remove();
+        return last;
+    }
+
+    private static <K> K capture(byte[] data, K key) {
+        LAST_KEY.set(new Object[]{key, data});
+        return key;
+    }
+}
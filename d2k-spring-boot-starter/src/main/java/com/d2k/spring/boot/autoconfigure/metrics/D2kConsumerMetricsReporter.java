@@ -0,0 +1,108 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import com.d2k.spring.boot.autoconfigure.consumer.D2kReceiveInterceptor;
+import com.d2k.spring.boot.autoconfigure.consumer.DelayContainerState;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricsReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消费者指标上报器
+ * 由 KafkaConsumer 通过 metric.reporters 创建，把消费者自身的最大消费延迟和累计再均衡次数登记到容器的监听器指标，
+ * 把分区级别的消费延迟登记到容器状态（指标随分区分配创建、随分区撤销移除）；
+ * 监听器指标和容器状态与拉取拦截器一样通过 {@link D2kReceiveInterceptor} 的配置项传入
+ *
+ * @author xiajuan96
+ */
+public class D2kConsumerMetricsReporter implements MetricsReporter {
+
+    private static final String FETCH_GROUP = "consumer-fetch-manager-metrics";
+    private static final String COORDINATOR_GROUP = "consumer-coordinator-metrics";
+
+    private final List<KafkaMetric> tracked = new ArrayList<>();
+    private DelayContainerMetrics.ListenerMetrics metrics;
+    private DelayContainerState state;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object listenerMetrics = configs.get(D2kReceiveInterceptor.LISTENER_METRICS_CONFIG);
+        if (listenerMetrics instanceof DelayContainerMetrics.ListenerMetrics) {
+            this.metrics = (DelayContainerMetrics.ListenerMetrics) listenerMetrics;
+        }
+        Object containerState = configs.get(D2kReceiveInterceptor.CONTAINER_STATE_CONFIG);
+        if (containerState instanceof DelayContainerState) {
+            this.state = (DelayContainerState) containerState;
+        }
+    }
+
+    @Override
+    public void init(List<KafkaMetric> metrics) {
+        for (KafkaMetric metric : metrics) {
+            metricChange(metric);
+        }
+    }
+
+    @Override
+    public synchronized void metricChange(KafkaMetric metric) {
+        MetricName name = metric.metricName();
+        if (FETCH_GROUP.equals(name.group()) && "records-lag".equals(name.name())) {
+            Integer partition = partition(name);
+            if (state != null && partition != null) {
+                state.addPartitionLag(name.tags().get("topic"), partition, metric);
+                tracked.add(metric);
+            }
+        } else if (metrics == null) {
+            return;
+        } else if (FETCH_GROUP.equals(name.group()) && "records-lag-max".equals(name.name())
+                && !name.tags().containsKey("topic")) {
+            // 只取消费者级别的最大延迟，按主题和分区的细分指标不登记
+            metrics.addLagMetric(metric);
+            tracked.add(metric);
+        } else if (COORDINATOR_GROUP.equals(name.group()) && "rebalance-total".equals(name.name())) {
+            metrics.addRebalanceMetric(metric);
+            tracked.add(metric);
+        }
+    }
+
+    @Override
+    public synchronized void metricRemoval(KafkaMetric metric) {
+        if (tracked.remove(metric)) {
+            remove(metric);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (KafkaMetric metric : tracked) {
+            remove(metric);
+        }
+        tracked.clear();
+    }
+
+    private void remove(KafkaMetric metric) {
+        MetricName name = metric.metricName();
+        Integer partition = partition(name);
+        if (state != null && partition != null && "records-lag".equals(name.name())) {
+            state.removePartitionLag(name.tags().get("topic"), partition, metric);
+        }
+        if (metrics != null) {
+            metrics.removeKafkaMetric(metric);
+        }
+    }
+
+    private static Integer partition(MetricName name) {
+        String partition = name.tags().get("partition");
+        if (partition == null || !name.tags().containsKey("topic")) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(partition);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
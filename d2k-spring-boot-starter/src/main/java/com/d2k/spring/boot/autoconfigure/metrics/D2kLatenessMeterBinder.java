@@ -0,0 +1,60 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 到期延迟的 Micrometer 指标
+ * 每个（监听器, 主题）组合第一次出现时注册以下指标，标签为 listener 和 topic：
+ * <ul>
+ *     <li>d2k.listener.lateness：最近窗口内的分位数，附加 quantile 标签（0.5 / 0.99 / 0.999）</li>
+ *     <li>d2k.listener.lateness.max：累计最大延迟</li>
+ *     <li>d2k.listener.lateness.count：累计记录数</li>
+ * </ul>
+ * 分区级别的数据通过 D2kConsumerManager 查询，不作为指标标签
+ *
+ * @author xiajuan96
+ */
+public class D2kLatenessMeterBinder implements MeterBinder {
+
+    private final DelayLatenessRecorder recorder;
+
+    public D2kLatenessMeterBinder(DelayLatenessRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        recorder.addSeriesListener((listener, topic) -> register(registry, listener, topic));
+    }
+
+    private void register(MeterRegistry registry, String listener, String topic) {
+        quantile(registry, listener, topic, "0.5", LatenessSnapshot::getP50);
+        quantile(registry, listener, topic, "0.99", LatenessSnapshot::getP99);
+        quantile(registry, listener, topic, "0.999", LatenessSnapshot::getP999);
+        TimeGauge.builder("d2k.listener.lateness.max", recorder, TimeUnit.MILLISECONDS,
+                        r -> r.getSnapshot(listener, topic).getMax())
+                .tags("listener", listener, "topic", topic)
+                .description("Maximum delivery time minus due time")
+                .register(registry);
+        FunctionCounter.builder("d2k.listener.lateness.count", recorder,
+                        r -> r.getSnapshot(listener, topic).getTotalCount())
+                .tags("listener", listener, "topic", topic)
+                .description("Delayed records delivered to the listener")
+                .register(registry);
+    }
+
+    private void quantile(MeterRegistry registry, String listener, String topic, String quantile,
+                          ToDoubleFunction<LatenessSnapshot> value) {
+        TimeGauge.builder("d2k.listener.lateness", recorder, TimeUnit.MILLISECONDS,
+                        r -> value.applyAsDouble(r.getSnapshot(listener, topic)))
+                .tags("listener", listener, "topic", topic, "quantile", quantile)
+                .description("Delivery time minus due time over the recent window")
+                .register(registry);
+    }
+}
@@ -0,0 +1,113 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 延迟消费容器的 Micrometer 指标
+ * 每个监听器第一次创建容器时注册以下指标，标签为 listener：
+ * <ul>
+ *     <li>d2k.listener.records.received：累计拉取的消息数</li>
+ *     <li>d2k.listener.records.due：累计到期的消息数</li>
+ *     <li>d2k.listener.records.dropped：累计丢弃的消息数，附加 reason 标签（cancelled / superseded）</li>
+ *     <li>d2k.listener.records.pending：已拉取尚未到期的消息数</li>
+ *     <li>d2k.listener.records.spilled：落盘等待读回的消息数</li>
+ *     <li>d2k.listener.handler：处理器调用次数和耗时，附加 outcome 标签（success / error）</li>
+ *     <li>d2k.listener.handler.active：正在处理的消息数</li>
+ *     <li>d2k.listener.consumer.lag：消费者上报的最大消费延迟（条）</li>
+ *     <li>d2k.listener.rebalances：消费者累计再均衡次数</li>
+ *     <li>d2k.listener.due.forecast：各时间范围内将要到期（包括已逾期）的消息数，附加 topic 和 horizon 标签（如 1m、24h），
+ *     在容器创建后注册</li>
+ * </ul>
+ *
+ * @author xiajuan96
+ */
+public class D2kListenerMeterBinder implements MeterBinder {
+
+    private final DelayContainerMetrics metrics;
+
+    public D2kListenerMeterBinder(DelayContainerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        metrics.addListenerCallback(listener -> register(registry, listener));
+    }
+
+    private void register(MeterRegistry registry, DelayContainerMetrics.ListenerMetrics listener) {
+        String id = listener.getListener();
+        counter(registry, listener, "d2k.listener.records.received", "Records polled by the container",
+                DelayContainerMetrics.ListenerMetrics::getReceivedCount);
+        counter(registry, listener, "d2k.listener.records.due", "Records that reached their due time",
+                DelayContainerMetrics.ListenerMetrics::getDueCount);
+        FunctionCounter.builder("d2k.listener.records.dropped", listener,
+                        DelayContainerMetrics.ListenerMetrics::getCancelledCount)
+                .tags("listener", id, "reason", "cancelled")
+                .description("Due records dropped before reaching the listener")
+                .register(registry);
+        FunctionCounter.builder("d2k.listener.records.dropped", listener,
+                        DelayContainerMetrics.ListenerMetrics::getSupersededCount)
+                .tags("listener", id, "reason", "superseded")
+                .description("Due records dropped before reaching the listener")
+                .register(registry);
+        gauge(registry, listener, "d2k.listener.records.pending", "Polled records not yet due",
+                DelayContainerMetrics.ListenerMetrics::getPendingCount);
+        gauge(registry, listener, "d2k.listener.records.spilled", "Spilled records not yet paged in",
+                DelayContainerMetrics.ListenerMetrics::getSpilledPendingCount);
+        FunctionTimer.builder("d2k.listener.handler", listener,
+                        DelayContainerMetrics.ListenerMetrics::getSuccessCount,
+                        DelayContainerMetrics.ListenerMetrics::getSuccessTotalNanos, TimeUnit.NANOSECONDS)
+                .tags("listener", id, "outcome", "success")
+                .description("Listener invocations")
+                .register(registry);
+        FunctionTimer.builder("d2k.listener.handler", listener,
+                        DelayContainerMetrics.ListenerMetrics::getErrorCount,
+                        DelayContainerMetrics.ListenerMetrics::getErrorTotalNanos, TimeUnit.NANOSECONDS)
+                .tags("listener", id, "outcome", "error")
+                .description("Listener invocations")
+                .register(registry);
+        gauge(registry, listener, "d2k.listener.handler.active", "Listener invocations in progress",
+                DelayContainerMetrics.ListenerMetrics::getActiveCount);
+        gauge(registry, listener, "d2k.listener.consumer.lag", "Maximum records lag reported by the consumers",
+                DelayContainerMetrics.ListenerMetrics::getConsumerLag);
+        counter(registry, listener, "d2k.listener.rebalances", "Rebalances of the container's consumers",
+                DelayContainerMetrics.ListenerMetrics::getRebalanceCount);
+        listener.addDueForecastCallback(() -> registerDueForecast(registry, listener));
+    }
+
+    private static void registerDueForecast(MeterRegistry registry, DelayContainerMetrics.ListenerMetrics listener) {
+        for (String topic : listener.getForecastTopics()) {
+            for (Map.Entry<String, Long> horizon : listener.getForecastHorizons().entrySet()) {
+                long horizonMs = horizon.getValue();
+                Gauge.builder("d2k.listener.due.forecast", listener, l -> l.getDueForecast(topic, horizonMs))
+                        .tags("listener", listener.getListener(), "topic", topic, "horizon", horizon.getKey())
+                        .description("Records coming due within the horizon, including overdue records")
+                        .register(registry);
+            }
+        }
+    }
+
+    private static void counter(MeterRegistry registry, DelayContainerMetrics.ListenerMetrics listener, String name,
+                                String description, ToDoubleFunction<DelayContainerMetrics.ListenerMetrics> value) {
+        FunctionCounter.builder(name, listener, value)
+                .tags("listener", listener.getListener())
+                .description(description)
+                .register(registry);
+    }
+
+    private static void gauge(MeterRegistry registry, DelayContainerMetrics.ListenerMetrics listener, String name,
+                              String description, ToDoubleFunction<DelayContainerMetrics.ListenerMetrics> value) {
+        Gauge.builder(name, listener, value)
+                .tags("listener", listener.getListener())
+                .description(description)
+                .register(registry);
+    }
+}
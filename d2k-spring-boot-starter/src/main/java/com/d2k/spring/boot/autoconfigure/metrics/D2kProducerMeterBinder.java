@@ -0,0 +1,160 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 延迟消息发送的 Micrometer 指标
+ * <p>
+ * 生产者池汇总指标（无标签）：
+ * <ul>
+ *     <li>d2k.producer.request.latency / d2k.producer.record.queue.time：请求往返时间和消息在累加器中的等待时间，
+ *     附加 statistic 标签（avg / max），两者之和近似为从写入缓冲区到收到确认的时间</li>
+ *     <li>d2k.producer.batch.size：批次大小（字节），附加 statistic 标签（avg / max）</li>
+ *     <li>d2k.producer.records.per.request：每个请求的平均消息数</li>
+ *     <li>d2k.producer.compression.ratio：平均压缩率</li>
+ *     <li>d2k.producer.bufferpool.wait：累计等待缓冲区的时间</li>
+ *     <li>d2k.producer.record.errors / d2k.producer.record.retries：累计发送失败和重试的消息数</li>
+ * </ul>
+ * 按模板发送的逻辑主题（topic 标签）：
+ * <ul>
+ *     <li>d2k.producer.send：已完成的发送数和从调用发送到收到确认（或失败）的耗时</li>
+ *     <li>d2k.producer.send.call：发送调用次数和耗时（序列化和写入缓冲区）</li>
+ *     <li>d2k.producer.send.errors：发送失败的次数，包括同步抛出的异常和完成回调报告的失败</li>
+ *     <li>d2k.producer.delay：最近窗口内计划延迟的分位数，附加 quantile 标签（0.5 / 0.99 / 0.999），以及 d2k.producer.delay.max</li>
+ * </ul>
+ * 按实际发送的主题（topic 标签，延迟阶梯下为梯级主题）：
+ * d2k.producer.topic.records、d2k.producer.topic.bytes、d2k.producer.topic.record.errors、
+ * d2k.producer.topic.record.retries 和 d2k.producer.topic.compression.ratio
+ *
+ * @author xiajuan96
+ */
+public class D2kProducerMeterBinder implements MeterBinder {
+
+    private final DelayProducerMetrics metrics;
+
+    public D2kProducerMeterBinder(DelayProducerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        clientTime(registry, "d2k.producer.request.latency", "request-latency", "Produce request round trip time");
+        clientTime(registry, "d2k.producer.record.queue.time", "record-queue-time",
+                "Time records spend in the accumulator before being sent");
+        clientGauge(registry, "d2k.producer.batch.size", "batch-size-avg", "avg", "bytes", "Bytes per batch");
+        clientGauge(registry, "d2k.producer.batch.size", "batch-size-max", "max", "bytes", "Bytes per batch");
+        clientGauge(registry, "d2k.producer.records.per.request", "records-per-request-avg", null, null,
+                "Average records per produce request");
+        clientGauge(registry, "d2k.producer.compression.ratio", "compression-rate-avg", null, null,
+                "Average compressed to uncompressed batch size");
+        FunctionCounter.builder("d2k.producer.bufferpool.wait", metrics,
+                        m -> nanosToSeconds(total(m.getClientMetric("bufferpool-wait-time-ns-total"))))
+                .baseUnit("seconds")
+                .description("Time appenders waited for buffer memory")
+                .register(registry);
+        FunctionCounter.builder("d2k.producer.record.errors", metrics, m -> total(m.getClientMetric("record-error-total")))
+                .description("Records that failed to send")
+                .register(registry);
+        FunctionCounter.builder("d2k.producer.record.retries", metrics, m -> total(m.getClientMetric("record-retry-total")))
+                .description("Record sends that were retried")
+                .register(registry);
+        metrics.addTopicCallback(topic -> registerTopic(registry, topic));
+        metrics.addKafkaTopicCallback(topic -> registerKafkaTopic(registry, topic));
+    }
+
+    private void registerTopic(MeterRegistry registry, DelayProducerMetrics.TopicSendMetrics topic) {
+        String name = topic.getTopic();
+        FunctionTimer.builder("d2k.producer.send", topic, DelayProducerMetrics.TopicSendMetrics::getCompletedCount,
+                        DelayProducerMetrics.TopicSendMetrics::getCompletedTotalNanos, TimeUnit.NANOSECONDS)
+                .tags("topic", name)
+                .description("Time from the template send call to the broker acknowledgement or failure")
+                .register(registry);
+        FunctionTimer.builder("d2k.producer.send.call", topic, DelayProducerMetrics.TopicSendMetrics::getSendCount,
+                        DelayProducerMetrics.TopicSendMetrics::getSendTotalNanos, TimeUnit.NANOSECONDS)
+                .tags("topic", name)
+                .description("Template send calls, including serialization and appending to the producer")
+                .register(registry);
+        FunctionCounter.builder("d2k.producer.send.errors", topic, DelayProducerMetrics.TopicSendMetrics::getErrorCount)
+                .tags("topic", name)
+                .description("Template sends that failed synchronously or were not acknowledged")
+                .register(registry);
+        delay(registry, topic, "0.5", LatenessSnapshot::getP50);
+        delay(registry, topic, "0.99", LatenessSnapshot::getP99);
+        delay(registry, topic, "0.999", LatenessSnapshot::getP999);
+        TimeGauge.builder("d2k.producer.delay.max", topic, TimeUnit.MILLISECONDS, t -> t.getDelaySnapshot().getMax())
+                .tags("topic", name)
+                .description("Maximum scheduled delay")
+                .register(registry);
+    }
+
+    private void registerKafkaTopic(MeterRegistry registry, String topic) {
+        topicCounter(registry, topic, "d2k.producer.topic.records", "record-send-total", "Records sent");
+        topicCounter(registry, topic, "d2k.producer.topic.bytes", "byte-total", "Bytes sent");
+        topicCounter(registry, topic, "d2k.producer.topic.record.errors", "record-error-total",
+                "Records that failed to send");
+        topicCounter(registry, topic, "d2k.producer.topic.record.retries", "record-retry-total",
+                "Record sends that were retried");
+        Gauge.builder("d2k.producer.topic.compression.ratio", metrics, m -> m.getTopicMetric("compression-rate", topic))
+                .tags("topic", topic)
+                .description("Average compressed to uncompressed batch size")
+                .register(registry);
+    }
+
+    private void delay(MeterRegistry registry, DelayProducerMetrics.TopicSendMetrics topic, String quantile,
+                       ToDoubleFunction<LatenessSnapshot> value) {
+        TimeGauge.builder("d2k.producer.delay", topic, TimeUnit.MILLISECONDS,
+                        t -> value.applyAsDouble(t.getDelaySnapshot()))
+                .tags("topic", topic.getTopic(), "quantile", quantile)
+                .description("Scheduled delay over the recent window")
+                .register(registry);
+    }
+
+    private void clientTime(MeterRegistry registry, String name, String metric, String description) {
+        for (String statistic : new String[]{"avg", "max"}) {
+            String metricName = metric + "-" + statistic;
+            TimeGauge.builder(name, metrics, TimeUnit.MILLISECONDS, m -> m.getClientMetric(metricName))
+                    .tags("statistic", statistic)
+                    .description(description)
+                    .register(registry);
+        }
+    }
+
+    private void clientGauge(MeterRegistry registry, String name, String metric, String statistic, String baseUnit,
+                             String description) {
+        Gauge.Builder<DelayProducerMetrics> builder = Gauge.builder(name, metrics, m -> m.getClientMetric(metric))
+                .description(description);
+        if (statistic != null) {
+            builder.tags("statistic", statistic);
+        }
+        if (baseUnit != null) {
+            builder.baseUnit(baseUnit);
+        }
+        builder.register(registry);
+    }
+
+    private void topicCounter(MeterRegistry registry, String topic, String name, String metric, String description) {
+        FunctionCounter.builder(name, metrics, m -> total(m.getTopicMetric(metric, topic)))
+                .tags("topic", topic)
+                .description(description)
+                .register(registry);
+    }
+
+    /**
+     * 生产者尚未上报时累计值按 0 计，避免计数器出现 NaN
+     */
+    private static double total(double value) {
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+
+    private static double nanosToSeconds(double nanos) {
+        return nanos / TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,83 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricsReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 生产者指标上报器
+ * 由 KafkaProducer 通过 metric.reporters 创建，把发送延迟、批次、压缩、缓冲区等待、失败和重试相关的客户端指标
+ * 登记到 {@link DelayProducerMetrics}；发送指标通过生产者配置中的自定义配置项传入
+ *
+ * @author xiajuan96
+ */
+public class D2kProducerMetricsReporter implements MetricsReporter {
+
+    /** 配置项：共享的 DelayProducerMetrics 实例 */
+    public static final String PRODUCER_METRICS_CONFIG = "d2k.producer.metrics";
+
+    private static final String CLIENT_GROUP = "producer-metrics";
+    private static final String TOPIC_GROUP = "producer-topic-metrics";
+
+    static final Set<String> CLIENT_METRICS = new HashSet<>(Arrays.asList(
+            "request-latency-avg", "request-latency-max", "record-queue-time-avg", "record-queue-time-max",
+            "batch-size-avg", "batch-size-max", "records-per-request-avg", "compression-rate-avg",
+            "bufferpool-wait-time-ns-total", "record-error-total", "record-retry-total"));
+    static final Set<String> TOPIC_METRICS = new HashSet<>(Arrays.asList(
+            "record-send-total", "record-error-total", "record-retry-total", "byte-total", "compression-rate"));
+
+    private final List<KafkaMetric> tracked = new ArrayList<>();
+    private DelayProducerMetrics metrics;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object producerMetrics = configs.get(PRODUCER_METRICS_CONFIG);
+        if (producerMetrics instanceof DelayProducerMetrics) {
+            this.metrics = (DelayProducerMetrics) producerMetrics;
+        }
+    }
+
+    @Override
+    public void init(List<KafkaMetric> metrics) {
+        for (KafkaMetric metric : metrics) {
+            metricChange(metric);
+        }
+    }
+
+    @Override
+    public synchronized void metricChange(KafkaMetric metric) {
+        if (metrics == null) {
+            return;
+        }
+        MetricName name = metric.metricName();
+        if (CLIENT_GROUP.equals(name.group()) && CLIENT_METRICS.contains(name.name())
+                || TOPIC_GROUP.equals(name.group()) && TOPIC_METRICS.contains(name.name())) {
+            metrics.addKafkaMetric(metric);
+            tracked.add(metric);
+        }
+    }
+
+    @Override
+    public synchronized void metricRemoval(KafkaMetric metric) {
+        if (metrics != null && tracked.remove(metric)) {
+            metrics.removeKafkaMetric(metric);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (metrics != null) {
+            for (KafkaMetric metric : tracked) {
+                metrics.removeKafkaMetric(metric);
+            }
+        }
+        tracked.clear();
+    }
+}
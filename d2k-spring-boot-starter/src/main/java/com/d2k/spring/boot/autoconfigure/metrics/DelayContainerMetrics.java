@@ -0,0 +1,312 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import org.apache.kafka.common.Metric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * 延迟消费容器指标
+ * 按监听器统计拉取、到期、处理和丢弃的消息数、处理器耗时与并发、等待中的消息数和到期预测，以及 Kafka 消费者上报的延迟和再均衡次数。
+ * 统计只依赖原子计数，不依赖 Micrometer，由 {@link D2kListenerMeterBinder} 按需注册为指标
+ *
+ * @author xiajuan96
+ */
+public class DelayContainerMetrics {
+
+    private final ConcurrentMap<String, ListenerMetrics> listeners = new ConcurrentHashMap<>();
+    private final List<Consumer<ListenerMetrics>> listenerCallbacks = new CopyOnWriteArrayList<>();
+
+    /**
+     * 取得监听器的指标，不存在时创建
+     */
+    public ListenerMetrics forListener(String listener) {
+        ListenerMetrics metrics = listeners.get(listener);
+        if (metrics == null) {
+            ListenerMetrics created = new ListenerMetrics(listener);
+            metrics = listeners.putIfAbsent(listener, created);
+            if (metrics == null) {
+                metrics = created;
+                for (Consumer<ListenerMetrics> callback : listenerCallbacks) {
+                    callback.accept(created);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 新的监听器第一次出现时回调，用于动态注册指标；注册时对已有监听器立即回调
+     */
+    public void addListenerCallback(Consumer<ListenerMetrics> callback) {
+        listenerCallbacks.add(callback);
+        for (ListenerMetrics metrics : listeners.values()) {
+            callback.accept(metrics);
+        }
+    }
+
+    public Set<String> getListeners() {
+        return Collections.unmodifiableSet(listeners.keySet());
+    }
+
+    /**
+     * @return 监听器的指标，不存在时返回 null
+     */
+    public ListenerMetrics getListener(String listener) {
+        return listeners.get(listener);
+    }
+
+    /**
+     * 单个监听器的指标
+     * 到期数、丢弃数、落盘数和到期预测由容器的组件提供，在创建容器时绑定
+     */
+    public static final class ListenerMetrics {
+
+        private static final LongSupplier ZERO = () -> 0L;
+
+        private final String listener;
+        private final LongAdder receivedCount = new LongAdder();
+        private final LongAdder successCount = new LongAdder();
+        private final LongAdder successNanos = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder errorNanos = new LongAdder();
+        private final AtomicInteger activeCount = new AtomicInteger();
+        private final List<Metric> lagMetrics = new CopyOnWriteArrayList<>();
+        private final List<Metric> rebalanceMetrics = new CopyOnWriteArrayList<>();
+        private volatile LongSupplier dueCount = ZERO;
+        private volatile LongSupplier cancelledCount = ZERO;
+        private volatile LongSupplier supersededCount = ZERO;
+        private volatile IntSupplier spilledPendingCount = () -> 0;
+        private final List<Runnable> dueForecastCallbacks = new CopyOnWriteArrayList<>();
+        private volatile Collection<String> forecastTopics = Collections.emptyList();
+        private volatile Map<String, Long> forecastHorizons = Collections.emptyMap();
+        private volatile ToLongBiFunction<String, Long> dueForecast;
+
+        private ListenerMetrics(String listener) {
+            this.listener = listener;
+        }
+
+        public String getListener() {
+            return listener;
+        }
+
+        /**
+         * 拉取拦截器记录本次拉取到的消息数（包括之后落盘的消息和取消标记）
+         */
+        public void recordReceived(int count) {
+            receivedCount.add(count);
+        }
+
+        /**
+         * 处理器开始处理一条消息
+         */
+        public void handlerStarted() {
+            activeCount.incrementAndGet();
+        }
+
+        /**
+         * 处理器处理完一条消息
+         *
+         * @param nanos   耗时（纳秒）
+         * @param success 是否成功
+         */
+        public void handlerCompleted(long nanos, boolean success) {
+            activeCount.decrementAndGet();
+            if (success) {
+                successCount.increment();
+                successNanos.add(nanos);
+            } else {
+                errorCount.increment();
+                errorNanos.add(nanos);
+            }
+        }
+
+        /**
+         * 绑定到期消息数的来源
+         */
+        public void bindDueCount(LongSupplier dueCount) {
+            this.dueCount = dueCount == null ? ZERO : dueCount;
+        }
+
+        /**
+         * 绑定已取消和已被覆盖而丢弃的消息数的来源
+         */
+        public void bindDroppedCounts(LongSupplier cancelledCount, LongSupplier supersededCount) {
+            this.cancelledCount = cancelledCount == null ? ZERO : cancelledCount;
+            this.supersededCount = supersededCount == null ? ZERO : supersededCount;
+        }
+
+        /**
+         * 绑定落盘等待中的消息数的来源
+         */
+        public void bindSpilledPendingCount(IntSupplier spilledPendingCount) {
+            this.spilledPendingCount = spilledPendingCount == null ? () -> 0 : spilledPendingCount;
+        }
+
+        /**
+         * 绑定到期预测的来源，绑定后回调 {@link #addDueForecastCallback(Runnable)} 登记的回调
+         *
+         * @param topics      预测的主题
+         * @param horizons    时间范围标签到毫秒的映射
+         * @param dueForecast 按主题和时间范围（毫秒）返回将要到期的消息数
+         */
+        public void bindDueForecast(Collection<String> topics, Map<String, Long> horizons,
+                                    ToLongBiFunction<String, Long> dueForecast) {
+            this.forecastTopics = topics;
+            this.forecastHorizons = horizons;
+            this.dueForecast = dueForecast;
+            for (Runnable callback : dueForecastCallbacks) {
+                callback.run();
+            }
+        }
+
+        /**
+         * 到期预测绑定（或重新绑定）时回调，用于按主题和时间范围注册指标；已绑定时立即回调
+         */
+        public void addDueForecastCallback(Runnable callback) {
+            dueForecastCallbacks.add(callback);
+            if (dueForecast != null) {
+                callback.run();
+            }
+        }
+
+        public Collection<String> getForecastTopics() {
+            return forecastTopics;
+        }
+
+        public Map<String, Long> getForecastHorizons() {
+            return forecastHorizons;
+        }
+
+        /**
+         * 某个主题在给定时间范围内将要到期的消息数，未绑定时返回 0
+         */
+        public long getDueForecast(String topic, long horizonMs) {
+            ToLongBiFunction<String, Long> forecast = dueForecast;
+            return forecast == null ? 0L : forecast.applyAsLong(topic, horizonMs);
+        }
+
+        /**
+         * 登记消费者上报的最大消费延迟（records-lag-max），同名指标替换旧值
+         */
+        public void addLagMetric(Metric metric) {
+            replace(lagMetrics, metric);
+        }
+
+        /**
+         * 登记消费者上报的累计再均衡次数（rebalance-total），同名指标替换旧值
+         */
+        public void addRebalanceMetric(Metric metric) {
+            replace(rebalanceMetrics, metric);
+        }
+
+        /**
+         * 移除消费者关闭或注销的指标
+         */
+        public void removeKafkaMetric(Metric metric) {
+            lagMetrics.removeIf(m -> m.metricName().equals(metric.metricName()));
+            rebalanceMetrics.removeIf(m -> m.metricName().equals(metric.metricName()));
+        }
+
+        private static void replace(List<Metric> metrics, Metric metric) {
+            metrics.removeIf(m -> m.metricName().equals(metric.metricName()));
+            metrics.add(metric);
+        }
+
+        public long getReceivedCount() {
+            return receivedCount.sum();
+        }
+
+        public long getDueCount() {
+            return dueCount.getAsLong();
+        }
+
+        public long getSuccessCount() {
+            return successCount.sum();
+        }
+
+        public long getSuccessTotalNanos() {
+            return successNanos.sum();
+        }
+
+        public long getErrorCount() {
+            return errorCount.sum();
+        }
+
+        public long getErrorTotalNanos() {
+            return errorNanos.sum();
+        }
+
+        public int getActiveCount() {
+            return activeCount.get();
+        }
+
+        public long getCancelledCount() {
+            return cancelledCount.getAsLong();
+        }
+
+        public long getSupersededCount() {
+            return supersededCount.getAsLong();
+        }
+
+        /**
+         * 已拉取但尚未到期的消息数，包括容器堆内队列、异步处理队列中的消息和落盘的消息
+         */
+        public long getPendingCount() {
+            return Math.max(0L, getReceivedCount() - getDueCount());
+        }
+
+        public int getSpilledPendingCount() {
+            return spilledPendingCount.getAsInt();
+        }
+
+        /**
+         * 容器各消费者最近采样窗口内的最大消费延迟（条），没有数据时返回 NaN
+         */
+        public double getConsumerLag() {
+            double max = Double.NaN;
+            for (Metric metric : lagMetrics) {
+                double value = value(metric);
+                if (!Double.isNaN(value) && (Double.isNaN(max) || value > max)) {
+                    max = value;
+                }
+            }
+            return max;
+        }
+
+        /**
+         * 容器各消费者的累计再均衡次数
+         */
+        public double getRebalanceCount() {
+            double total = 0;
+            for (Metric metric : rebalanceMetrics) {
+                double value = value(metric);
+                if (!Double.isNaN(value)) {
+                    total += value;
+                }
+            }
+            return total;
+        }
+
+        private static double value(Metric metric) {
+            Object value = metric.metricValue();
+            if (!(value instanceof Number)) {
+                return Double.NaN;
+            }
+            double number = ((Number) value).doubleValue();
+            return Double.isInfinite(number) ? Double.NaN : number;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * 到期延迟记录器
+ * 按监听器、主题和分区分别维护 {@link LatenessHistogram}，记录实际投递时间减去计划到期时间。
+ * 热路径上按监听器取得 {@link ListenerLateness} 后，按主题和分区查找直方图不分配对象
+ *
+ * @author xiajuan96
+ */
+public class DelayLatenessRecorder {
+
+    private final long windowMs;
+    private final ConcurrentMap<String, ListenerLateness> listeners = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, String>> seriesListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param windowMs 分位数统计窗口（毫秒）
+     */
+    public DelayLatenessRecorder(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * 取得监听器的记录入口，不存在时创建
+     */
+    public ListenerLateness forListener(String listener) {
+        return listeners.computeIfAbsent(listener, ListenerLateness::new);
+    }
+
+    /**
+     * 新的（监听器, 主题）组合第一次出现时回调，用于动态注册指标；注册时对已有组合立即回调
+     */
+    public void addSeriesListener(BiConsumer<String, String> listener) {
+        seriesListeners.add(listener);
+        for (ListenerLateness lateness : listeners.values()) {
+            for (String topic : lateness.topics.keySet()) {
+                listener.accept(lateness.listener, topic);
+            }
+        }
+    }
+
+    public Set<String> getListeners() {
+        return Collections.unmodifiableSet(listeners.keySet());
+    }
+
+    /**
+     * 监听器各主题的延迟快照（合并所有分区）
+     */
+    public Map<String, LatenessSnapshot> getTopicSnapshots(String listener) {
+        ListenerLateness lateness = listeners.get(listener);
+        Map<String, LatenessSnapshot> snapshots = new TreeMap<>();
+        if (lateness != null) {
+            for (Map.Entry<String, TopicLateness> entry : lateness.topics.entrySet()) {
+                snapshots.put(entry.getKey(), entry.getValue().snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 监听器在某个主题上的延迟快照（合并所有分区）
+     */
+    public LatenessSnapshot getSnapshot(String listener, String topic) {
+        ListenerLateness lateness = listeners.get(listener);
+        TopicLateness topicLateness = lateness == null ? null : lateness.topics.get(topic);
+        return topicLateness == null ? LatenessSnapshot.empty() : topicLateness.snapshot();
+    }
+
+    /**
+     * 监听器在某个主题上各分区的延迟快照
+     */
+    public Map<Integer, LatenessSnapshot> getPartitionSnapshots(String listener, String topic) {
+        ListenerLateness lateness = listeners.get(listener);
+        TopicLateness topicLateness = lateness == null ? null : lateness.topics.get(topic);
+        Map<Integer, LatenessSnapshot> snapshots = new TreeMap<>();
+        if (topicLateness != null) {
+            LatenessHistogram[] histograms = topicLateness.partitions;
+            for (int partition = 0; partition < histograms.length; partition++) {
+                if (histograms[partition] != null) {
+                    snapshots.put(partition, histograms[partition].snapshot());
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 单个监听器的延迟记录
+     */
+    public final class ListenerLateness {
+
+        private final String listener;
+        private final ConcurrentMap<String, TopicLateness> topics = new ConcurrentHashMap<>();
+
+        private ListenerLateness(String listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * 记录一次投递
+         *
+         * @param topic      主题
+         * @param partition  分区
+         * @param latenessMs 实际投递时间减去计划到期时间（毫秒）
+         */
+        public void record(String topic, int partition, long latenessMs) {
+            TopicLateness lateness = topics.get(topic);
+            if (lateness == null) {
+                TopicLateness created = new TopicLateness();
+                lateness = topics.putIfAbsent(topic, created);
+                if (lateness == null) {
+                    lateness = created;
+                    for (BiConsumer<String, String> seriesListener : seriesListeners) {
+                        seriesListener.accept(listener, topic);
+                    }
+                }
+            }
+            lateness.histogram(Math.max(0, partition)).record(latenessMs);
+        }
+    }
+
+    private final class TopicLateness {
+
+        private volatile LatenessHistogram[] partitions = new LatenessHistogram[0];
+
+        private LatenessHistogram histogram(int partition) {
+            LatenessHistogram[] current = partitions;
+            if (partition < current.length && current[partition] != null) {
+                return current[partition];
+            }
+            return create(partition);
+        }
+
+        private synchronized LatenessHistogram create(int partition) {
+            LatenessHistogram[] current = partitions;
+            if (partition >= current.length) {
+                current = Arrays.copyOf(current, partition + 1);
+            } else if (current[partition] != null) {
+                return current[partition];
+            } else {
+                current = current.clone();
+            }
+            LatenessHistogram histogram = new LatenessHistogram(windowMs);
+            current[partition] = histogram;
+            partitions = current;
+            return histogram;
+        }
+
+        private LatenessSnapshot snapshot() {
+            long[] counts = new long[LatenessHistogram.bucketCount()];
+            long total = 0;
+            long max = 0;
+            for (LatenessHistogram histogram : partitions) {
+                if (histogram != null) {
+                    histogram.mergeInto(counts);
+                    total += histogram.getTotalCount();
+                    max = Math.max(max, histogram.getMaxMs());
+                }
+            }
+            return LatenessSnapshot.of(counts, total, max);
+        }
+    }
+}
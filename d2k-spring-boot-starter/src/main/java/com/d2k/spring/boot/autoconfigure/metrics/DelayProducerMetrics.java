@@ -0,0 +1,263 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 延迟消息发送指标
+ * 模板按逻辑主题统计发送次数、同步失败次数、发送调用耗时（序列化和写入生产者缓冲区）以及计划延迟的分布；
+ * 生产者池中各 KafkaProducer 的客户端指标由 {@link D2kProducerMetricsReporter} 登记，查询时按指标名汇总：
+ * -total 求和，-max 取最大值，其余取平均值
+ *
+ * @author xiajuan96
+ */
+public class DelayProducerMetrics {
+
+    private final long windowMs;
+    private final ConcurrentMap<String, TopicSendMetrics> topics = new ConcurrentHashMap<>();
+    private final List<Consumer<TopicSendMetrics>> topicCallbacks = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<MetricName, Metric> kafkaMetrics = new ConcurrentHashMap<>();
+    private final Set<String> kafkaTopics = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<String>> kafkaTopicCallbacks = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param windowMs 延迟分布的分位数统计窗口（毫秒）
+     */
+    public DelayProducerMetrics(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * 取得主题的发送指标，不存在时创建
+     */
+    public TopicSendMetrics forTopic(String topic) {
+        TopicSendMetrics metrics = topics.get(topic);
+        if (metrics == null) {
+            TopicSendMetrics created = new TopicSendMetrics(topic, new LatenessHistogram(windowMs));
+            metrics = topics.putIfAbsent(topic, created);
+            if (metrics == null) {
+                metrics = created;
+                for (Consumer<TopicSendMetrics> callback : topicCallbacks) {
+                    callback.accept(created);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 模板第一次向某个主题发送时回调，用于动态注册指标；注册时对已有主题立即回调
+     */
+    public void addTopicCallback(Consumer<TopicSendMetrics> callback) {
+        topicCallbacks.add(callback);
+        for (TopicSendMetrics metrics : topics.values()) {
+            callback.accept(metrics);
+        }
+    }
+
+    /**
+     * 生产者第一次上报某个主题的指标时回调；延迟阶梯下这里是实际发送的梯级主题。注册时对已有主题立即回调
+     */
+    public void addKafkaTopicCallback(Consumer<String> callback) {
+        kafkaTopicCallbacks.add(callback);
+        for (String topic : kafkaTopics) {
+            callback.accept(topic);
+        }
+    }
+
+    public Set<String> getTopics() {
+        return Collections.unmodifiableSet(topics.keySet());
+    }
+
+    /**
+     * @return 主题的发送指标，不存在时返回 null
+     */
+    public TopicSendMetrics getTopic(String topic) {
+        return topics.get(topic);
+    }
+
+    /**
+     * 登记生产者上报的指标，同名指标替换旧值
+     */
+    public void addKafkaMetric(Metric metric) {
+        MetricName name = metric.metricName();
+        kafkaMetrics.put(name, metric);
+        String topic = name.tags().get("topic");
+        if (topic != null && kafkaTopics.add(topic)) {
+            for (Consumer<String> callback : kafkaTopicCallbacks) {
+                callback.accept(topic);
+            }
+        }
+    }
+
+    /**
+     * 移除生产者关闭或注销的指标
+     */
+    public void removeKafkaMetric(Metric metric) {
+        kafkaMetrics.remove(metric.metricName());
+    }
+
+    /**
+     * 汇总池中各生产者的客户端级别指标，没有数据时返回 NaN
+     *
+     * @param name 指标名，如 request-latency-avg
+     */
+    public double getClientMetric(String name) {
+        return aggregate(name, null);
+    }
+
+    /**
+     * 汇总池中各生产者在某个主题上的指标，没有数据时返回 NaN
+     *
+     * @param name  指标名，如 record-send-total
+     * @param topic 实际发送的主题
+     */
+    public double getTopicMetric(String name, String topic) {
+        return aggregate(name, topic);
+    }
+
+    private double aggregate(String name, String topic) {
+        boolean total = name.endsWith("-total");
+        boolean max = name.endsWith("-max");
+        double result = Double.NaN;
+        int count = 0;
+        for (Metric metric : kafkaMetrics.values()) {
+            MetricName metricName = metric.metricName();
+            if (!name.equals(metricName.name()) || !matchesTopic(metricName, topic)) {
+                continue;
+            }
+            double value = value(metric);
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            if (count == 0) {
+                result = value;
+            } else if (max) {
+                result = Math.max(result, value);
+            } else {
+                result += value;
+            }
+            count++;
+        }
+        return total || max || count == 0 ? result : result / count;
+    }
+
+    private static boolean matchesTopic(MetricName name, String topic) {
+        String tag = name.tags().get("topic");
+        return topic == null ? tag == null : topic.equals(tag);
+    }
+
+    private static double value(Metric metric) {
+        Object value = metric.metricValue();
+        if (!(value instanceof Number)) {
+            return Double.NaN;
+        }
+        double number = ((Number) value).doubleValue();
+        return Double.isInfinite(number) ? Double.NaN : number;
+    }
+
+    /**
+     * 单个主题的模板发送指标
+     */
+    public static final class TopicSendMetrics {
+
+        private final String topic;
+        private final LatenessHistogram delays;
+        private final LongAdder sendCount = new LongAdder();
+        private final LongAdder sendNanos = new LongAdder();
+        private final LongAdder completedCount = new LongAdder();
+        private final LongAdder completedNanos = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+
+        private TopicSendMetrics(String topic, LatenessHistogram delays) {
+            this.topic = topic;
+            this.delays = delays;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        /**
+         * 记录一次发送调用
+         *
+         * @param nanos   发送调用耗时（纳秒）
+         * @param delayMs 计划延迟（毫秒），未知时传负数
+         * @param success 是否成功写入生产者缓冲区
+         */
+        public void recordSend(long nanos, long delayMs, boolean success) {
+            sendCount.increment();
+            sendNanos.add(nanos);
+            if (!success) {
+                errorCount.increment();
+            } else if (delayMs >= 0) {
+                delays.record(delayMs);
+            }
+        }
+
+        /**
+         * 记录一次发送完成，在发送结果的完成回调中调用
+         *
+         * @param nanos   从调用发送到收到确认或失败的耗时（纳秒）
+         * @param success 是否收到确认
+         */
+        public void recordCompletion(long nanos, boolean success) {
+            completedCount.increment();
+            completedNanos.add(nanos);
+            if (!success) {
+                errorCount.increment();
+            }
+        }
+
+        /**
+         * 发送调用次数
+         */
+        public long getSendCount() {
+            return sendCount.sum();
+        }
+
+        /**
+         * 发送调用的累计耗时（序列化和写入生产者缓冲区）
+         */
+        public long getSendTotalNanos() {
+            return sendNanos.sum();
+        }
+
+        /**
+         * 已完成（收到确认或失败）的发送数
+         */
+        public long getCompletedCount() {
+            return completedCount.sum();
+        }
+
+        /**
+         * 已完成发送从调用到完成的累计耗时
+         */
+        public long getCompletedTotalNanos() {
+            return completedNanos.sum();
+        }
+
+        /**
+         * 发送失败次数，包括发送调用同步抛出的异常和完成回调报告的失败
+         */
+        public long getErrorCount() {
+            return errorCount.sum();
+        }
+
+        /**
+         * 最近窗口内计划延迟的分布
+         */
+        public LatenessSnapshot getDelaySnapshot() {
+            return delays.snapshot();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 到期延迟直方图（毫秒）
+ * <p>
+ * 采用 HDR 风格的对数线性分桶：小于 64 的值每个值一个桶，更大的值在每个 2 的幂区间内再等分 32 个桶，
+ * 相对误差不超过约 3%，覆盖到约 49 天，超出的值计入最后一个桶。记录只做一次无锁的数组自增，不分配对象。
+ * <p>
+ * 分位数基于最近的时间窗口：直方图每隔 windowMs 轮换一次，快照合并当前窗口和上一个窗口，
+ * 反映最近一到两个窗口内的情况；总数和最大值从创建起累计。
+ *
+ * @author xiajuan96
+ */
+public class LatenessHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+    private static final int MAX_EXPONENT = 31 - SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + MAX_EXPONENT * SUB_BUCKETS;
+    private static final long MAX_TRACKABLE = (1L << 32) - 1;
+
+    private final long windowNanos;
+    private final AtomicReference<Window> current;
+    private volatile Window previous;
+    private final LongAdder totalCount = new LongAdder();
+    private final AtomicLong maxMs = new AtomicLong();
+
+    /**
+     * @param windowMs 分位数统计窗口（毫秒）
+     */
+    public LatenessHistogram(long windowMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("windowMs must be positive, but was " + windowMs);
+        }
+        this.windowNanos = windowMs * 1_000_000L;
+        long now = System.nanoTime();
+        this.current = new AtomicReference<>(new Window(now));
+        this.previous = new Window(now - windowNanos);
+    }
+
+    /**
+     * 记录一次延迟，提前投递（负值）记为 0
+     */
+    public void record(long latenessMs) {
+        long value = Math.max(0L, latenessMs);
+        currentWindow(System.nanoTime()).counts.incrementAndGet(bucketIndex(value));
+        totalCount.increment();
+        if (value > maxMs.get()) {
+            maxMs.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * 最近窗口内的分位数快照
+     */
+    public LatenessSnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        mergeInto(counts);
+        return LatenessSnapshot.of(counts, totalCount.sum(), maxMs.get());
+    }
+
+    /**
+     * 把最近窗口内的计数累加到 counts 中，用于合并多个直方图
+     */
+    void mergeInto(long[] counts) {
+        Window window = currentWindow(System.nanoTime());
+        Window last = previous;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += window.counts.get(i) + last.counts.get(i);
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxMs() {
+        return maxMs.get();
+    }
+
+    static int bucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        long clamped = Math.min(value, MAX_TRACKABLE);
+        int exponent = 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+        int sub = (int) (clamped >>> exponent) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (exponent - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶内的最大值，分位数按此值报告（与 HDR 的 highest equivalent value 一致）
+     */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exponent) - 1;
+    }
+
+    private Window currentWindow(long now) {
+        Window window = current.get();
+        while (now - window.startNanos >= windowNanos) {
+            Window next = new Window(now);
+            if (current.compareAndSet(window, next)) {
+                // 超过两个窗口没有记录时上一个窗口也已过期
+                previous = now - window.startNanos >= 2 * windowNanos ? new Window(now - windowNanos) : window;
+                return next;
+            }
+            window = current.get();
+        }
+        return window;
+    }
+
+    private static final class Window {
+        private final long startNanos;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+        private Window(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.d2k.spring.boot.autoconfigure.metrics;
+
+/**
+ * 到期延迟快照（毫秒）
+ * 分位数基于最近的统计窗口，总数和最大值从启动起累计
+ *
+ * @author xiajuan96
+ */
+public class LatenessSnapshot {
+
+    private static final LatenessSnapshot EMPTY = new LatenessSnapshot(0L, 0L, 0L, 0L, 0L, 0L);
+
+    private final long totalCount;
+    private final long windowCount;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public LatenessSnapshot(long totalCount, long windowCount, long p50, long p99, long p999, long max) {
+        this.totalCount = totalCount;
+        this.windowCount = windowCount;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public static LatenessSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 由分桶计数计算快照
+     *
+     * @param counts     各桶的计数
+     * @param totalCount 累计记录数
+     * @param max        累计最大值
+     */
+    static LatenessSnapshot of(long[] counts, long totalCount, long max) {
+        long windowCount = 0;
+        for (long count : counts) {
+            windowCount += count;
+        }
+        if (windowCount == 0) {
+            return new LatenessSnapshot(totalCount, 0L, 0L, 0L, 0L, max);
+        }
+        long[] thresholds = {rank(windowCount, 0.5), rank(windowCount, 0.99), rank(windowCount, 0.999)};
+        long[] values = new long[thresholds.length];
+        int next = 0;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length && next < thresholds.length; i++) {
+            cumulative += counts[i];
+            while (next < thresholds.length && cumulative >= thresholds[next]) {
+                values[next++] = Math.min(LatenessHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return new LatenessSnapshot(totalCount, windowCount, values[0], values[1], values[2], max);
+    }
+
+    private static long rank(long count, double quantile) {
+        return Math.max(1L, (long) Math.ceil(count * quantile));
+    }
+
+    /**
+     * 累计记录数
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * 最近窗口内的记录数
+     */
+    public long getWindowCount() {
+        return windowCount;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatenessSnapshot{count=" + totalCount + ", p50=" + p50 + "ms, p99=" + p99
+                + "ms, p999=" + p999 + "ms, max=" + max + "ms}";
+    }
+}
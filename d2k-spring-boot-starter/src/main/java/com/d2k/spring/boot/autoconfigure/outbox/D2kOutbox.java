@@ -0,0 +1,320 @@
+package com.d2k.spring.boot.autoconfigure.outbox;
+
+import com.d2k.spring.boot.autoconfigure.producer.DeferredSendFuture;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.producer.TopicRateLimiter;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * D2K 本地持久化 Outbox
+ * <p>
+ * 模板发送的消息先追加到本地 {@link OutboxJournal}，调用方无需等待 Broker，
+ * 后台中继线程按批次将消息交给 {@link DelayProducerPool}，检查点推进到连续确认的位置。
+ * 进程重启后从检查点继续发送，保证消息至少发送一次（崩溃时最后一批可能重复）。
+ * 刷盘按 fsyncIntervalMs 批量进行，为 0 时每次追加都立即刷盘。
+ * 设置了 {@link TopicRateLimiter} 时，中继在交给生产者前按主题等待配额，超出速率的消息留在日志中，
+ * 不受限流器溢出策略影响。
+ */
+public class D2kOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(D2kOutbox.class);
+
+    private static final long MIN_BACKOFF_MS = 100L;
+    private static final long MAX_BACKOFF_MS = 10000L;
+    private static final long IDLE_WAIT_MS = 100L;
+    private static final long CLOSE_GRACE_MS = 1000L;
+    private static final long MAX_PERMIT_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final OutboxJournal journal;
+    private final DelayProducerPool producerPool;
+    private final int relayBatchSize;
+    private final long fsyncIntervalMs;
+    private final long sendTimeoutMs;
+    private final ConcurrentMap<Long, DeferredSendFuture> pendingResults = new ConcurrentHashMap<>();
+    // 检查点之后已确认的记录偏移量，只由中继线程访问
+    private final Set<Long> acknowledgedOffsets = new HashSet<>();
+
+    private volatile TopicRateLimiter rateLimiter;
+    private volatile boolean running;
+    private volatile boolean relayIdle;
+    private volatile Thread relayThread;
+    private long lastSyncTime;
+
+    /**
+     * @param journal         Outbox 日志
+     * @param producerPool    中继使用的生产者池
+     * @param relayBatchSize  每批中继的最大消息数
+     * @param fsyncIntervalMs 批量刷盘间隔（毫秒），0 表示每次追加都刷盘
+     * @param sendTimeoutMs   每批消息等待 Broker 确认的超时时间（毫秒）
+     */
+    public D2kOutbox(OutboxJournal journal, DelayProducerPool producerPool,
+                     int relayBatchSize, long fsyncIntervalMs, long sendTimeoutMs) {
+        this.journal = journal;
+        this.producerPool = producerPool;
+        this.relayBatchSize = relayBatchSize;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    /**
+     * 设置中继使用的按主题限流器
+     *
+     * @param rateLimiter 限流器，为 null 时不限流
+     */
+    public void setRateLimiter(TopicRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 追加消息到 Outbox
+     *
+     * @param topic       主题
+     * @param key         序列化后的键
+     * @param value       序列化后的值
+     * @param trackResult 是否需要返回可等待的结果
+     * @return 中继交给生产者后完成的 Future；trackResult 为 false 时返回 null
+     * @throws RuntimeException 如果写入本地日志失败
+     */
+    public Future<RecordMetadata> append(String topic, byte[] key, byte[] value, boolean trackResult) {
+        DeferredSendFuture result = trackResult ? new DeferredSendFuture() : null;
+        try {
+            // 在记录对中继可见之前登记结果，避免中继先于登记完成发送
+            journal.append(topic, key, value, result == null ? null : offset -> pendingResults.put(offset, result));
+            if (fsyncIntervalMs <= 0) {
+                journal.sync();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append message to outbox", e);
+        }
+        if (relayIdle) {
+            LockSupport.unpark(relayThread);
+        }
+        return result;
+    }
+
+    /**
+     * 启动后台中继线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::relayLoop, "d2k-outbox-relay");
+        thread.setDaemon(true);
+        relayThread = thread;
+        thread.start();
+    }
+
+    /**
+     * 停止中继线程并关闭日志，未发送的消息保留在日志中，下次启动继续发送
+     * 先等待当前批次确认，超时后反复中断仍阻塞在生产者上的中继线程，中继线程退出后才关闭日志
+     *
+     * @throws InterruptedException 如果等待中继线程退出时被中断，此时日志不关闭
+     */
+    public synchronized void close() throws IOException, InterruptedException {
+        running = false;
+        Thread thread = relayThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join(sendTimeoutMs + CLOSE_GRACE_MS);
+            while (thread.isAlive()) {
+                thread.interrupt();
+                thread.join(CLOSE_GRACE_MS);
+            }
+        }
+        journal.close();
+    }
+
+    /**
+     * 尚未中继的日志字节数
+     */
+    public long getPendingBytes() {
+        return journal.getWriteOffset() - journal.getCheckpointOffset();
+    }
+
+    public OutboxJournal getJournal() {
+        return journal;
+    }
+
+    private void relayLoop() {
+        long backoffMs = MIN_BACKOFF_MS;
+        while (running) {
+            try {
+                syncIfDue();
+                List<OutboxRecord> batch = journal.read(journal.getCheckpointOffset(), relayBatchSize);
+                if (batch.isEmpty()) {
+                    waitForAppend();
+                    continue;
+                }
+                OutboxRecord last = batch.get(batch.size() - 1);
+                long committed = publish(batch);
+                journal.commit(committed);
+                if (committed == last.getNextOffset()) {
+                    backoffMs = MIN_BACKOFF_MS;
+                } else {
+                    // 部分发送失败，退避后从检查点重试
+                    sleep(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("D2K outbox relay failed, retrying in {} ms", backoffMs, e);
+                try {
+                    sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+        journal.sync();
+    }
+
+    /**
+     * 批量发送并等待整批确认
+     * 每条已确认的消息都完成其结果；检查点只推进到连续已确认的前缀，
+     * 前缀之后已确认的消息记录下来，重试时不再发送，避免重复和乱序
+     *
+     * @return 可提交的检查点，即第一条未确认记录的偏移量
+     */
+    private long publish(List<OutboxRecord> batch) throws InterruptedException {
+        List<Future<RecordMetadata>> futures = new ArrayList<>(batch.size());
+        RuntimeException sendFailure = null;
+        for (OutboxRecord record : batch) {
+            if (acknowledgedOffsets.contains(record.getOffset())) {
+                futures.add(null);
+                continue;
+            }
+            if (!awaitPermit(record.getTopic())) {
+                // 正在关闭，剩余消息留在日志中
+                break;
+            }
+            try {
+                futures.add(producerPool.send(record.getTopic(), record.getKey(), record.getValue()));
+            } catch (IllegalArgumentException e) {
+                // 无法投递的消息（例如 topic 未配置延迟时间）重试也不会成功，直接丢弃避免阻塞后续消息
+                logger.error("Dropping undeliverable outbox message for topic {}", record.getTopic(), e);
+                futures.add(null);
+                DeferredSendFuture result = pendingResults.remove(record.getOffset());
+                if (result != null) {
+                    result.fail(e);
+                }
+            } catch (RuntimeException e) {
+                sendFailure = e;
+                break;
+            }
+        }
+
+        long committed = batch.get(0).getOffset();
+        boolean contiguous = true;
+        int unacknowledged = 0;
+        Exception firstFailure = null;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < futures.size(); i++) {
+            OutboxRecord record = batch.get(i);
+            Future<RecordMetadata> future = futures.get(i);
+            if (future != null) {
+                try {
+                    future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    if (firstFailure == null) {
+                        firstFailure = e;
+                    }
+                    unacknowledged++;
+                    contiguous = false;
+                    continue;
+                }
+                DeferredSendFuture result = pendingResults.remove(record.getOffset());
+                if (result != null) {
+                    result.complete(future);
+                }
+            }
+            if (contiguous) {
+                committed = record.getNextOffset();
+                acknowledgedOffsets.remove(record.getOffset());
+            } else {
+                acknowledgedOffsets.add(record.getOffset());
+            }
+        }
+        if (firstFailure != null) {
+            logger.warn("{} D2K outbox message(s) not acknowledged, will retry from offset {}",
+                    unacknowledged, committed, firstFailure);
+        }
+        if (sendFailure != null) {
+            logger.warn("D2K outbox relay could not hand message to producer, will retry", sendFailure);
+        }
+        return committed;
+    }
+
+    /**
+     * 等待主题的发送配额
+     *
+     * @return 获得配额时返回 true，中继停止时返回 false
+     */
+    private boolean awaitPermit(String topic) {
+        TopicRateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return true;
+        }
+        while (!limiter.tryAcquire(topic)) {
+            if (!running) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.max(1L, Math.min(limiter.nanosUntilPermit(topic), MAX_PERMIT_WAIT_NANOS)));
+        }
+        return true;
+    }
+
+    private void syncIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastSyncTime >= fsyncIntervalMs) {
+            journal.sync();
+            lastSyncTime = now;
+        }
+    }
+
+    private void waitForAppend() {
+        relayIdle = true;
+        try {
+            if (!journal.hasPending() && running) {
+                long waitMs = fsyncIntervalMs > 0 ? Math.min(fsyncIntervalMs, IDLE_WAIT_MS) : IDLE_WAIT_MS;
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(waitMs));
+            }
+        } finally {
+            relayIdle = false;
+        }
+    }
+
+    /**
+     * 退避等待，关闭时由 {@link #close()} 唤醒
+     */
+    private void sleep(long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.d2k.spring.boot.autoconfigure.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * 显式解除 MappedByteBuffer 的映射
+ * JDK 没有公开的解除映射接口：Java 9 及以上通过 sun.misc.Unsafe#invokeCleaner，Java 8 通过 DirectBuffer 的 Cleaner。
+ * 两者都不可用时不解除映射，由 GC 回收。解除映射后再访问该缓冲区（包括其 duplicate）会导致 JVM 崩溃，
+ * 调用方必须保证没有其它线程仍在使用
+ */
+final class MappedBufferCleaner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedBufferCleaner.class);
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                logger.debug("Explicit unmapping of mapped buffers is not available", ex);
+                cleaner = null;
+                clean = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    private MappedBufferCleaner() {
+    }
+
+    /**
+     * 当前 JVM 是否支持显式解除映射
+     */
+    static boolean isSupported() {
+        return INVOKE_CLEANER != null || CLEAN != null;
+    }
+
+    /**
+     * 解除映射
+     *
+     * @param buffer 不再使用的映射缓冲区
+     * @return 已解除映射时返回 true，不支持或失败时返回 false
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            if (CLEAN != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                    return true;
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Failed to unmap mapped buffer", e);
+        }
+        return false;
+    }
+}
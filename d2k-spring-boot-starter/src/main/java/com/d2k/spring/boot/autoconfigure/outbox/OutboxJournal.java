@@ -0,0 +1,375 @@
+package com.d2k.spring.boot.autoconfigure.outbox;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的 Outbox 日志
+ * <p>
+ * 日志由固定大小的段文件组成，文件名为段起始的逻辑偏移量。每条记录的格式为
+ * [int 负载长度][int 负载 CRC32][short topic 长度][topic][int 键长度][键][int 值长度][值]，
+ * 长度为 -1 表示 null。段文件预先分配并以 0 填充，长度为 0 即表示段内没有更多记录。
+ * <p>
+ * 追加只写内存映射区域，刷盘（fsync）由调用方按批次通过 {@link #sync()} 触发；
+ * 已发送的位置记录在检查点文件中，重启后从检查点继续读取，完全发送完的段先解除映射再删除。
+ * 写入是线程安全的，读取和提交检查点只应由单个中继线程调用。
+ */
+public class OutboxJournal implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "outbox.checkpoint";
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final File directory;
+    private final int segmentSize;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32 writeCrc = new CRC32();
+    // 刷盘与解除映射互斥：刷盘方取得活动段后可能在滚动和提交之后才调用 force
+    private final Object unmapLock = new Object();
+
+    private volatile Segment activeSegment;
+    private volatile long writeOffset;
+    private volatile long checkpointOffset;
+    private volatile boolean dirty;
+
+    /**
+     * 打开（或创建）Outbox 日志，并从检查点恢复写入位置
+     *
+     * @param directory   日志目录
+     * @param segmentSize 单个段文件大小（字节）
+     * @throws IOException 如果目录或段文件无法访问
+     */
+    public OutboxJournal(File directory, int segmentSize) throws IOException {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Outbox segment size is too small: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create outbox directory: " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.checkpointOffset = readCheckpoint();
+        recover();
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param topic 主题
+     * @param key   序列化后的键，可以为 null
+     * @param value 序列化后的值，可以为 null
+     * @return 记录的逻辑偏移量
+     * @throws IOException 如果需要滚动新段但创建失败
+     */
+    public long append(String topic, byte[] key, byte[] value) throws IOException {
+        return append(topic, key, value, null);
+    }
+
+    /**
+     * 追加一条消息，并在记录对读取方可见之前回调其偏移量
+     *
+     * @param topic    主题
+     * @param key      序列化后的键，可以为 null
+     * @param value    序列化后的值，可以为 null
+     * @param onAppend 记录可见之前的回调，可以为 null
+     * @return 记录的逻辑偏移量
+     * @throws IOException 如果需要滚动新段但创建失败
+     */
+    public long append(String topic, byte[] key, byte[] value, LongConsumer onAppend) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 2 + topicBytes.length + 4 + length(key) + 4 + length(value);
+        int recordSize = RECORD_HEADER_SIZE + payloadLength;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Outbox record of " + recordSize
+                    + " bytes exceeds segment size " + segmentSize);
+        }
+        synchronized (this) {
+            Segment segment = activeSegment;
+            if (segment.buffer.position() + recordSize > segment.capacity) {
+                segment = roll();
+            }
+            MappedByteBuffer buffer = segment.buffer;
+            int start = buffer.position();
+            buffer.position(start + RECORD_HEADER_SIZE);
+            buffer.putShort((short) topicBytes.length);
+            buffer.put(topicBytes);
+            putBytes(buffer, key);
+            putBytes(buffer, value);
+
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(start + RECORD_HEADER_SIZE);
+            payload.limit(start + recordSize);
+            writeCrc.reset();
+            writeCrc.update(payload);
+            // 最后写入长度，崩溃时半条记录的长度仍为 0 或校验失败
+            buffer.putInt(start + 4, (int) writeCrc.getValue());
+            buffer.putInt(start, payloadLength);
+
+            long offset = segment.baseOffset + start;
+            if (onAppend != null) {
+                onAppend.accept(offset);
+            }
+            dirty = true;
+            writeOffset = segment.baseOffset + buffer.position();
+            return offset;
+        }
+    }
+
+    /**
+     * 从指定位置开始读取已写入的记录
+     *
+     * @param fromOffset 起始逻辑偏移量
+     * @param maxRecords 最多读取的记录数
+     * @return 记录列表，没有新记录时为空
+     */
+    public List<OutboxRecord> read(long fromOffset, int maxRecords) {
+        List<OutboxRecord> records = new ArrayList<>();
+        long end = writeOffset;
+        long offset = fromOffset;
+        while (offset < end && records.size() < maxRecords) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                throw new IllegalStateException("No outbox segment contains offset " + offset);
+            }
+            Segment segment = entry.getValue();
+            OutboxRecord record = readRecord(segment, (int) (offset - segment.baseOffset));
+            if (record == null) {
+                // 段内没有更多记录，跳到下一个段
+                offset = segment.baseOffset + segment.capacity;
+                continue;
+            }
+            records.add(record);
+            offset = record.getNextOffset();
+        }
+        return records;
+    }
+
+    /**
+     * 提交检查点：该位置之前的记录均已发送，并删除完全发送完的段
+     * 删除前解除段的映射，映射由读取方（中继线程）独占，因此必须由中继线程调用
+     *
+     * @param offset 新的检查点
+     * @throws IOException 如果检查点文件写入失败
+     */
+    public void commit(long offset) throws IOException {
+        if (offset <= checkpointOffset) {
+            return;
+        }
+        writeCheckpoint(offset);
+        checkpointOffset = offset;
+        for (Segment segment : segments.values()) {
+            if (segment == activeSegment || segment.baseOffset + segment.capacity > offset) {
+                break;
+            }
+            segments.remove(segment.baseOffset);
+            // 仍被映射的文件删除后磁盘空间要等 GC 回收映射才释放，Windows 上则无法删除
+            synchronized (unmapLock) {
+                MappedBufferCleaner.unmap(segment.buffer);
+            }
+            if (!segment.file.delete()) {
+                // 删除失败时下次提交不会再处理该段，留待重启后清理
+                segment.file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 将自上次刷盘以来的写入刷到磁盘
+     */
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        synchronized (unmapLock) {
+            activeSegment.buffer.force();
+        }
+    }
+
+    public long getCheckpointOffset() {
+        return checkpointOffset;
+    }
+
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * 是否还有未发送的记录
+     */
+    public boolean hasPending() {
+        return writeOffset > checkpointOffset;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        // 关闭后仍可能有调用方追加或刷盘，解除映射可能导致 JVM 崩溃，因此只释放引用，由 GC 回收
+        segments.clear();
+    }
+
+    private Segment roll() throws IOException {
+        Segment previous = activeSegment;
+        // 滚动前先刷盘，保证旧段的数据不会晚于新段落盘
+        previous.buffer.force();
+        Segment next = openSegment(previous.baseOffset + previous.capacity);
+        segments.put(next.baseOffset, next);
+        activeSegment = next;
+        return next;
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                long baseOffset;
+                try {
+                    baseOffset = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                int capacity = (int) Math.min(file.length(), Integer.MAX_VALUE);
+                if (baseOffset + capacity <= checkpointOffset) {
+                    // 已完全发送的段不再映射，直接删除
+                    file.delete();
+                } else {
+                    segments.put(baseOffset, mapSegment(file, baseOffset, capacity));
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            Segment segment = openSegment(checkpointOffset);
+            segments.put(segment.baseOffset, segment);
+        }
+        Segment last = segments.lastEntry().getValue();
+        int position = (int) Math.max(0L, checkpointOffset - last.baseOffset);
+        OutboxRecord record;
+        while ((record = readRecord(last, position)) != null) {
+            position = (int) (record.getNextOffset() - last.baseOffset);
+        }
+        last.buffer.position(position);
+        activeSegment = last;
+        writeOffset = last.baseOffset + position;
+    }
+
+    private OutboxRecord readRecord(Segment segment, int position) {
+        if (position + RECORD_HEADER_SIZE > segment.capacity) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int payloadLength = buffer.getInt(position);
+        if (payloadLength <= 0 || position + RECORD_HEADER_SIZE + payloadLength > segment.capacity) {
+            return null;
+        }
+        int checksum = buffer.getInt(position + 4);
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.limit(position + RECORD_HEADER_SIZE + payloadLength);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        byte[] topicBytes = new byte[buffer.getShort()];
+        buffer.get(topicBytes);
+        byte[] key = getBytes(buffer);
+        byte[] value = getBytes(buffer);
+        long offset = segment.baseOffset + position;
+        return new OutboxRecord(offset, offset + RECORD_HEADER_SIZE + payloadLength,
+                new String(topicBytes, StandardCharsets.UTF_8), key, value);
+    }
+
+    private Segment openSegment(long baseOffset) throws IOException {
+        File file = new File(directory, String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+        return mapSegment(file, baseOffset, segmentSize);
+    }
+
+    private Segment mapSegment(File file, long baseOffset, int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new Segment(file, baseOffset, capacity, buffer);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        File file = new File(directory, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return 0L;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length != 8) {
+            throw new IOException("Corrupted outbox checkpoint: " + file);
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        File temp = new File(directory, CHECKPOINT_FILE + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(0);
+            raf.writeLong(offset);
+            raf.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), new File(directory, CHECKPOINT_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final long baseOffset;
+        private final int capacity;
+        private final MappedByteBuffer buffer;
+
+        private Segment(File file, long baseOffset, int capacity, MappedByteBuffer buffer) {
+            this.file = file;
+            this.baseOffset = baseOffset;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+    }
+}
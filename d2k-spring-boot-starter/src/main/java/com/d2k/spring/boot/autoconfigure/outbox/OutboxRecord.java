@@ -0,0 +1,47 @@
+package com.d2k.spring.boot.autoconfigure.outbox;
+
+/**
+ * Outbox 日志中的一条待发送消息
+ */
+public class OutboxRecord {
+
+    private final long offset;
+    private final long nextOffset;
+    private final String topic;
+    private final byte[] key;
+    private final byte[] value;
+
+    public OutboxRecord(long offset, long nextOffset, String topic, byte[] key, byte[] value) {
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.topic = topic;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * 记录在日志中的逻辑偏移量
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 下一条记录的逻辑偏移量，发送成功后作为检查点提交
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,139 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 延后发送的消息结果
+ * 消息真正交给生产者之前处于等待状态（事务未提交、仍在 Outbox 中等），之后委托给生产者返回的 Future
+ */
+public class DeferredSendFuture implements Future<RecordMetadata> {
+
+    private final CountDownLatch resolved = new CountDownLatch(1);
+    private volatile Future<RecordMetadata> delegate;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+    private List<Runnable> resolveListeners;
+
+    /**
+     * 消息已交给生产者
+     *
+     * @param future 生产者返回的结果，为 null 表示已交出但没有元数据
+     */
+    public void complete(Future<RecordMetadata> future) {
+        synchronized (this) {
+            if (resolved.getCount() == 0) {
+                return;
+            }
+            this.delegate = future;
+            resolved.countDown();
+        }
+        fireResolved();
+    }
+
+    /**
+     * 消息交给生产者时失败
+     */
+    public void fail(Throwable cause) {
+        synchronized (this) {
+            if (resolved.getCount() == 0) {
+                return;
+            }
+            this.failure = cause;
+            resolved.countDown();
+        }
+        fireResolved();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (resolved.getCount() == 0) {
+                return false;
+            }
+            this.cancelled = true;
+            resolved.countDown();
+        }
+        fireResolved();
+        return true;
+    }
+
+    /**
+     * 注册结果确定（交给生产者、失败或取消）时的监听器，已确定时立即执行
+     */
+    public void whenResolved(Runnable listener) {
+        synchronized (this) {
+            if (resolved.getCount() > 0) {
+                if (resolveListeners == null) {
+                    resolveListeners = new ArrayList<>(1);
+                }
+                resolveListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    private void fireResolved() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            listeners = resolveListeners;
+            resolveListeners = null;
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        if (resolved.getCount() > 0) {
+            return false;
+        }
+        Future<RecordMetadata> future = delegate;
+        return future == null || future.isDone();
+    }
+
+    @Override
+    public RecordMetadata get() throws InterruptedException, ExecutionException {
+        resolved.await();
+        Future<RecordMetadata> future = resolvedDelegate();
+        return future == null ? null : future.get();
+    }
+
+    @Override
+    public RecordMetadata get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!resolved.await(timeout, unit)) {
+            throw new TimeoutException("Message has not been handed to the producer yet");
+        }
+        Future<RecordMetadata> future = resolvedDelegate();
+        return future == null ? null : future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private Future<RecordMetadata> resolvedDelegate() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException("Message send was cancelled");
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return delegate;
+    }
+}
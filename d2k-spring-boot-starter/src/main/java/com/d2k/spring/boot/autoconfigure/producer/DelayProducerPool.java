@@ -0,0 +1,193 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import com.d2k.producer.DelayProducer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DelayProducer 连接池
+ * 持有一个或多个共享的字节数组 DelayProducer，分摊单个 KafkaProducer 的累加器锁和发送线程压力
+ * <p>
+ * 有键消息按键的 murmur2 哈希选择生产者，保证同一个键始终走同一个生产者，分区内顺序不变；
+ * 无键消息轮询选择生产者。
+ * <p>
+ * 创建生产者时注册了 {@link SendAcknowledgementInterceptor} 的，错误统计包含发送完成回调报告的异步失败。
+ *
+ * @author xiajuan96
+ */
+public class DelayProducerPool {
+
+    private final DelayProducer<byte[], byte[]>[] producers;
+    private final LongAdder[] sendCounts;
+    private final LongAdder[] errorCounts;
+    private final SendAcknowledgements[] acknowledgements;
+    private final LongAdder keyedSends = new LongAdder();
+    private final LongAdder keylessSends = new LongAdder();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    public DelayProducerPool(List<DelayProducer<byte[], byte[]>> producers) {
+        this(producers, null);
+    }
+
+    /**
+     * @param producers        生产者列表
+     * @param acknowledgements 与生产者一一对应的发送确认统计，为 null 时只统计发送调用抛出的异常
+     */
+    @SuppressWarnings("unchecked")
+    public DelayProducerPool(List<DelayProducer<byte[], byte[]>> producers,
+                             List<SendAcknowledgements> acknowledgements) {
+        if (producers == null || producers.isEmpty()) {
+            throw new IllegalArgumentException("DelayProducerPool requires at least one producer");
+        }
+        if (acknowledgements != null && acknowledgements.size() != producers.size()) {
+            throw new IllegalArgumentException("DelayProducerPool requires one SendAcknowledgements per producer, but got "
+                    + acknowledgements.size() + " for " + producers.size() + " producers");
+        }
+        this.producers = producers.toArray(new DelayProducer[0]);
+        this.acknowledgements = acknowledgements == null ? null
+                : acknowledgements.toArray(new SendAcknowledgements[0]);
+        this.sendCounts = new LongAdder[this.producers.length];
+        this.errorCounts = new LongAdder[this.producers.length];
+        for (int i = 0; i < this.producers.length; i++) {
+            sendCounts[i] = new LongAdder();
+            errorCounts[i] = new LongAdder();
+        }
+    }
+
+    public DelayProducerPool(DelayProducer<byte[], byte[]> producer) {
+        this(Collections.singletonList(producer));
+    }
+
+    /**
+     * 通过池中选中的生产者发送延迟消息（使用预配置的延迟时间）
+     *
+     * @param topic 主题
+     * @param key   序列化后的键，可以为 null
+     * @param value 序列化后的值
+     * @return Future<RecordMetadata> 异步结果
+     */
+    public Future<RecordMetadata> send(String topic, byte[] key, byte[] value) {
+        int index = selectIndex(key);
+        if (key == null) {
+            keylessSends.increment();
+        } else {
+            keyedSends.increment();
+        }
+        sendCounts[index].increment();
+        SendAcknowledgements acks = acknowledgements == null ? null : acknowledgements[index];
+        long reported = acks == null ? 0L : acks.getThreadFailureCount();
+        try {
+            return producers[index].send(topic, key, value);
+        } catch (RuntimeException e) {
+            // KafkaProducer 内部抛出的异常已经通过完成回调计数
+            if (acks == null || acks.getThreadFailureCount() == reported) {
+                errorCounts[index].increment();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 选择生产者下标
+     *
+     * @param key 序列化后的键
+     * @return 生产者下标
+     */
+    int selectIndex(byte[] key) {
+        int size = producers.length;
+        if (size == 1) {
+            return 0;
+        }
+        if (key == null) {
+            return (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % size;
+        }
+        return Utils.toPositive(Utils.murmur2(key)) % size;
+    }
+
+    /**
+     * 获取指定键将使用的生产者
+     *
+     * @param key 序列化后的键
+     * @return DelayProducer 实例
+     */
+    public DelayProducer<byte[], byte[]> getProducer(byte[] key) {
+        return producers[selectIndex(key)];
+    }
+
+    /**
+     * 获取池中所有生产者
+     *
+     * @return 生产者列表（只读）
+     */
+    public List<DelayProducer<byte[], byte[]>> getProducers() {
+        List<DelayProducer<byte[], byte[]>> list = new ArrayList<>(producers.length);
+        Collections.addAll(list, producers);
+        return Collections.unmodifiableList(list);
+    }
+
+    public int getSize() {
+        return producers.length;
+    }
+
+    /**
+     * 获取各生产者的发送次数
+     */
+    public long[] getSendCounts() {
+        long[] counts = new long[producers.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = sendCounts[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * 获取各生产者的发送失败次数
+     * 包括发送调用抛出的异常，以及注册了发送确认统计时由完成回调报告的失败（如 broker 拒绝、批次过期）
+     */
+    public long[] getErrorCounts() {
+        long[] counts = new long[producers.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = errorCounts[i].sum();
+            if (acknowledgements != null) {
+                counts[i] += acknowledgements[i].getFailedCount();
+            }
+        }
+        return counts;
+    }
+
+    public long getKeyedSendCount() {
+        return keyedSends.sum();
+    }
+
+    public long getKeylessSendCount() {
+        return keylessSends.sum();
+    }
+
+    /**
+     * 关闭池中所有生产者
+     */
+    public void close() {
+        RuntimeException failure = null;
+        for (DelayProducer<byte[], byte[]> producer : producers) {
+            try {
+                producer.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.Map;
+
+/**
+ * 发送确认拦截器
+ * DelayProducer 的发送方法不接受 Callback，本拦截器通过 interceptor.classes 由 KafkaProducer 创建，
+ * 把每条消息的完成回调转给生产者配置中传入的 {@link SendAcknowledgements}；不修改消息
+ *
+ * @author xiajuan96
+ */
+public class SendAcknowledgementInterceptor implements ProducerInterceptor<byte[], byte[]> {
+
+    /** 配置项：该生产者的 SendAcknowledgements 实例 */
+    public static final String ACKNOWLEDGEMENTS_CONFIG = "d2k.producer.acknowledgements";
+
+    private SendAcknowledgements acknowledgements;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object value = configs.get(ACKNOWLEDGEMENTS_CONFIG);
+        if (value instanceof SendAcknowledgements) {
+            this.acknowledgements = (SendAcknowledgements) value;
+        }
+    }
+
+    @Override
+    public ProducerRecord<byte[], byte[]> onSend(ProducerRecord<byte[], byte[]> record) {
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+        if (acknowledgements != null) {
+            acknowledgements.onAcknowledgement(metadata, exception);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,49 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个生产者的发送确认统计
+ * 由 {@link SendAcknowledgementInterceptor} 在 KafkaProducer 完成每条消息时回调，
+ * 既包括 broker 返回的异步失败，也包括 KafkaProducer 在发送调用中同步报告的失败
+ *
+ * @author xiajuan96
+ */
+public class SendAcknowledgements {
+
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final ThreadLocal<long[]> threadFailures = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * 发送完成回调，在生产者 I/O 线程或发送线程上调用
+     *
+     * @param metadata  消息元数据，失败时可能为 null
+     * @param exception 失败原因，成功时为 null
+     */
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+        if (exception == null) {
+            acknowledged.increment();
+        } else {
+            failed.increment();
+            threadFailures.get()[0]++;
+        }
+    }
+
+    /**
+     * 当前线程上报告的失败次数，用于区分发送调用抛出的异常是否已经由回调计数
+     */
+    long getThreadFailureCount() {
+        return threadFailures.get()[0];
+    }
+
+    public long getAcknowledgedCount() {
+        return acknowledged.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+}
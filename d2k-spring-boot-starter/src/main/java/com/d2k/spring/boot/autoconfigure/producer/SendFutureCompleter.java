@@ -0,0 +1,231 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 发送结果转换器
+ * DelayProducer 的发送方法不接受 Callback，只返回普通 Future；本类为每条消息登记一个 {@link Callback}，
+ * 由一个专用线程按登记顺序逐条等待各自的 Future，结束后回调。
+ * <p>
+ * 每条消息只等待一次，不轮询、不扫描其它未完成的消息，也不依赖 KafkaProducer 完成回调与 Future 标记完成的先后顺序。
+ * 同一线程按顺序等待，先登记的消息未完成时，后登记且已完成的消息要等它完成后才回调；
+ * 延后发送（{@link DeferredSendFuture}）在交给生产者之后才进入等待队列，不会阻塞其它消息。
+ * 线程在第一次登记时启动，回调在该线程上执行，不应阻塞。
+ */
+public class SendFutureCompleter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SendFutureCompleter.class);
+
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ThreadFactory threadFactory;
+    private volatile Thread completerThread;
+    private volatile boolean running = true;
+
+    public SendFutureCompleter() {
+        this(runnable -> {
+            Thread thread = new Thread(runnable, "d2k-send-completer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param threadFactory 创建等待线程的工厂
+     */
+    public SendFutureCompleter(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * 登记发送完成回调
+     * 已结束的 Future 在当前线程上立即回调，其余在等待线程上回调；取消时回调 {@link CancellationException}
+     *
+     * @param future   发送返回的 Future，为 null 表示已交出但没有元数据
+     * @param callback 完成回调，失败时元数据为 null
+     */
+    @SuppressWarnings("unchecked")
+    public void whenComplete(Future<RecordMetadata> future, Callback callback) {
+        if (future == null) {
+            callback.onCompletion(null, null);
+            return;
+        }
+        if (future instanceof CompletableFuture) {
+            ((CompletableFuture<RecordMetadata>) future).whenComplete((metadata, failure) ->
+                    callback.onCompletion(metadata, failure == null ? null : unwrap(failure)));
+            return;
+        }
+        pendingCount.incrementAndGet();
+        Pending item = new Pending(future, callback);
+        if (future instanceof DeferredSendFuture) {
+            // 交给生产者、失败或取消之后再等待，避免阻塞其它消息
+            ((DeferredSendFuture) future).whenResolved(() -> enqueue(item));
+        } else {
+            enqueue(item);
+        }
+    }
+
+    /**
+     * 将发送返回的 Future 转换为 CompletableFuture
+     * 调用方取消返回的 CompletableFuture 时同时取消尚未交给生产者的延后发送
+     *
+     * @param future 发送返回的 Future
+     * @return 在发送确认或失败时完成的 CompletableFuture
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<RecordMetadata> toCompletableFuture(Future<RecordMetadata> future) {
+        if (future instanceof CompletableFuture) {
+            return ((CompletableFuture<RecordMetadata>) future).thenApply(metadata -> metadata);
+        }
+        CompletableFuture<RecordMetadata> result = new CompletableFuture<>();
+        whenComplete(future, (metadata, exception) -> {
+            if (exception instanceof CancellationException) {
+                result.cancel(false);
+            } else if (exception != null) {
+                result.completeExceptionally(exception);
+            } else {
+                result.complete(metadata);
+            }
+        });
+        if (future != null && !result.isDone()) {
+            result.whenComplete((metadata, failure) -> {
+                if (result.isCancelled()) {
+                    future.cancel(false);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 未完成的发送数
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 停止等待，未完成的发送以异常结束
+     */
+    public void close() {
+        running = false;
+        Thread thread = completerThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        failRemaining();
+    }
+
+    private void enqueue(Pending item) {
+        if (item.future.isDone()) {
+            try {
+                complete(item);
+                return;
+            } catch (InterruptedException e) {
+                // 调用线程已被中断，交给等待线程完成
+                Thread.currentThread().interrupt();
+            }
+        }
+        pending.add(item);
+        if (running) {
+            ensureStarted();
+        } else {
+            // 与 close 并发登记的消息由本线程结束
+            failRemaining();
+        }
+    }
+
+    private void ensureStarted() {
+        if (completerThread == null) {
+            synchronized (this) {
+                if (completerThread == null && running) {
+                    Thread thread = threadFactory.newThread(this::awaitLoop);
+                    completerThread = thread;
+                    thread.start();
+                }
+            }
+        }
+    }
+
+    private void awaitLoop() {
+        Pending item = null;
+        try {
+            while (running) {
+                item = pending.take();
+                complete(item);
+                item = null;
+            }
+        } catch (InterruptedException e) {
+            // 关闭时中断
+        }
+        if (item != null) {
+            fail(item);
+        }
+        failRemaining();
+    }
+
+    /**
+     * 等待 Future 结束并回调
+     */
+    private void complete(Pending item) throws InterruptedException {
+        RecordMetadata metadata = null;
+        Exception exception = null;
+        try {
+            metadata = item.future.get();
+        } catch (ExecutionException e) {
+            exception = unwrap(e.getCause() != null ? e.getCause() : e);
+        } catch (CancellationException e) {
+            exception = e;
+        }
+        invoke(item, metadata, exception);
+    }
+
+    private void failRemaining() {
+        Pending item;
+        while ((item = pending.poll()) != null) {
+            fail(item);
+        }
+    }
+
+    private void fail(Pending item) {
+        invoke(item, null, new IllegalStateException("SendFutureCompleter is closed"));
+    }
+
+    private void invoke(Pending item, RecordMetadata metadata, Exception exception) {
+        pendingCount.decrementAndGet();
+        try {
+            item.callback.onCompletion(metadata, exception);
+        } catch (RuntimeException e) {
+            logger.warn("Send completion callback failed", e);
+        }
+    }
+
+    private static Exception unwrap(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        return cause instanceof Exception ? (Exception) cause : new ExecutionException(cause);
+    }
+
+    private static final class Pending {
+        private final Future<RecordMetadata> future;
+        private final Callback callback;
+
+        private Pending(Future<RecordMetadata> future, Callback callback) {
+            this.future = future;
+            this.callback = callback;
+        }
+    }
+}
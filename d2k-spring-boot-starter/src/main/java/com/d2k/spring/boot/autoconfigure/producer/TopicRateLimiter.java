@@ -0,0 +1,295 @@
+package com.d2k.spring.boot.autoconfigure.producer;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 按主题的发送限流器
+ * 每个主题一个令牌桶（GCRA 实现，无锁），令牌不足时按溢出策略处理：
+ * QUEUE 模式放入该主题的有界队列，由后台线程按速率匀速发出，调用方立即拿到延后完成的 Future；
+ * REJECT 模式直接抛出 RejectedExecutionException。两种模式都不会阻塞调用线程。
+ * 未配置限流的主题直接发送
+ * <p>
+ * 启用 Outbox 时消息先写入本地日志，由中继线程通过 {@link #tryAcquire(String)} 在交给生产者前限流，
+ * 不进入内存队列，也不会被拒绝
+ *
+ * @author xiajuan96
+ */
+public class TopicRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(TopicRateLimiter.class);
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 令牌不足时的溢出策略
+     */
+    public enum OverflowPolicy {
+        /** 放入有界队列匀速发出，队列满时拒绝 */
+        QUEUE,
+        /** 直接拒绝 */
+        REJECT
+    }
+
+    private final Map<String, TopicLimiter> limiters;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    /**
+     * @param topicRates    每个主题每秒允许的发送数
+     * @param burstMs       允许的突发量，以多少毫秒的配额计算，至少为 1 条
+     * @param overflowPolicy 溢出策略
+     * @param queueCapacity QUEUE 模式下每个主题的队列容量
+     */
+    public TopicRateLimiter(Map<String, Double> topicRates, long burstMs, OverflowPolicy overflowPolicy,
+                            int queueCapacity) {
+        if (overflowPolicy == OverflowPolicy.QUEUE && queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive, but was " + queueCapacity);
+        }
+        Map<String, TopicLimiter> map = new HashMap<>();
+        for (Map.Entry<String, Double> entry : topicRates.entrySet()) {
+            double rate = entry.getValue() == null ? 0 : entry.getValue();
+            if (rate <= 0) {
+                throw new IllegalArgumentException("Rate limit for topic " + entry.getKey() + " must be positive");
+            }
+            map.put(entry.getKey(), new TopicLimiter(rate, burstMs,
+                    overflowPolicy == OverflowPolicy.QUEUE ? queueCapacity : 0));
+        }
+        this.limiters = map;
+        this.overflowPolicy = overflowPolicy;
+        if (overflowPolicy == OverflowPolicy.QUEUE && !map.isEmpty()) {
+            this.drainer = new Thread(this::drainLoop, "d2k-rate-limiter");
+            this.drainer.setDaemon(true);
+            this.drainer.start();
+        } else {
+            this.drainer = null;
+        }
+    }
+
+    /**
+     * 按主题限流后执行发送
+     *
+     * @param topic 主题
+     * @param send  实际发送
+     * @return 发送结果，排队时返回延后完成的 Future
+     * @throws RejectedExecutionException 如果超出速率且被拒绝，或队列已满
+     */
+    public Future<RecordMetadata> submit(String topic, Supplier<Future<RecordMetadata>> send) {
+        TopicLimiter limiter = limiters.get(topic);
+        if (limiter == null) {
+            return send.get();
+        }
+        // 已有排队的消息时新消息也要排队，保证同一主题按提交顺序发出
+        if (limiter.queue == null || limiter.queue.isEmpty()) {
+            if (limiter.tryAcquire(System.nanoTime())) {
+                limiter.permitted.increment();
+                return send.get();
+            }
+        }
+        if (overflowPolicy == OverflowPolicy.REJECT || !running) {
+            limiter.rejected.increment();
+            throw new RejectedExecutionException("Send rate limit exceeded for topic " + topic);
+        }
+        DeferredSendFuture future = new DeferredSendFuture();
+        if (!limiter.queue.offer(new QueuedSend(send, future))) {
+            limiter.rejected.increment();
+            throw new RejectedExecutionException("Send rate limit queue is full for topic " + topic);
+        }
+        limiter.queued.increment();
+        if (idle) {
+            LockSupport.unpark(drainer);
+        }
+        return future;
+    }
+
+    /**
+     * 尝试获取主题的一个发送配额，不排队也不计为拒绝
+     *
+     * @param topic 主题
+     * @return 主题未限流或获得配额时返回 true
+     */
+    public boolean tryAcquire(String topic) {
+        TopicLimiter limiter = limiters.get(topic);
+        if (limiter == null) {
+            return true;
+        }
+        if (!limiter.tryAcquire(System.nanoTime())) {
+            return false;
+        }
+        limiter.permitted.increment();
+        return true;
+    }
+
+    /**
+     * 距离主题下一个发送配额的纳秒数，未限流的主题返回 0
+     */
+    public long nanosUntilPermit(String topic) {
+        TopicLimiter limiter = limiters.get(topic);
+        return limiter == null ? 0L : limiter.nanosUntilPermit(System.nanoTime());
+    }
+
+    public Set<String> getLimitedTopics() {
+        return Collections.unmodifiableSet(limiters.keySet());
+    }
+
+    public long getPermittedCount(String topic) {
+        TopicLimiter limiter = limiters.get(topic);
+        return limiter == null ? 0 : limiter.permitted.sum();
+    }
+
+    public long getQueuedCount(String topic) {
+        TopicLimiter limiter = limiters.get(topic);
+        return limiter == null ? 0 : limiter.queued.sum();
+    }
+
+    public long getRejectedCount(String topic) {
+        TopicLimiter limiter = limiters.get(topic);
+        return limiter == null ? 0 : limiter.rejected.sum();
+    }
+
+    public int getQueueDepth(String topic) {
+        TopicLimiter limiter = limiters.get(topic);
+        return limiter == null || limiter.queue == null ? 0 : limiter.queue.size();
+    }
+
+    /**
+     * 停止后台线程，队列中剩余的消息不再限流，立即发出
+     */
+    public void close() throws InterruptedException {
+        running = false;
+        if (drainer != null) {
+            LockSupport.unpark(drainer);
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        for (TopicLimiter limiter : limiters.values()) {
+            if (limiter.queue != null) {
+                drainAll(limiter);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            long now = System.nanoTime();
+            long parkNanos = Long.MAX_VALUE;
+            for (TopicLimiter limiter : limiters.values()) {
+                Queue<QueuedSend> queue = limiter.queue;
+                while (!queue.isEmpty() && limiter.tryAcquire(now)) {
+                    QueuedSend send = queue.poll();
+                    if (send != null) {
+                        limiter.permitted.increment();
+                        send.dispatch();
+                    }
+                }
+                if (!queue.isEmpty()) {
+                    parkNanos = Math.min(parkNanos, limiter.nanosUntilPermit(System.nanoTime()));
+                }
+            }
+            if (parkNanos == Long.MAX_VALUE) {
+                // 队列全部为空时挂起，直到有新消息入队
+                idle = true;
+                if (allQueuesEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            } else {
+                LockSupport.parkNanos(this, Math.max(1L, Math.min(parkNanos, MAX_PARK_NANOS)));
+            }
+        }
+    }
+
+    private boolean allQueuesEmpty() {
+        for (TopicLimiter limiter : limiters.values()) {
+            if (!limiter.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drainAll(TopicLimiter limiter) {
+        QueuedSend send;
+        while ((send = limiter.queue.poll()) != null) {
+            send.dispatch();
+        }
+    }
+
+    private static final class QueuedSend {
+        final Supplier<Future<RecordMetadata>> send;
+        final DeferredSendFuture future;
+
+        QueuedSend(Supplier<Future<RecordMetadata>> send, DeferredSendFuture future) {
+            this.send = send;
+            this.future = future;
+        }
+
+        void dispatch() {
+            if (future.isCancelled()) {
+                return;
+            }
+            try {
+                Future<RecordMetadata> result = send.get();
+                // 不跟踪结果的发送返回 null，视为已交给生产者且没有元数据
+                future.complete(result != null ? result : CompletableFuture.completedFuture(null));
+            } catch (RuntimeException e) {
+                log.warn("Rate-limited send failed", e);
+                future.fail(e);
+            }
+        }
+    }
+
+    /**
+     * 单个主题的令牌桶，theoreticalArrival 为下一个令牌的理论到达时间
+     */
+    private static final class TopicLimiter {
+        final long intervalNanos;
+        final long toleranceNanos;
+        final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        final Queue<QueuedSend> queue;
+        final LongAdder permitted = new LongAdder();
+        final LongAdder queued = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+
+        TopicLimiter(double permitsPerSecond, long burstMs, int queueCapacity) {
+            this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            long burst = Math.max(1L, (long) (permitsPerSecond * burstMs / 1000.0));
+            this.toleranceNanos = intervalNanos * (burst - 1);
+            this.queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : null;
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long start = Math.max(tat, now);
+                if (start - now > toleranceNanos) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(tat, start + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        long nanosUntilPermit(long now) {
+            return Math.max(0L, theoreticalArrival.get() - toleranceNanos - now);
+        }
+    }
+}
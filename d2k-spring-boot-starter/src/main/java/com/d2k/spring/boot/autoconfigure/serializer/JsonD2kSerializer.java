@@ -0,0 +1,133 @@
+package com.d2k.spring.boot.autoconfigure.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 基于 Jackson 的 D2K 序列化器
+ * 对象直接编码为字节，按类型缓存 ObjectWriter，并复用每个线程的输出缓冲区；
+ * 字符串和字节数组原样透传，兼容已经手动编码好的 JSON 字符串。
+ * <p>
+ * 输出格式由 ObjectMapper 的 JsonFactory 决定，传入 Smile / CBOR 等二进制格式的
+ * ObjectMapper 即可切换为二进制编码。
+ *
+ * @author xiajuan96
+ */
+public class JsonD2kSerializer<T> implements Serializer<T> {
+
+    /** 配置项：使用的 ObjectMapper 实例 */
+    public static final String OBJECT_MAPPER_CONFIG = "d2k.serializer.object-mapper";
+    /** 配置项：输出缓冲区初始大小（字节） */
+    public static final String BUFFER_SIZE_CONFIG = "d2k.serializer.buffer-size";
+    /** 配置项：输出缓冲区保留上限（字节），超过后在下次复用前释放 */
+    public static final String BUFFER_MAX_RETAINED_CONFIG = "d2k.serializer.buffer-max-retained";
+
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+    public static final int DEFAULT_BUFFER_MAX_RETAINED = 1024 * 1024;
+
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private volatile ObjectMapper objectMapper;
+    private volatile int bufferSize;
+    private volatile int bufferMaxRetained;
+    private volatile ThreadLocal<PooledByteArrayOutputStream> buffers;
+
+    public JsonD2kSerializer() {
+        this(new ObjectMapper());
+    }
+
+    public JsonD2kSerializer(ObjectMapper objectMapper) {
+        this(objectMapper, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_MAX_RETAINED);
+    }
+
+    public JsonD2kSerializer(ObjectMapper objectMapper, int bufferSize, int bufferMaxRetained) {
+        if (objectMapper == null) {
+            throw new IllegalArgumentException("ObjectMapper cannot be null");
+        }
+        this.objectMapper = objectMapper;
+        initBuffers(bufferSize, bufferMaxRetained);
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object mapper = configs.get(OBJECT_MAPPER_CONFIG);
+        if (mapper instanceof ObjectMapper && mapper != objectMapper) {
+            objectMapper = (ObjectMapper) mapper;
+            writers.clear();
+        }
+        if (configs.containsKey(BUFFER_SIZE_CONFIG) || configs.containsKey(BUFFER_MAX_RETAINED_CONFIG)) {
+            initBuffers(intConfig(configs, BUFFER_SIZE_CONFIG, bufferSize),
+                    intConfig(configs, BUFFER_MAX_RETAINED_CONFIG, bufferMaxRetained));
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        if (data instanceof byte[]) {
+            return (byte[]) data;
+        }
+        if (data instanceof String) {
+            return ((String) data).getBytes(StandardCharsets.UTF_8);
+        }
+        PooledByteArrayOutputStream out = buffers.get();
+        try {
+            writerFor(data.getClass()).writeValue(out, data);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Can't serialize data [" + data.getClass().getName()
+                    + "] for topic [" + topic + "]", e);
+        } finally {
+            out.reset();
+        }
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    int getCachedWriterCount() {
+        return writers.size();
+    }
+
+    private ObjectWriter writerFor(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, objectMapper::writerFor);
+        }
+        return writer;
+    }
+
+    private void initBuffers(int size, int maxRetained) {
+        if (size < 1) {
+            throw new IllegalArgumentException(BUFFER_SIZE_CONFIG + " must be positive, but was " + size);
+        }
+        this.bufferSize = size;
+        this.bufferMaxRetained = maxRetained;
+        this.buffers = ThreadLocal.withInitial(() -> new PooledByteArrayOutputStream(size, maxRetained));
+    }
+
+    private static int intConfig(Map<String, ?> configs, String name, int defaultValue) {
+        Object value = configs.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.d2k.spring.boot.autoconfigure.serializer;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 可复用的字节输出缓冲区
+ * 非线程安全，由序列化器按线程持有；reset 时若缓冲区超过保留上限则收缩回初始大小，
+ * 避免偶发的大消息长期占用内存
+ *
+ * @author xiajuan96
+ */
+public class PooledByteArrayOutputStream extends OutputStream {
+
+    private final int initialSize;
+    private final int maxRetainedSize;
+    private byte[] buf;
+    private int count;
+
+    public PooledByteArrayOutputStream(int initialSize, int maxRetainedSize) {
+        if (initialSize < 1) {
+            throw new IllegalArgumentException("initialSize must be positive, but was " + initialSize);
+        }
+        this.initialSize = initialSize;
+        this.maxRetainedSize = Math.max(initialSize, maxRetainedSize);
+        this.buf = new byte[initialSize];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * 复制已写入的内容
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * 清空内容以便复用，超过保留上限的缓冲区会被释放
+     */
+    public void reset() {
+        count = 0;
+        if (buf.length > maxRetainedSize) {
+            buf = new byte[initialSize];
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("Serialized payload too large");
+        }
+        if (minCapacity > buf.length) {
+            int newCapacity = Math.max(buf.length << 1, minCapacity);
+            if (newCapacity < 0) {
+                newCapacity = Integer.MAX_VALUE - 8;
+            }
+            buf = Arrays.copyOf(buf, newCapacity);
+        }
+    }
+}
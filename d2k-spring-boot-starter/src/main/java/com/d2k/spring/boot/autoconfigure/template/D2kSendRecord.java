@@ -0,0 +1,32 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+/**
+ * 响应式批量发送的消息
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class D2kSendRecord<K, V> {
+
+    private final String topic;
+    private final K key;
+    private final V value;
+
+    public D2kSendRecord(String topic, K key, V value) {
+        this.topic = topic;
+        this.key = key;
+        this.value = value;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public V getValue() {
+        return value;
+    }
+}
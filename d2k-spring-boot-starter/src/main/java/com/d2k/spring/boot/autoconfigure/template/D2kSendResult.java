@@ -0,0 +1,39 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * 响应式批量发送的结果
+ * 发送成功时包含 RecordMetadata，失败时包含异常，单条失败不会中断整个流
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class D2kSendResult<K, V> {
+
+    private final D2kSendRecord<K, V> record;
+    private final RecordMetadata metadata;
+    private final Throwable exception;
+
+    public D2kSendResult(D2kSendRecord<K, V> record, RecordMetadata metadata, Throwable exception) {
+        this.record = record;
+        this.metadata = metadata;
+        this.exception = exception;
+    }
+
+    public D2kSendRecord<K, V> getRecord() {
+        return record;
+    }
+
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    public Throwable getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+}
@@ -1,30 +1,278 @@
 package com.d2k.spring.boot.autoconfigure.template;
 
 import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.claimcheck.ClaimCheckStore;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadder;
+import com.d2k.spring.boot.autoconfigure.ladder.DelayLadderRouter;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageCodec;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import com.d2k.spring.boot.autoconfigure.metrics.DelayProducerMetrics;
+import com.d2k.spring.boot.autoconfigure.outbox.D2kOutbox;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import com.d2k.spring.boot.autoconfigure.producer.SendFutureCompleter;
+import com.d2k.spring.boot.autoconfigure.producer.TopicRateLimiter;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.util.ClassUtils;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * D2K 模板类
  * 提供简化的延迟消息发送 API，支持泛型类型
+ * <p>
+ * 键和值在模板内完成序列化，底层只发送字节数组，
+ * 因此多个不同类型的模板可以共享同一个 DelayProducerPool（同一组缓冲池、发送线程和 Broker 连接）。
  * 
  * @param <K> 键类型
  * @param <V> 值类型
  */
 public class D2kTemplate<K, V> {
 
-    private final DelayProducer<K, V> delayProducer;
+    private static final boolean TRANSACTION_PRESENT = ClassUtils.isPresent(
+            "org.springframework.transaction.support.TransactionSynchronizationManager",
+            D2kTemplate.class.getClassLoader());
 
-    public D2kTemplate(DelayProducer<K, V> delayProducer) {
-        this.delayProducer = delayProducer;
+    private final DelayProducerPool producerPool;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private volatile boolean transactionSynchronized;
+    private volatile D2kOutbox outbox;
+    private volatile SendDeduplicationCache deduplicationCache;
+    private volatile TopicRateLimiter rateLimiter;
+    private volatile boolean stampHeaders;
+    private volatile Map<String, Long> topicDelays = Collections.emptyMap();
+    private volatile String origin;
+    private volatile Supplier<String> traceParentSupplier;
+    private volatile Predicate<String> traceSampler;
+    private volatile ClaimCheckStore claimCheckStore;
+    private volatile int claimCheckThreshold = Integer.MAX_VALUE;
+    private volatile DelayLadderRouter ladderRouter;
+    private volatile DelayProducerMetrics producerMetrics;
+    private volatile SendFutureCompleter sendFutureCompleter;
+
+    /**
+     * @param producerPool    共享的字节数组 DelayProducer 池
+     * @param keySerializer   键序列化器
+     * @param valueSerializer 值序列化器
+     */
+    public D2kTemplate(DelayProducerPool producerPool,
+                       Serializer<K> keySerializer,
+                       Serializer<V> valueSerializer) {
+        this.producerPool = producerPool;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    /**
+     * @param delayProducer   共享的字节数组 DelayProducer
+     * @param keySerializer   键序列化器
+     * @param valueSerializer 值序列化器
+     */
+    public D2kTemplate(DelayProducer<byte[], byte[]> delayProducer,
+                       Serializer<K> keySerializer,
+                       Serializer<V> valueSerializer) {
+        this(new DelayProducerPool(delayProducer), keySerializer, valueSerializer);
+    }
+
+    /**
+     * 设置是否与 Spring 事务同步
+     * 开启后在事务内发送的消息会先缓冲，事务提交后统一发送，回滚时丢弃
+     *
+     * @param transactionSynchronized 是否与事务同步
+     * @throws IllegalStateException 如果类路径中没有 spring-tx
+     */
+    public void setTransactionSynchronized(boolean transactionSynchronized) {
+        if (transactionSynchronized && !TRANSACTION_PRESENT) {
+            throw new IllegalStateException("Transaction-synchronized sends require spring-tx on the classpath");
+        }
+        this.transactionSynchronized = transactionSynchronized;
+    }
+
+    public boolean isTransactionSynchronized() {
+        return transactionSynchronized;
+    }
+
+    /**
+     * 设置本地 Outbox
+     * 设置后消息先写入本地日志即返回，由后台中继发送到 Kafka，Broker 不可用时发送方不会被阻塞
+     *
+     * @param outbox Outbox 实例，为 null 时直接交给生产者发送
+     */
+    public void setOutbox(D2kOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    public D2kOutbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * 设置发送去重缓存，{@link #sendIdempotent(String, Object, Object, String)} 依赖它抑制重复发送
+     *
+     * @param deduplicationCache 去重缓存，为 null 时不去重
+     */
+    public void setDeduplicationCache(SendDeduplicationCache deduplicationCache) {
+        this.deduplicationCache = deduplicationCache;
+    }
+
+    public SendDeduplicationCache getDeduplicationCache() {
+        return deduplicationCache;
+    }
+
+    /**
+     * 设置按主题的发送限流器
+     * 超出速率的消息按限流器的溢出策略排队匀速发出或直接拒绝，调用线程不会被阻塞；
+     * 启用 Outbox 时模板不再限流，由 Outbox 中继在交给生产者前限流
+     *
+     * @param rateLimiter 限流器，为 null 时不限流
+     */
+    public void setRateLimiter(TopicRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public TopicRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * 设置是否为每条消息写入标准元数据（消息 ID、发送时间、预期到期时间、来源、链路上下文）
+     * 开启后未指定消息 ID 的消息也会生成 ID 并以信封格式发送，消费端需要升级到能识别信封的版本
+     *
+     * @param stampHeaders 是否写入元数据
+     */
+    public void setStampHeaders(boolean stampHeaders) {
+        this.stampHeaders = stampHeaders;
+    }
+
+    public boolean isStampHeaders() {
+        return stampHeaders;
+    }
+
+    /**
+     * 设置各主题的延迟时间，用于计算元数据中的预期到期时间
+     *
+     * @param topicDelays 主题到延迟毫秒数的映射
+     */
+    public void setTopicDelays(Map<String, Long> topicDelays) {
+        this.topicDelays = topicDelays == null
+                ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(topicDelays));
+    }
+
+    /**
+     * 设置元数据中的来源标识，通常为应用名
+     */
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * 设置链路上下文提供者，在发送线程上调用，返回当前的 W3C traceparent，没有时返回 null
+     *
+     * @param traceParentSupplier 链路上下文提供者，为 null 时不写入
+     */
+    public void setTraceParentSupplier(Supplier<String> traceParentSupplier) {
+        this.traceParentSupplier = traceParentSupplier;
+    }
+
+    /**
+     * 设置按主题的链路采样判断，未采样的消息不调用链路上下文提供者、不写入链路上下文
+     *
+     * @param traceSampler 按主题判断是否采样，为 null 时每条消息都写入
+     */
+    public void setTraceSampler(Predicate<String> traceSampler) {
+        this.traceSampler = traceSampler;
+    }
+
+    /**
+     * 设置 Claim Check 存储
+     * 序列化后超过阈值的消息值写入存储，Kafka 中只发送引用，延迟等待期间不占用 Broker 批次和消费端内存；
+     * 消费端需配置能读取同一份数据的存储
+     *
+     * @param claimCheckStore Claim Check 存储，为 null 时始终直接发送消息值
+     */
+    public void setClaimCheckStore(ClaimCheckStore claimCheckStore) {
+        this.claimCheckStore = claimCheckStore;
+    }
+
+    public ClaimCheckStore getClaimCheckStore() {
+        return claimCheckStore;
+    }
+
+    /**
+     * 设置 Claim Check 阈值，序列化后的消息值超过该字节数时写入存储
+     *
+     * @param claimCheckThreshold 阈值（字节）
+     */
+    public void setClaimCheckThreshold(int claimCheckThreshold) {
+        if (claimCheckThreshold < 0) {
+            throw new IllegalArgumentException("Claim check threshold cannot be negative: " + claimCheckThreshold);
+        }
+        this.claimCheckThreshold = claimCheckThreshold;
+    }
+
+    public int getClaimCheckThreshold() {
+        return claimCheckThreshold;
+    }
+
+    /**
+     * 设置延迟阶梯路由
+     * 配置了阶梯的逻辑主题可以按条指定延迟，消息发送到对应的梯级主题，由消费端逐级转发到期
+     *
+     * @param ladderRouter 延迟阶梯路由，为 null 时只支持按主题预配置的延迟
+     */
+    public void setLadderRouter(DelayLadderRouter ladderRouter) {
+        this.ladderRouter = ladderRouter;
+    }
+
+    public DelayLadderRouter getLadderRouter() {
+        return ladderRouter;
+    }
+
+    /**
+     * 设置发送指标，按逻辑主题记录发送次数、失败次数、发送调用耗时、发送到确认的耗时和计划延迟
+     *
+     * @param producerMetrics 发送指标，为 null 时不记录
+     */
+    public void setProducerMetrics(DelayProducerMetrics producerMetrics) {
+        this.producerMetrics = producerMetrics;
+    }
+
+    public DelayProducerMetrics getProducerMetrics() {
+        return producerMetrics;
+    }
+
+    /**
+     * 设置发送结果转换器，设置了发送指标时用它在发送完成回调中记录从调用发送到收到确认的耗时和失败
+     *
+     * @param sendFutureCompleter 发送结果转换器，为 null 时只记录发送调用
+     */
+    public void setSendFutureCompleter(SendFutureCompleter sendFutureCompleter) {
+        this.sendFutureCompleter = sendFutureCompleter;
+    }
+
+    public SendFutureCompleter getSendFutureCompleter() {
+        return sendFutureCompleter;
     }
 
     /**
      * 异步发送延迟消息（使用预配置的延迟时间）
+     * 事务同步模式下，在事务内调用时返回的 Future 在事务提交并交给生产者后才会完成，事务回滚时被取消；
+     * Outbox 模式下返回的 Future 在中继交给生产者后完成
      *
      * @param topic 主题
      * @param key 消息键
@@ -33,7 +281,71 @@ public class D2kTemplate<K, V> {
      * @throws IllegalArgumentException 如果 topic 没有配置延迟时间
      */
     public Future<RecordMetadata> sendAsync(String topic, K key, V value) {
-        return delayProducer.send(topic, key, value);
+        return doSend(topic, key, value, null, true);
+    }
+
+    /**
+     * 异步发送带消息 ID 的延迟消息，消息到期前可以通过 {@link #cancel(String, Object, String)} 取消
+     *
+     * @param topic 主题
+     * @param key 消息键
+     * @param value 消息值
+     * @param messageId 消息 ID，同一分区内未到期的消息之间应唯一
+     * @return Future<RecordMetadata> 异步结果
+     * @throws IllegalArgumentException 如果 topic 没有配置延迟时间或 messageId 为空
+     */
+    public Future<RecordMetadata> sendAsync(String topic, K key, V value, String messageId) {
+        return doSend(topic, key, value, requireMessageId(messageId), true);
+    }
+
+    /**
+     * 按指定延迟异步发送消息，主题需配置延迟阶梯
+     * 消息先发送到不超过延迟的最长梯级，到期后由消费端按剩余时间逐级转发，预期到期时间写入元数据
+     *
+     * @param topic 逻辑主题
+     * @param key 消息键
+     * @param value 消息值
+     * @param delayMs 延迟（毫秒）
+     * @return Future<RecordMetadata> 发送到首个梯级的异步结果
+     * @throws IllegalArgumentException 如果 topic 没有配置延迟阶梯或 delayMs 为负数
+     */
+    public Future<RecordMetadata> sendAsync(String topic, K key, V value, long delayMs) {
+        return doSendLadder(topic, key, value, null, delayMs, true);
+    }
+
+    /**
+     * 按指定延迟异步发送带消息 ID 的消息，主题需配置延迟阶梯
+     *
+     * @param topic 逻辑主题
+     * @param key 消息键
+     * @param value 消息值
+     * @param delayMs 延迟（毫秒）
+     * @param messageId 消息 ID，同一分区内未到期的消息之间应唯一
+     * @return Future<RecordMetadata> 发送到首个梯级的异步结果
+     * @throws IllegalArgumentException 如果 topic 没有配置延迟阶梯、delayMs 为负数或 messageId 为空
+     */
+    public Future<RecordMetadata> sendAsync(String topic, K key, V value, long delayMs, String messageId) {
+        return doSendLadder(topic, key, value, requireMessageId(messageId), delayMs, true);
+    }
+
+    /**
+     * 带幂等键的异步发送
+     * 去重窗口内相同主题和幂等键的重复调用不会再次发送，直接返回首次发送的 Future；
+     * 首次发送失败或被取消后允许重新发送。未设置去重缓存时等同于 {@link #sendAsync(String, Object, Object)}
+     *
+     * @param topic 主题
+     * @param key 消息键
+     * @param value 消息值
+     * @param idempotencyKey 幂等键，通常取业务事件 ID
+     * @return Future<RecordMetadata> 异步结果
+     * @throws IllegalArgumentException 如果 topic 没有配置延迟时间
+     */
+    public Future<RecordMetadata> sendIdempotent(String topic, K key, V value, String idempotencyKey) {
+        SendDeduplicationCache cache = deduplicationCache;
+        if (cache == null || idempotencyKey == null) {
+            return sendAsync(topic, key, value);
+        }
+        return cache.deduplicate(topic, idempotencyKey, () -> sendAsync(topic, key, value));
     }
 
     /**
@@ -45,10 +357,12 @@ public class D2kTemplate<K, V> {
      * @return RecordMetadata 发送结果
      * @throws RuntimeException 如果发送失败
      * @throws IllegalArgumentException 如果 topic 没有配置延迟时间
+     * @throws IllegalStateException 如果在事务同步模式下于事务内调用
      */
     public RecordMetadata sendSync(String topic, K key, V value) {
+        assertNotInTransactionScope();
         try {
-            return delayProducer.send(topic, key, value).get();
+            return sendAsync(topic, key, value).get();
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException("Failed to send message synchronously", e);
         }
@@ -65,10 +379,12 @@ public class D2kTemplate<K, V> {
      * @return RecordMetadata 发送结果
      * @throws RuntimeException 如果发送失败或超时
      * @throws IllegalArgumentException 如果 topic 没有配置延迟时间
+     * @throws IllegalStateException 如果在事务同步模式下于事务内调用
      */
     public RecordMetadata sendSync(String topic, K key, V value, long timeout, TimeUnit unit) {
+        assertNotInTransactionScope();
         try {
-            return delayProducer.send(topic, key, value).get(timeout, unit);
+            return sendAsync(topic, key, value).get(timeout, unit);
         } catch (InterruptedException | ExecutionException | TimeoutException e) {
             throw new RuntimeException("Failed to send message synchronously", e);
         }
@@ -83,19 +399,243 @@ public class D2kTemplate<K, V> {
      * @throws IllegalArgumentException 如果 topic 没有配置延迟时间
      */
     public void send(String topic, K key, V value) {
-        sendAsync(topic, key, value);
+        doSend(topic, key, value, null, false);
+    }
+
+    /**
+     * 发送带消息 ID 的延迟消息 - 兼容性方法
+     *
+     * @param topic 主题
+     * @param key 消息键
+     * @param value 消息值
+     * @param messageId 消息 ID，同一分区内未到期的消息之间应唯一
+     * @throws IllegalArgumentException 如果 topic 没有配置延迟时间或 messageId 为空
+     */
+    public void send(String topic, K key, V value, String messageId) {
+        doSend(topic, key, value, requireMessageId(messageId), false);
+    }
+
+    /**
+     * 取消尚未到期的延迟消息
+     * 发送一条紧凑的取消标记到同一主题，必须使用与原消息相同的键以落到同一分区；
+     * 消费端在拉取到标记时登记，原消息到期后直接丢弃，不再交给监听器。
+     * 取消标记晚于原消息到期时取消不生效，消费端的取消索引满时最早登记的取消也会失效。
+     * 配置了延迟阶梯的主题，取消标记发送到每个梯级，返回最长梯级的发送结果
+     *
+     * @param topic 主题
+     * @param key 原消息的键
+     * @param messageId 原消息的 ID
+     * @return Future<RecordMetadata> 取消标记的发送结果
+     * @throws IllegalArgumentException 如果 topic 没有配置延迟时间或 messageId 为空
+     */
+    public Future<RecordMetadata> cancel(String topic, K key, String messageId) {
+        byte[] keyBytes = serializeKey(topic, key);
+        byte[] marker = D2kMessageCodec.encode(newHeaders(topic, requireMessageId(messageId), true), null);
+        DelayLadder ladder = ladderOf(topic);
+        if (ladder == null) {
+            return submit(topic, keyBytes, marker, true);
+        }
+        // 原消息可能位于任意梯级，每个梯级都登记取消
+        Future<RecordMetadata> result = null;
+        for (String rungTopic : ladder.getRungTopics()) {
+            result = submit(rungTopic, keyBytes, marker, true);
+        }
+        return result;
+    }
+
+    /**
+     * 获取底层共享的 DelayProducer 池
+     *
+     * @return DelayProducerPool 实例
+     */
+    public DelayProducerPool getProducerPool() {
+        return producerPool;
+    }
+
+    private Future<RecordMetadata> doSend(String topic, K key, V value, String messageId, boolean trackResult) {
+        if (ladderOf(topic) != null) {
+            // 阶梯主题使用预配置的延迟作为默认延迟
+            Long delay = topicDelays.get(topic);
+            if (delay == null) {
+                throw new IllegalArgumentException("Topic " + topic
+                        + " uses a delay ladder and has no default delay configured, pass delayMs explicitly");
+            }
+            return doSendLadder(topic, key, value, messageId, delay, trackResult);
+        }
+        DelayProducerMetrics metrics = producerMetrics;
+        long start = metrics == null ? 0L : System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] keyBytes = serializeKey(topic, key);
+            byte[] valueBytes = serializeValue(topic, value);
+            ClaimCheckStore store = claimCheckStore;
+            if (store != null && valueBytes != null && valueBytes.length > claimCheckThreshold) {
+                valueBytes = D2kMessageCodec.encodeClaimCheck(newHeaders(topic, messageId, false),
+                        storeClaimCheck(store, topic, valueBytes));
+            } else if (messageId != null || stampHeaders) {
+                valueBytes = D2kMessageCodec.encode(newHeaders(topic, messageId, false), valueBytes);
+            }
+            Future<RecordMetadata> future = submit(topic, keyBytes, valueBytes, trackResult);
+            success = true;
+            if (metrics != null) {
+                recordCompletion(metrics.forTopic(topic), future, start);
+            }
+            return future;
+        } finally {
+            if (metrics != null) {
+                Long delay = topicDelays.get(topic);
+                metrics.forTopic(topic).recordSend(System.nanoTime() - start, delay == null ? -1L : delay, success);
+            }
+        }
+    }
+
+    private Future<RecordMetadata> doSendLadder(String topic, K key, V value, String messageId, long delayMs,
+                                                boolean trackResult) {
+        DelayLadder ladder = ladderOf(topic);
+        if (ladder == null) {
+            throw new IllegalArgumentException("Topic " + topic + " has no delay ladder configured");
+        }
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("delayMs cannot be negative: " + delayMs);
+        }
+        // 序列化和 Claim Check 使用逻辑主题，消费端还原时同样使用逻辑主题；到期时间必须写入信封，供逐级转发判断
+        DelayProducerMetrics metrics = producerMetrics;
+        long start = metrics == null ? 0L : System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] keyBytes = serializeKey(topic, key);
+            byte[] valueBytes = serializeValue(topic, value);
+            long now = System.currentTimeMillis();
+            D2kMessageHeaders headers = newHeaders(topic, messageId, false, now, now + delayMs);
+            ClaimCheckStore store = claimCheckStore;
+            if (store != null && valueBytes != null && valueBytes.length > claimCheckThreshold) {
+                valueBytes = D2kMessageCodec.encodeClaimCheck(headers, storeClaimCheck(store, topic, valueBytes));
+            } else {
+                valueBytes = D2kMessageCodec.encode(headers, valueBytes);
+            }
+            Future<RecordMetadata> future = submit(ladder.route(delayMs), keyBytes, valueBytes, trackResult);
+            success = true;
+            if (metrics != null) {
+                recordCompletion(metrics.forTopic(topic), future, start);
+            }
+            return future;
+        } finally {
+            if (metrics != null) {
+                metrics.forTopic(topic).recordSend(System.nanoTime() - start, delayMs, success);
+            }
+        }
+    }
+
+    /**
+     * 为这条消息登记完成回调，按逻辑主题记录从调用发送到完成的耗时；事务回滚取消的发送不记录。
+     * Outbox 和事务同步模式下在消息交给生产者时完成
+     */
+    private void recordCompletion(DelayProducerMetrics.TopicSendMetrics topicMetrics,
+                                  Future<RecordMetadata> future, long start) {
+        SendFutureCompleter completer = sendFutureCompleter;
+        if (completer == null || future == null) {
+            return;
+        }
+        completer.whenComplete(future, (metadata, exception) -> {
+            if (!(exception instanceof CancellationException)) {
+                topicMetrics.recordCompletion(System.nanoTime() - start, exception == null);
+            }
+        });
+    }
+
+    private DelayLadder ladderOf(String topic) {
+        DelayLadderRouter router = ladderRouter;
+        return router == null ? null : router.getLadder(topic);
+    }
+
+    private static String storeClaimCheck(ClaimCheckStore store, String topic, byte[] payload) {
+        try {
+            return store.store(topic, payload);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store claim-checked payload for topic " + topic, e);
+        }
     }
 
+    private D2kMessageHeaders newHeaders(String topic, String messageId, boolean cancel) {
+        long now = System.currentTimeMillis();
+        Long delay = topicDelays.get(topic);
+        return newHeaders(topic, messageId, cancel, now,
+                delay == null ? D2kMessageHeaders.UNKNOWN_TIMESTAMP : now + delay);
+    }
 
+    private D2kMessageHeaders newHeaders(String topic, String messageId, boolean cancel, long now, long dueTimestamp) {
+        return new D2kMessageHeaders(messageId != null ? messageId : D2kMessageHeaders.newMessageId(), cancel, now,
+                dueTimestamp, origin, traceParent(topic));
+    }
 
+    /**
+     * 当前链路的 traceparent，未采样时不查询链路上下文提供者
+     */
+    private String traceParent(String topic) {
+        Supplier<String> traceSupplier = traceParentSupplier;
+        if (traceSupplier == null) {
+            return null;
+        }
+        Predicate<String> sampler = traceSampler;
+        return sampler == null || sampler.test(topic) ? traceSupplier.get() : null;
+    }
 
+    private Future<RecordMetadata> submit(String topic, byte[] keyBytes, byte[] valueBytes, boolean trackResult) {
+        if (inTransactionScope()) {
+            return TransactionalSendBuffer.buffer(this, topic, keyBytes, valueBytes);
+        }
+        return dispatch(topic, keyBytes, valueBytes, trackResult);
+    }
 
+    /**
+     * 将序列化后的消息交给 Outbox，或经过限流后交给生产者池
+     * 启用 Outbox 时先持久化再由中继限流，避免消息停留在限流器的内存队列中
+     */
+    Future<RecordMetadata> dispatch(String topic, byte[] key, byte[] value, boolean trackResult) {
+        D2kOutbox current = outbox;
+        if (current != null) {
+            return current.append(topic, key, value, trackResult);
+        }
+        TopicRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            return limiter.submit(topic, () -> producerPool.send(topic, key, value));
+        }
+        return producerPool.send(topic, key, value);
+    }
+
+    private static String requireMessageId(String messageId) {
+        if (messageId == null || messageId.isEmpty()) {
+            throw new IllegalArgumentException("messageId cannot be empty");
+        }
+        return messageId;
+    }
+
+    private boolean inTransactionScope() {
+        return transactionSynchronized && TransactionalSendBuffer.isTransactionActive();
+    }
 
+    private void assertNotInTransactionScope() {
+        // 事务提交前消息不会发出，同步等待只会一直阻塞到超时
+        if (inTransactionScope()) {
+            throw new IllegalStateException(
+                    "sendSync cannot be used inside a transaction when transaction-synchronized sends are enabled");
+        }
+    }
+
+    protected byte[] serializeKey(String topic, K key) {
+        return key == null ? null : keySerializer.serialize(topic, key);
+    }
+
+    protected byte[] serializeValue(String topic, V value) {
+        return value == null ? null : valueSerializer.serialize(topic, value);
+    }
 
     /**
-     * 关闭生产者
+     * 关闭模板持有的序列化器
+     * 共享的 DelayProducerPool 由 Spring 容器统一关闭，这里不会关闭生产者
      */
     public void close() {
-        delayProducer.close();
+        keySerializer.close();
+        valueSerializer.close();
     }
 }
\ No newline at end of file
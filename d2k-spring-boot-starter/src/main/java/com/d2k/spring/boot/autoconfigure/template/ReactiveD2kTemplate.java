@@ -0,0 +1,75 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import com.d2k.spring.boot.autoconfigure.producer.SendFutureCompleter;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 响应式 D2K 模板类
+ * 基于 {@link D2kTemplate} 共享的 DelayProducerPool 发送，发送结果由 {@link SendFutureCompleter} 异步通知，
+ * 不需要在 boundedElastic 等线程池中阻塞等待。批量发送时最多保持 maxInFlight 条未确认的消息，
+ * 并据此向上游请求数据，实现背压。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class ReactiveD2kTemplate<K, V> {
+
+    private final D2kTemplate<K, V> d2kTemplate;
+    private final SendFutureCompleter completer;
+    private final int maxInFlight;
+
+    /**
+     * @param d2kTemplate 底层模板
+     * @param completer   发送结果转换器
+     * @param maxInFlight 批量发送时最多未确认的消息数
+     */
+    public ReactiveD2kTemplate(D2kTemplate<K, V> d2kTemplate, SendFutureCompleter completer, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, but was " + maxInFlight);
+        }
+        this.d2kTemplate = d2kTemplate;
+        this.completer = completer;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 发送延迟消息（使用预配置的延迟时间），订阅时才真正发送
+     *
+     * @param topic 主题
+     * @param key   消息键
+     * @param value 消息值
+     * @return 发送确认后发出 RecordMetadata 的 Mono，已交出但没有元数据时为空
+     */
+    public Mono<RecordMetadata> send(String topic, K key, V value) {
+        return Mono.defer(() -> Mono.fromFuture(
+                completer.toCompletableFuture(d2kTemplate.sendAsync(topic, key, value))));
+    }
+
+    /**
+     * 批量发送延迟消息，结果顺序与输入顺序一致
+     * 单条消息发送失败时以失败的 {@link D2kSendResult} 发出，不会终止整个流
+     *
+     * @param records 待发送的消息流
+     * @return 发送结果流
+     */
+    public Flux<D2kSendResult<K, V>> send(Publisher<? extends D2kSendRecord<K, V>> records) {
+        return Flux.<D2kSendRecord<K, V>>from(records).flatMapSequential(record ->
+                        send(record.getTopic(), record.getKey(), record.getValue())
+                                .map(metadata -> new D2kSendResult<>(record, metadata, null))
+                                // 已交出但没有元数据的发送（如经 Outbox 中继）同样发出成功结果
+                                .defaultIfEmpty(new D2kSendResult<>(record, null, null))
+                                .onErrorResume(e -> Mono.just(new D2kSendResult<>(record, null, e))),
+                maxInFlight);
+    }
+
+    public D2kTemplate<K, V> getD2kTemplate() {
+        return d2kTemplate;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+}
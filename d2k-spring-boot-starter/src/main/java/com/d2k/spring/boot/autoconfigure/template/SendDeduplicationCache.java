@@ -0,0 +1,199 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import com.d2k.spring.boot.autoconfigure.producer.DeferredSendFuture;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 发送去重缓存
+ * 以 (topic, 幂等键) 为键记录时间窗口内的发送结果，窗口内重复发送直接返回首次发送的 Future。
+ * 首次发送前先在锁内登记占位的 {@link DeferredSendFuture}，再在锁外发送，并发的重复调用拿到同一个占位结果，
+ * 不会各自发出；按幂等键哈希分段加锁，每段按写入顺序淘汰，超出容量或窗口的条目被移除；
+ * 首次发送失败或被取消时不计为命中，允许重新发送
+ *
+ * @author xiajuan96
+ */
+public class SendDeduplicationCache {
+
+    private final long windowNanos;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param windowMs   去重时间窗口（毫秒）
+     * @param maxEntries 最多保留的幂等键数量
+     * @param stripes    分段数，向上取整为 2 的幂
+     */
+    public SendDeduplicationCache(long windowMs, int maxEntries, int stripes) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("windowMs must be positive, but was " + windowMs);
+        }
+        if (maxEntries < 1 || stripes < 1) {
+            throw new IllegalArgumentException("maxEntries and stripes must be positive");
+        }
+        int stripeCount = Integer.highestOneBit(Math.min(stripes, maxEntries));
+        if (stripeCount < Math.min(stripes, maxEntries)) {
+            stripeCount <<= 1;
+        }
+        this.windowNanos = windowMs * 1_000_000L;
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+        int perStripe = Math.max(1, (maxEntries + stripeCount - 1) / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * 窗口内首次出现的幂等键执行发送并记录结果，重复的幂等键直接返回已记录的结果
+     *
+     * @param topic          主题
+     * @param idempotencyKey 幂等键
+     * @param send           实际发送
+     * @return 发送结果
+     */
+    public Future<RecordMetadata> deduplicate(String topic, String idempotencyKey,
+                                              Supplier<Future<RecordMetadata>> send) {
+        String key = topic + '\u0000' + idempotencyKey;
+        Stripe stripe = stripes[spread(key.hashCode()) & stripeMask];
+        long now = System.nanoTime();
+        DeferredSendFuture placeholder = new DeferredSendFuture();
+        Entry pending = new Entry(placeholder, now + windowNanos);
+        synchronized (stripe) {
+            stripe.expire(now);
+            Entry entry = stripe.get(key);
+            if (entry != null && !entry.isFailed()) {
+                hitCount.increment();
+                return entry.future;
+            }
+            // 先移除失败的旧条目，保证分段内条目按写入时间排列
+            stripe.remove(key);
+            stripe.put(key, pending);
+        }
+        missCount.increment();
+        // 在锁外发送，避免生产者阻塞时拖住整个分段
+        try {
+            placeholder.complete(send.get());
+        } catch (RuntimeException e) {
+            placeholder.fail(e);
+            synchronized (stripe) {
+                stripe.remove(key, pending);
+            }
+            throw e;
+        }
+        return placeholder;
+    }
+
+    /**
+     * 移除幂等键，之后的发送不再被去重
+     */
+    public void invalidate(String topic, String idempotencyKey) {
+        String key = topic + '\u0000' + idempotencyKey;
+        Stripe stripe = stripes[spread(key.hashCode()) & stripeMask];
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 命中率，尚无请求时为 0
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+        final Future<RecordMetadata> future;
+        final long expiresAt;
+
+        Entry(Future<RecordMetadata> future, long expiresAt) {
+            this.future = future;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isFailed() {
+            if (!future.isDone()) {
+                return false;
+            }
+            try {
+                future.get();
+                return false;
+            } catch (ExecutionException | CancellationException e) {
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private final class Stripe extends LinkedHashMap<String, Entry> {
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * 条目按写入顺序排列且窗口相同，从头部移除过期条目即可
+         */
+        void expire(long now) {
+            Iterator<Entry> it = values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expiresAt - now > 0) {
+                    break;
+                }
+                it.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
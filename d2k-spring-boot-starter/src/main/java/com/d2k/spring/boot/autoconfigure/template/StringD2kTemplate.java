@@ -1,7 +1,9 @@
 package com.d2k.spring.boot.autoconfigure.template;
 
 import com.d2k.producer.DelayProducer;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
 
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -16,8 +18,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class StringD2kTemplate extends D2kTemplate<String, String> {
 
-    public StringD2kTemplate(DelayProducer<String, String> delayProducer) {
-        super(delayProducer);
+    public StringD2kTemplate(DelayProducerPool producerPool) {
+        super(producerPool, new StringSerializer(), new StringSerializer());
+    }
+
+    public StringD2kTemplate(DelayProducer<byte[], byte[]> delayProducer) {
+        super(delayProducer, new StringSerializer(), new StringSerializer());
     }
 
     /**
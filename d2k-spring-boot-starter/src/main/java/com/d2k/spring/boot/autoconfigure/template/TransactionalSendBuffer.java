@@ -0,0 +1,105 @@
+package com.d2k.spring.boot.autoconfigure.template;
+
+import com.d2k.spring.boot.autoconfigure.producer.DeferredSendFuture;
+import com.d2k.spring.boot.autoconfigure.producer.DelayProducerPool;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * 事务内的延迟消息缓冲区
+ * 绑定到当前 Spring 事务，事务提交后按发送顺序统一交给生产者（或 Outbox），回滚时全部丢弃，
+ * 避免回滚的业务仍然留下延迟消息（例如已回滚订单的超时消息）。
+ * 同一个事务内共享同一个 DelayProducerPool 的模板共用一个缓冲区；
+ * 事务挂起（如 REQUIRES_NEW）时解绑缓冲区，内层事务使用自己的缓冲区，外层事务恢复时重新绑定。
+ */
+class TransactionalSendBuffer implements TransactionSynchronization {
+
+    private final DelayProducerPool producerPool;
+    private final List<PendingSend> sends = new ArrayList<>();
+
+    private TransactionalSendBuffer(DelayProducerPool producerPool) {
+        this.producerPool = producerPool;
+    }
+
+    /**
+     * 当前线程是否处于实际的事务中
+     * 只有事务同步而没有实际事务时（如 SUPPORTS 传播且不存在事务）不缓冲，提交回调不代表任何提交
+     */
+    static boolean isTransactionActive() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * 将消息加入当前事务的缓冲区
+     *
+     * @return 事务提交后才会完成的 Future；事务回滚时该 Future 被取消
+     */
+    static Future<RecordMetadata> buffer(D2kTemplate<?, ?> template, String topic, byte[] key, byte[] value) {
+        DelayProducerPool producerPool = template.getProducerPool();
+        TransactionalSendBuffer buffer =
+                (TransactionalSendBuffer) TransactionSynchronizationManager.getResource(producerPool);
+        if (buffer == null) {
+            buffer = new TransactionalSendBuffer(producerPool);
+            TransactionSynchronizationManager.bindResource(producerPool, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        PendingSend send = new PendingSend(template, topic, key, value);
+        buffer.sends.add(send);
+        return send.future;
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResource(producerPool);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(producerPool, this);
+    }
+
+    @Override
+    public void afterCommit() {
+        for (PendingSend send : sends) {
+            if (send.future.isCancelled()) {
+                continue;
+            }
+            try {
+                send.future.complete(send.template.dispatch(send.topic, send.key, send.value, true));
+            } catch (RuntimeException e) {
+                send.future.fail(e);
+            }
+        }
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(producerPool);
+        // 提交后已全部交给生产者；回滚或状态未知时丢弃缓冲的消息
+        for (PendingSend send : sends) {
+            send.future.cancel(false);
+        }
+        sends.clear();
+    }
+
+    private static final class PendingSend {
+        private final D2kTemplate<?, ?> template;
+        private final String topic;
+        private final byte[] key;
+        private final byte[] value;
+        private final DeferredSendFuture future = new DeferredSendFuture();
+
+        private PendingSend(D2kTemplate<?, ?> template, String topic, byte[] key, byte[] value) {
+            this.template = template;
+            this.topic = topic;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerContext;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * 基于 Brave 的链路追踪桥接
+ * 发送端导出当前 span 的 traceparent（未采样的链路不导出），消费端以 traceparent 为父上下文开始 CONSUMER span，
+ * 名称为 d2k.listener，附加 d2k.listener 和 messaging.destination 标签
+ *
+ * @author xiajuan96
+ */
+public class BraveTracingBridge implements D2kTracingBridge {
+
+    private final Tracing tracing;
+
+    public BraveTracingBridge(Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    public String currentTraceParent() {
+        Span span = tracing.tracer().currentSpan();
+        if (span == null) {
+            return null;
+        }
+        TraceContext context = span.context();
+        if (!Boolean.TRUE.equals(context.sampled())) {
+            return null;
+        }
+        return TraceParent.format(context.traceIdHigh(), context.traceId(), context.spanId(), true);
+    }
+
+    @Override
+    public Object startListenerSpan(String traceParent, D2kListenerContext context) {
+        TraceContext parent = TraceContext.newBuilder()
+                .traceIdHigh(TraceParent.getTraceIdHigh(traceParent))
+                .traceId(TraceParent.getTraceIdLow(traceParent))
+                .spanId(TraceParent.getParentId(traceParent))
+                .sampled(true)
+                .build();
+        Tracer tracer = tracing.tracer();
+        Span span = tracer.nextSpan(TraceContextOrSamplingFlags.create(parent))
+                .name("d2k.listener")
+                .kind(Span.Kind.CONSUMER);
+        if (context.getListenerId() != null) {
+            span.tag("d2k.listener", context.getListenerId());
+        }
+        ConsumerRecord<?, ?> record = context.getRecord();
+        if (record != null) {
+            span.tag("messaging.destination", record.topic());
+        }
+        span.start();
+        return new ScopedSpan(span, tracer.withSpanInScope(span));
+    }
+
+    @Override
+    public void finishListenerSpan(Object span, Throwable error) {
+        ScopedSpan scoped = (ScopedSpan) span;
+        scoped.scope.close();
+        if (error != null) {
+            scoped.span.error(error);
+        }
+        scoped.span.finish();
+    }
+
+    private static final class ScopedSpan {
+        private final Span span;
+        private final Tracer.SpanInScope scope;
+
+        private ScopedSpan(Span span, Tracer.SpanInScope scope) {
+            this.span = span;
+            this.scope = scope;
+        }
+    }
+}
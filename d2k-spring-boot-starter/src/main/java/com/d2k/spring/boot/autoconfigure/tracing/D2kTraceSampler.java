@@ -0,0 +1,66 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按主题的链路采样器
+ * 发送端按主题的采样率决定是否写入链路上下文，未采样的消息不查询当前链路；
+ * 消费端按发送端写入的采样标志恢复链路，采样率为 0 的主题不再恢复
+ *
+ * @author xiajuan96
+ */
+public class D2kTraceSampler {
+
+    private final double defaultRate;
+    private final Map<String, Double> topicRates;
+
+    /**
+     * @param defaultRate 未单独配置的主题的采样率（0 到 1）
+     * @param topicRates  各主题的采样率（0 到 1）
+     */
+    public D2kTraceSampler(double defaultRate, Map<String, Double> topicRates) {
+        checkRate("default", defaultRate);
+        Map<String, Double> rates = new HashMap<>();
+        if (topicRates != null) {
+            for (Map.Entry<String, Double> entry : topicRates.entrySet()) {
+                checkRate(entry.getKey(), entry.getValue());
+                rates.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.defaultRate = defaultRate;
+        this.topicRates = Collections.unmodifiableMap(rates);
+    }
+
+    /**
+     * 发送端：本条消息是否采样
+     */
+    public boolean isSampled(String topic) {
+        double rate = getRate(topic);
+        if (rate >= 1.0) {
+            return true;
+        }
+        return rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * 消费端：主题是否恢复链路
+     */
+    public boolean isEnabled(String topic) {
+        return getRate(topic) > 0.0;
+    }
+
+    public double getRate(String topic) {
+        Double rate = topicRates.get(topic);
+        return rate == null ? defaultRate : rate;
+    }
+
+    private static void checkRate(String name, Double rate) {
+        if (rate == null || !(rate >= 0.0 && rate <= 1.0)) {
+            throw new IllegalArgumentException("Trace sample rate for " + name + " must be between 0 and 1, but was "
+                    + rate);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerContext;
+
+/**
+ * 链路追踪桥接
+ * 把发送线程上的当前链路导出为 W3C traceparent，并在调用监听器时以 traceparent 为父上下文开始消费 span。
+ * 类路径中存在 Brave 时默认使用 {@link BraveTracingBridge}，其他追踪库（如 Micrometer Tracing）声明自己的实现即可
+ *
+ * @author xiajuan96
+ */
+public interface D2kTracingBridge {
+
+    /**
+     * 在发送线程上调用，返回当前链路的 traceparent，没有链路或未采样时返回 null
+     */
+    String currentTraceParent();
+
+    /**
+     * 在处理线程上调用，以 traceParent 为父上下文开始 span 并设为当前
+     *
+     * @param traceParent 已校验、已采样的 traceparent
+     * @param context     监听器调用上下文
+     * @return 传给 {@link #finishListenerSpan} 的句柄，返回 null 表示未开始
+     */
+    Object startListenerSpan(String traceParent, D2kListenerContext context);
+
+    /**
+     * 在同一处理线程上调用，退出 span 的作用域并结束 span
+     *
+     * @param span  {@link #startListenerSpan} 返回的句柄
+     * @param error 监听器抛出的异常，正常返回时为 null
+     */
+    void finishListenerSpan(Object span, Throwable error);
+}
@@ -0,0 +1,112 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+/**
+ * W3C traceparent 工具
+ * 格式为 00-[32 位十六进制 trace-id]-[16 位十六进制 parent-id]-[2 位十六进制 flags]，flags 最低位表示已采样。
+ * 判断是否采样时先只读 flags 字符，未采样的链路上下文不做完整校验和解析
+ *
+ * @author xiajuan96
+ */
+public final class TraceParent {
+
+    /** traceparent 的长度 */
+    public static final int LENGTH = 55;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private TraceParent() {
+    }
+
+    /**
+     * 是否为已采样且格式合法的 traceparent，null 返回 false
+     */
+    public static boolean isSampled(String traceParent) {
+        if (traceParent == null || traceParent.length() != LENGTH) {
+            return false;
+        }
+        return (Character.digit(traceParent.charAt(LENGTH - 1), 16) & 1) == 1 && isValid(traceParent);
+    }
+
+    /**
+     * 是否为格式合法的 traceparent（版本 00，trace-id 和 parent-id 不全为 0）
+     */
+    public static boolean isValid(String traceParent) {
+        if (traceParent == null || traceParent.length() != LENGTH
+                || traceParent.charAt(0) != '0' || traceParent.charAt(1) != '0'
+                || traceParent.charAt(2) != '-' || traceParent.charAt(35) != '-' || traceParent.charAt(52) != '-') {
+            return false;
+        }
+        return isHex(traceParent, 3, 35) && isHex(traceParent, 36, 52) && isHex(traceParent, 53, 55)
+                && (getTraceIdHigh(traceParent) != 0 || getTraceIdLow(traceParent) != 0)
+                && getParentId(traceParent) != 0;
+    }
+
+    /**
+     * trace-id 的高 64 位，调用前需确认格式合法
+     */
+    public static long getTraceIdHigh(String traceParent) {
+        return parseHex(traceParent, 3, 19);
+    }
+
+    /**
+     * trace-id 的低 64 位，调用前需确认格式合法
+     */
+    public static long getTraceIdLow(String traceParent) {
+        return parseHex(traceParent, 19, 35);
+    }
+
+    /**
+     * parent-id（发送时所在的 span），调用前需确认格式合法
+     */
+    public static long getParentId(String traceParent) {
+        return parseHex(traceParent, 36, 52);
+    }
+
+    /**
+     * 生成 traceparent
+     *
+     * @param traceIdHigh trace-id 高 64 位，64 位 trace-id 时为 0
+     * @param traceIdLow  trace-id 低 64 位
+     * @param spanId      当前 span 的 ID
+     * @param sampled     是否已采样
+     */
+    public static String format(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        char[] chars = new char[LENGTH];
+        chars[0] = '0';
+        chars[1] = '0';
+        chars[2] = '-';
+        writeHex(chars, 3, traceIdHigh);
+        writeHex(chars, 19, traceIdLow);
+        chars[35] = '-';
+        writeHex(chars, 36, spanId);
+        chars[52] = '-';
+        chars[53] = '0';
+        chars[54] = sampled ? '1' : '0';
+        return new String(chars);
+    }
+
+    private static boolean isHex(String value, int begin, int end) {
+        for (int i = begin; i < end; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String value, int begin, int end) {
+        long result = 0;
+        for (int i = begin; i < end; i++) {
+            result = (result << 4) | Character.digit(value.charAt(i), 16);
+        }
+        return result;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.d2k.spring.boot.autoconfigure.tracing;
+
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerContext;
+import com.d2k.spring.boot.autoconfigure.consumer.D2kListenerInterceptor;
+import com.d2k.spring.boot.autoconfigure.message.D2kMessageHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.core.Ordered;
+
+/**
+ * 恢复链路上下文的监听器拦截器
+ * 消息元数据中带有已采样的 traceparent 时，通过 {@link D2kTracingBridge} 开始以其为父上下文的消费 span，
+ * 监听器返回或抛出异常后结束。没有 traceparent、未采样或主题采样率为 0 时只做几次字段读取，不解析也不查询追踪库。
+ * 排在其他拦截器之前，使其他拦截器（如 MDC）能读到恢复后的链路
+ *
+ * @author xiajuan96
+ */
+public class TracingListenerInterceptor implements D2kListenerInterceptor, Ordered {
+
+    private static final Object SPAN_KEY = new Object();
+
+    private final D2kTracingBridge bridge;
+    private final D2kTraceSampler sampler;
+
+    /**
+     * @param bridge  链路追踪桥接
+     * @param sampler 按主题的采样器，为 null 时恢复所有已采样的链路
+     */
+    public TracingListenerInterceptor(D2kTracingBridge bridge, D2kTraceSampler sampler) {
+        this.bridge = bridge;
+        this.sampler = sampler;
+    }
+
+    @Override
+    public void beforeInvoke(D2kListenerContext context) {
+        ConsumerRecord<?, ?> record = context.getRecord();
+        if (record == null || sampler != null && !sampler.isEnabled(record.topic())) {
+            return;
+        }
+        D2kMessageHeaders headers = D2kMessageHeaders.from(record);
+        String traceParent = headers == null ? null : headers.getTraceParent();
+        if (!TraceParent.isSampled(traceParent)) {
+            return;
+        }
+        Object span = bridge.startListenerSpan(traceParent, context);
+        if (span != null) {
+            context.setAttribute(SPAN_KEY, span);
+        }
+    }
+
+    @Override
+    public void afterInvoke(D2kListenerContext context) {
+        Object span = context.getAttribute(SPAN_KEY);
+        if (span != null) {
+            bridge.finishListenerSpan(span, null);
+        }
+    }
+
+    @Override
+    public void onError(D2kListenerContext context, Throwable error) {
+        Object span = context.getAttribute(SPAN_KEY);
+        if (span != null) {
+            bridge.finishListenerSpan(span, error);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}